@@ -0,0 +1,62 @@
+package de.hub.se.jqf.bedivfuzz.cmin;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+
+import de.hub.se.jqf.bedivfuzz.guidance.parallel.ParallelFuzzing;
+import edu.berkeley.cs.jqf.fuzz.util.IOUtils;
+
+/**
+ * Entry point for minimizing a corpus: replays every input on several worker
+ * threads and copies a small subset that covers the same edges to an output
+ * directory. A replacement for {@code jqf-afl-cmin} that does not go through
+ * the AFL proxy and its colliding coverage map.
+ */
+public class CorpusMinimizationDriver {
+
+    public static void main(String[] args) {
+        if (args.length < 4){
+            System.err.println("Usage: java " + CorpusMinimizationDriver.class + " TEST_CLASS TEST_METHOD INPUT_DIR OUTPUT_DIR");
+            System.exit(1);
+        }
+
+        String testClassName  = args[0];
+        String testMethodName = args[1];
+        File inputDirectory = new File(args[2]);
+        File outputDirectory = new File(args[3]);
+
+        try {
+            File[] inputFiles = Arrays.stream(IOUtils.resolveInputFileOrDirectory(inputDirectory))
+                    .filter(File::isFile)
+                    .toArray(File[]::new);
+            int numWorkers = Integer.getInteger("jqf.cmin.NUM_WORKERS", Runtime.getRuntime().availableProcessors());
+            boolean weightByTime = "time".equals(System.getProperty("jqf.cmin.WEIGHT", "size"));
+
+            // Replay the corpus on all workers
+            CorpusMinimizationGuidance guidance = new CorpusMinimizationGuidance(inputFiles);
+            ClassLoader loader = ClassLoader.getSystemClassLoader();
+            Class<?> testClass = Class.forName(testClassName, true, loader);
+            ParallelFuzzing.run(testClass, testMethodName, loader, guidance, numWorkers, null);
+
+            // Keep a minimal subset
+            List<Integer> selected = guidance.selectInputs(weightByTime);
+            Files.createDirectories(outputDirectory.toPath());
+            for (int idx : selected) {
+                File inputFile = inputFiles[idx];
+                Files.copy(inputFile.toPath(), new File(outputDirectory, inputFile.getName()).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            System.out.println(String.format("Kept %d of %d inputs (%d failing inputs dropped).",
+                    selected.size(), inputFiles.length, guidance.getNumFailures()));
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(2);
+        }
+
+    }
+}
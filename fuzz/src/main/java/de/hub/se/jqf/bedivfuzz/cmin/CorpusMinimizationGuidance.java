@@ -0,0 +1,172 @@
+package de.hub.se.jqf.bedivfuzz.cmin;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import de.hub.se.jqf.bedivfuzz.guidance.parallel.ThreadLocalCoverageListener;
+import edu.berkeley.cs.jqf.fuzz.guidance.Guidance;
+import edu.berkeley.cs.jqf.fuzz.guidance.GuidanceException;
+import edu.berkeley.cs.jqf.fuzz.guidance.Result;
+import edu.berkeley.cs.jqf.fuzz.util.Coverage;
+import edu.berkeley.cs.jqf.fuzz.util.CoverageFactory;
+import edu.berkeley.cs.jqf.fuzz.util.ICoverage;
+import edu.berkeley.cs.jqf.instrument.tracing.FastCoverageSnoop;
+import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEvent;
+import janala.instrument.FastCoverageListener;
+
+/**
+ * A guidance that replays each input of a corpus once, possibly on several
+ * worker threads (see {@link de.hub.se.jqf.bedivfuzz.guidance.parallel.ParallelFuzzing}),
+ * and records the edges it covers, its size and its execution time.
+ *
+ * <p>Like {@link edu.berkeley.cs.jqf.fuzz.repro.ReproGuidance}, inputs are
+ * replayed as they are; generators that request more bytes than an input
+ * holds see the end of the stream. Each worker collects coverage into its
+ * own map, so with fast non-colliding instrumentation the recorded edges
+ * are exact.</p>
+ */
+public class CorpusMinimizationGuidance implements Guidance {
+
+    protected final File[] inputFiles;
+
+    /** The edges covered by each input; null if the input was not replayed or failed. */
+    protected final int[][] coveredEdges;
+
+    /** The result of replaying each input. */
+    protected final Result[] results;
+
+    /** The time taken to replay each input, in nanoseconds. */
+    protected final long[] execNanos;
+
+    /** The size of each input, in bytes. */
+    protected final int[] sizes;
+
+    private final AtomicInteger nextFileIdx = new AtomicInteger();
+    private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(this::newWorker);
+
+    /** Routes fast-coverage probes to the worker that executes them; null without fast coverage. */
+    private final ThreadLocalCoverageListener coverageListener;
+
+    public CorpusMinimizationGuidance(File[] inputFiles) {
+        if (CoverageFactory.isInlineCoverageEnabled()) {
+            throw new GuidanceException("Inline coverage probes cannot be attributed to parallel workers");
+        }
+        this.inputFiles = inputFiles;
+        this.coveredEdges = new int[inputFiles.length][];
+        this.results = new Result[inputFiles.length];
+        this.execNanos = new long[inputFiles.length];
+        this.sizes = new int[inputFiles.length];
+
+        // Route fast-coverage probes to the coverage of the worker that executes them
+        if (CoverageFactory.newInstance() instanceof FastCoverageListener) {
+            this.coverageListener = new ThreadLocalCoverageListener();
+            FastCoverageSnoop.setFastCoverageListener(coverageListener);
+        } else {
+            this.coverageListener = null;
+        }
+    }
+
+    private Worker newWorker() {
+        Worker worker = new Worker();
+        if (coverageListener != null) {
+            coverageListener.register(Thread.currentThread(), (FastCoverageListener) worker.coverage);
+        }
+        return worker;
+    }
+
+    @Override
+    public boolean hasInput() {
+        // Claim the next input for this worker
+        Worker worker = workers.get();
+        worker.fileIdx = nextFileIdx.getAndIncrement();
+        return worker.fileIdx < inputFiles.length;
+    }
+
+    @Override
+    public InputStream getInput() throws GuidanceException {
+        Worker worker = workers.get();
+        File inputFile = inputFiles[worker.fileIdx];
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(inputFile.toPath());
+        } catch (IOException e) {
+            throw new GuidanceException(e);
+        }
+        sizes[worker.fileIdx] = bytes.length;
+        worker.coverage.clear();
+        worker.startNanos = System.nanoTime();
+        return new ByteArrayInputStream(bytes);
+    }
+
+    @Override
+    public void handleResult(Result result, Throwable error) throws GuidanceException {
+        Worker worker = workers.get();
+        int idx = worker.fileIdx;
+        execNanos[idx] = System.nanoTime() - worker.startNanos;
+        results[idx] = result;
+        if (result == Result.SUCCESS || result == Result.INVALID) {
+            coveredEdges[idx] = worker.coverage.getCovered().toArray();
+        }
+    }
+
+    @Override
+    public Consumer<TraceEvent> generateCallBack(Thread thread) {
+        // Tracers are spawned on the thread they trace; with fast coverage, probes bypass them
+        return e -> {
+            ICoverage coverage = workers.get().coverage;
+            if (coverage instanceof Coverage) {
+                ((Coverage) coverage).handleEvent(e);
+            }
+        };
+    }
+
+    /**
+     * Selects the inputs to keep.
+     *
+     * <p>Inputs that failed are not kept, since they would make every
+     * subsequent campaign stop at a known failure.</p>
+     *
+     * @param weightByTime whether to weigh inputs by their execution time instead of their size
+     * @return the indices of the inputs to keep, in the order of selection
+     */
+    public List<Integer> selectInputs(boolean weightByTime) {
+        CorpusMinimizer minimizer = new CorpusMinimizer();
+        int[] indices = new int[inputFiles.length];
+        for (int i = 0; i < inputFiles.length; i++) {
+            if (coveredEdges[i] != null) {
+                double weight = weightByTime ? Math.max(1, execNanos[i]) : Math.max(1, sizes[i]);
+                indices[minimizer.add(coveredEdges[i], weight)] = i;
+            }
+        }
+        List<Integer> selected = minimizer.select();
+        selected.replaceAll(k -> indices[k]);
+        return selected;
+    }
+
+    /**
+     * Returns the number of inputs that failed when replayed.
+     *
+     * @return the number of failing inputs
+     */
+    public int getNumFailures() {
+        int failures = 0;
+        for (Result result : results) {
+            if (result == Result.FAILURE || result == Result.TIMEOUT) {
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    private static class Worker {
+        final ICoverage coverage = CoverageFactory.newInstance();
+        int fileIdx;
+        long startNanos;
+    }
+}
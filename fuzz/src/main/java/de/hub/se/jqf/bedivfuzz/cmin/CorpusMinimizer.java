@@ -0,0 +1,117 @@
+package de.hub.se.jqf.bedivfuzz.cmin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+
+/**
+ * Selects a small subset of a corpus that covers all edges covered by the corpus.
+ *
+ * <p>This is a weighted greedy set cover: the next input selected is the one
+ * that covers the most not-yet-covered edges per unit of weight (e.g. its
+ * size or execution time), with ties broken by lower weight and then by
+ * insertion order. Since the gain of an input can only decrease as more
+ * edges are covered, gains are re-computed lazily: an input is selected once
+ * its re-computed ratio still beats the (possibly stale) ratio of every other
+ * candidate. This typically re-evaluates only a handful of candidates per
+ * selection, even for corpora of 100k inputs.</p>
+ */
+public class CorpusMinimizer {
+
+    private final List<int[]> edges = new ArrayList<>();
+    private final List<Double> weights = new ArrayList<>();
+
+    /**
+     * Adds an input to the corpus.
+     *
+     * @param coveredEdges the edges covered by the input
+     * @param weight       the cost of keeping the input, which must be positive
+     * @return the index of the input
+     */
+    public int add(int[] coveredEdges, double weight) {
+        if (!(weight > 0)) {
+            throw new IllegalArgumentException("Weight must be positive: " + weight);
+        }
+        edges.add(coveredEdges);
+        weights.add(weight);
+        return edges.size() - 1;
+    }
+
+    /**
+     * Returns the number of inputs added.
+     *
+     * @return the number of inputs
+     */
+    public int size() {
+        return edges.size();
+    }
+
+    /**
+     * Selects inputs until all edges of the corpus are covered.
+     *
+     * @return the indices of the selected inputs, in the order of selection
+     */
+    public List<Integer> select() {
+        PriorityQueue<Candidate> queue = new PriorityQueue<>();
+        for (int i = 0; i < edges.size(); i++) {
+            int gain = new IntHashSet(edges.get(i)).size();
+            if (gain > 0) {
+                queue.add(new Candidate(i, gain, weights.get(i)));
+            }
+        }
+
+        IntHashSet covered = new IntHashSet();
+        List<Integer> selected = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            Candidate best = queue.poll();
+            int gain = 0;
+            for (int edge : edges.get(best.index)) {
+                if (!covered.contains(edge)) {
+                    gain++;
+                }
+            }
+            if (gain == 0) {
+                continue;
+            }
+            if (gain < best.gain) {
+                // Stale; re-queue with the actual gain unless it still beats the runner-up
+                Candidate updated = new Candidate(best.index, gain, best.weight);
+                Candidate next = queue.peek();
+                if (next != null && next.compareTo(updated) < 0) {
+                    queue.add(updated);
+                    continue;
+                }
+            }
+            covered.addAll(edges.get(best.index));
+            selected.add(best.index);
+        }
+        return selected;
+    }
+
+    private static class Candidate implements Comparable<Candidate> {
+        final int index;
+        final int gain;
+        final double weight;
+
+        Candidate(int index, int gain, double weight) {
+            this.index = index;
+            this.gain = gain;
+            this.weight = weight;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            // Higher gain per weight first, then lower weight, then earlier inputs
+            int cmp = Double.compare(other.gain / other.weight, gain / weight);
+            if (cmp == 0) {
+                cmp = Double.compare(weight, other.weight);
+            }
+            if (cmp == 0) {
+                cmp = Integer.compare(index, other.index);
+            }
+            return cmp;
+        }
+    }
+}
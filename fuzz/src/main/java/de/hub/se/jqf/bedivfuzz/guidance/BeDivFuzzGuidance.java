@@ -1,9 +1,13 @@
 package de.hub.se.jqf.bedivfuzz.guidance;
 
 import com.pholser.junit.quickcheck.generator.GenerationStatus;
+import de.hub.se.jqf.bedivfuzz.guidance.bandit.ArmStatistics;
+import de.hub.se.jqf.bedivfuzz.guidance.bandit.MutationArmSelector;
+import de.hub.se.jqf.bedivfuzz.junit.quickcheck.tracking.ChoiceBuffer;
 import de.hub.se.jqf.bedivfuzz.junit.quickcheck.tracking.SplitTrackingSourceOfRandomness;
-import de.hub.se.jqf.bedivfuzz.junit.quickcheck.tracking.Choice;
+import de.hub.se.jqf.bedivfuzz.junit.quickcheck.tracking.ChoiceTable;
 import edu.berkeley.cs.jqf.fuzz.ei.ZestGuidance;
+import edu.berkeley.cs.jqf.fuzz.guidance.GuidanceException;
 import edu.berkeley.cs.jqf.fuzz.guidance.Result;
 import edu.berkeley.cs.jqf.fuzz.junit.quickcheck.NonTrackingGenerationStatus;
 import edu.berkeley.cs.jqf.fuzz.util.IOUtils;
@@ -23,15 +27,41 @@ public class BeDivFuzzGuidance extends ZestGuidance implements SplitGeneratorGui
     /** The callback responsible for tracing the choice types for each saved input. */
     protected BiConsumer<SplitTrackingSourceOfRandomness, GenerationStatus> choiceTracer;
 
+    /** Whether to record choices while generating each input instead of re-tracing inputs on save. */
+    protected final boolean LIVE_CHOICE_TRACING = Boolean.getBoolean("jqf.guidance.bedivfuzz.LIVE_CHOICE_TRACING");
+
+    /** The choices recorded while generating the current input (only if live choice tracing is enabled). */
+    protected final ChoiceBuffer liveChoices = LIVE_CHOICE_TRACING ? new ChoiceBuffer() : null;
+
     /** The epsilon-greedy tradeoff between exploration and exploitation. */
     protected final double EPSILON = Double.parseDouble(System.getProperty("jqf.guidance.bedivfuzz.epsilon", "0.2"));
 
+    /** The number of pseudo-mutations with which campaign-wide mutation scores warm-start new inputs. */
+    protected final double PRIOR_WEIGHT = Double.parseDouble(System.getProperty("jqf.guidance.bedivfuzz.prior_weight", "8"));
+
+    /** The factor by which an input's mutation scores decay on each mutation (only for discounted selectors). */
+    protected final double DISCOUNT = Double.parseDouble(System.getProperty("jqf.guidance.bedivfuzz.discount", "0.95"));
+
+    /** The strategy choosing between structural and value mutations (egreedy, ucb, thompson or ducb). */
+    protected final MutationArmSelector armSelector = MutationArmSelector.forName(
+            System.getProperty("jqf.guidance.bedivfuzz.arm_selector"), EPSILON, PRIOR_WEIGHT, DISCOUNT);
+
+    /** Structural and value mutation scores of all saved inputs, indexed by input id. */
+    protected final ArmStatistics armStatistics = new ArmStatistics(armSelector.getDiscount());
+
     /** The havoc mutation probability. */
     protected final double HAVOC_RATE = Double.parseDouble(System.getProperty("jqf.guidance.bedivfuzz.havoc_rate", "0.1"));
 
+    /** The mutation that produced currentInput from currentParentInput, or null if currentInput is not a mutant. */
+    protected Mutation currentMutationType;
+
     public BeDivFuzzGuidance(String testName, Duration duration, Long trials, File outputDirectory, Random sourceOfRandomness) throws IOException {
         super(testName, duration, trials, outputDirectory, sourceOfRandomness);
         this.COUNT_UNIQUE_PATHS = true;
+        if (resumed) {
+            // The campaign is restored before the fields of this class are initialized
+            armStatistics.restore(campaignStore.readDoubles("arms.stat"));
+        }
     }
 
     public BeDivFuzzGuidance(String testName, Duration duration, Long trials, File outputDirectory, File[] seedInputFiles, Random sourceOfRandomness) throws IOException {
@@ -50,6 +80,21 @@ public class BeDivFuzzGuidance extends ZestGuidance implements SplitGeneratorGui
     @Override
     public void registerChoiceTracer(BiConsumer<SplitTrackingSourceOfRandomness, GenerationStatus> tracer) {
         this.choiceTracer = tracer;
+
+        // Inputs restored from a checkpoint can only be traced once the generators are known
+        synchronized (this) {
+            for (Input<?> input : savedInputs) {
+                TrackingInput trackingInput = (TrackingInput) input;
+                if (trackingInput.getRequested() == 0) {
+                    traceChoices(trackingInput);
+                }
+            }
+        }
+    }
+
+    @Override
+    public ChoiceBuffer getLiveChoiceBuffer() {
+        return liveChoices;
     }
 
     @Override
@@ -99,97 +144,150 @@ public class BeDivFuzzGuidance extends ZestGuidance implements SplitGeneratorGui
     }
      */
 
+    @Override
+    protected void chooseNextInput() throws GuidanceException {
+        currentMutationType = null;
+        super.chooseNextInput();
+    }
+
     @Override
     protected List<String> checkSavingCriteriaSatisfied(Result result) {
         int uniquePathsBefore = uniquePaths.size();
         List<String> reasonstoSave = super.checkSavingCriteriaSatisfied(result);
         int uniquePathsAfter = uniquePaths.size();
-        if ((uniquePathsAfter > uniquePathsBefore) && !savedInputs.isEmpty()) {
-            TrackingInput currentParent = (TrackingInput) savedInputs.get(currentParentInputIdx);
-            currentParent.incrementScore();
+        // Only mutants reward their parent; seeds, fresh inputs and trimming candidates have none
+        if ((uniquePathsAfter > uniquePathsBefore) && currentParentInput != null) {
+            TrackingInput currentParent = (TrackingInput) currentParentInput;
+            currentParent.incrementScore(currentMutationType);
             if (result == Result.SUCCESS) {
-                currentParent.incrementScore();
+                currentParent.incrementScore(currentMutationType);
             }
         }
         return reasonstoSave;
     }
 
     @Override
-    protected void saveCurrentInput(IntHashSet responsibilities, String why) throws IOException {
-        // Trace choices of input to save
-        TrackingInput trackingInput = new TrackingInput((LinearInput) currentInput);
-        currentInput = trackingInput;
+    protected Input<?> restoreSavedInput(File saveFile) throws IOException {
+        // The choices are traced once the choice tracer is registered (see registerChoiceTracer)
+        TrackingInput trackingInput = new TrackingInput((LinearInput) super.restoreSavedInput(saveFile));
+        trackingInput.desc = "resumed";
+        return trackingInput;
+    }
 
-        SplitTrackingSourceOfRandomness random = new SplitTrackingSourceOfRandomness(
-                createParameterStream(),
-                trackingInput.structureChoices,
-                trackingInput.valueChoices
-        );
+    @Override
+    protected void checkpoint() throws IOException {
+        campaignStore.writeDoubles("arms.stat", armStatistics.snapshot());
+        super.checkpoint();
+    }
 
-        GenerationStatus genStatus = new NonTrackingGenerationStatus(random.getStructureDelegate());
-        choiceTracer.accept(random, genStatus);
+    @Override
+    protected void saveCurrentInput(IntHashSet responsibilities, String why) throws IOException {
+        // Trace choices of input to save
+        traceCurrentInput();
 
         // Save tracking input
         super.saveCurrentInput(responsibilities, why);
     }
 
+    @Override
+    protected void replaceTrimmedValues(LinearInput target, LinearInput trimmed) {
+        super.replaceTrimmedValues(target, trimmed);
+
+        // The choice tables index into the values, so they must be traced again
+        TrackingInput trackingTarget = (TrackingInput) target;
+        TrackingInput retraced = traceCurrentInput();
+        trackingTarget.structureChoices = retraced.structureChoices;
+        trackingTarget.valueChoices = retraced.valueChoices;
+    }
 
-    public class TrackingInput extends LinearInput {
-        protected final List<Choice> structureChoices = new ArrayList<>();
-        protected final List<Choice> valueChoices = new ArrayList<>();
+    // Identifies structural and value choices of current input
+    private TrackingInput traceCurrentInput() {
+        LinearInput baseInput = (LinearInput) currentInput;
+        TrackingInput trackingInput = new TrackingInput(baseInput);
+        currentInput = trackingInput;
+
+        ChoiceBuffer recordedChoices = getLiveChoiceBuffer();
+        if (recordedChoices != null) {
+            // Choices were already recorded while generating this input
+            trackingInput.attachChoices(recordedChoices, baseInput.getRequested());
+        } else {
+            traceChoices(trackingInput);
+        }
+        return trackingInput;
+    }
 
-        /** Whether the last performed mutation was on the structural or value parameters (exploration or exploitation)*/
-        protected Mutation lastMutationType = Mutation.HAVOC;
+    // Identifies structural and value choices of an input by running the generators on it
+    private void traceChoices(TrackingInput trackingInput) {
+        Input<?> previousInput = currentInput;
+        currentInput = trackingInput;
+        ChoiceBuffer trace = new ChoiceBuffer();
+        try {
+            SplitTrackingSourceOfRandomness random = new SplitTrackingSourceOfRandomness(
+                    createParameterStream(),
+                    trace.getStructureSink(),
+                    trace.getValueSink()
+            );
+
+            GenerationStatus genStatus = new NonTrackingGenerationStatus(random.getStructureDelegate());
+            choiceTracer.accept(random, genStatus);
+        } finally {
+            currentInput = previousInput;
+        }
+        trackingInput.structureChoices = trace.toStructureTable();
+        trackingInput.valueChoices = trace.toValueTable();
+    }
 
-        /** Structural mutation score: number of performed mutations / rewarded mutations. */
-        protected int structureScore = 0;
-        protected int structureCount = 0;
 
-        /* Value mutation score: number of performed mutations / rewarded mutations. */
-        protected int valueScore = 0;
-        protected int valueCount = 0;
+    public class TrackingInput extends LinearInput {
+        protected ChoiceTable structureChoices = ChoiceTable.EMPTY;
+        protected ChoiceTable valueChoices = ChoiceTable.EMPTY;
 
         public TrackingInput(LinearInput baseInput) {
             this.values = baseInput.values;
         }
 
-        protected void incrementScore() {
-            if (lastMutationType == Mutation.STRUCTURE) {
-                structureScore++;
-            } else if (lastMutationType == Mutation.VALUE) {
-                valueScore ++;
+        /**
+         * Sets the choices of this input from a trace recorded during its execution.
+         *
+         * @param choices   the choices recorded while generating this input
+         * @param requested the number of bytes requested while generating this input
+         */
+        protected void attachChoices(ChoiceBuffer choices, int requested) {
+            structureChoices = choices.toStructureTable();
+            valueChoices = choices.toValueTable();
+            this.requested = requested;
+        }
+
+        protected void incrementScore(Mutation mutationType) {
+            if (mutationType == Mutation.STRUCTURE) {
+                armStatistics.reward(id, ArmStatistics.STRUCTURE, 1);
+            } else if (mutationType == Mutation.VALUE) {
+                armStatistics.reward(id, ArmStatistics.VALUE, 1);
             }
         }
 
         protected double getStructureScore() {
-            return (structureCount == 0) ? 0 : ((double) structureScore) / structureCount;
+            return armStatistics.getMean(id, ArmStatistics.STRUCTURE);
         }
 
         protected double getValueScore() {
-            return (valueCount == 0) ? 0 : ((double)valueScore) / valueCount;
+            return armStatistics.getMean(id, ArmStatistics.VALUE);
         }
 
         protected Mutation chooseMutationType(Random random) {
-            double avgStructureScore = (structureCount == 0) ? 0 : ((double) structureScore) / structureCount;
-            double avgValueScore = (valueCount == 0) ? 0 : ((double)valueScore) / valueCount;
-
-            // With probability epsilon (or if both scores are tied), perform random mutation type
-            if ((random.nextDouble() < EPSILON) || (avgStructureScore == avgValueScore)) {
-                return random.nextBoolean() ? Mutation.STRUCTURE : Mutation.VALUE;
-            } else {
-                // otherwise, choose most promising mutation
-                return (avgStructureScore > avgValueScore) ? Mutation.STRUCTURE : Mutation.VALUE;
-            }
+            int arm = armSelector.selectArm(armStatistics, id, random);
+            return (arm == ArmStatistics.STRUCTURE) ? Mutation.STRUCTURE : Mutation.VALUE;
         }
 
+        /** Creates a mutant child and records the performed mutation as {@link #currentMutationType}. */
         @Override
          public Input fuzz(Random random) {
             if (structureChoices.isEmpty() || valueChoices.isEmpty() || random.nextDouble() < HAVOC_RATE)  {
-                lastMutationType = Mutation.HAVOC;
+                currentMutationType = Mutation.HAVOC;
                 return super.fuzz(random);
             } else {
-                lastMutationType = chooseMutationType(random);
-                return fuzzTargeted(lastMutationType, random);
+                currentMutationType = chooseMutationType(random);
+                return fuzzTargeted(currentMutationType, random);
             }
         }
 
@@ -200,14 +298,14 @@ public class BeDivFuzzGuidance extends ZestGuidance implements SplitGeneratorGui
             // Stack a bunch of mutations
             int numMutations = sampleGeometric(random, MEAN_MUTATION_COUNT);
 
-            List<Choice> choices;
+            ChoiceTable choices;
             if (mutationType == Mutation.STRUCTURE) {
                 choices = structureChoices;
-                structureCount++;
+                armStatistics.pull(id, ArmStatistics.STRUCTURE);
                 newInput.desc += ",structure:" + numMutations;
             } else {
                 choices = valueChoices;
-                valueCount++;
+                armStatistics.pull(id, ArmStatistics.VALUE);
                 newInput.desc += ",value:" + numMutations;
             }
 
@@ -216,9 +314,9 @@ public class BeDivFuzzGuidance extends ZestGuidance implements SplitGeneratorGui
             for (int mutation = 1; mutation <= numMutations; mutation++) {
 
                 // Select a random offset and size
-                Choice choice = choices.get(random.nextInt(choices.size()));
-                int baseIdx = choice.getOffset();
-                int size = choice.getSize();
+                int choice = random.nextInt(choices.size());
+                int baseIdx = choices.getOffset(choice);
+                int size = choices.getSize(choice);
 
                 /**
                  * For boolean choices, only the lowest bit is actually used (see {@link StreamBackedRandom#next(int bits)}.
@@ -247,15 +345,15 @@ public class BeDivFuzzGuidance extends ZestGuidance implements SplitGeneratorGui
         protected void validateChoiceSequence() {
             int structureOffset = 0;
             if (!structureChoices.isEmpty()) {
-                Choice lastChoice = structureChoices.get(structureChoices.size() - 1);
-                structureOffset = lastChoice.getOffset() + Math.abs(lastChoice.getSize());
+                int lastChoice = structureChoices.size() - 1;
+                structureOffset = structureChoices.getOffset(lastChoice) + Math.abs(structureChoices.getSize(lastChoice));
             }
 
             if (structureOffset != requested) {
                 int valueOffset = 0;
                 if (!valueChoices.isEmpty()) {
-                    Choice lastChoice = valueChoices.get(valueChoices.size() - 1);
-                    valueOffset = lastChoice.getOffset() + Math.abs(lastChoice.getSize());
+                    int lastChoice = valueChoices.size() - 1;
+                    valueOffset = valueChoices.getOffset(lastChoice) + Math.abs(valueChoices.getSize(lastChoice));
                 }
 
                 if (valueOffset != requested) {
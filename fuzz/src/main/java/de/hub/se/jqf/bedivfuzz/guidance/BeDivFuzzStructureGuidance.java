@@ -1,6 +1,6 @@
 package de.hub.se.jqf.bedivfuzz.guidance;
 
-import edu.berkeley.cs.jqf.fuzz.guidance.GuidanceException;
+import edu.berkeley.cs.jqf.fuzz.ei.schedule.RoundRobinScheduler;
 import org.eclipse.collections.api.list.primitive.MutableIntList;
 import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
 import org.eclipse.collections.impl.map.mutable.primitive.IntIntHashMap;
@@ -8,7 +8,6 @@ import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Date;
@@ -44,86 +43,46 @@ public class BeDivFuzzStructureGuidance extends BeDivFuzzGuidance {
         }
     }
 
+    /**
+     * Selects the next parent by cycling over input structures.
+     *
+     * <p>Schedulers that visit the queue in order (round-robin and power schedules) only
+     * determine the number of children per parent; other schedulers also choose the parent.</p>
+     */
     @Override
-    public InputStream getInput() throws GuidanceException {
-        conditionallySynchronize(multiThreaded, () -> {
-            // Clear coverage stats for this run
-            runCoverage.clear();
-            if (TRACK_SEMANTIC_COVERAGE) semanticRunCoverage.clear();
-
-            // Choose an input to execute based on state of queues
-            if (!seedInputs.isEmpty()) {
-                // First, if we have some specific seeds, use those
-                currentInput = seedInputs.removeFirst();
-
-                // Hopefully, the seeds will lead to new coverage and be added to saved inputs
-
-            } else if (savedInputs.isEmpty()) {
-                // If no seeds given try to start with something random
-                if (!blind && numTrials > 100_000) {
-                    throw new GuidanceException("Too many trials without coverage; " +
-                            "likely all assumption violations");
-                }
-
-                // Make fresh input using either list or maps
-                // infoLog("Spawning new input from thin air");
-                currentInput = createFreshInput();
-            } else {
-                // The number of children to produce is determined by how much of the coverage
-                // pool this parent input hits
-                Input currentParentInput = savedInputs.get(currentParentInputIdx);
-                int targetNumChildren = getTargetChildrenForParent(currentParentInput);
-                if (numChildrenGeneratedForCurrentParentInput >= targetNumChildren) {
-                    // Select the next input structure to fuzz
-                    currentInputStructureIdx = (currentInputStructureIdx + 1) % inputStructureQueue.size();
-
-                    // Select one of the concrete inputs, giving higher weight to inputs saved later
-                    MutableIntList inputIndices = inputStructureQueue.get(currentInputStructureIdx);
-                    int numInputs = inputIndices.size();
-                    if (numInputs == 1) {
-                        currentParentInputIdx = inputIndices.get(0);
-                    } else {
-                        // Inputs are assigned weights 1,2,...,N
-                        int cumulativeWeights = numInputs * (numInputs + 1) / 2;
-                        double rnd = random.nextDouble() * cumulativeWeights;
-
-                        for (int weight = numInputs; weight >= 1; weight--) {
-                            rnd -= weight;
-                            if (rnd < 0) {
-                                currentParentInputIdx = inputIndices.get(weight - 1);
-                            }
-                        }
-                    }
-
-                    currentParentInputIdx = inputIndices.get(random.nextInt(inputIndices.size()));
-
-                    // Count cycles
-                    if (currentInputStructureIdx == 0) {
-                        completeCycle();
-                    }
-
-                    numChildrenGeneratedForCurrentParentInput = 0;
-                }
-                Input parent = savedInputs.get(currentParentInputIdx);
-
-                // Fuzz it to get a new input
-                // infoLog("Mutating input: %s", parent.desc);
-                currentInput = parent.fuzz(random);
-                numChildrenGeneratedForCurrentParentInput++;
+    protected void selectNextParentInput() {
+        if (!(parentScheduler instanceof RoundRobinScheduler)) {
+            super.selectNextParentInput();
+            return;
+        }
 
-                // Write it to disk for debugging
-                try {
-                    writeCurrentInputToFile(currentInputFile);
-                } catch (IOException ignore) {
+        // Select the next input structure to fuzz
+        currentInputStructureIdx = (currentInputStructureIdx + 1) % inputStructureQueue.size();
+
+        // Select one of the concrete inputs, giving higher weight to inputs saved later
+        MutableIntList inputIndices = inputStructureQueue.get(currentInputStructureIdx);
+        int numInputs = inputIndices.size();
+        if (numInputs == 1) {
+            currentParentInputIdx = inputIndices.get(0);
+        } else {
+            // Inputs are assigned weights 1,2,...,N
+            int cumulativeWeights = numInputs * (numInputs + 1) / 2;
+            double rnd = random.nextDouble() * cumulativeWeights;
+
+            for (int weight = numInputs; weight >= 1; weight--) {
+                rnd -= weight;
+                if (rnd < 0) {
+                    currentParentInputIdx = inputIndices.get(weight - 1);
                 }
-
-                // Start time-counting for timeout handling
-                this.runStart = new Date();
-                this.branchCount = 0;
             }
-        });
+        }
 
-        return createParameterStream();
+        currentParentInputIdx = inputIndices.get(random.nextInt(inputIndices.size()));
+
+        // Count cycles
+        if (currentInputStructureIdx == 0) {
+            completeCycle();
+        }
     }
 
     @Override
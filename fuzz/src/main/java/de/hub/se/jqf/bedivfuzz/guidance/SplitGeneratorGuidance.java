@@ -1,10 +1,22 @@
 package de.hub.se.jqf.bedivfuzz.guidance;
 
 import com.pholser.junit.quickcheck.generator.GenerationStatus;
+import de.hub.se.jqf.bedivfuzz.junit.quickcheck.tracking.ChoiceBuffer;
 import de.hub.se.jqf.bedivfuzz.junit.quickcheck.tracking.SplitTrackingSourceOfRandomness;
 
 import java.util.function.BiConsumer;
 
 public interface SplitGeneratorGuidance {
     void registerChoiceTracer(BiConsumer<SplitTrackingSourceOfRandomness, GenerationStatus> tracer);
+
+    /**
+     * Returns the buffer into which the choices of each input should be
+     * recorded while it is generated, or <code>null</code> if the guidance
+     * traces saved inputs by re-running the generators instead.
+     *
+     * @return the live choice buffer, or <code>null</code>
+     */
+    default ChoiceBuffer getLiveChoiceBuffer() {
+        return null;
+    }
 }
@@ -0,0 +1,171 @@
+package de.hub.se.jqf.bedivfuzz.guidance.bandit;
+
+import java.util.Arrays;
+
+/**
+ * Pull and reward statistics of the mutation arms of all saved inputs.
+ *
+ * <p>The statistics of input {@code id} and arm {@code a} are stored at index
+ * {@code id * NUM_ARMS + a} of two primitive arrays, so they take 16 bytes
+ * per input and arm and do not depend on the input objects. Campaign-wide
+ * totals per arm are kept as well, and serve as priors for inputs that
+ * have not been mutated (much) yet.</p>
+ *
+ * <p>If a discount factor below 1 is given, the statistics of an input are
+ * multiplied by it whenever one of its arms is pulled, so that recent
+ * outcomes weigh more than old ones. The campaign-wide totals are not
+ * discounted.</p>
+ */
+public class ArmStatistics {
+
+    /** The arm for mutations of structural choices. */
+    public static final int STRUCTURE = 0;
+
+    /** The arm for mutations of value choices. */
+    public static final int VALUE = 1;
+
+    /** The number of arms per input. */
+    public static final int NUM_ARMS = 2;
+
+    private final double discount;
+
+    private double[] pulls = new double[NUM_ARMS * 256];
+    private double[] rewards = new double[NUM_ARMS * 256];
+
+    private final double[] globalPulls = new double[NUM_ARMS];
+    private final double[] globalRewards = new double[NUM_ARMS];
+
+    /** Creates statistics without discounting. */
+    public ArmStatistics() {
+        this(1.0);
+    }
+
+    /**
+     * Creates statistics.
+     *
+     * @param discount the factor in (0, 1] applied to the statistics of an input on each pull
+     */
+    public ArmStatistics(double discount) {
+        if (!(discount > 0 && discount <= 1)) {
+            throw new IllegalArgumentException("Discount must be in (0, 1]: " + discount);
+        }
+        this.discount = discount;
+    }
+
+    private void ensureCapacity(int input) {
+        int required = (input + 1) * NUM_ARMS;
+        if (required > pulls.length) {
+            int newLength = Math.max(required, 2 * pulls.length);
+            pulls = Arrays.copyOf(pulls, newLength);
+            rewards = Arrays.copyOf(rewards, newLength);
+        }
+    }
+
+    /**
+     * Records a pull of an arm.
+     *
+     * @param input the id of the input
+     * @param arm   the arm
+     */
+    public void pull(int input, int arm) {
+        ensureCapacity(input);
+        int base = input * NUM_ARMS;
+        if (discount < 1) {
+            for (int a = 0; a < NUM_ARMS; a++) {
+                pulls[base + a] *= discount;
+                rewards[base + a] *= discount;
+            }
+        }
+        pulls[base + arm] += 1;
+        globalPulls[arm] += 1;
+    }
+
+    /**
+     * Records a reward for the last pull of an arm.
+     *
+     * @param input  the id of the input
+     * @param arm    the arm
+     * @param reward the reward
+     */
+    public void reward(int input, int arm, double reward) {
+        ensureCapacity(input);
+        rewards[input * NUM_ARMS + arm] += reward;
+        globalRewards[arm] += reward;
+    }
+
+    /**
+     * Returns the (discounted) number of pulls of an arm.
+     *
+     * @param input the id of the input
+     * @param arm   the arm
+     * @return the number of pulls
+     */
+    public double getPulls(int input, int arm) {
+        int idx = input * NUM_ARMS + arm;
+        return idx < pulls.length ? pulls[idx] : 0;
+    }
+
+    /**
+     * Returns the (discounted) sum of rewards of an arm.
+     *
+     * @param input the id of the input
+     * @param arm   the arm
+     * @return the sum of rewards
+     */
+    public double getRewards(int input, int arm) {
+        int idx = input * NUM_ARMS + arm;
+        return idx < rewards.length ? rewards[idx] : 0;
+    }
+
+    /**
+     * Returns the mean reward of an arm.
+     *
+     * @param input the id of the input
+     * @param arm   the arm
+     * @return the mean reward per pull, or 0 if the arm was never pulled
+     */
+    public double getMean(int input, int arm) {
+        double n = getPulls(input, arm);
+        return n == 0 ? 0 : getRewards(input, arm) / n;
+    }
+
+    /**
+     * Returns the statistics of all inputs and the campaign-wide totals as a single array.
+     *
+     * @return a snapshot that can be passed to {@link #restore(double[])}
+     */
+    public double[] snapshot() {
+        double[] snapshot = new double[2 * NUM_ARMS + 2 * pulls.length];
+        System.arraycopy(globalPulls, 0, snapshot, 0, NUM_ARMS);
+        System.arraycopy(globalRewards, 0, snapshot, NUM_ARMS, NUM_ARMS);
+        System.arraycopy(pulls, 0, snapshot, 2 * NUM_ARMS, pulls.length);
+        System.arraycopy(rewards, 0, snapshot, 2 * NUM_ARMS + pulls.length, rewards.length);
+        return snapshot;
+    }
+
+    /**
+     * Replaces all statistics with a snapshot.
+     *
+     * @param snapshot a snapshot returned by {@link #snapshot()}
+     */
+    public void restore(double[] snapshot) {
+        int length = (snapshot.length - 2 * NUM_ARMS) / 2;
+        if (length < 0 || length % NUM_ARMS != 0 || 2 * NUM_ARMS + 2 * length != snapshot.length) {
+            throw new IllegalArgumentException("Malformed arm statistics of length " + snapshot.length);
+        }
+        System.arraycopy(snapshot, 0, globalPulls, 0, NUM_ARMS);
+        System.arraycopy(snapshot, NUM_ARMS, globalRewards, 0, NUM_ARMS);
+        pulls = Arrays.copyOfRange(snapshot, 2 * NUM_ARMS, 2 * NUM_ARMS + length);
+        rewards = Arrays.copyOfRange(snapshot, 2 * NUM_ARMS + length, snapshot.length);
+    }
+
+    /**
+     * Returns the campaign-wide mean reward of an arm.
+     *
+     * @param arm the arm
+     * @return the mean reward per pull over all inputs, or 0 if the arm was never pulled
+     */
+    public double getGlobalMean(int arm) {
+        return globalPulls[arm] == 0 ? 0 : globalRewards[arm] / globalPulls[arm];
+    }
+}
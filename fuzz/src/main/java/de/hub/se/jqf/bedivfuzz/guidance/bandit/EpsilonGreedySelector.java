@@ -0,0 +1,38 @@
+package de.hub.se.jqf.bedivfuzz.guidance.bandit;
+
+import java.util.Random;
+
+/**
+ * Chooses the arm with the highest mean reward of the input, or a random
+ * arm with probability epsilon or if the means are tied.
+ *
+ * <p>This is BeDivFuzz's original strategy. It does not use priors, so
+ * new inputs start with random choices.</p>
+ */
+public class EpsilonGreedySelector implements MutationArmSelector {
+
+    private final double epsilon;
+
+    /**
+     * Creates an epsilon-greedy selector.
+     *
+     * @param epsilon the probability of a random choice
+     */
+    public EpsilonGreedySelector(double epsilon) {
+        this.epsilon = epsilon;
+    }
+
+    @Override
+    public int selectArm(ArmStatistics stats, int input, Random random) {
+        double structureMean = stats.getMean(input, ArmStatistics.STRUCTURE);
+        double valueMean = stats.getMean(input, ArmStatistics.VALUE);
+
+        // With probability epsilon (or if both scores are tied), perform random mutation type
+        if ((random.nextDouble() < epsilon) || (structureMean == valueMean)) {
+            return random.nextBoolean() ? ArmStatistics.STRUCTURE : ArmStatistics.VALUE;
+        } else {
+            // otherwise, choose most promising mutation
+            return (structureMean > valueMean) ? ArmStatistics.STRUCTURE : ArmStatistics.VALUE;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package de.hub.se.jqf.bedivfuzz.guidance.bandit;
+
+import java.util.Random;
+
+import edu.berkeley.cs.jqf.fuzz.guidance.GuidanceException;
+
+/**
+ * Chooses which kind of mutation (an arm of {@link ArmStatistics}) to
+ * perform on a saved input.
+ */
+public interface MutationArmSelector {
+
+    /**
+     * Chooses an arm for the next mutation of an input.
+     *
+     * @param stats  the statistics of all inputs
+     * @param input  the id of the input to mutate
+     * @param random a source of randomness
+     * @return the arm to pull
+     */
+    int selectArm(ArmStatistics stats, int input, Random random);
+
+    /**
+     * Returns the discount factor that the statistics should apply on each pull.
+     *
+     * @return a factor in (0, 1], where 1 means no discounting
+     */
+    default double getDiscount() {
+        return 1.0;
+    }
+
+    /**
+     * Creates a selector by name.
+     *
+     * <ul>
+     *     <li>{@code egreedy}: epsilon-greedy over the input's own statistics (the default)</li>
+     *     <li>{@code ucb}: UCB1 with campaign-wide priors</li>
+     *     <li>{@code thompson}: Thompson sampling with campaign-wide priors</li>
+     *     <li>{@code ducb}: discounted UCB1 with campaign-wide priors</li>
+     * </ul>
+     *
+     * @param name        the name of the selector, or {@code null} for the default
+     * @param epsilon     the exploration probability of epsilon-greedy selection
+     * @param priorWeight the number of pseudo-pulls with which campaign-wide means warm-start an input
+     * @param discount    the discount factor of discounted selectors
+     * @return a new selector
+     * @throws GuidanceException if the name is unknown
+     */
+    static MutationArmSelector forName(String name, double epsilon, double priorWeight, double discount) {
+        if (name == null || name.isEmpty() || name.equals("egreedy")) {
+            return new EpsilonGreedySelector(epsilon);
+        } else if (name.equals("ucb")) {
+            return new UcbSelector(priorWeight, 1.0);
+        } else if (name.equals("thompson")) {
+            return new ThompsonSelector(priorWeight);
+        } else if (name.equals("ducb")) {
+            return new UcbSelector(priorWeight, discount);
+        } else {
+            throw new GuidanceException("Unknown mutation arm selector: " + name);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package de.hub.se.jqf.bedivfuzz.guidance.bandit;
+
+import java.util.Random;
+
+/**
+ * Chooses arms by Thompson sampling from Beta posteriors.
+ *
+ * <p>Each pull counts as a success if it was rewarded (rewards above 1 per
+ * pull are capped). The posterior of an arm starts from a Beta(1, 1)
+ * distribution plus {@code priorWeight} pseudo-pulls at the campaign-wide
+ * success rate of the arm, which warm-starts new inputs.</p>
+ */
+public class ThompsonSelector implements MutationArmSelector {
+
+    private final double priorWeight;
+
+    /**
+     * Creates a Thompson sampling selector.
+     *
+     * @param priorWeight the number of pseudo-pulls at the campaign-wide mean
+     */
+    public ThompsonSelector(double priorWeight) {
+        this.priorWeight = priorWeight;
+    }
+
+    @Override
+    public int selectArm(ArmStatistics stats, int input, Random random) {
+        int best = 0;
+        double bestSample = Double.NEGATIVE_INFINITY;
+        for (int arm = 0; arm < ArmStatistics.NUM_ARMS; arm++) {
+            double n = stats.getPulls(input, arm);
+            double successes = Math.min(stats.getRewards(input, arm), n);
+            double prior = Math.min(stats.getGlobalMean(arm), 1.0);
+            double alpha = 1 + successes + priorWeight * prior;
+            double beta = 1 + (n - successes) + priorWeight * (1 - prior);
+            double sample = sampleBeta(alpha, beta, random);
+            if (sample > bestSample) {
+                best = arm;
+                bestSample = sample;
+            }
+        }
+        return best;
+    }
+
+    private static double sampleBeta(double alpha, double beta, Random random) {
+        double x = sampleGamma(alpha, random);
+        double y = sampleGamma(beta, random);
+        return x / (x + y);
+    }
+
+    /* Samples Gamma(shape, 1) for shape >= 1 (Marsaglia and Tsang, 2000). */
+    private static double sampleGamma(double shape, Random random) {
+        double d = shape - 1.0 / 3;
+        double c = 1 / Math.sqrt(9 * d);
+        while (true) {
+            double x = random.nextGaussian();
+            double v = 1 + c * x;
+            if (v <= 0) {
+                continue;
+            }
+            v = v * v * v;
+            double u = random.nextDouble();
+            if (Math.log(u) < 0.5 * x * x + d - d * v + d * Math.log(v)) {
+                return d * v;
+            }
+        }
+    }
+}
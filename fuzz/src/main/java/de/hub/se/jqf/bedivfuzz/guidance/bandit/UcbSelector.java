@@ -0,0 +1,59 @@
+package de.hub.se.jqf.bedivfuzz.guidance.bandit;
+
+import java.util.Random;
+
+/**
+ * Chooses arms with UCB1, optionally on discounted statistics.
+ *
+ * <p>The mean reward of an arm is estimated from the input's own pulls
+ * plus {@code priorWeight} pseudo-pulls at the campaign-wide mean of the
+ * arm. A new input therefore starts with the arm that has been most
+ * productive across the corpus instead of a coin flip, and its own
+ * statistics take over as they accumulate.</p>
+ */
+public class UcbSelector implements MutationArmSelector {
+
+    private final double priorWeight;
+    private final double discount;
+
+    /**
+     * Creates a UCB1 selector.
+     *
+     * @param priorWeight the number of pseudo-pulls at the campaign-wide mean
+     * @param discount    the discount factor of the statistics, where 1 means no discounting
+     */
+    public UcbSelector(double priorWeight, double discount) {
+        this.priorWeight = priorWeight;
+        this.discount = discount;
+    }
+
+    @Override
+    public double getDiscount() {
+        return discount;
+    }
+
+    @Override
+    public int selectArm(ArmStatistics stats, int input, Random random) {
+        double totalPulls = 0;
+        for (int arm = 0; arm < ArmStatistics.NUM_ARMS; arm++) {
+            totalPulls += stats.getPulls(input, arm) + priorWeight;
+        }
+        double logPulls = Math.log(Math.max(totalPulls, 2));
+
+        int best = 0;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int arm = 0; arm < ArmStatistics.NUM_ARMS; arm++) {
+            double n = stats.getPulls(input, arm) + priorWeight;
+            if (n == 0) {
+                return arm; // Try each arm once without a prior
+            }
+            double mean = (stats.getRewards(input, arm) + priorWeight * stats.getGlobalMean(arm)) / n;
+            double score = mean + Math.sqrt(2 * logPulls / n);
+            if (score > bestScore) {
+                best = arm;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+}
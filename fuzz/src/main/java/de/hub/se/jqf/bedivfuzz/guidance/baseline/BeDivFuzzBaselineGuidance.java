@@ -3,8 +3,11 @@ package de.hub.se.jqf.bedivfuzz.guidance.baseline;
 import com.pholser.junit.quickcheck.generator.GenerationStatus;
 import de.hub.se.jqf.bedivfuzz.guidance.BeDivFuzzGuidance;
 import de.hub.se.jqf.bedivfuzz.guidance.SplitGeneratorGuidance;
+import de.hub.se.jqf.bedivfuzz.guidance.bandit.ArmStatistics;
+import de.hub.se.jqf.bedivfuzz.guidance.bandit.MutationArmSelector;
+import de.hub.se.jqf.bedivfuzz.junit.quickcheck.tracking.ChoiceBuffer;
 import de.hub.se.jqf.bedivfuzz.junit.quickcheck.tracking.SplitTrackingSourceOfRandomness;
-import de.hub.se.jqf.bedivfuzz.junit.quickcheck.tracking.Choice;
+import de.hub.se.jqf.bedivfuzz.junit.quickcheck.tracking.ChoiceTable;
 import edu.berkeley.cs.jqf.fuzz.ei.ZestGuidance;
 import edu.berkeley.cs.jqf.fuzz.guidance.GuidanceException;
 import edu.berkeley.cs.jqf.fuzz.guidance.Result;
@@ -30,9 +33,28 @@ public class BeDivFuzzBaselineGuidance extends ZestGuidance implements SplitGene
     /** The callback responsible for tracing the choice types for each saved input. */
     protected BiConsumer<SplitTrackingSourceOfRandomness, GenerationStatus> choiceTracer;
 
+    /** Whether to record choices while generating each input instead of re-tracing inputs on save. */
+    protected final boolean LIVE_CHOICE_TRACING = Boolean.getBoolean("jqf.guidance.bedivfuzz.LIVE_CHOICE_TRACING");
+
+    /** The choices recorded while generating the current input (only if live choice tracing is enabled). */
+    protected final ChoiceBuffer liveChoices = LIVE_CHOICE_TRACING ? new ChoiceBuffer() : null;
+
     /** The epsilon-greedy tradeoff between exploration and exploitation. */
     protected final double EPSILON = Double.parseDouble(System.getProperty("jqf.guidance.bedivfuzz.epsilon", "0.2"));
 
+    /** The number of pseudo-mutations with which campaign-wide mutation scores warm-start new inputs. */
+    protected final double PRIOR_WEIGHT = Double.parseDouble(System.getProperty("jqf.guidance.bedivfuzz.prior_weight", "8"));
+
+    /** The factor by which an input's mutation scores decay on each mutation (only for discounted selectors). */
+    protected final double DISCOUNT = Double.parseDouble(System.getProperty("jqf.guidance.bedivfuzz.discount", "0.95"));
+
+    /** The strategy choosing between structural and value mutations (egreedy, ucb, thompson or ducb). */
+    protected final MutationArmSelector armSelector = MutationArmSelector.forName(
+            System.getProperty("jqf.guidance.bedivfuzz.arm_selector"), EPSILON, PRIOR_WEIGHT, DISCOUNT);
+
+    /** Structural and value mutation scores of all saved inputs, indexed by input id. */
+    protected final ArmStatistics armStatistics = new ArmStatistics(armSelector.getDiscount());
+
     /** Save only inputs that increase coverage and have a novel input structure. */
     protected final boolean STUCTURAL_FUZZING = Boolean.getBoolean("jqf.guidance.bedivfuzz.STRUCTUAL_FUZZING");
 
@@ -62,6 +84,11 @@ public class BeDivFuzzBaselineGuidance extends ZestGuidance implements SplitGene
         this.choiceTracer = tracer;
     }
 
+    @Override
+    public ChoiceBuffer getLiveChoiceBuffer() {
+        return liveChoices;
+    }
+
     @Override
     protected String getTitle() {
         if (STUCTURAL_FUZZING)
@@ -102,6 +129,7 @@ public class BeDivFuzzBaselineGuidance extends ZestGuidance implements SplitGene
             if (TRACK_SEMANTIC_COVERAGE) semanticRunCoverage.clear();
 
             // Choose an input to execute based on state of queues
+            currentParentInput = null;
             if (!seedInputs.isEmpty()) {
                 // First, if we have some specific seeds, use those
                 currentInput = seedInputs.removeFirst();
@@ -112,38 +140,28 @@ public class BeDivFuzzBaselineGuidance extends ZestGuidance implements SplitGene
                 // Make fresh input using either list or maps
                 // infoLog("Spawning new input from thin air");
                 currentInput = createFreshInput();
+            } else if ((currentInput = nextTrimCandidate()) != null) {
+                // Spend part of the budget on making a saved input smaller
+                startRunTimer();
             } else {
-                // The number of children to produce is determined by how much of the coverage
-                // pool this parent input hits
-                Input currentParentInput = savedInputs.get(currentParentInputIdx);
-                int targetNumChildren = getTargetChildrenForParent(currentParentInput);
-                if (numChildrenGeneratedForCurrentParentInput >= targetNumChildren) {
-                    // Select the next saved input to fuzz
-                    currentParentInputIdx = (currentParentInputIdx + 1) % savedInputs.size();
-
-                    // Count cycles
-                    if (currentParentInputIdx == 0) {
-                        completeCycle();
-                    }
-
-                    numChildrenGeneratedForCurrentParentInput = 0;
-                }
-                Input parent = savedInputs.get(currentParentInputIdx);
+                // The parent scheduler determines the parent and how many children to produce from it
+                Input parent = nextParentInput();
+                currentParentInput = parent;
 
                 // Fuzz it to get a new input
                 // infoLog("Mutating input: %s", parent.desc);
                 currentInput = parent.fuzz(random);
-                numChildrenGeneratedForCurrentParentInput++;
 
                 // Write it to disk for debugging
-                try {
-                    writeCurrentInputToFile(currentInputFile);
-                } catch (IOException ignore) {
+                if (LOG_CURRENT_INPUT) {
+                    try {
+                        writeCurrentInputToFile(currentInputFile);
+                    } catch (IOException ignore) {
+                    }
                 }
 
                 // Start time-counting for timeout handling
-                this.runStart = new Date();
-                this.branchCount = 0;
+                startRunTimer();
             }
         });
 
@@ -151,13 +169,20 @@ public class BeDivFuzzBaselineGuidance extends ZestGuidance implements SplitGene
     }
 
 
+    // Valid coverage is only updated for structurally new inputs, see checkSavingCriteriaSatisfied()
+    @Override
+    protected void mergeRunCoverage(boolean valid) {
+        runCoverageDelta.classify(runCoverage, totalCoverage, valid ? validCoverage : null);
+    }
+
     // Return a list of saving criteria that have been satisfied for a non-failure input
     @Override
     protected List<String> checkSavingCriteriaSatisfied(Result result) {
         // Update hit counts and unique paths metrics
         boolean valid = result == Result.SUCCESS;
         boolean checkUniquePath = COUNT_UNIQUE_PATHS || MEASURE_BEHAVIORAL_DIVERSITY || LOG_UNIQUE_PATH_INPUTS;
-        if (checkUniquePath && uniquePaths.add(runCoverage.hashCode())) {
+        long pathFingerprint = runCoverage.getPathFingerprint();
+        if (checkUniquePath && uniquePaths.add(pathFingerprint)) {
             if(MEASURE_BEHAVIORAL_DIVERSITY) {
                 if (TRACK_SEMANTIC_COVERAGE) {
                     branchHitCounter.incrementBranchCounts(semanticRunCoverage);
@@ -173,12 +198,12 @@ public class BeDivFuzzBaselineGuidance extends ZestGuidance implements SplitGene
             }
 
             if (valid) {
-                uniqueValidPaths.add(runCoverage.hashCode());
+                uniqueValidPaths.add(pathFingerprint);
             }
 
             // Update score for last performed mutation
-            if (!savedInputs.isEmpty()) {
-                TrackingInput currentParent = (TrackingInput) savedInputs.get(currentParentInputIdx);
+            if (currentParentInput != null) {
+                TrackingInput currentParent = (TrackingInput) currentParentInput;
                 currentParent.incrementScore();
             }
         }
@@ -238,6 +263,12 @@ public class BeDivFuzzBaselineGuidance extends ZestGuidance implements SplitGene
     protected void completeCycle() {
     }
 
+    @Override
+    protected Input<?> restoreSavedInput(File saveFile) {
+        // Tracking inputs cannot be recreated from the saved bytes alone
+        throw new GuidanceException(getClass().getSimpleName() + " does not support resuming a campaign");
+    }
+
     @Override
     protected void saveCurrentInput(IntHashSet responsibilities, String why) throws IOException {
         // Guidance decides to save the input, ensure choice types are traced
@@ -260,69 +291,85 @@ public class BeDivFuzzBaselineGuidance extends ZestGuidance implements SplitGene
         }
     }
 
+    @Override
+    protected void replaceTrimmedValues(LinearInput target, LinearInput trimmed) {
+        super.replaceTrimmedValues(target, trimmed);
+
+        // The choice tables index into the values, so they must be traced again
+        TrackingInput trackingTarget = (TrackingInput) target;
+        TrackingInput retraced = traceCurrentInput();
+        trackingTarget.structureChoices = retraced.structureChoices;
+        trackingTarget.valueChoices = retraced.valueChoices;
+    }
+
     // Identifies structural and value choices of current input
     private TrackingInput traceCurrentInput() {
-        TrackingInput tracedInput = new TrackingInput((LinearInput) currentInput);
+        LinearInput baseInput = (LinearInput) currentInput;
+        TrackingInput tracedInput = new TrackingInput(baseInput);
         currentInput = tracedInput;
 
-        SplitTrackingSourceOfRandomness random = new SplitTrackingSourceOfRandomness(
-                createParameterStream(),
-                tracedInput.structureChoices,
-                tracedInput.valueChoices
-        );
-
-        GenerationStatus genStatus = new NonTrackingGenerationStatus(random.getStructureDelegate());
-        choiceTracer.accept(random, genStatus);
+        if (liveChoices != null) {
+            // Choices were already recorded while generating this input
+            tracedInput.attachChoices(liveChoices, baseInput.getRequested());
+        } else {
+            ChoiceBuffer trace = new ChoiceBuffer();
+            SplitTrackingSourceOfRandomness random = new SplitTrackingSourceOfRandomness(
+                    createParameterStream(),
+                    trace.getStructureSink(),
+                    trace.getValueSink()
+            );
+
+            GenerationStatus genStatus = new NonTrackingGenerationStatus(random.getStructureDelegate());
+            choiceTracer.accept(random, genStatus);
+            tracedInput.structureChoices = trace.toStructureTable();
+            tracedInput.valueChoices = trace.toValueTable();
+        }
         return tracedInput;
     }
 
 
     public class TrackingInput extends LinearInput {
-        protected final List<Choice> structureChoices = new ArrayList<>();
-        protected final List<Choice> valueChoices = new ArrayList<>();
+        protected ChoiceTable structureChoices = ChoiceTable.EMPTY;
+        protected ChoiceTable valueChoices = ChoiceTable.EMPTY;
 
         /** Whether the last performed mutation was on the structural or value parameters (exploration or exploitation)*/
         protected Mutation lastMutationType = Mutation.HAVOC;
 
-        /** Structural mutation score: number of performed mutations / rewarded mutations. */
-        protected int structureScore = 0;
-        protected int structureCount = 0;
-
-        /* Value mutation score: number of performed mutations / rewarded mutations. */
-        protected int valueScore = 0;
-        protected int valueCount = 0;
-
         public TrackingInput(LinearInput baseInput) {
             this.values = baseInput.values;
         }
 
+        /**
+         * Sets the choices of this input from a trace recorded during its execution.
+         *
+         * @param choices   the choices recorded while generating this input
+         * @param requested the number of bytes requested while generating this input
+         */
+        protected void attachChoices(ChoiceBuffer choices, int requested) {
+            structureChoices = choices.toStructureTable();
+            valueChoices = choices.toValueTable();
+            this.requested = requested;
+        }
+
         protected void incrementScore() {
             if (lastMutationType == Mutation.STRUCTURE) {
-                structureScore++;
+                armStatistics.reward(id, ArmStatistics.STRUCTURE, 1);
             } else if (lastMutationType == Mutation.VALUE) {
-                valueScore ++;
+                armStatistics.reward(id, ArmStatistics.VALUE, 1);
             }
         }
 
         protected double getStructureScore() {
-            return (structureCount == 0) ? 0 : ((double) structureScore) / structureCount;
+            return armStatistics.getMean(id, ArmStatistics.STRUCTURE);
         }
 
         protected double getValueScore() {
-            return (valueCount == 0) ? 0 : ((double)valueScore) / valueCount;
+            return armStatistics.getMean(id, ArmStatistics.VALUE);
         }
 
         protected Mutation chooseMutationType(Random random) {
-            double avgStructureScore = (structureCount == 0) ? 0 : ((double) structureScore) / structureCount;
-            double avgValueScore = (valueCount == 0) ? 0 : ((double)valueScore) / valueCount;
-
-            // With probability epsilon (or if both scores are tied), perform random mutation type
-            if ((random.nextDouble() < EPSILON) || (avgStructureScore == avgValueScore)) {
-                return random.nextBoolean() ? Mutation.STRUCTURE : Mutation.VALUE;
-            } else {
-                // otherwise, choose most promising mutation
-                return (avgStructureScore > avgValueScore) ? Mutation.STRUCTURE : Mutation.VALUE;
-            }
+            int arm = armSelector.selectArm(armStatistics, id, random);
+            return (arm == ArmStatistics.STRUCTURE) ? Mutation.STRUCTURE : Mutation.VALUE;
         }
 
         @Override
@@ -343,14 +390,14 @@ public class BeDivFuzzBaselineGuidance extends ZestGuidance implements SplitGene
             // Stack a bunch of mutations
             int numMutations = sampleGeometric(random, MEAN_MUTATION_COUNT);
 
-            List<Choice> choices;
+            ChoiceTable choices;
             if (mutationType == Mutation.STRUCTURE) {
                 choices = structureChoices;
-                structureCount++;
+                armStatistics.pull(id, ArmStatistics.STRUCTURE);
                 newInput.desc += ",structure:" + numMutations;
             } else {
                 choices = valueChoices;
-                valueCount++;
+                armStatistics.pull(id, ArmStatistics.VALUE);
                 newInput.desc += ",value:" + numMutations;
             }
 
@@ -359,9 +406,9 @@ public class BeDivFuzzBaselineGuidance extends ZestGuidance implements SplitGene
             for (int mutation = 1; mutation <= numMutations; mutation++) {
 
                 // Select a random offset and size
-                Choice choice = choices.get(random.nextInt(choices.size()));
-                int baseIdx = choice.getOffset();
-                int size = choice.getSize();
+                int choice = random.nextInt(choices.size());
+                int baseIdx = choices.getOffset(choice);
+                int size = choices.getSize(choice);
 
                 /**
                  * For boolean choices, only the lowest bit is actually used (see {@link StreamBackedRandom#next(int bits)}.
@@ -0,0 +1,86 @@
+package de.hub.se.jqf.bedivfuzz.guidance.parallel;
+
+import java.io.File;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import de.hub.se.jqf.bedivfuzz.guidance.BeDivFuzzDriver;
+import edu.berkeley.cs.jqf.fuzz.guidance.GuidanceException;
+import org.junit.runner.Result;
+
+/**
+ * Entry point for fuzzing with BeDivFuzz on multiple worker threads. Adapted from {@link BeDivFuzzDriver}
+ *
+ */
+public class BeDivFuzzParallelDriver {
+
+    public static void main(String[] args) {
+        if (args.length < 2){
+            System.err.println("Usage: java " + BeDivFuzzParallelDriver.class + " TEST_CLASS TEST_METHOD [OUTPUT_DIR]");
+            System.exit(1);
+        }
+
+        String testClassName  = args[0];
+        String testMethodName = args[1];
+        String outputDirectoryName = args.length > 2 ? args[2] : "fuzz-results";
+        File outputDirectory = new File(outputDirectoryName);
+        File[] seedFiles = null;
+        if (args.length > 3) {
+            seedFiles = new File[args.length-3];
+            for (int i = 3; i < args.length; i++) {
+                seedFiles[i-3] = new File(args[i]);
+            }
+        }
+
+        try {
+            // Load the guidance
+            String title = testClassName+"#"+testMethodName;
+            Random rnd = new Random(); // TODO: Support deterministic PRNG
+            ParallelBeDivFuzzGuidance guidance;
+
+            // Try to parse campaign timeout
+            String campaignTimeout = System.getProperty("jqf.guidance.campaign_timeout");
+            Duration duration = null;
+            if (campaignTimeout != null && !campaignTimeout.isEmpty()) {
+                try {
+                    duration = Duration.parse("PT"+campaignTimeout);
+                } catch (DateTimeParseException e) {
+                    throw new GuidanceException("Invalid time duration: " + campaignTimeout);
+                }
+            }
+            Long maxTrials = Long.getLong("jqf.guidance.MAX_TRIALS");
+            int numWorkers = Integer.getInteger("jqf.guidance.bedivfuzz.NUM_WORKERS",
+                    Runtime.getRuntime().availableProcessors());
+
+            if (seedFiles == null) {
+                guidance = new ParallelBeDivFuzzGuidance(title, duration, maxTrials, outputDirectory, rnd);
+            } else if (seedFiles.length == 1 && seedFiles[0].isDirectory()) {
+                guidance = new ParallelBeDivFuzzGuidance(title, duration, maxTrials, outputDirectory, seedFiles[0], rnd);
+            } else {
+                guidance = new ParallelBeDivFuzzGuidance(title, duration, maxTrials, outputDirectory, seedFiles, rnd);
+            }
+
+            Locale.setDefault(Locale.US);
+
+            // Run the Junit test on all workers
+            ClassLoader loader = ClassLoader.getSystemClassLoader();
+            Class<?> testClass = Class.forName(testClassName, true, loader);
+            List<Result> results = ParallelFuzzing.run(testClass, testMethodName, loader, guidance, numWorkers, System.out);
+            if (Boolean.getBoolean("jqf.logCoverage")) {
+                System.out.println(String.format("Covered %d edges.",
+                        guidance.getTotalCoverage().getNonZeroCount()));
+            }
+            if (Boolean.getBoolean("jqf.ei.EXIT_ON_CRASH") && !results.stream().allMatch(Result::wasSuccessful)) {
+                System.exit(3);
+            }
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(2);
+        }
+
+    }
+}
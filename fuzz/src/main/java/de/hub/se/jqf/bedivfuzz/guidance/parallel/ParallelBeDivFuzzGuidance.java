@@ -0,0 +1,238 @@
+package de.hub.se.jqf.bedivfuzz.guidance.parallel;
+
+import de.hub.se.jqf.bedivfuzz.guidance.BeDivFuzzGuidance;
+import de.hub.se.jqf.bedivfuzz.junit.quickcheck.tracking.ChoiceBuffer;
+import edu.berkeley.cs.jqf.fuzz.guidance.GuidanceException;
+import edu.berkeley.cs.jqf.fuzz.guidance.Result;
+import edu.berkeley.cs.jqf.fuzz.guidance.TimeoutException;
+import edu.berkeley.cs.jqf.fuzz.util.Coverage;
+import edu.berkeley.cs.jqf.fuzz.util.CoverageFactory;
+import edu.berkeley.cs.jqf.fuzz.util.ICoverage;
+import edu.berkeley.cs.jqf.fuzz.util.IOUtils;
+import edu.berkeley.cs.jqf.instrument.tracing.FastCoverageSnoop;
+import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEvent;
+import janala.instrument.FastCoverageListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * A BeDivFuzz guidance that is shared by several fuzzing worker threads.
+ *
+ * <p>Each worker thread executes its own inputs with its own generators
+ * (see {@link ParallelFuzzing}), run coverage and choice buffer. Only choosing
+ * the next input and merging the result of a run into the corpus are serialized
+ * on this guidance: the worker's run state (its input, parent, mutation, run coverage
+ * and start time) is swapped into the inherited single-run fields while holding the
+ * monitor, so that the corpus, total coverage, unique
+ * paths and branch hit counts are shared by all workers and inputs saved by one
+ * worker are immediately mutated by the others. Resetting and reading a worker's
+ * own run state happens outside of the monitor.</p>
+ *
+ * <p>Choices are always traced during generation, since the generators of one
+ * worker cannot be re-run by another. Coverage of threads spawned by the test
+ * itself is not attributed to any worker.</p>
+ */
+public class ParallelBeDivFuzzGuidance extends BeDivFuzzGuidance {
+
+    /** The state of the worker running on the current thread. */
+    protected final ThreadLocal<Worker> workers = new ThreadLocal<>();
+
+    /** Routes fast-coverage probes to the worker that executes them; null without fast coverage. */
+    protected final ThreadLocalCoverageListener coverageListener;
+
+    /** The number of workers that have requested an input so far. */
+    protected int numWorkers = 0;
+
+    /** Whether the campaign has ended, so that the final stats are only displayed once. */
+    protected boolean finished = false;
+
+    public ParallelBeDivFuzzGuidance(String testName, Duration duration, Long trials, File outputDirectory, Random sourceOfRandomness) throws IOException {
+        super(testName, duration, trials, outputDirectory, sourceOfRandomness);
+        if (TRACK_SEMANTIC_COVERAGE) {
+            throw new GuidanceException("Semantic coverage is not supported with parallel fuzzing");
+        }
+        if (CoverageFactory.isInlineCoverageEnabled()) {
+            throw new GuidanceException("Inline coverage probes are not supported with parallel fuzzing");
+        }
+        this.multiThreaded = true;
+
+        // Route fast-coverage probes to the coverage of the worker that executes them
+        if (this.runCoverage instanceof FastCoverageListener) {
+            this.coverageListener = new ThreadLocalCoverageListener();
+            FastCoverageSnoop.setFastCoverageListener(coverageListener);
+        } else {
+            this.coverageListener = null;
+        }
+    }
+
+    public ParallelBeDivFuzzGuidance(String testName, Duration duration, Long trials, File outputDirectory, File[] seedInputFiles, Random sourceOfRandomness) throws IOException {
+        this(testName, duration, trials, outputDirectory, sourceOfRandomness);
+        if (seedInputFiles != null) {
+            for (File seedInputFile : seedInputFiles) {
+                seedInputs.add(new SeedInput(seedInputFile));
+            }
+        }
+    }
+
+    public ParallelBeDivFuzzGuidance(String testName, Duration duration, Long trials, File outputDirectory, File seedInputDir, Random sourceOfRandomness) throws IOException {
+        this(testName, duration, trials, outputDirectory, IOUtils.resolveInputFileOrDirectory(seedInputDir), sourceOfRandomness);
+    }
+
+    @Override
+    protected String getTitle() {
+        return "BeDivFuzz: Behavioral Diversity Fuzzing (" + numWorkers + " workers)\n" +
+                "--------------------------\n";
+    }
+
+    /** Returns the worker of the current thread, creating it on first use. */
+    protected Worker worker() {
+        Worker worker = workers.get();
+        if (worker == null) {
+            synchronized (this) {
+                worker = new Worker(random.nextLong());
+                numWorkers++;
+            }
+            workers.set(worker);
+            if (coverageListener != null) {
+                coverageListener.register(Thread.currentThread(), (FastCoverageListener) worker.coverage);
+            }
+        }
+        return worker;
+    }
+
+    @Override
+    public ChoiceBuffer getLiveChoiceBuffer() {
+        return worker().choices;
+    }
+
+    @Override
+    public synchronized boolean hasInput() {
+        if (finished) {
+            return false;
+        }
+        finished = !super.hasInput();
+        return !finished;
+    }
+
+    @Override
+    public InputStream getInput() throws GuidanceException {
+        Worker worker = worker();
+        worker.coverage.clear();
+        worker.branchCount = 0;
+        synchronized (this) {
+            runStart = null;
+            runStartNanos = 0;
+            chooseNextInput();
+            worker.input = (LinearInput) currentInput;
+            worker.parentInput = currentParentInput;
+            worker.parentInputIdx = currentParentInputIdx;
+            worker.mutationType = currentMutationType;
+            worker.runStartNanos = runStartNanos;
+            worker.runStart = runStart;
+        }
+        return worker.createParameterStream();
+    }
+
+    @Override
+    public void handleResult(Result result, Throwable error) throws GuidanceException {
+        Worker worker = worker();
+        worker.runStart = null;
+        synchronized (this) {
+            // The parent index is also the cursor of the parent scheduler, so it is put back afterwards
+            int parentInputIdx = currentParentInputIdx;
+            currentInput = worker.input;
+            currentParentInput = worker.parentInput;
+            currentParentInputIdx = worker.parentInputIdx;
+            currentMutationType = worker.mutationType;
+            runStartNanos = worker.runStartNanos;
+            runCoverage = worker.coverage;
+            try {
+                stopRunTimer();
+                processResult(result, error);
+            } finally {
+                currentParentInputIdx = parentInputIdx;
+            }
+        }
+    }
+
+    @Override
+    public Consumer<TraceEvent> generateCallBack(Thread thread) {
+        // Tracers are spawned on the thread they trace, which may not have requested an input yet
+        return new Consumer<TraceEvent>() {
+            private Worker worker;
+
+            @Override
+            public void accept(TraceEvent e) {
+                if (worker == null) {
+                    worker = workers.get();
+                    if (worker == null) {
+                        return;
+                    }
+                }
+                worker.handleEvent(e);
+            }
+        };
+    }
+
+    /**
+     * The run state of a single fuzzing worker.
+     */
+    protected class Worker {
+        protected final ICoverage coverage = CoverageFactory.newInstance();
+        protected final ChoiceBuffer choices = new ChoiceBuffer();
+
+        /** Source of fresh bytes when generators request beyond the end of the input. */
+        protected final Random random;
+
+        protected LinearInput input;
+        protected Input<?> parentInput;
+        protected int parentInputIdx;
+        protected Mutation mutationType;
+        protected long runStartNanos;
+        protected Date runStart;
+        protected long branchCount;
+
+        protected Worker(long seed) {
+            this.random = new Random(seed);
+        }
+
+        /** Returns a stream that reads bytes from this worker's current input. */
+        protected InputStream createParameterStream() {
+            final LinearInput linearInput = input;
+            return new InputStream() {
+                int bytesRead = 0;
+
+                @Override
+                public int read() throws IOException {
+                    return linearInput.getOrGenerateFresh(bytesRead++, random);
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int ret = linearInput.read(bytesRead, b, off, len, random);
+                    if (ret > 0) {
+                        bytesRead += ret;
+                    }
+                    return ret;
+                }
+            };
+        }
+
+        protected void handleEvent(TraceEvent e) {
+            ((Coverage) coverage).handleEvent(e);
+            // Check for possible timeouts every so often
+            if (singleRunTimeoutMillis > 0 && runStart != null && (++branchCount) % 10_000 == 0) {
+                long elapsed = new Date().getTime() - runStart.getTime();
+                if (elapsed > singleRunTimeoutMillis) {
+                    throw new TimeoutException(elapsed, singleRunTimeoutMillis);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package de.hub.se.jqf.bedivfuzz.guidance.parallel;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.berkeley.cs.jqf.fuzz.JQF;
+import edu.berkeley.cs.jqf.fuzz.guidance.Guidance;
+import edu.berkeley.cs.jqf.fuzz.junit.GuidedFuzzing;
+import edu.berkeley.cs.jqf.instrument.tracing.SingleSnoop;
+import janala.instrument.OfflineInstrumenter;
+import org.junit.internal.TextListener;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+
+/**
+ * Runs the guided fuzzing loop on several worker threads that share a
+ * single guidance. Adapted from {@link GuidedFuzzing}.
+ *
+ * <p>Every worker runs its own JUnit request, and thus its own test class
+ * instance, generators and source of randomness. The guidance must be able to
+ * handle concurrent calls from all workers, e.g. {@link ParallelBeDivFuzzGuidance}.</p>
+ */
+public class ParallelFuzzing {
+
+    /**
+     * Runs the guided fuzzing loop for a resolved class on {@code numWorkers} threads.
+     *
+     * @param testClass     the test class containing the test method
+     * @param testMethod    the test method to execute in the fuzzing loop
+     * @param loader        the classloader to use as context class loader of the workers
+     * @param guidance      the fuzzing guidance shared by all workers
+     * @param numWorkers    the number of worker threads
+     * @param out           an output stream to log Junit messages
+     * @throws IllegalStateException if a guided fuzzing run is currently executing
+     * @throws InterruptedException if interrupted while waiting for the workers
+     * @return the Junit-style test result of each worker
+     */
+    public static synchronized List<Result> run(Class<?> testClass, String testMethod, ClassLoader loader,
+                                                Guidance guidance, int numWorkers, PrintStream out)
+            throws IllegalStateException, InterruptedException {
+
+        // Ensure that the class uses the right test runner
+        RunWith annotation = testClass.getAnnotation(RunWith.class);
+        if (annotation == null || !(JQF.class.isAssignableFrom(annotation.value()))) {
+            throw new IllegalArgumentException(testClass.getName() + " is not annotated with @RunWith(JQF.class)");
+        }
+        if (numWorkers < 1) {
+            throw new IllegalArgumentException("Number of workers must be positive: " + numWorkers);
+        }
+
+        try {
+            // Set the static guidance instance
+            GuidedFuzzing.setGuidance(guidance);
+
+            // Register callback
+            SingleSnoop.setCallbackGenerator(guidance::generateCallBack);
+
+            // Account for the probes of classes that have been instrumented offline
+            OfflineInstrumenter.registerProbes(loader);
+
+            // Warm up tracing on this thread, before the workers start snooping
+            String entryPoint = testClass.getName() + "#" + testMethod;
+            SingleSnoop.startSnooping(entryPoint);
+
+            List<Result> results = new ArrayList<>(numWorkers);
+            List<Thread> workers = new ArrayList<>(numWorkers);
+            for (int i = 0; i < numWorkers; i++) {
+                final int workerIdx = i;
+                results.add(null);
+                Thread worker = new Thread(() -> {
+                    JUnitCore junit = new JUnitCore();
+                    if (out != null && workerIdx == 0) {
+                        junit.addListener(new TextListener(out));
+                    }
+                    results.set(workerIdx, junit.run(Request.method(testClass, testMethod).getRunner()));
+                }, "fuzz-worker-" + i);
+                worker.setContextClassLoader(loader);
+
+                // Unblock snooping for the worker (entry points are not thread-safe, so register them here)
+                SingleSnoop.REGISTER_THREAD(worker);
+                SingleSnoop.entryPoints.put(worker, entryPoint);
+                workers.add(worker);
+            }
+
+            for (Thread worker : workers) {
+                worker.start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            return results;
+
+        } finally {
+            // Make sure to de-register the guidance before returning
+            GuidedFuzzing.unsetGuidance();
+            GuidedFuzzing.closeGuidance(guidance);
+        }
+    }
+}
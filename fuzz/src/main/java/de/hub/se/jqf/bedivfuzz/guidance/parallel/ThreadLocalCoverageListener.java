@@ -0,0 +1,91 @@
+package de.hub.se.jqf.bedivfuzz.guidance.parallel;
+
+import java.util.Arrays;
+
+import janala.instrument.FastCoverageListener;
+
+/**
+ * Dispatches fast-coverage probes to the listener of the current thread.
+ *
+ * <p>Fast-coverage probes report to a single static listener (see
+ * {@link edu.berkeley.cs.jqf.instrument.tracing.FastCoverageSnoop}), so
+ * guidances that execute inputs on several threads install this listener
+ * to route each probe to the run coverage of the executing worker.
+ * Probes of threads without a listener are dropped.</p>
+ *
+ * <p>Workers register their listener once, and every probe looks it up
+ * by comparing thread identities in a small array. With the few threads
+ * of a fuzzing campaign, this is cheaper than a {@link ThreadLocal} lookup.</p>
+ */
+public class ThreadLocalCoverageListener implements FastCoverageListener {
+
+    /** The registered threads, replaced as a whole on each registration. */
+    private volatile Thread[] threads = new Thread[0];
+
+    /** The listener of each registered thread, at the same index. */
+    private volatile FastCoverageListener[] listeners = new FastCoverageListener[0];
+
+    /**
+     * Registers the listener of a thread, replacing any previous one.
+     *
+     * @param thread   the thread whose probes to dispatch
+     * @param listener the listener of the thread
+     */
+    public synchronized void register(Thread thread, FastCoverageListener listener) {
+        Thread[] threads = this.threads;
+        FastCoverageListener[] listeners = this.listeners;
+        int idx = Arrays.asList(threads).indexOf(thread);
+        if (idx < 0) {
+            idx = threads.length;
+            threads = Arrays.copyOf(threads, idx + 1);
+            threads[idx] = thread;
+        }
+        listeners = Arrays.copyOf(listeners, threads.length);
+        listeners[idx] = listener;
+        // Publish the listeners before the threads, since lookups read the threads first
+        this.listeners = listeners;
+        this.threads = threads;
+    }
+
+    /** Returns the listener of the current thread, or null if it has none. */
+    private FastCoverageListener currentListener() {
+        Thread current = Thread.currentThread();
+        Thread[] threads = this.threads;
+        for (int i = 0; i < threads.length; i++) {
+            if (threads[i] == current) {
+                return listeners[i];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void logMethodBegin(int iid) {
+        FastCoverageListener listener = currentListener();
+        if (listener != null) listener.logMethodBegin(iid);
+    }
+
+    @Override
+    public void logMethodEnd(int iid) {
+        FastCoverageListener listener = currentListener();
+        if (listener != null) listener.logMethodEnd(iid);
+    }
+
+    @Override
+    public void logJump(int iid, int branch) {
+        FastCoverageListener listener = currentListener();
+        if (listener != null) listener.logJump(iid, branch);
+    }
+
+    @Override
+    public void logLookUpSwitch(int value, int iid, int dflt, int[] cases) {
+        FastCoverageListener listener = currentListener();
+        if (listener != null) listener.logLookUpSwitch(value, iid, dflt, cases);
+    }
+
+    @Override
+    public void logTableSwitch(int value, int iid, int min, int max, int dflt) {
+        FastCoverageListener listener = currentListener();
+        if (listener != null) listener.logTableSwitch(value, iid, min, max, dflt);
+    }
+}
@@ -2,7 +2,7 @@ package de.hub.se.jqf.bedivfuzz.guidance.split;
 
 import de.hub.se.jqf.bedivfuzz.util.BranchHitCounter;
 import edu.berkeley.cs.jqf.fuzz.util.ICoverage;
-import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
 
 import java.util.Set;
 
@@ -14,8 +14,8 @@ public class GuidanceState {
     public ICoverage totalCoverage;
     public ICoverage validCoverage;
     public ICoverage semanticTotalCoverage;
-    public IntHashSet uniquePaths;
-    public IntHashSet uniqueValidPaths;
+    public LongHashSet uniquePaths;
+    public LongHashSet uniqueValidPaths;
     public BranchHitCounter branchHitCounter;
     public int maxCoverage;
     public Set<String> uniqueFailures;
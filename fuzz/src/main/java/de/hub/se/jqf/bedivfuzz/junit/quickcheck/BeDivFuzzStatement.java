@@ -6,11 +6,13 @@ import com.pholser.junit.quickcheck.internal.ParameterTypeContext;
 import com.pholser.junit.quickcheck.internal.generator.GeneratorRepository;
 import de.hub.se.jqf.bedivfuzz.guidance.BeDivFuzzGuidance;
 import de.hub.se.jqf.bedivfuzz.guidance.SplitGeneratorGuidance;
+import de.hub.se.jqf.bedivfuzz.junit.quickcheck.tracking.ChoiceBuffer;
 import de.hub.se.jqf.bedivfuzz.junit.quickcheck.tracking.SplitTrackingSourceOfRandomness;
 import edu.berkeley.cs.jqf.fuzz.guidance.*;
 import edu.berkeley.cs.jqf.fuzz.junit.quickcheck.FuzzStatement;
 import edu.berkeley.cs.jqf.fuzz.junit.quickcheck.NonTrackingGenerationStatus;
 import edu.berkeley.cs.jqf.instrument.InstrumentationException;
+import edu.berkeley.cs.jqf.instrument.InstrumentingClassLoader;
 import org.junit.AssumptionViolatedException;
 import org.junit.runners.model.FrameworkMethod;
 import org.junit.runners.model.MultipleFailureException;
@@ -20,6 +22,7 @@ import ru.vyarus.java.generics.resolver.GenericsResolver;
 import ru.vyarus.java.generics.resolver.context.MethodGenericsContext;
 
 import java.io.EOFException;
+import java.io.InputStream;
 import java.lang.reflect.Parameter;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -44,6 +47,9 @@ public class BeDivFuzzStatement extends Statement {
     private final boolean skipExceptionSwallow;
     private final List<Generator<?>> generators;
 
+    /** The buffer to record choices into during generation, or null if the guidance re-traces saved inputs. */
+    private final ChoiceBuffer liveChoices;
+
     public BeDivFuzzStatement(FrameworkMethod method, TestClass testClass,
                               GeneratorRepository generatorRepository, Guidance fuzzGuidance) {
         this.method = method;
@@ -64,6 +70,9 @@ public class BeDivFuzzStatement extends Statement {
 
         if (fuzzGuidance instanceof SplitGeneratorGuidance) {
             ((SplitGeneratorGuidance) fuzzGuidance).registerChoiceTracer(this::traceChoicesFromParameters);
+            this.liveChoices = ((SplitGeneratorGuidance) fuzzGuidance).getLiveChoiceBuffer();
+        } else {
+            this.liveChoices = null;
         }
 
     }
@@ -81,6 +90,7 @@ public class BeDivFuzzStatement extends Statement {
     @Override
     public void evaluate() throws Throwable {
         // Keep fuzzing until no more input or I/O error with guidance
+        boolean startupComplete = false;
         try {
 
             // Keep fuzzing as long as guidance wants to
@@ -93,7 +103,16 @@ public class BeDivFuzzStatement extends Statement {
                     Object[] args;
                     try {
                         // Generate input values
-                        SplitRandom random = new SplitSourceOfRandomness(guidance.getInput());
+                        SplitRandom random;
+                        if (liveChoices != null) {
+                            // Trace choice boundaries while generating, so the guidance need not re-trace
+                            InputStream input = guidance.getInput();
+                            liveChoices.clear();
+                            random = new SplitTrackingSourceOfRandomness(input,
+                                    liveChoices.getStructureSink(), liveChoices.getValueSink());
+                        } else {
+                            random = new SplitSourceOfRandomness(guidance.getInput());
+                        }
                         GenerationStatus genStatus = new NonTrackingGenerationStatus(random.getStructureDelegate());
                         args = generators.stream()
                                 .map(g -> ((SplitGenerator<?>) g).generate(random, genStatus))
@@ -159,7 +178,14 @@ public class BeDivFuzzStatement extends Statement {
                     throw new GuidanceException(e);
                 }
 
-
+                // Classes that the first trial did not load are instrumented on demand from now on
+                if (!startupComplete) {
+                    startupComplete = true;
+                    ClassLoader loader = testClass.getJavaClass().getClassLoader();
+                    if (loader instanceof InstrumentingClassLoader) {
+                        ((InstrumentingClassLoader) loader).releasePreinstrumented();
+                    }
+                }
             }
         } catch (GuidanceException e) {
             System.err.println("Fuzzing stopped due to guidance exception: " + e.getMessage());
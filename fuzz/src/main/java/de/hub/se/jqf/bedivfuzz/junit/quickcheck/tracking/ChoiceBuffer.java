@@ -0,0 +1,55 @@
+package de.hub.se.jqf.bedivfuzz.junit.quickcheck.tracking;
+
+/**
+ * A reusable buffer of the structure and value choices of a single input.
+ *
+ * <p>The buffer is cleared before every execution and filled while the
+ * generators run, so tracing the choices of an input does not allocate
+ * a {@link Choice} per request. Only when an input is saved are its
+ * choices packed into {@link ChoiceTable}s.</p>
+ */
+public class ChoiceBuffer {
+
+    private final ChoiceTable.Builder structureChoices = new ChoiceTable.Builder();
+    private final ChoiceTable.Builder valueChoices = new ChoiceTable.Builder();
+
+    /** Removes all recorded choices while keeping the allocated capacity. */
+    public void clear() {
+        structureChoices.clear();
+        valueChoices.clear();
+    }
+
+    public ChoiceSink getStructureSink() {
+        return structureChoices;
+    }
+
+    public ChoiceSink getValueSink() {
+        return valueChoices;
+    }
+
+    public int getStructureChoiceCount() {
+        return structureChoices.size();
+    }
+
+    public int getValueChoiceCount() {
+        return valueChoices.size();
+    }
+
+    /**
+     * Returns the recorded structure choices.
+     *
+     * @return a new table of the structure choices
+     */
+    public ChoiceTable toStructureTable() {
+        return structureChoices.build();
+    }
+
+    /**
+     * Returns the recorded value choices.
+     *
+     * @return a new table of the value choices
+     */
+    public ChoiceTable toValueTable() {
+        return valueChoices.build();
+    }
+}
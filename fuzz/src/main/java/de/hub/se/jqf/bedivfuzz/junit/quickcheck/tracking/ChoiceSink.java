@@ -0,0 +1,28 @@
+package de.hub.se.jqf.bedivfuzz.junit.quickcheck.tracking;
+
+import java.util.List;
+
+/**
+ * Receives the boundaries of choices traced by a tracking source of randomness.
+ */
+@FunctionalInterface
+public interface ChoiceSink {
+
+    /**
+     * Records a single choice.
+     *
+     * @param offset the offset of the first byte of the choice
+     * @param size   the number of bytes of the choice, or -1 for boolean choices
+     */
+    void appendChoice(int offset, int size);
+
+    /**
+     * Returns a sink that appends each choice to a list.
+     *
+     * @param choices the list to append to
+     * @return a sink backed by {@code choices}
+     */
+    static ChoiceSink of(List<Choice> choices) {
+        return (offset, size) -> choices.add(new Choice(offset, size));
+    }
+}
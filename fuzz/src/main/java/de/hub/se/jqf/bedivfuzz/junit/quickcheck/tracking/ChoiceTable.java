@@ -0,0 +1,150 @@
+package de.hub.se.jqf.bedivfuzz.junit.quickcheck.tracking;
+
+import java.util.Arrays;
+
+/**
+ * An immutable sequence of choices packed into a primitive array.
+ *
+ * <p>Each choice occupies two consecutive ints (offset, size), so a saved
+ * input retains a single array instead of one {@link Choice} object per
+ * random request. The hash code is computed once on construction and is
+ * equal to the hash code of a {@link java.util.List} of the same choices,
+ * so structural hashes are unchanged from the list-based representation.</p>
+ */
+public final class ChoiceTable {
+
+    /** A table without any choices. */
+    public static final ChoiceTable EMPTY = new ChoiceTable(new int[0], 0);
+
+    /** The packed (offset, size) pairs. */
+    private final int[] entries;
+
+    /** The precomputed hash code of the choices. */
+    private final int hash;
+
+    private ChoiceTable(int[] entries, int length) {
+        this.entries = length == entries.length ? entries : Arrays.copyOf(entries, length);
+        int h = 1;
+        for (int i = 0; i < length; i += 2) {
+            h = 31 * h + (31 * entries[i] + entries[i + 1]);
+        }
+        this.hash = h;
+    }
+
+    /**
+     * Returns the number of choices in this table.
+     *
+     * @return the number of choices
+     */
+    public int size() {
+        return entries.length >> 1;
+    }
+
+    public boolean isEmpty() {
+        return entries.length == 0;
+    }
+
+    /**
+     * Returns the offset of the choice at the given index.
+     *
+     * @param index the index of the choice
+     * @return the offset of the first byte of the choice
+     */
+    public int getOffset(int index) {
+        return entries[index << 1];
+    }
+
+    /**
+     * Returns the size of the choice at the given index.
+     *
+     * @param index the index of the choice
+     * @return the number of bytes of the choice, or -1 for boolean choices
+     */
+    public int getSize(int index) {
+        return entries[(index << 1) + 1];
+    }
+
+    /**
+     * Returns the choice at the given index as a new {@link Choice} object.
+     *
+     * @param index the index of the choice
+     * @return the choice at {@code index}
+     */
+    public Choice get(int index) {
+        return new Choice(getOffset(index), getSize(index));
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ChoiceTable)) return false;
+
+        ChoiceTable that = (ChoiceTable) o;
+        return hash == that.hash && Arrays.equals(entries, that.entries);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(getOffset(i)).append(':').append(getSize(i));
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * A reusable sink that accumulates choices for a {@link ChoiceTable}.
+     */
+    public static class Builder implements ChoiceSink {
+        private int[] entries;
+        private int length = 0;
+
+        public Builder() {
+            this(16);
+        }
+
+        public Builder(int initialChoices) {
+            this.entries = new int[Math.max(initialChoices, 1) << 1];
+        }
+
+        @Override
+        public void appendChoice(int offset, int size) {
+            if (length + 2 > entries.length) {
+                entries = Arrays.copyOf(entries, entries.length << 1);
+            }
+            entries[length++] = offset;
+            entries[length++] = size;
+        }
+
+        /**
+         * Returns the number of choices appended since the last clear.
+         *
+         * @return the number of choices
+         */
+        public int size() {
+            return length >> 1;
+        }
+
+        /** Removes all choices while keeping the allocated capacity. */
+        public void clear() {
+            length = 0;
+        }
+
+        /**
+         * Creates a table of the choices appended so far.
+         *
+         * @return a new (trimmed) table of the appended choices
+         */
+        public ChoiceTable build() {
+            return length == 0 ? EMPTY : new ChoiceTable(Arrays.copyOf(entries, length), length);
+        }
+    }
+}
@@ -2,8 +2,6 @@ package de.hub.se.jqf.bedivfuzz.junit.quickcheck.tracking;
 
 import edu.berkeley.cs.jqf.fuzz.guidance.StreamBackedRandom;
 
-import java.util.List;
-
 public class ChoiceTrackingState {
 
     private final StreamBackedRandom delegate;
@@ -13,15 +11,15 @@ public class ChoiceTrackingState {
         this.delegate = delegate;
     }
 
-    public void appendChoiceIndex(List<Choice> choiceIndices) {
+    public void appendChoiceIndex(ChoiceSink choiceIndices) {
         int bytesRead = delegate.getTotalBytesRead() - choiceOffset;
-        choiceIndices.add(new Choice(choiceOffset, bytesRead));
+        choiceIndices.appendChoice(choiceOffset, bytesRead);
         choiceOffset += bytesRead;
     }
 
-    public void appendChoiceIndex(List<Choice> choiceIndices, int length) {
+    public void appendChoiceIndex(ChoiceSink choiceIndices, int length) {
         int bytesRead = delegate.getTotalBytesRead() - choiceOffset;
-        choiceIndices.add(new Choice(choiceOffset, length));
+        choiceIndices.appendChoice(choiceOffset, length);
         choiceOffset += bytesRead;
     }
 
@@ -12,8 +12,8 @@ import java.util.List;
 
 
 public class SplitTrackingSourceOfRandomness implements SplitRandom {
-    private final List<Choice> structuralIndices;
-    private final List<Choice> valueIndices;
+    private final ChoiceSink structuralIndices;
+    private final ChoiceSink valueIndices;
     private final ChoiceTrackingState trackingState;
 
     private final SourceOfRandomness random;
@@ -24,6 +24,14 @@ public class SplitTrackingSourceOfRandomness implements SplitRandom {
             InputStream input,
             List<Choice> structuralChoiceIndices,
             List<Choice> valueChoiceIndices
+    ) {
+        this(input, ChoiceSink.of(structuralChoiceIndices), ChoiceSink.of(valueChoiceIndices));
+    }
+
+    public SplitTrackingSourceOfRandomness(
+            InputStream input,
+            ChoiceSink structuralChoiceIndices,
+            ChoiceSink valueChoiceIndices
     ) {
         // We need to ignore 24 bytes because we instantiate 3 SourceOfRandomness instances
         StreamBackedRandom delegate = new StreamBackedRandom(input, 3 * Long.BYTES);
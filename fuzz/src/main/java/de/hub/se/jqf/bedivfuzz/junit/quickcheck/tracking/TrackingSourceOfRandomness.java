@@ -12,21 +12,28 @@ import java.util.List;
 public class TrackingSourceOfRandomness extends FastSourceOfRandomness {
 
     private final List<Choice> choiceIndices;
+    private final ChoiceSink choiceSink;
     private final ChoiceTrackingState trackingState;
 
     public TrackingSourceOfRandomness(StreamBackedRandom delegate) {
-        super(delegate);
-
-        this.choiceIndices = new ArrayList<>();
-        this.trackingState = new ChoiceTrackingState(delegate);
+        this(new ArrayList<>(), new ChoiceTrackingState(delegate));
     }
 
     public TrackingSourceOfRandomness(List<Choice> choiceIndices, ChoiceTrackingState trackingState) {
         super(trackingState.getDelegate());
         this.choiceIndices = choiceIndices;
+        this.choiceSink = ChoiceSink.of(choiceIndices);
+        this.trackingState = trackingState;
+    }
+
+    public TrackingSourceOfRandomness(ChoiceSink choiceSink, ChoiceTrackingState trackingState) {
+        super(trackingState.getDelegate());
+        this.choiceIndices = null;
+        this.choiceSink = choiceSink;
         this.trackingState = trackingState;
     }
 
+    /** Returns the traced choices, or <code>null</code> if choices are recorded into a {@link ChoiceSink}. */
     public List<Choice> getChoiceIndices() {
         return choiceIndices;
     }
@@ -38,111 +45,111 @@ public class TrackingSourceOfRandomness extends FastSourceOfRandomness {
     @Override
     public byte nextByte(byte min, byte max) {
         byte choice = super.nextByte(min, max);
-        trackingState.appendChoiceIndex(choiceIndices);
+        trackingState.appendChoiceIndex(choiceSink);
         return choice;
     }
 
     @Override
     public byte[] nextBytes(int count) {
         byte[] choice = super.nextBytes(count);
-        trackingState.appendChoiceIndex(choiceIndices);
+        trackingState.appendChoiceIndex(choiceSink);
         return choice;
     }
 
     @Override
     public void nextBytes(byte[] bytes) {
         super.nextBytes(bytes);
-        trackingState.appendChoiceIndex(choiceIndices);
+        trackingState.appendChoiceIndex(choiceSink);
     }
 
     @Override
     public double nextDouble() {
         double choice = super.nextDouble();
-        trackingState.appendChoiceIndex(choiceIndices);
+        trackingState.appendChoiceIndex(choiceSink);
         return choice;
     }
 
     @Override
     public double nextDouble(double min, double max) {
         double choice = super.nextDouble(min, max);
-        trackingState.appendChoiceIndex(choiceIndices);
+        trackingState.appendChoiceIndex(choiceSink);
         return choice;
     }
 
     @Override
     public float nextFloat() {
         float choice = super.nextFloat();
-        trackingState.appendChoiceIndex(choiceIndices);
+        trackingState.appendChoiceIndex(choiceSink);
         return choice;
     }
 
     @Override
     public float nextFloat(float min, float max) {
         float choice = super.nextFloat(min, max);
-        trackingState.appendChoiceIndex(choiceIndices);
+        trackingState.appendChoiceIndex(choiceSink);
         return choice;
     }
 
     @Override
     public short nextShort(short min, short max) {
         short choice = super.nextShort(min, max);
-        trackingState.appendChoiceIndex(choiceIndices);
+        trackingState.appendChoiceIndex(choiceSink);
         return choice;
     }
 
     @Override
     public char nextChar(char min, char max) {
         char choice = super.nextChar(min, max);
-        trackingState.appendChoiceIndex(choiceIndices);
+        trackingState.appendChoiceIndex(choiceSink);
         return choice;
     }
 
     @Override
     public int nextInt() {
         int choice = super.nextInt();
-        trackingState.appendChoiceIndex(choiceIndices);
+        trackingState.appendChoiceIndex(choiceSink);
         return choice;
     }
 
     @Override
     public int nextInt(int n) {
         int choice = super.nextInt(n);
-        trackingState.appendChoiceIndex(choiceIndices);
+        trackingState.appendChoiceIndex(choiceSink);
         return choice;
     }
 
     @Override
     public int nextInt(int min, int max) {
         int choice = super.nextInt(min, max);
-        trackingState.appendChoiceIndex(choiceIndices);
+        trackingState.appendChoiceIndex(choiceSink);
         return choice;
     }
 
     @Override
     public boolean nextBoolean() {
         boolean choice = super.nextBoolean();
-        trackingState.appendChoiceIndex(choiceIndices, -1);
+        trackingState.appendChoiceIndex(choiceSink, -1);
         return choice;
     }
 
     @Override
     public long nextLong() {
         long choice = super.nextLong();
-        trackingState.appendChoiceIndex(choiceIndices);
+        trackingState.appendChoiceIndex(choiceSink);
         return choice;
     }
 
     @Override
     public long nextLong(long min, long max) {
         long choice = super.nextLong(min, max);
-        trackingState.appendChoiceIndex(choiceIndices);
+        trackingState.appendChoiceIndex(choiceSink);
         return choice;
     }
 
     @Override
     public BigInteger nextBigInteger(int numberOfBits) {
         BigInteger choice = super.nextBigInteger(numberOfBits);
-        trackingState.appendChoiceIndex(choiceIndices);
+        trackingState.appendChoiceIndex(choiceSink);
         return choice;
     }
 
@@ -1,21 +1,15 @@
 package de.hub.se.jqf.bedivfuzz.util;
 
 import edu.berkeley.cs.jqf.fuzz.util.*;
-import org.eclipse.collections.api.iterator.IntIterator;
 import org.eclipse.collections.impl.map.mutable.primitive.IntIntHashMap;
 
-import java.util.*;
-
 /**
  * Utility class to manage branch hit-counts and behavioral diversity metrics.
+ *
+ * <p>The counter maintains running sums over the hit count distribution, so that the
+ * diversity metrics can be computed in constant time after every input.</p>
  */
 public class BranchHitCounter {
-    /** The last time since the metrics have been computed (to reduce overhead). */
-    private Date lastRefreshTime = new Date();
-
-    /** The stat refresh period in ms */
-    private final long STATS_REFRESH_TIME_PERIOD = 5000; // Every 5 seconds
-
     /** The size of the coverage map. */
     private final int COVERAGE_MAP_SIZE = (1 << 8);
 
@@ -25,6 +19,15 @@ public class BranchHitCounter {
     /** The most recently computed behavioral diversity metrics. */
     private final BehavioralDiversityMetrics bedivMetrics = new BehavioralDiversityMetrics();
 
+    /** The sum of all branch hit counts. */
+    private long totalHitCount = 0;
+
+    /** The sum of c * log(c) over all branch hit counts c. */
+    private double sumCLogC = 0;
+
+    /** The sum of c^2 over all branch hit counts c. */
+    private double sumCSquared = 0;
+
     /**
      * Creates a new BeDivMetricsCounter instance.
      */
@@ -34,7 +37,12 @@ public class BranchHitCounter {
      * Creates a new BeDivMetricsCounter instance with a prepopulated branch hit count map.
      */
     public BranchHitCounter(IntIntHashMap branchHitCounts) {
-        branchHitCounts.forEachKeyValue(counter::increment);
+        branchHitCounts.forEachKeyValue((branch, hitCount) -> {
+            counter.increment(branch, hitCount);
+            totalHitCount += hitCount;
+            sumCLogC += cLogC(hitCount);
+            sumCSquared += (double) hitCount * hitCount;
+        });
     }
 
     /**
@@ -42,42 +50,48 @@ public class BranchHitCounter {
      * @param runCoverage the coverage of the current input
      */
     public void incrementBranchCounts(ICoverage runCoverage) {
-        runCoverage.getCovered().primitiveStream()
-                .forEach(counter::increment);
+        runCoverage.getCovered().forEach(this::incrementBranchCount);
+    }
+
+    private void incrementBranchCount(int branch) {
+        int hitCount = counter.increment(branch);
+        totalHitCount++;
+        sumCLogC += cLogC(hitCount) - cLogC(hitCount - 1);
+        sumCSquared += 2 * hitCount - 1; // c^2 - (c-1)^2 = 2c - 1
+    }
+
+    private static double cLogC(int c) {
+        return c <= 1 ? 0 : c * Math.log(c);
     }
 
     /**
-     * Returns the most recently computed behavioral diversity metrics, which are updated periodically
-     * @param force force updating stats
-     * @return the most recently computed behavioral diversity metrics
+     * Returns the behavioral diversity metrics of the current branch hit count distribution.
+     *
+     * <p>The metrics are maintained incrementally, so they are always up to date and
+     * cheap to query after every input.</p>
+     *
+     * @param force unused, kept for compatibility with periodic callers
+     * @return the current behavioral diversity metrics
      */
     public BehavioralDiversityMetrics getCachedMetrics(boolean force) {
-        // Update cached values once every while
-        Date now = new Date();
-        if (force || (now.getTime() - lastRefreshTime.getTime() >= STATS_REFRESH_TIME_PERIOD)) {
-            updateMetrics();
-            lastRefreshTime = now;
-        }
+        updateMetrics();
         return bedivMetrics;
     }
 
     /**
      * Updates the behavioral diversity metrics based on the current branch hit count distribution.
+     *
+     * <p>With p = c/N for hit counts c and total hit count N, the Shannon index
+     * sum(p * log p) equals sum(c * log c) / N - log N, and the Simpson index
+     * sum(p^2) equals sum(c^2) / N^2.</p>
      */
     public void updateMetrics() {
-        long totalBranchHitCount = counter.getNonZeroValues().sum();
-
         double h1 = 0; // = shannon entropy
         double h2 = 0;
-
-        IntIterator it = counter.getNonZeroValues().intIterator();
-        while (it.hasNext()) {
-            int hitcount = it.next();
-
-            double p = ((double) hitcount) / totalBranchHitCount;
-            h1 += p * Math.log(p);
-            h2 += Math.pow(p, 2);
-
+        if (totalHitCount > 0) {
+            double n = totalHitCount;
+            h1 = sumCLogC / n - Math.log(n);
+            h2 = sumCSquared / (n * n);
         }
         bedivMetrics.b0 = counter.getNonZeroSize(); //Math.pow(h_0, 1): Hill-Number of order 0
         bedivMetrics.b1 = Math.exp(-h1); // Hill-number of order 1 (= exp(shannon index))
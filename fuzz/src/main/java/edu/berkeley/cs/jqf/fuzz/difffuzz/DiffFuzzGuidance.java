@@ -2,7 +2,7 @@ package edu.berkeley.cs.jqf.fuzz.difffuzz;
 
 import edu.berkeley.cs.jqf.fuzz.guidance.Guidance;
 import edu.berkeley.cs.jqf.fuzz.guidance.GuidanceException;
-import edu.berkeley.cs.jqf.fuzz.junit.TrialRunner;
+import edu.berkeley.cs.jqf.fuzz.junit.TrialInvoker;
 import edu.berkeley.cs.jqf.instrument.InstrumentationException;
 import org.junit.runners.model.FrameworkMethod;
 
@@ -14,9 +14,7 @@ public interface DiffFuzzGuidance extends Guidance {
     /** common utility method for use in run */
     default Outcome getOutcome(Class<?> clazz, FrameworkMethod method, Object[] args) {
         try {
-            TrialRunner dtr = new TrialRunner(clazz, method, args);
-            dtr.run();
-            return new Outcome(dtr.getOutput(), null);
+            return new Outcome(TrialInvoker.get(clazz, method).invoke(args), null);
         } catch(InstrumentationException e) {
             throw new GuidanceException(e);
         } catch (GuidanceException e) {
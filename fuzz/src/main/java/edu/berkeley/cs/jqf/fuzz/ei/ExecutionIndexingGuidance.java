@@ -59,6 +59,7 @@ import edu.berkeley.cs.jqf.instrument.tracing.SingleSnoop;
 import edu.berkeley.cs.jqf.instrument.tracing.events.CallEvent;
 import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEvent;
 import janala.instrument.FastCoverageListener;
+import janala.instrument.MethodIdMap;
 import org.eclipse.collections.api.iterator.IntIterator;
 import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
 import org.junit.runners.model.FrameworkMethod;
@@ -89,11 +90,14 @@ public class ExecutionIndexingGuidance extends ZestGuidance {
     /** The entry point to the test method we are fuzzing. */
     protected String entryPoint;
 
+    /** The key of the entry point's class and method name in the {@link MethodIdMap}. */
+    protected int entryPointKey;
+
     /** Whether the the entry point has been encountered in the current run. */
     protected boolean testEntered;
 
-    /** Maps a hash code of coverage bits to an index in savedInputs queue. */
-    protected Map<Integer, Integer> coverageHashToSavedInputIdx = new HashMap<>();
+    /** Maps the path fingerprint of a run to an index in savedInputs queue. */
+    protected Map<Long, Integer> coverageHashToSavedInputIdx = new HashMap<>();
 
     /** Mean number of mutations to perform in each round. */
     protected final double MEAN_MUTATION_COUNT = 8.0;
@@ -251,8 +255,8 @@ public class ExecutionIndexingGuidance extends ZestGuidance {
 
         // Was this a good input?
         if (result == Result.SUCCESS) {
-            // Get hash for the current run's coverage
-            int coverageHash = runCoverage.hashCode();
+            // Get the fingerprint of the current run's coverage
+            long coverageHash = runCoverage.getPathFingerprint();
             // Was this saved?
             if (savedInputs.size() > numSavedInputsBefore) {
                 // If yes, map the hash to the last saved input index
@@ -295,7 +299,10 @@ public class ExecutionIndexingGuidance extends ZestGuidance {
                         //currentInput.coverage = runCoverage.copy();
                         currentInput.nonZeroCoverage = runCoverage.getNonZeroCount();
                         currentInput.offspring = 0;
-                        savedInputs.get(currentParentInputIdx).offspring += 1;
+                        // Only mutants are offspring; seeds, fresh inputs and trimming candidates have no parent
+                        if (currentParentInput != null) {
+                            currentParentInput.offspring += 1;
+                        }
 
                         // Finally, overwrite the saved input file on disc
                         try {
@@ -314,6 +321,12 @@ public class ExecutionIndexingGuidance extends ZestGuidance {
     }
 
 
+    @Override
+    protected Input<?> restoreSavedInput(File saveFile) {
+        // Execution-indexed inputs cannot be recreated from the saved bytes alone
+        throw new GuidanceException(getClass().getSimpleName() + " does not support resuming a campaign");
+    }
+
     /** Saves an interesting input to the queue. */
     @Override
     protected void saveCurrentInput(IntHashSet responsibilities, String why) throws IOException {
@@ -362,6 +375,8 @@ public class ExecutionIndexingGuidance extends ZestGuidance {
         appThread = thread;
         entryPoint = SingleSnoop.entryPoints.get(thread).replace('.', '/');
         assert entryPoint != null : ExecutionIndexingGuidance.class + " must be able to determine an entry point";
+        int separator = entryPoint.indexOf('#');
+        entryPointKey = MethodIdMap.instance.getNameKey(entryPoint.substring(0, separator), entryPoint.substring(separator + 1));
 
         return this::handleEvent;
 
@@ -380,7 +395,7 @@ public class ExecutionIndexingGuidance extends ZestGuidance {
             // Check if this event enters the test method
             if (e instanceof CallEvent) {
                 CallEvent callEvent = (CallEvent) e;
-                if (callEvent.getInvokedMethodName().startsWith(entryPoint)) {
+                if (MethodIdMap.instance.getNameKey(callEvent.getInvokedMethod()) == entryPointKey) {
                     testEntered = true;
                 }
             }
@@ -0,0 +1,114 @@
+package edu.berkeley.cs.jqf.fuzz.ei;
+
+import edu.berkeley.cs.jqf.fuzz.util.GrowableByteArray;
+
+/**
+ * Proposes smaller variants of the values of a linear input.
+ *
+ * <p>Starting with chunks of 1/16th of the input, the trimmer first tries
+ * to remove each chunk and then to zero it (zeroed size or choice bytes
+ * often make generators request fewer bytes), before halving the chunk
+ * size, down to 1/1024th of the input. The caller executes each candidate
+ * and reports whether it preserved the behavior of the original input
+ * via {@link #offer(GrowableByteArray)} or {@link #reject()}.</p>
+ */
+public class InputTrimmer {
+
+    private static final int START_STEPS = 16;
+    private static final int END_STEPS = 1024;
+
+    private GrowableByteArray values;
+    private final int minChunkSize;
+    private int chunkSize;
+    private int position = 0;
+    private boolean zeroing = false;
+
+    /**
+     * Creates a trimmer.
+     *
+     * @param values the values of the input to trim; these are not modified
+     */
+    public InputTrimmer(GrowableByteArray values) {
+        this.values = values;
+        this.chunkSize = Math.max(1, values.size() / START_STEPS);
+        this.minChunkSize = Math.max(1, values.size() / END_STEPS);
+    }
+
+    /**
+     * Returns the values of the smallest variant accepted so far.
+     *
+     * @return the trimmed values
+     */
+    public GrowableByteArray getValues() {
+        return values;
+    }
+
+    /**
+     * Returns the next variant to try.
+     *
+     * @return the values of the next candidate, or {@code null} if trimming is complete
+     */
+    public GrowableByteArray nextCandidate() {
+        while (true) {
+            if (position >= values.size()) {
+                if (!zeroing) {
+                    zeroing = true;
+                } else if (chunkSize / 2 >= minChunkSize) {
+                    zeroing = false;
+                    chunkSize /= 2;
+                } else {
+                    return null;
+                }
+                position = 0;
+            }
+
+            int end = Math.min(position + chunkSize, values.size());
+            if (!zeroing) {
+                // Inputs must not become empty
+                if (end - position < values.size()) {
+                    GrowableByteArray candidate = new GrowableByteArray(values);
+                    candidate.removeRange(position, end);
+                    return candidate;
+                }
+            } else {
+                for (int i = position; i < end; i++) {
+                    if (values.get(i) != 0) {
+                        GrowableByteArray candidate = new GrowableByteArray(values);
+                        for (int j = position; j < end; j++) {
+                            candidate.set(j, 0);
+                        }
+                        return candidate;
+                    }
+                }
+            }
+            position += chunkSize;
+        }
+    }
+
+    /**
+     * Reports that the last candidate preserved the behavior of the input.
+     *
+     * @param trimmed the values actually used when executing the candidate
+     * @return whether the trimmed values were accepted, i.e. are an improvement
+     */
+    public boolean offer(GrowableByteArray trimmed) {
+        boolean improved = zeroing ? trimmed.size() <= values.size() : trimmed.size() < values.size();
+        if (!improved) {
+            reject();
+            return false;
+        }
+        values = trimmed;
+        if (zeroing) {
+            // After a removal, the following bytes move to this position, so only advance after zeroing
+            position += chunkSize;
+        }
+        return true;
+    }
+
+    /**
+     * Reports that the last candidate did not preserve the behavior of the input.
+     */
+    public void reject() {
+        position += chunkSize;
+    }
+}
@@ -98,6 +98,14 @@ public class ZestCLI implements Runnable{
             description = "Enable fast non-colliding instrumentation (default: false)")
     private boolean useFastNonCollidingInstrumentation = false;
 
+    @Option(names = {"--denseCoverage"},
+            description = "Store fast coverage in dense arrays indexed by probe id (requires --fastInstrumentation, default: false)")
+    private boolean useDenseCoverageCounter = false;
+
+    @Option(names = {"--preinstrument"},
+            description = "Instrument the test's package on this many threads before fuzzing (default: 0, instrument on load)")
+    private int preinstrumentThreads = 0;
+
     @Option(names = {"--trackSemanticCoverage"},
             description = "Collect coverage and behavioral diversity of semantic analysis classes (default: false)")
     private boolean trackSemanticCoverage = false;
@@ -162,6 +170,14 @@ public class ZestCLI implements Runnable{
             System.setProperty("useFastNonCollidingCoverageInstrumentation", String.valueOf(true));
         }
 
+        if (this.useDenseCoverageCounter) {
+            if (!this.useFastNonCollidingInstrumentation) {
+                throw new RuntimeException(
+                        "Dense coverage can only be used with fast instrumentation, enable with --fastInstrumentation");
+            }
+            System.setProperty("useDenseCoverageCounter", String.valueOf(true));
+        }
+
         if (this.trackSemanticCoverage) {
             if (!this.useFastNonCollidingInstrumentation) {
                 throw new RuntimeException(
@@ -180,9 +196,13 @@ public class ZestCLI implements Runnable{
 
 
         try {
-            ClassLoader loader = new InstrumentingClassLoader(
+            InstrumentingClassLoader loader = new InstrumentingClassLoader(
                     this.testPackageName.split(File.pathSeparator),
                     ZestCLI.class.getClassLoader());
+            if (preinstrumentThreads > 0) {
+                loader.preinstrument(preinstrumentThreads,
+                        testClassName.substring(0, Math.max(testClassName.lastIndexOf('.'), 0)));
+            }
 
             // Load the guidance
             String title = this.testClassName+"#"+this.testMethodName;
@@ -30,16 +30,13 @@
 package edu.berkeley.cs.jqf.fuzz.ei;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.Console;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PrintWriter;
 import java.nio.file.Files;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -52,6 +49,8 @@ import java.util.Deque;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Properties;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -62,24 +61,39 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.eclipsecollections.EclipseCollectionsModule;
 import de.hub.se.jqf.bedivfuzz.util.BehavioralDiversityMetrics;
 import de.hub.se.jqf.bedivfuzz.util.BranchHitCounter;
+import edu.berkeley.cs.jqf.fuzz.ei.schedule.ParentScheduler;
 import edu.berkeley.cs.jqf.fuzz.guidance.Guidance;
 import edu.berkeley.cs.jqf.fuzz.guidance.GuidanceException;
 import edu.berkeley.cs.jqf.fuzz.guidance.Result;
 import edu.berkeley.cs.jqf.fuzz.guidance.TimeoutException;
+import edu.berkeley.cs.jqf.fuzz.util.AsyncFileWriter;
+import edu.berkeley.cs.jqf.fuzz.util.CampaignStore;
 import edu.berkeley.cs.jqf.fuzz.util.Coverage;
+import edu.berkeley.cs.jqf.fuzz.util.CoverageDelta;
 import edu.berkeley.cs.jqf.fuzz.util.CoverageFactory;
-import edu.berkeley.cs.jqf.fuzz.util.FastNonCollidingCoverage;
+import edu.berkeley.cs.jqf.fuzz.util.DenseNonCollidingCoverage;
+import edu.berkeley.cs.jqf.fuzz.util.GrowableByteArray;
 import edu.berkeley.cs.jqf.fuzz.util.ICoverage;
+import edu.berkeley.cs.jqf.fuzz.util.InlineCoverage;
 import edu.berkeley.cs.jqf.fuzz.util.IOUtils;
+import edu.berkeley.cs.jqf.fuzz.util.TrialWatchdog;
 import edu.berkeley.cs.jqf.instrument.tracing.FastCoverageSnoop;
 import edu.berkeley.cs.jqf.instrument.tracing.FastSemanticCoverageSnoop;
+import edu.berkeley.cs.jqf.instrument.tracing.events.BranchEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.CallEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.PrimitiveTraceEventVisitor;
 import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEvent;
 import janala.instrument.FastCoverageListener;
 import janala.instrument.ProbeCounter;
+import janala.instrument.ProbeRemoval;
+import janala.logger.inst.MemberRef;
 import org.eclipse.collections.api.iterator.IntIterator;
 import org.eclipse.collections.api.list.primitive.IntList;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
 import org.eclipse.collections.impl.map.mutable.primitive.IntObjectHashMap;
+import org.eclipse.collections.impl.map.mutable.primitive.LongObjectHashMap;
 import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
 
 import static java.lang.Math.ceil;
 import static java.lang.Math.log;
@@ -90,7 +104,7 @@ import static java.lang.Math.log;
  *
  * @author Rohan Padhye
  */
-public class ZestGuidance implements Guidance {
+public class ZestGuidance implements Guidance, Closeable {
 
     /** A pseudo-random number generator for generating fresh values. */
     protected Random random;
@@ -145,6 +159,15 @@ public class ZestGuidance implements Guidance {
     /** Number of mutated inputs generated from currentInput. */
     protected int numChildrenGeneratedForCurrentParentInput = 0;
 
+    /** The parent of currentInput, or null if currentInput is a seed or fresh input. */
+    protected Input<?> currentParentInput;
+
+    /** Chooses parent inputs and their number of children. */
+    protected ParentScheduler parentScheduler = ParentScheduler.forName(System.getProperty("jqf.ei.SCHEDULE"));
+
+    /** Number of parents selected in the current cycle. */
+    protected int numParentsSelectedInCycle = 0;
+
     /** Number of cycles completed (i.e. how many times we've reset currentParentInputIdx to 0. */
     protected int cyclesCompleted = 0;
 
@@ -179,11 +202,14 @@ public class ZestGuidance implements Guidance {
     /** Cumulative coverage of semantic analysis classes. */
     protected ICoverage semanticTotalCoverage = CoverageFactory.newInstance();
 
-    /** Set of hashes of all paths generated so far. */
-    protected IntHashSet uniquePaths = new IntHashSet();
+    /** How the coverage of the current run relates to total and valid coverage (reused across runs). */
+    protected CoverageDelta runCoverageDelta = new CoverageDelta();
 
-    /** Set of hashes of all valid paths generated so far. */
-    protected IntHashSet uniqueValidPaths = new IntHashSet();
+    /** Set of fingerprints of all paths generated so far. */
+    protected LongHashSet uniquePaths = new LongHashSet();
+
+    /** Set of fingerprints of all valid paths generated so far. */
+    protected LongHashSet uniqueValidPaths = new LongHashSet();
 
     /** Coverage diversity metrics for all unique paths. */
     protected BranchHitCounter branchHitCounter = new BranchHitCounter();
@@ -191,6 +217,9 @@ public class ZestGuidance implements Guidance {
     /** The maximum number of keys covered by any single input found so far. */
     protected int maxCoverage = 0;
 
+    /** The first saved input for each path exercised by a saved input. */
+    protected LongObjectHashMap<Input> savedInputsByPath = new LongObjectHashMap<>();
+
     /** A mapping of coverage keys to inputs that are responsible for them. */
     protected IntObjectHashMap<Input> responsibleInputs = new IntObjectHashMap<>(totalCoverage.size());
 
@@ -208,8 +237,8 @@ public class ZestGuidance implements Guidance {
     /** A system console, which is non-null only if STDOUT is a console. */
     protected final Console console = System.console();
 
-    /** Time since this guidance instance was created. */
-    protected final Date startTime = new Date();
+    /** Time since this guidance instance was created (or since the start of a resumed campaign). */
+    protected Date startTime = new Date();
 
     /** Time at last stats refresh. */
     protected Date lastRefreshTime = startTime;
@@ -259,6 +288,12 @@ public class ZestGuidance implements Guidance {
     /** Whether to store all generated inputs that produce unique paths. */
     protected final boolean LOG_UNIQUE_PATH_INPUTS = Boolean.getBoolean("jqf.ei.LOG_UNIQUE_PATH_INPUTS");
 
+    /** Whether to write each mutated input to the current-input file before it is executed. */
+    protected final boolean LOG_CURRENT_INPUT = !Boolean.getBoolean("jqf.ei.DISABLE_LOG_CURRENT_INPUT");
+
+    /** Writer for all output files, which writes on a background thread unless disabled. */
+    protected final AsyncFileWriter fileWriter = new AsyncFileWriter(!Boolean.getBoolean("jqf.ei.DISABLE_ASYNC_IO"));
+
     /** The current number of probes inserted through instrumentation. */
     protected final ProbeCounter probeCounter = ProbeCounter.instance;
 
@@ -275,12 +310,50 @@ public class ZestGuidance implements Guidance {
     /** Date when last run was started. */
     protected Date runStart;
 
+    /** Value of {@link System#nanoTime()} when the last run was started; 0 if the run was not timed. */
+    protected long runStartNanos;
+
+    /** Duration of the last run in nanoseconds; -1 if the run was not timed. */
+    protected long lastRunNanos = -1;
+
     /** Number of conditional jumps since last run was started. */
     protected long branchCount;
 
+    /** Pseudo-arm of traced calls, which are not branches (real arms are >= -1). */
+    private static final int CALL_ARM = Integer.MIN_VALUE;
+
+    /** Pseudo-arm of traced events that are neither branches nor calls. */
+    private static final int OTHER_ARM = Integer.MIN_VALUE + 1;
+
+    /** Whether a subclass overrides {@link #handleEvent}, so that traced events must not bypass it. */
+    private final boolean handleEventOverridden = overridesHandleEvent(getClass());
+
+    /** Enforces the timeout when fast-coverage probes bypass {@link #handleEvent}; null otherwise. */
+    protected TrialWatchdog runWatchdog;
+
     /** Whether to stop/exit once a crash is found. **/
     protected final boolean EXIT_ON_CRASH = Boolean.getBoolean("jqf.ei.EXIT_ON_CRASH");
 
+    // ------------- CAMPAIGN PERSISTENCE ------------
+
+    /** Whether to resume the campaign checkpointed in the output directory, if any. */
+    protected final boolean RESUME = Boolean.getBoolean("jqf.ei.RESUME");
+
+    /** Whether to checkpoint the campaign state, so that it can be resumed later. */
+    protected final boolean PERSIST_STATE = RESUME || Boolean.getBoolean("jqf.ei.PERSIST_STATE");
+
+    /** Minimum amount of time (in millis) between two checkpoints. */
+    protected final long CHECKPOINT_TIME_PERIOD = Long.getLong("jqf.ei.CHECKPOINT_INTERVAL", 60_000);
+
+    /** The store where the campaign state is checkpointed; null if not persisting state. */
+    protected CampaignStore campaignStore;
+
+    /** Time at last checkpoint. */
+    protected Date lastCheckpointTime;
+
+    /** Whether this guidance has resumed a checkpointed campaign. */
+    protected boolean resumed = false;
+
     // ------------- THREAD HANDLING ------------
 
     /** The first thread in the application, which usually runs the test method. */
@@ -318,6 +391,59 @@ public class ZestGuidance implements Guidance {
     /** Whether to steal responsibility from old inputs (this increases computation cost). */
     protected final boolean STEAL_RESPONSIBILITY = Boolean.getBoolean("jqf.ei.STEAL_RESPONSIBILITY");
 
+    // ------------- INPUT TRIMMING ------------
+
+    /** Whether to trim saved inputs by removing or zeroing chunks that do not affect their responsibilities. */
+    protected final boolean TRIM_SAVED_INPUTS = Boolean.getBoolean("jqf.ei.TRIM_SAVED_INPUTS");
+
+    /** The maximum fraction of executions spent on trimming saved inputs. */
+    protected final double TRIM_BUDGET = Double.parseDouble(System.getProperty("jqf.ei.TRIM_BUDGET", "0.05"));
+
+    /** Saved inputs waiting to be trimmed, in the order they were saved. */
+    protected final Deque<LinearInput> trimQueue = new ArrayDeque<>();
+
+    /** The saved input currently being trimmed; null if none. */
+    protected LinearInput trimTarget;
+
+    /** The trimmer proposing candidates for {@link #trimTarget}. */
+    protected InputTrimmer trimmer;
+
+    /** The trimming candidate whose execution is pending; null if none. */
+    protected LinearInput trimCandidate;
+
+    /** Number of executions spent on trimming. */
+    protected long numTrimTrials = 0;
+
+    /** Number of bytes removed from saved inputs by trimming. */
+    protected long numTrimmedBytes = 0;
+
+    // ------------- PROBE REMOVAL ------------
+
+    /** Whether to remove the probes of saturated edges, which the agent allows with {@code janala.probeRemoval}. */
+    protected final boolean REMOVE_SATURATED_PROBES = ProbeRemoval.isEnabled();
+
+    /** Minimum amount of time (in millis) between two removals of saturated probes. */
+    protected final long PROBE_REMOVAL_TIME_PERIOD = Long.getLong("jqf.ei.PROBE_REMOVAL_INTERVAL", 60_000);
+
+    /**
+     * The count buckets in which an edge must have been hit, in all and in valid runs, to be saturated.
+     * These are all buckets there are, since fast coverage lets counts of 128 and more share one
+     * bucket in this mode.
+     */
+    protected static final int SATURATED_BUCKETS = 0xFF;
+
+    /**
+     * Probe keys removed so far. Runs no longer report them, so inputs responsible
+     * for them keep these responsibilities: they can neither be stolen nor trimmed away.
+     */
+    protected final IntHashSet removedProbes = new IntHashSet();
+
+    /** Number of classes retransformed to remove probes. */
+    protected int numProbeRemovalRetransforms = 0;
+
+    /** Time at last removal of saturated probes. */
+    protected long lastProbeRemovalTime = System.currentTimeMillis();
+
     /**
      * Creates a new Zest guidance instance with optional duration,
      * optional trial limit, and possibly deterministic PRNG.
@@ -358,10 +484,19 @@ public class ZestGuidance implements Guidance {
         
         prepareOutputDirectory();
 
+        if (PERSIST_STATE) {
+            openCampaignStore();
+        }
+
         if(this.runCoverage instanceof FastCoverageListener){
             FastCoverageSnoop.setFastCoverageListener((FastCoverageListener) this.runCoverage);
         }
 
+        // Discard inline counts from before the campaign; every trial drains the counts it produced
+        if (CoverageFactory.isInlineCoverageEnabled()) {
+            InlineCoverage.clear();
+        }
+
         if(TRACK_SEMANTIC_COVERAGE) {
             FastSemanticCoverageSnoop.setCoverageListeners(
                     (FastCoverageListener) this.runCoverage,
@@ -378,6 +513,9 @@ public class ZestGuidance implements Guidance {
                 throw new IllegalArgumentException("Invalid timeout duration: " + timeout);
             }
         }
+        if (this.singleRunTimeoutMillis > 0 && this.runCoverage instanceof FastCoverageListener) {
+            this.runWatchdog = new TrialWatchdog(this.singleRunTimeoutMillis);
+        }
     }
 
     /**
@@ -396,7 +534,8 @@ public class ZestGuidance implements Guidance {
      */
     public ZestGuidance(String testName, Duration duration, Long trials, File outputDirectory, File[] seedInputFiles, Random sourceOfRandomness) throws IOException {
         this(testName, duration, trials, outputDirectory, sourceOfRandomness);
-        if (seedInputFiles != null) {
+        // Seeds of a resumed campaign have already been run
+        if (seedInputFiles != null && !resumed) {
             for (File seedInputFile : seedInputFiles) {
                 seedInputs.add(new SeedInput(seedInputFile));
             }
@@ -499,11 +638,18 @@ public class ZestGuidance implements Guidance {
             this.MEASURE_BEHAVIORAL_DIVERSITY = true; // Make sure we are counting hit counts
             this.mapper = new ObjectMapper().registerModule(new EclipseCollectionsModule());
             this.branchHitCountsDirectory = IOUtils.createDirectory(outputDirectory, "hitcounts");
-            for (File file : branchHitCountsDirectory.listFiles()) {
-                file.delete();
+            if (!isResuming()) {
+                for (File file : branchHitCountsDirectory.listFiles()) {
+                    file.delete();
+                }
             }
         }
 
+        // Keep the results of a campaign that is resumed
+        if (isResuming()) {
+            return;
+        }
+
         // Delete everything that we may have created in a previous run.
         // Trying to stay away from recursive delete of parent output directory in case there was a
         // typo and that was not a directory we wanted to nuke.
@@ -534,6 +680,155 @@ public class ZestGuidance implements Guidance {
 
     }
 
+    /** Returns whether there is a checkpointed campaign to resume. */
+    private boolean isResuming() {
+        return RESUME && new File(new File(outputDirectory, "state"), CampaignStore.STATE_FILE).exists();
+    }
+
+    private void openCampaignStore() throws IOException {
+        if (!LOG_SAVED_INPUTS) {
+            throw new GuidanceException("Persisting the campaign state requires logging saved inputs");
+        }
+        this.campaignStore = new CampaignStore(new File(outputDirectory, "state"));
+        this.lastCheckpointTime = new Date();
+        Properties state = RESUME ? campaignStore.load() : null;
+        if (state != null) {
+            restoreCampaign(state);
+        } else {
+            campaignStore.reset();
+        }
+    }
+
+    /**
+     * Restores the state of a checkpointed campaign.
+     *
+     * <p>Saved inputs are reloaded from the corpus directory and take over
+     * the responsibilities they had when they were saved, in the same order,
+     * so none of them needs to be executed again.</p>
+     *
+     * @param state the scalar state of the last checkpoint
+     * @throws IOException if the checkpoint or the corpus could not be read
+     */
+    protected void restoreCampaign(Properties state) throws IOException {
+        for (String record : campaignStore.readRecords()) {
+            String[] fields = record.split(" ");
+            if (fields[0].equals("failure")) {
+                uniqueFailures.add(fields[1]);
+                continue;
+            }
+
+            // input <id> <nonZeroCoverage> <file> <responsibilities>
+            Input<?> input = restoreSavedInput(new File(savedCorpusDirectory, fields[3]));
+            input.id = Integer.parseInt(fields[1]);
+            input.nonZeroCoverage = Integer.parseInt(fields[2]);
+            input.saveFile = new File(savedCorpusDirectory, fields[3]);
+            input.offspring = 0;
+            IntHashSet responsibilities = new IntHashSet();
+            if (!fields[4].equals("-")) {
+                for (String b : fields[4].split(",")) {
+                    responsibilities.add(Integer.parseInt(b));
+                }
+            }
+            savedInputs.add(input);
+            assumeResponsibilities(input, responsibilities);
+        }
+
+        campaignStore.readCoverage("total.cov", totalCoverage);
+        campaignStore.readCoverage("valid.cov", validCoverage);
+        campaignStore.readCoverage("semantic.cov", semanticTotalCoverage);
+        branchHitCounter = new BranchHitCounter(campaignStore.readCounts("hits.cnt"));
+        uniquePaths = campaignStore.readFingerprints("paths.fp");
+        uniqueValidPaths = campaignStore.readFingerprints("valid-paths.fp");
+
+        numTrials = Long.parseLong(state.getProperty("numTrials"));
+        numValid = Long.parseLong(state.getProperty("numValid"));
+        numSavedInputs = Integer.parseInt(state.getProperty("numSavedInputs"));
+        cyclesCompleted = Integer.parseInt(state.getProperty("cyclesCompleted"));
+        numFavoredLastCycle = Integer.parseInt(state.getProperty("numFavoredLastCycle"));
+        currentParentInputIdx = Integer.parseInt(state.getProperty("currentParentInputIdx"));
+        numParentsSelectedInCycle = Integer.parseInt(state.getProperty("numParentsSelectedInCycle", "0"));
+        numChildrenGeneratedForCurrentParentInput = Integer.parseInt(state.getProperty("numChildrenGeneratedForCurrentParentInput"));
+        maxCoverage = Integer.parseInt(state.getProperty("maxCoverage"));
+        branchHitCountsFileIdx = Integer.parseInt(state.getProperty("branchHitCountsFileIdx"));
+
+        // Continue the clock of the campaign, so that time limits and plot data span all sessions
+        long elapsedMilliseconds = Long.parseLong(state.getProperty("elapsedMillis"));
+        startTime = new Date(System.currentTimeMillis() - elapsedMilliseconds);
+        lastRefreshTime = new Date();
+        lastNumTrials = numTrials;
+
+        resumed = true;
+        infoLog("Resumed campaign with %d saved inputs after %d trials", savedInputs.size(), numTrials);
+    }
+
+    /**
+     * Recreates a saved input from its file in the corpus when resuming a campaign.
+     *
+     * @param saveFile the file the input was saved to
+     * @return the input to add to the queue
+     * @throws IOException if the file could not be read
+     */
+    protected Input<?> restoreSavedInput(File saveFile) throws IOException {
+        LinearInput input = new LinearInput();
+        for (byte b : Files.readAllBytes(saveFile.toPath())) {
+            input.values.add(b & 0xFF);
+        }
+        input.desc = "resumed";
+        return input;
+    }
+
+    /**
+     * Writes a checkpoint of the campaign state.
+     *
+     * <p>All pending output is flushed first, so that the checkpoint never
+     * refers to saved inputs that are not on disk.</p>
+     *
+     * @throws IOException if the checkpoint could not be written
+     */
+    protected void checkpoint() throws IOException {
+        fileWriter.flush();
+
+        campaignStore.writeCoverage("total.cov", totalCoverage);
+        campaignStore.writeCoverage("valid.cov", validCoverage);
+        campaignStore.writeCoverage("semantic.cov", semanticTotalCoverage);
+        campaignStore.writeCounts("hits.cnt", branchHitCounter.getHitCounts());
+        campaignStore.writeFingerprints("paths.fp", uniquePaths);
+        campaignStore.writeFingerprints("valid-paths.fp", uniqueValidPaths);
+
+        Properties state = new Properties();
+        state.setProperty("numTrials", Long.toString(numTrials));
+        state.setProperty("numValid", Long.toString(numValid));
+        state.setProperty("numSavedInputs", Integer.toString(numSavedInputs));
+        state.setProperty("cyclesCompleted", Integer.toString(cyclesCompleted));
+        state.setProperty("numFavoredLastCycle", Integer.toString(numFavoredLastCycle));
+        state.setProperty("currentParentInputIdx", Integer.toString(currentParentInputIdx));
+        state.setProperty("numParentsSelectedInCycle", Integer.toString(numParentsSelectedInCycle));
+        state.setProperty("numChildrenGeneratedForCurrentParentInput", Integer.toString(numChildrenGeneratedForCurrentParentInput));
+        state.setProperty("maxCoverage", Integer.toString(maxCoverage));
+        state.setProperty("branchHitCountsFileIdx", Integer.toString(branchHitCountsFileIdx));
+        state.setProperty("elapsedMillis", Long.toString(System.currentTimeMillis() - startTime.getTime()));
+        campaignStore.commit(state);
+        lastCheckpointTime = new Date();
+    }
+
+    /* Writes a checkpoint if the checkpoint period has passed. */
+    private void checkpointPeriodically() {
+        if (campaignStore != null &&
+                System.currentTimeMillis() - lastCheckpointTime.getTime() >= CHECKPOINT_TIME_PERIOD) {
+            GuidanceException.wrap(this::checkpoint);
+        }
+    }
+
+    private void closeCampaignStore() {
+        if (campaignStore != null) {
+            GuidanceException.wrap(() -> {
+                checkpoint();
+                campaignStore.close();
+            });
+            campaignStore = null;
+        }
+    }
+
     protected String getStatNames() {
         return "# unix_time, cycles_done, cur_path, paths_total, pending_total, " +
                 "pending_favs, map_size, unique_crashes, unique_hangs, max_depth, execs_per_sec, " +
@@ -547,11 +842,7 @@ public class ZestGuidance implements Guidance {
 
     /* Writes a line of text to a given log file. */
     protected void appendLineToFile(File file, String line) throws GuidanceException {
-        try (PrintWriter out = new PrintWriter(new FileWriter(file, true))) {
-            out.println(line);
-        } catch (IOException e) {
-            throw new GuidanceException(e);
-        }
+        fileWriter.appendLine(file, line);
     }
 
     @Override
@@ -619,7 +910,7 @@ public class ZestGuidance implements Guidance {
             currentParentInputDesc = currentParentInputIdx + " ";
             currentParentInputDesc += currentParentInput.isFavored() ? "(favored)" : "(not favored)";
             currentParentInputDesc += " {" + numChildrenGeneratedForCurrentParentInput +
-                    "/" + getTargetChildrenForParent(currentParentInput) + " mutations}";
+                    "/" + getTargetChildren(currentParentInput) + " mutations}";
         }
 
         int nonZeroCount = totalCoverage.getNonZeroCount();
@@ -627,7 +918,7 @@ public class ZestGuidance implements Guidance {
         double nonZeroFraction;
         double nonZeroValidFraction;
         int numTotalProbes = probeCounter.getNumTotalProbes();
-        if (this.runCoverage instanceof FastNonCollidingCoverage) {
+        if (this.runCoverage instanceof FastCoverageListener) {
             nonZeroFraction = numTotalProbes > 0 ? nonZeroCount * 100.0 / numTotalProbes : 0;
             nonZeroValidFraction = numTotalProbes > 0 ? nonZeroValidCount * 100.0 / numTotalProbes : 0;
         } else {
@@ -651,7 +942,7 @@ public class ZestGuidance implements Guidance {
                 }
 
                 String instrumentationType = "Janala";
-                if (this.runCoverage instanceof FastNonCollidingCoverage) {
+                if (this.runCoverage instanceof FastCoverageListener) {
                     instrumentationType = "Fast";
                 }
                 console.printf("Instrumentation:      %s\n", instrumentationType);
@@ -665,6 +956,14 @@ public class ZestGuidance implements Guidance {
                 console.printf("Unique failures:      %,d\n", uniqueFailures.size());
                 console.printf("Queue size:           %,d (%,d favored last cycle)\n", savedInputs.size(), numFavoredLastCycle);
                 console.printf("Current parent input: %s\n", currentParentInputDesc);
+                if (TRIM_SAVED_INPUTS) {
+                    console.printf("Trimmed bytes:        %,d (%,d execs, %,d inputs pending)\n",
+                            numTrimmedBytes, numTrimTrials, trimQueue.size() + (trimTarget != null ? 1 : 0));
+                }
+                if (REMOVE_SATURATED_PROBES) {
+                    console.printf("Removed probes:       %,d (%,d class retransforms)\n",
+                            removedProbes.size(), numProbeRemovalRetransforms);
+                }
                 console.printf("Execution speed:      %,d/sec now | %,d/sec overall\n", intervalExecsPerSec, execsPerSec);
                 console.printf("\nCoverage:\n");
                 console.printf("  Total coverage:     %,d branches (%.2f%% of map)\n", nonZeroCount, nonZeroFraction);
@@ -728,8 +1027,8 @@ public class ZestGuidance implements Guidance {
 
     /** Updates the branch hit count file. */
     protected void writeBranchHitCountFile(File saveFile) throws GuidanceException{
-        try (BufferedOutputStream out = new BufferedOutputStream(Files.newOutputStream(saveFile.toPath()))) {
-            out.write(mapper.writeValueAsBytes(branchHitCounter.getHitCounts()));
+        try {
+            fileWriter.write(saveFile, mapper.writeValueAsBytes(branchHitCounter.getHitCounts()));
         } catch (IOException e) {
             throw new GuidanceException(e);
         }
@@ -737,14 +1036,9 @@ public class ZestGuidance implements Guidance {
 
     /** Updates the data in the coverage file */
     protected void updateCoverageFile() {
-        try {
-            PrintWriter pw = new PrintWriter(coverageFile);
-            pw.println(getTotalCoverage().toString());
-            pw.println("Hash code: " + getTotalCoverage().hashCode());
-            pw.close();
-        } catch (FileNotFoundException ignore) {
-            throw new GuidanceException(ignore);
-        }
+        String lineSeparator = System.lineSeparator();
+        fileWriter.write(coverageFile, getTotalCoverage().toString() + lineSeparator +
+                "Hash code: " + getTotalCoverage().hashCode() + lineSeparator);
     }
 
     /* Returns the banner to be displayed on the status screen */
@@ -779,6 +1073,50 @@ public class ZestGuidance implements Guidance {
         return target;
     }
 
+    /**
+     * Returns the number of children to produce from a parent input, as
+     * determined by the parent scheduler.
+     *
+     * @param parentInput a saved input
+     * @return the number of children to produce from {@code parentInput}
+     */
+    protected int getTargetChildren(Input parentInput) {
+        return parentScheduler.getTargetChildren(parentInput, getTargetChildrenForParent(parentInput));
+    }
+
+    /**
+     * Returns the saved input to mutate next.
+     *
+     * <p>A new parent is selected once the current one has produced its target number of children.</p>
+     *
+     * @return the parent of the next input
+     */
+    protected Input<?> nextParentInput() {
+        Input<?> parent = savedInputs.get(currentParentInputIdx);
+        if (numChildrenGeneratedForCurrentParentInput >= getTargetChildren(parent)) {
+            selectNextParentInput();
+            numChildrenGeneratedForCurrentParentInput = 0;
+            parent = savedInputs.get(currentParentInputIdx);
+            parent.timesSelected++;
+        }
+        numChildrenGeneratedForCurrentParentInput++;
+        return parent;
+    }
+
+    /**
+     * Selects the next parent input (i.e., updates {@link #currentParentInputIdx})
+     * and completes a cycle once as many parents have been selected as there are saved inputs.
+     */
+    protected void selectNextParentInput() {
+        currentParentInputIdx = parentScheduler.selectParent(savedInputs, currentParentInputIdx, random);
+
+        // Count cycles (for round-robin, this is when the index wraps around to 0)
+        if (++numParentsSelectedInCycle >= savedInputs.size()) {
+            numParentsSelectedInCycle = 0;
+            completeCycle();
+        }
+    }
+
     /** Handles the end of fuzzing cycle (i.e., having gone through the entire queue) */
     protected void completeCycle() {
         // Increment cycle count
@@ -844,6 +1182,19 @@ public class ZestGuidance implements Guidance {
                 // infoLog("read(%d) = %d", bytesRead, ret);
                 return ret;
             }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                assert currentInput instanceof LinearInput : "ZestGuidance should only mutate LinearInput(s)";
+
+                // Bulk variant of read(), used by StreamBackedRandom for multi-byte values
+                LinearInput linearInput = (LinearInput) currentInput;
+                int ret = linearInput.read(bytesRead, b, off, len, random);
+                if (ret > 0) {
+                    bytesRead += ret;
+                }
+                return ret;
+            }
         };
     }
 
@@ -854,59 +1205,61 @@ public class ZestGuidance implements Guidance {
             runCoverage.clear();
             if (TRACK_SEMANTIC_COVERAGE) semanticRunCoverage.clear();
 
-            // Choose an input to execute based on state of queues
-            if (!seedInputs.isEmpty()) {
-                // First, if we have some specific seeds, use those
-                currentInput = seedInputs.removeFirst();
-
-                // Hopefully, the seeds will lead to new coverage and be added to saved inputs
+            chooseNextInput();
+        });
 
-            } else if (savedInputs.isEmpty()) {
-                // If no seeds given try to start with something random
-                if (!blind && numTrials > 100_000) {
-                    throw new GuidanceException("Too many trials without coverage; " +
-                            "likely all assumption violations");
-                }
+        return createParameterStream();
+    }
 
-                // Make fresh input using either list or maps
-                // infoLog("Spawning new input from thin air");
-                currentInput = createFreshInput();
-            } else {
-                // The number of children to produce is determined by how much of the coverage
-                // pool this parent input hits
-                Input currentParentInput = savedInputs.get(currentParentInputIdx);
-                int targetNumChildren = getTargetChildrenForParent(currentParentInput);
-                if (numChildrenGeneratedForCurrentParentInput >= targetNumChildren) {
-                    // Select the next saved input to fuzz
-                    currentParentInputIdx = (currentParentInputIdx + 1) % savedInputs.size();
-
-                    // Count cycles
-                    if (currentParentInputIdx == 0) {
-                        completeCycle();
-                    }
+    /**
+     * Chooses the input of the next run, from the seeds, trimming candidates or
+     * children of saved inputs, and starts timeout handling for the run.
+     * The chosen input is stored in {@link #currentInput}.
+     *
+     * @throws GuidanceException if too many trials did not produce any coverage
+     */
+    protected void chooseNextInput() throws GuidanceException {
+        // Choose an input to execute based on state of queues
+        currentParentInput = null;
+        if (!seedInputs.isEmpty()) {
+            // First, if we have some specific seeds, use those
+            currentInput = seedInputs.removeFirst();
+
+            // Hopefully, the seeds will lead to new coverage and be added to saved inputs
+
+        } else if (savedInputs.isEmpty()) {
+            // If no seeds given try to start with something random
+            if (!blind && numTrials > 100_000) {
+                throw new GuidanceException("Too many trials without coverage; " +
+                        "likely all assumption violations");
+            }
 
-                    numChildrenGeneratedForCurrentParentInput = 0;
-                }
-                Input parent = savedInputs.get(currentParentInputIdx);
+            // Make fresh input using either list or maps
+            // infoLog("Spawning new input from thin air");
+            currentInput = createFreshInput();
+        } else if ((currentInput = nextTrimCandidate()) != null) {
+            // Spend part of the budget on making a saved input smaller
+            startRunTimer();
+        } else {
+            // The parent scheduler determines the parent and how many children to produce from it
+            Input parent = nextParentInput();
+            currentParentInput = parent;
 
-                // Fuzz it to get a new input
-                // infoLog("Mutating input: %s", parent.desc);
-                currentInput = parent.fuzz(random);
-                numChildrenGeneratedForCurrentParentInput++;
+            // Fuzz it to get a new input
+            // infoLog("Mutating input: %s", parent.desc);
+            currentInput = parent.fuzz(random);
 
-                // Write it to disk for debugging
+            // Write it to disk for debugging
+            if (LOG_CURRENT_INPUT) {
                 try {
                     writeCurrentInputToFile(currentInputFile);
                 } catch (IOException ignore) {
                 }
-
-                // Start time-counting for timeout handling
-                this.runStart = new Date();
-                this.branchCount = 0;
             }
-        });
 
-        return createParameterStream();
+            // Start time-counting for timeout handling
+            startRunTimer();
+        }
     }
 
     @Override
@@ -915,6 +1268,7 @@ public class ZestGuidance implements Guidance {
         long elapsedMilliseconds = now.getTime() - startTime.getTime();
         if (EXIT_ON_CRASH && uniqueFailures.size() >= 1) {
             // exit
+            close();
             return false;
         }
         if(elapsedMilliseconds < maxDurationMillis
@@ -922,153 +1276,349 @@ public class ZestGuidance implements Guidance {
             return true;
         } else {
             displayStats(true);
+            // Make sure all results are on disk when fuzzing stops
+            close();
             return false;
         }
     }
 
+    /**
+     * Writes all pending results to disk and stops the background threads of
+     * this guidance. Called when the campaign ends, and by {@link
+     * edu.berkeley.cs.jqf.fuzz.junit.GuidedFuzzing} when fuzzing is aborted.
+     * Closing more than once has no further effect.
+     *
+     * @throws GuidanceException if pending results could not be written
+     */
+    @Override
+    public void close() throws GuidanceException {
+        closeCampaignStore();
+        fileWriter.close();
+        closeRunWatchdog();
+    }
+
     @Override
     public void handleResult(Result result, Throwable error) throws GuidanceException {
         conditionallySynchronize(multiThreaded, () -> {
             // Stop timeout handling
-            this.runStart = null;
+            stopRunTimer();
 
-            // Increment run count
-            this.numTrials++;
-
-            boolean valid = result == Result.SUCCESS;
+            // Inline probes only count into a shared array
+            if (CoverageFactory.isInlineCoverageEnabled()) {
+                InlineCoverage.drainInto(runCoverage);
+            }
 
-            if (valid) {
-                // Increment valid counter
-                numValid++;
+            // Fast coverage probes never reach generateCallBack(), so let the coverage map report extra threads
+            if (runCoverage instanceof DenseNonCollidingCoverage) {
+                DenseNonCollidingCoverage denseCoverage = (DenseNonCollidingCoverage) runCoverage;
+                denseCoverage.mergeForeignCounts();
+                multiThreaded |= denseCoverage.isMultiThreaded();
             }
 
-            if (result == Result.SUCCESS || (result == Result.INVALID && !SAVE_ONLY_VALID)) {
+            processResult(result, error);
+        });
+    }
 
-                // Compute a list of keys for which this input can assume responsibility.
-                // Newly covered branches are always included.
-                // Existing branches *may* be included, depending on the heuristics used.
-                // A valid input will steal responsibility from invalid inputs
-                IntHashSet responsibilities = computeResponsibilities(valid);
+    /**
+     * Updates the corpus, the total coverage and the statistics with the result of
+     * running {@link #currentInput}, whose coverage has been collected in {@link #runCoverage}.
+     *
+     * @param result the result of the run
+     * @param error  the error thrown by a failing run, or null
+     * @throws GuidanceException if the corpus could not be updated
+     */
+    protected void processResult(Result result, Throwable error) throws GuidanceException {
+        // Increment run count
+        this.numTrials++;
+
+        // Executions of trimming candidates are evaluated once the result was processed as usual
+        boolean trimTrial = trimCandidate != null && currentInput == trimCandidate;
+        int numSavedBefore = numSavedInputs;
+
+        // Record the run for the parent scheduler
+        if (currentParentInput != null) {
+            currentParentInput.childrenExecuted++;
+        }
+        Input<?> samePathInput = savedInputsByPath.get(runCoverage.getPathFingerprint());
+        if (samePathInput != null) {
+            samePathInput.pathHits++;
+        }
 
-                // Determine if this input should be saved
-                List<String> savingCriteriaSatisfied = checkSavingCriteriaSatisfied(result);
-                boolean toSave = savingCriteriaSatisfied.size() > 0;
+        boolean valid = result == Result.SUCCESS;
 
-                if (toSave) {
-                    String why = String.join(" ", savingCriteriaSatisfied);
+        if (valid) {
+            // Increment valid counter
+            numValid++;
+        }
 
-                    // Trim input (remove unused keys)
-                    currentInput.gc();
+        if (result == Result.SUCCESS || (result == Result.INVALID && !SAVE_ONLY_VALID)) {
 
-                    // It must still be non-empty
-                    assert (currentInput.size() > 0) : String.format("Empty input: %s", currentInput.desc);
+            // Classify the run's coverage and merge it into total (and valid) coverage
+            mergeRunCoverage(valid);
 
-                    // libFuzzerCompat stats are only displayed when they hit new coverage
-                    if (LIBFUZZER_COMPAT_OUTPUT) {
-                        displayStats(false);
-                    }
+            // Compute a list of keys for which this input can assume responsibility.
+            // Newly covered branches are always included.
+            // Existing branches *may* be included, depending on the heuristics used.
+            // A valid input will steal responsibility from invalid inputs
+            IntHashSet responsibilities = computeResponsibilities(valid);
+
+            // Determine if this input should be saved
+            List<String> savingCriteriaSatisfied = checkSavingCriteriaSatisfied(result);
+            boolean toSave = savingCriteriaSatisfied.size() > 0;
 
-                    infoLog("Saving new input (at run %d): " +
-                                    "input #%d " +
-                                    "of size %d; " +
-                                    "reason = %s",
-                            numTrials,
-                            savedInputs.size(),
-                            currentInput.size(),
-                            why);
-                    // Save input to queue and to disk
-                    final String reason = why;
-                    GuidanceException.wrap(() -> saveCurrentInput(responsibilities, reason));
-
-                    // Update coverage information
-                    updateCoverageFile();
+            if (toSave) {
+                String why = String.join(" ", savingCriteriaSatisfied);
+
+                // Trim input (remove unused keys)
+                currentInput.gc();
+
+                // It must still be non-empty
+                assert (currentInput.size() > 0) : String.format("Empty input: %s", currentInput.desc);
+
+                // libFuzzerCompat stats are only displayed when they hit new coverage
+                if (LIBFUZZER_COMPAT_OUTPUT) {
+                    displayStats(false);
+                }
+
+                infoLog("Saving new input (at run %d): " +
+                                "input #%d " +
+                                "of size %d; " +
+                                "reason = %s",
+                        numTrials,
+                        savedInputs.size(),
+                        currentInput.size(),
+                        why);
+                // Save input to queue and to disk
+                final String reason = why;
+                currentInput.valid = valid;
+                GuidanceException.wrap(() -> saveCurrentInput(responsibilities, reason));
+
+                // Schedule it for trimming (but do not trim trimming candidates twice)
+                if (TRIM_SAVED_INPUTS && !blind && !trimTrial && currentInput instanceof LinearInput) {
+                    trimQueue.add((LinearInput) currentInput);
                 }
-            } else if (result == Result.FAILURE || result == Result.TIMEOUT) {
-                Date now = new Date();
-                long elapsedMilliseconds = now.getTime() - startTime.getTime();
 
-                String msg = error.getMessage();
+                // Update coverage information
+                updateCoverageFile();
+            }
+        } else if (result == Result.FAILURE || result == Result.TIMEOUT) {
+            Date now = new Date();
+            long elapsedMilliseconds = now.getTime() - startTime.getTime();
+
+            String msg = error.getMessage();
 
-                // Get the root cause of the failure
-                Throwable rootCause = error;
-                while (rootCause.getCause() != null) {
-                    rootCause = rootCause.getCause();
+            // Get the root cause of the failure
+            Throwable rootCause = error;
+            while (rootCause.getCause() != null) {
+                rootCause = rootCause.getCause();
+            }
+
+            // Attempt to add this to the set of unique failures
+            String digest = failureDigest(rootCause.getStackTrace());
+            if (uniqueFailures.add(digest)) {
+                if (campaignStore != null) {
+                    campaignStore.appendRecord("failure " + digest);
                 }
 
-                // Attempt to add this to the set of unique failures
-                if (uniqueFailures.add(failureDigest(rootCause.getStackTrace()))) {
+                // Trim input (remove unused keys)
+                currentInput.gc();
+
+                // It must still be non-empty
+                assert (currentInput.size() > 0) : String.format("Empty input: %s", currentInput.desc);
 
-                    // Trim input (remove unused keys)
-                    currentInput.gc();
+                // Save crash to disk
+                int crashIdx = uniqueFailures.size() - 1;
+                String saveFileName = String.format("id_%06d", crashIdx);
+                File saveFile = new File(savedFailuresDirectory, saveFileName);
 
-                    // It must still be non-empty
-                    assert (currentInput.size() > 0) : String.format("Empty input: %s", currentInput.desc);
+                GuidanceException.wrap(() -> writeCurrentInputToFile(saveFile));
+                String how = currentInput.desc;
+                String why = result == Result.FAILURE ? "crash" : "hang";
+                infoLog("%d Found failure id_%06d: %s %s %s %s", elapsedMilliseconds, crashIdx, why, error.getClass(),(msg != null ? msg : "(no message)"), how);
 
-                    // Save crash to disk
-                    int crashIdx = uniqueFailures.size() - 1;
-                    String saveFileName = String.format("id_%06d", crashIdx);
-                    File saveFile = new File(savedFailuresDirectory, saveFileName);
 
-                    GuidanceException.wrap(() -> writeCurrentInputToFile(saveFile));
-                    String how = currentInput.desc;
-                    String why = result == Result.FAILURE ? "crash" : "hang";
-                    infoLog("%d Found failure id_%06d: %s %s %s %s", elapsedMilliseconds, crashIdx, why, error.getClass(),(msg != null ? msg : "(no message)"), how);
+                String stackTrace = Arrays.stream(rootCause.getStackTrace())
+                        .map(StackTraceElement::toString)
+                        .limit(5)
+                        .collect(Collectors.joining("-"));
 
+                int stackHash = stackTrace.hashCode();
 
-                    String stackTrace = Arrays.stream(rootCause.getStackTrace())
-                            .map(StackTraceElement::toString)
-                            .limit(5)
-                            .collect(Collectors.joining("-"));
+                // # ttd, exception_class, stack_hash, coverage_nonzero_hash, top5_stack_trace
+                String line = String.format("%d, %s, %d, %d, %s", elapsedMilliseconds, error.getClass(), stackHash, runCoverage.nonZeroHashCode(), stackTrace);
+                appendLineToFile(failureStatsFile, line);
 
-                    int stackHash = stackTrace.hashCode();
+                if (EXACT_CRASH_PATH != null && !EXACT_CRASH_PATH.equals("")) {
+                    File exactCrashFile = new File(EXACT_CRASH_PATH);
+                    GuidanceException.wrap(() -> writeCurrentInputToFile(exactCrashFile));
+                }
 
-                    // # ttd, exception_class, stack_hash, coverage_nonzero_hash, top5_stack_trace
-                    String line = String.format("%d, %s, %d, %d, %s", elapsedMilliseconds, error.getClass(), stackHash, runCoverage.nonZeroHashCode(), stackTrace);
-                    appendLineToFile(failureStatsFile, line);
+                // libFuzzerCompat stats are only displayed when they hit new coverage or crashes
+                if (LIBFUZZER_COMPAT_OUTPUT) {
+                    displayStats(false);
+                }
+            }
+        }
 
-                    if (EXACT_CRASH_PATH != null && !EXACT_CRASH_PATH.equals("")) {
-                        File exactCrashFile = new File(EXACT_CRASH_PATH);
-                        GuidanceException.wrap(() -> writeCurrentInputToFile(exactCrashFile));
-                    }
+        // displaying stats on every interval is only enabled for AFL-like stats screen
+        if (!LIBFUZZER_COMPAT_OUTPUT) {
+            displayStats(false);
+        }
 
-                    // libFuzzerCompat stats are only displayed when they hit new coverage or crashes
-                    if (LIBFUZZER_COMPAT_OUTPUT) {
-                        displayStats(false);
-                    }
+        // Save input unconditionally if such a setting is enabled
+        if (LOG_ALL_INPUTS && (SAVE_ONLY_VALID ? valid : true)) {
+            File logDirectory = new File(allInputsDirectory, result.toString().toLowerCase());
+            String saveFileName = String.format("id_%09d", numTrials);
+            File saveFile = new File(logDirectory, saveFileName);
+            GuidanceException.wrap(() -> writeCurrentInputToFile(saveFile));
+        }
+
+        if (trimTrial) {
+            completeTrimTrial(result, numSavedInputs > numSavedBefore);
+        }
+
+        checkpointPeriodically();
+        removeSaturatedProbesPeriodically();
+    }
+
+    /**
+     * Removes the probes of edges that have been hit in all count buckets, in all and
+     * in valid runs, if the removal period has passed. Such edges can no longer yield
+     * new coverage, but their probes would keep costing time on every execution.
+     */
+    private void removeSaturatedProbesPeriodically() {
+        if (!REMOVE_SATURATED_PROBES || System.currentTimeMillis() - lastProbeRemovalTime < PROBE_REMOVAL_TIME_PERIOD) {
+            return;
+        }
+        IntArrayList saturated = new IntArrayList();
+        IntIterator iter = totalCoverage.getCovered().intIterator();
+        while (iter.hasNext()) {
+            int key = iter.next();
+            if ((totalCoverage.getCounter().get(key) & SATURATED_BUCKETS) == SATURATED_BUCKETS
+                    && (validCoverage.getCounter().get(key) & SATURATED_BUCKETS) == SATURATED_BUCKETS
+                    && !removedProbes.contains(key)) {
+                saturated.add(key);
+            }
+        }
+        if (!saturated.isEmpty()) {
+            removedProbes.addAll(saturated);
+            numProbeRemovalRetransforms += ProbeRemoval.removeProbes(saturated.toArray());
+            infoLog("Removed %d saturated probes", saturated.size());
+
+            // Count the coverage of saved inputs in terms of the remaining probes, as for later runs
+            IntHashSet removed = new IntHashSet(saturated);
+            for (Input<?> input : savedInputs) {
+                if (input.coveredKeys != null) {
+                    int[] remaining = Arrays.stream(input.coveredKeys).filter(k -> !removed.contains(k)).toArray();
+                    input.nonZeroCoverage -= input.coveredKeys.length - remaining.length;
+                    input.coveredKeys = remaining;
                 }
             }
+        }
+        lastProbeRemovalTime = System.currentTimeMillis();
+    }
 
-            // displaying stats on every interval is only enabled for AFL-like stats screen
-            if (!LIBFUZZER_COMPAT_OUTPUT) {
-                displayStats(false);
+    /**
+     * Returns the next trimming candidate to execute, if trimming is enabled and within budget.
+     *
+     * @return a smaller variant of a saved input, or null if no trimming should be done now
+     */
+    protected LinearInput nextTrimCandidate() {
+        if (!TRIM_SAVED_INPUTS || trimCandidate != null || numTrimTrials >= TRIM_BUDGET * numTrials) {
+            return null;
+        }
+        while (true) {
+            if (trimmer == null) {
+                trimTarget = trimQueue.poll();
+                if (trimTarget == null) {
+                    return null;
+                }
+                trimmer = new InputTrimmer(trimTarget.values);
+            }
+            GrowableByteArray values = trimmer.nextCandidate();
+            if (values != null) {
+                trimCandidate = new LinearInput();
+                trimCandidate.values = values;
+                trimCandidate.desc = String.format("trim:%06d", trimTarget.id);
+                numTrimTrials++;
+                return trimCandidate;
             }
+            // Trimming of this input is complete
+            trimmer = null;
+            trimTarget = null;
+        }
+    }
 
-            // Save input unconditionally if such a setting is enabled
-            if (LOG_ALL_INPUTS && (SAVE_ONLY_VALID ? valid : true)) {
-                File logDirectory = new File(allInputsDirectory, result.toString().toLowerCase());
-                String saveFileName = String.format("id_%09d", numTrials);
-                File saveFile = new File(logDirectory, saveFileName);
-                GuidanceException.wrap(() -> writeCurrentInputToFile(saveFile));
+    /*
+     * Replaces the values of the trimming target by those of the executed candidate
+     * if the candidate preserved the target's validity and responsibilities.
+     */
+    private void completeTrimTrial(Result result, boolean saved) {
+        LinearInput candidate = trimCandidate;
+        trimCandidate = null;
+
+        // Inputs saved in their own right may take over responsibilities, so they cannot replace the target
+        boolean preserved = !saved && candidate.getRequested() > 0
+                && (result == Result.SUCCESS || (result == Result.INVALID && !trimTarget.valid))
+                && runCoverage.getNonZeroCount() >= trimTarget.nonZeroCoverage;
+        if (preserved) {
+            // Responsibilities for removed probes cannot be confirmed, so they rule out trimming
+            IntHashSet covered = new IntHashSet();
+            covered.addAll(runCoverage.getCovered());
+            preserved = covered.containsAll(trimTarget.responsibilities);
+        }
+        if (!preserved) {
+            trimmer.reject();
+            return;
+        }
+
+        candidate.gc();
+        int sizeBefore = trimTarget.size();
+        if (trimmer.offer(candidate.values)) {
+            replaceTrimmedValues(trimTarget, candidate);
+            numTrimmedBytes += sizeBefore - trimTarget.size();
+            savedInputsByPath.getIfAbsentPut(runCoverage.getPathFingerprint(), trimTarget);
+            if (trimTarget.saveFile != null) {
+                GuidanceException.wrap(() -> fileWriter.write(trimTarget.saveFile, trimTarget.values.toArray()));
             }
-        });
+        }
+    }
+
+    /**
+     * Replaces the values of a saved input by the values of a trimmed variant,
+     * which is the current input when this is called.
+     *
+     * <p>Subclasses that keep indexes into the values of saved inputs must
+     * update them here.</p>
+     *
+     * @param target  the saved input
+     * @param trimmed the trimmed variant, after garbage collection
+     */
+    protected void replaceTrimmedValues(LinearInput target, LinearInput trimmed) {
+        target.values = trimmed.values;
+        target.requested = trimmed.requested;
+    }
+
+    /**
+     * Classifies the coverage of the current run into {@link #runCoverageDelta}
+     * and merges it into the total coverage (and, for valid runs, the valid coverage).
+     *
+     * @param valid whether the current run was valid
+     */
+    protected void mergeRunCoverage(boolean valid) {
+        runCoverage.classifyAndMerge(totalCoverage, valid ? validCoverage : null, runCoverageDelta);
     }
 
     // Return a list of saving criteria that have been satisfied for a non-failure input
     protected List<String> checkSavingCriteriaSatisfied(Result result) {
-        // Coverage before
-        int nonZeroBefore = totalCoverage.getNonZeroCount();
-        int validNonZeroBefore = validCoverage.getNonZeroCount();
-
-        // Update total coverage
-        boolean coverageBitsUpdated = totalCoverage.updateBits(runCoverage);
+        // Total and valid coverage have already been updated by mergeRunCoverage()
+        boolean coverageBitsUpdated = runCoverageDelta.isChanged();
         if (TRACK_SEMANTIC_COVERAGE) semanticTotalCoverage.updateBits(semanticRunCoverage);
-        if (result == Result.SUCCESS) {
-            validCoverage.updateBits(runCoverage);
-        }
 
         // Update hit counts
         boolean checkUniquePath = COUNT_UNIQUE_PATHS || MEASURE_BEHAVIORAL_DIVERSITY || LOG_UNIQUE_PATH_INPUTS;
-        if (checkUniquePath && uniquePaths.add(runCoverage.hashCode())) {
+        long pathFingerprint = runCoverage.getPathFingerprint();
+        if (checkUniquePath && uniquePaths.add(pathFingerprint)) {
             if(MEASURE_BEHAVIORAL_DIVERSITY) {
                 if (TRACK_SEMANTIC_COVERAGE) {
                     branchHitCounter.incrementBranchCounts(semanticRunCoverage);
@@ -1084,7 +1634,7 @@ public class ZestGuidance implements Guidance {
             }
 
             if (result == Result.SUCCESS) {
-                uniqueValidPaths.add(runCoverage.hashCode());
+                uniqueValidPaths.add(pathFingerprint);
             }
         }
 
@@ -1093,7 +1643,6 @@ public class ZestGuidance implements Guidance {
         if (nonZeroAfter > maxCoverage) {
             maxCoverage = nonZeroAfter;
         }
-        int validNonZeroAfter = validCoverage.getNonZeroCount();
 
         // Possibly save input
         List<String> reasonsToSave = new ArrayList<>();
@@ -1104,12 +1653,12 @@ public class ZestGuidance implements Guidance {
         }
 
         // Save if new total coverage found
-        if (nonZeroAfter > nonZeroBefore) {
+        if (!runCoverageDelta.getNewCoverage().isEmpty()) {
             reasonsToSave.add("+cov");
         }
 
         // Save if new valid coverage is found
-        if (this.validityFuzzing && validNonZeroAfter > validNonZeroBefore) {
+        if (this.validityFuzzing && !runCoverageDelta.getNewValidCoverage().isEmpty()) {
             reasonsToSave.add("+valid");
         }
 
@@ -1122,14 +1671,14 @@ public class ZestGuidance implements Guidance {
         IntHashSet result = new IntHashSet();
 
         // This input is responsible for all new coverage
-        IntList newCoverage = runCoverage.computeNewCoverage(totalCoverage);
+        IntList newCoverage = runCoverageDelta.getNewCoverage();
         if (newCoverage.size() > 0) {
             result.addAll(newCoverage);
         }
 
         // If valid, this input is responsible for all new valid coverage
         if (valid) {
-            IntList newValidCoverage = runCoverage.computeNewCoverage(validCoverage);
+            IntList newValidCoverage = runCoverageDelta.getNewValidCoverage();
             if (newValidCoverage.size() > 0) {
                 result.addAll(newValidCoverage);
             }
@@ -1139,6 +1688,7 @@ public class ZestGuidance implements Guidance {
         if (STEAL_RESPONSIBILITY) {
             int currentNonZeroCoverage = runCoverage.getNonZeroCount();
             int currentInputSize = currentInput.size();
+            // Runs do not report removed probes, so responsibilities for them are never stolen
             IntHashSet covered = new IntHashSet();
             covered.addAll(runCoverage.getCovered());
 
@@ -1181,12 +1731,17 @@ public class ZestGuidance implements Guidance {
     }
 
     protected void writeCurrentInputToFile(File saveFile) throws IOException {
-        try (BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(saveFile))) {
-            for (Integer b : currentInput) {
-                assert (b >= 0 && b < 256);
-                out.write(b);
-            }
+        // Snapshot the input, as it may be mutated before the file is written
+        if (currentInput instanceof LinearInput) {
+            fileWriter.write(saveFile, ((LinearInput) currentInput).values.toArray());
+            return;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(currentInput.size());
+        for (Integer b : currentInput) {
+            assert (b >= 0 && b < 256);
+            out.write(b);
         }
+        fileWriter.write(saveFile, out.toByteArray());
 
     }
 
@@ -1220,13 +1775,35 @@ public class ZestGuidance implements Guidance {
         currentInput.saveFile = saveFile;
         //currentInput.coverage = runCoverage.copy();
         currentInput.nonZeroCoverage = runCoverage.getNonZeroCount();
+        if (REMOVE_SATURATED_PROBES) {
+            currentInput.coveredKeys = runCoverage.getCovered().toArray();
+        }
         currentInput.offspring = 0;
-        savedInputs.get(currentParentInputIdx).offspring += 1;
+        // Only mutants are offspring; seeds, fresh inputs and trimming candidates have no parent
+        if (currentParentInput != null) {
+            currentParentInput.offspring += 1;
+        }
+        currentInput.execNanos = lastRunNanos;
+        currentInput.pathHits = 1;
+        savedInputsByPath.getIfAbsentPut(runCoverage.getPathFingerprint(), currentInput);
+        parentScheduler.inputSaved(currentInput);
+
+        // Fourth, record the input so that a resumed campaign can replay its responsibilities
+        if (campaignStore != null) {
+            campaignStore.appendRecord(String.format("input %d %d %s %s", newInputIdx,
+                    currentInput.nonZeroCoverage, saveFileName,
+                    responsibilities.isEmpty() ? "-" : responsibilities.makeString(",")));
+        }
+
+        // Fifth, assume responsibility for branches
+        assumeResponsibilities(currentInput, responsibilities);
+    }
 
-        // Fourth, assume responsibility for branches
-        currentInput.responsibilities = responsibilities;
+    /* Makes a saved input responsible for a set of branches, subsuming older inputs. */
+    private void assumeResponsibilities(Input<?> input, IntHashSet responsibilities) {
+        input.responsibilities = responsibilities;
         if (responsibilities.size() > 0) {
-          currentInput.setFavored(true);
+          input.setFavored(true);
         }
         IntIterator iter = responsibilities.intIterator();
         while(iter.hasNext()){
@@ -1241,9 +1818,8 @@ public class ZestGuidance implements Guidance {
                 // infoLog("-- Assuming new responsibility for %s", b);
             }
             // We are now responsible
-            responsibleInputs.put(b, currentInput);
+            responsibleInputs.put(b, input);
         }
-
     }
 
     @Override
@@ -1253,7 +1829,51 @@ public class ZestGuidance implements Guidance {
         } else if (firstThread != thread) {
             multiThreaded = true;
         }
-        return this::handleEvent;
+        // Subclasses that override handleEvent() need every event as a TraceEvent
+        return handleEventOverridden ? this::handleEvent : new RunCoverageCallback();
+    }
+
+    /** Returns whether a subclass of ZestGuidance overrides {@link #handleEvent(TraceEvent)}. */
+    private static boolean overridesHandleEvent(Class<?> cls) {
+        for (; cls != ZestGuidance.class; cls = cls.getSuperclass()) {
+            try {
+                cls.getDeclaredMethod("handleEvent", TraceEvent.class);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // Check the superclass
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Starts the timeout handling for the run of the current input.
+     */
+    protected void startRunTimer() {
+        this.runStart = new Date();
+        this.runStartNanos = System.nanoTime();
+        this.branchCount = 0;
+        if (runWatchdog != null) {
+            runWatchdog.start();
+        }
+    }
+
+    /**
+     * Stops the timeout handling once the current run has finished.
+     */
+    protected void stopRunTimer() {
+        this.lastRunNanos = runStartNanos != 0 ? System.nanoTime() - runStartNanos : -1;
+        this.runStart = null;
+        this.runStartNanos = 0;
+        if (runWatchdog != null) {
+            runWatchdog.stop();
+        }
+    }
+
+    private void closeRunWatchdog() {
+        if (runWatchdog != null) {
+            runWatchdog.close();
+        }
     }
 
     /**
@@ -1265,18 +1885,89 @@ public class ZestGuidance implements Guidance {
      * @param e the trace event to be handled
      */
     protected void handleEvent(TraceEvent e) {
-        conditionallySynchronize(multiThreaded, () -> {
-            // Collect totalCoverage
-            ((Coverage) runCoverage).handleEvent(e);
-            // Check for possible timeouts every so often
-            if (this.singleRunTimeoutMillis > 0 &&
-                    this.runStart != null && (++this.branchCount) % 10_000 == 0) {
-                long elapsed = new Date().getTime() - runStart.getTime();
-                if (elapsed > this.singleRunTimeoutMillis) {
-                    throw new TimeoutException(elapsed, this.singleRunTimeoutMillis);
-                }
+        if (e instanceof BranchEvent) {
+            countRunEvent(e.getIid(), ((BranchEvent) e).getArm());
+        } else if (e instanceof CallEvent) {
+            countRunEvent(e.getIid(), CALL_ARM);
+        } else {
+            countRunEvent(e.getIid(), OTHER_ARM);
+        }
+    }
+
+    /**
+     * Updates the run coverage with a traced event and checks for a timeout every so often.
+     *
+     * @param iid the instruction ID of the event
+     * @param arm the arm of a branch, or {@link #CALL_ARM} or {@link #OTHER_ARM}
+     */
+    private void countRunEvent(int iid, int arm) {
+        // Synchronize without a lambda per event
+        if (multiThreaded) {
+            synchronized (this) {
+                updateRunCoverage(iid, arm);
             }
-        });
+        } else {
+            updateRunCoverage(iid, arm);
+        }
+    }
+
+    private void updateRunCoverage(int iid, int arm) {
+        // Collect totalCoverage
+        Coverage coverage = (Coverage) runCoverage;
+        if (arm == CALL_ARM) {
+            coverage.visitCall(iid, null, 0, null, null);
+        } else if (arm != OTHER_ARM) {
+            coverage.visitBranch(iid, null, 0, arm);
+        }
+        // Check for possible timeouts every so often
+        if (singleRunTimeoutMillis > 0 &&
+                runStart != null && (++branchCount) % 10_000 == 0) {
+            long elapsed = new Date().getTime() - runStart.getTime();
+            if (elapsed > singleRunTimeoutMillis) {
+                throw new TimeoutException(elapsed, singleRunTimeoutMillis);
+            }
+        }
+    }
+
+    /**
+     * The callback of each traced thread, which updates the run coverage without
+     * allocating trace events. Events emitted via
+     * {@link edu.berkeley.cs.jqf.instrument.tracing.TraceLogger#emit(TraceEvent)}
+     * are still passed to {@link #handleEvent(TraceEvent)}. Not used if a subclass
+     * overrides {@link #handleEvent(TraceEvent)}.
+     */
+    private class RunCoverageCallback implements Consumer<TraceEvent>, PrimitiveTraceEventVisitor {
+
+        @Override
+        public void accept(TraceEvent e) {
+            handleEvent(e);
+        }
+
+        @Override
+        public void visitAlloc(int iid, MemberRef containingMethod, int lineNumber, int size) {
+            countRunEvent(iid, OTHER_ARM);
+        }
+
+        @Override
+        public void visitBranch(int iid, MemberRef containingMethod, int lineNumber, int arm) {
+            countRunEvent(iid, arm);
+        }
+
+        @Override
+        public void visitCall(int iid, MemberRef containingMethod, int lineNumber,
+                              MemberRef invokedMethod, Object callingObject) {
+            countRunEvent(iid, CALL_ARM);
+        }
+
+        @Override
+        public void visitRead(int iid, MemberRef containingMethod, int lineNumber, int objectId, String field) {
+            countRunEvent(iid, OTHER_ARM);
+        }
+
+        @Override
+        public void visitReturn(int iid, MemberRef containingMethod, int lineNumber) {
+            countRunEvent(iid, OTHER_ARM);
+        }
     }
 
     /**
@@ -1371,6 +2062,15 @@ public class ZestGuidance implements Guidance {
          */
         public int nonZeroCoverage = -1;
 
+        /**
+         * The coverage keys counted by {@link #nonZeroCoverage}.
+         *
+         * <p>This field is only set when probes of saturated edges are removed,
+         * so that {@link #nonZeroCoverage} can be reduced by the removed keys
+         * that it counts. Inputs restored from a campaign store do not have it.</p>
+         */
+        public int[] coveredKeys = null;
+
         /**
          * The number of mutant children spawned from this input that
          * were saved.
@@ -1392,6 +2092,28 @@ public class ZestGuidance implements Guidance {
          */
         public IntHashSet responsibilities = null;
 
+        /**
+         * The time (in nanoseconds) taken by the run that saved this input.
+         *
+         * <p>This field is -1 for inputs that are not saved, or whose run was not timed (e.g. seeds).</p>
+         */
+        public long execNanos = -1;
+
+        /**
+         * The number of runs that exercised the same path as this input,
+         * including the run that saved it.
+         */
+        public long pathHits = 0;
+
+        /** The number of times this input was selected as a parent. */
+        public int timesSelected = 0;
+
+        /** The number of children of this input that were executed. */
+        public long childrenExecuted = 0;
+
+        /** Whether the run that saved this input was valid. */
+        public boolean valid = false;
+
         /**
          * Create an empty input.
          */
@@ -1452,24 +2174,36 @@ public class ZestGuidance implements Guidance {
     public class LinearInput extends Input<Integer> {
 
         /** A list of byte values (0-255) ordered by their index. */
-        public ArrayList<Integer> values;
+        public GrowableByteArray values;
 
         /** The number of bytes requested so far */
         protected int requested = 0;
 
         public LinearInput() {
             super();
-            this.values = new ArrayList<>();
+            this.values = new GrowableByteArray();
         }
 
         public LinearInput(LinearInput other) {
             super(other);
-            this.values = new ArrayList<>(other.values);
+            this.values = new GrowableByteArray(other.values);
         }
 
 
         @Override
         public int getOrGenerateFresh(Integer key, Random random) {
+            return getOrGenerateFresh(key.intValue(), random);
+        }
+
+        /**
+         * Primitive variant of {@link #getOrGenerateFresh(Integer, Random)}
+         * that avoids boxing the key on every byte requested by a generator.
+         *
+         * @param key    the index of the requested byte
+         * @param random a source of fresh random values
+         * @return a byte value (0-255), or -1 if no more bytes are available
+         */
+        public int getOrGenerateFresh(int key, Random random) {
             // Otherwise, make sure we are requesting just beyond the end-of-list
             // assert (key == values.size());
             if (key != requested) {
@@ -1502,11 +2236,65 @@ public class ZestGuidance implements Guidance {
             }
         }
 
+        /**
+         * Reads up to <code>len</code> bytes starting at index <code>key</code>,
+         * generating fresh bytes when the existing values are exhausted.
+         *
+         * <p>This has the same effect as calling {@link #getOrGenerateFresh(int, Random)}
+         * for each index in turn until it returns -1, but copies existing
+         * values in bulk.</p>
+         *
+         * @param key    the index of the first requested byte
+         * @param buf    the buffer into which bytes are read
+         * @param off    the start offset in <code>buf</code>
+         * @param len    the maximum number of bytes to read
+         * @param random a source of fresh random values
+         * @return the number of bytes read, or -1 if no bytes are available
+         */
+        public int read(int key, byte[] buf, int off, int len, Random random) {
+            if (key != requested) {
+                throw new IllegalStateException(String.format("Bytes from linear input out of order. " +
+                        "Size = %d, Key = %d", values.size(), key));
+            }
+            if (len == 0) {
+                return 0;
+            }
+
+            // Copy as many existing values as the size limit allows
+            int bytesRead = 0;
+            int available = Math.min(values.size(), MAX_INPUT_SIZE) - requested;
+            if (available > 0) {
+                bytesRead = Math.min(len, available);
+                values.copyTo(requested, buf, off, bytesRead);
+                requested += bytesRead;
+            }
+
+            // Fall back to byte-wise reads for the remainder (fresh or seed values)
+            while (bytesRead < len) {
+                int val = getOrGenerateFresh(requested, random);
+                if (val == -1) {
+                    break;
+                }
+                buf[off + bytesRead++] = (byte) val;
+            }
+
+            return bytesRead == 0 ? -1 : bytesRead;
+        }
+
         @Override
         public int size() {
             return values.size();
         }
 
+        /**
+         * Returns the number of bytes requested by the generator so far.
+         *
+         * @return the number of requested bytes
+         */
+        public int getRequested() {
+            return requested;
+        }
+
         /**
          * Truncates the input list to remove values that were never actually requested.
          *
@@ -1517,8 +2305,7 @@ public class ZestGuidance implements Guidance {
         @Override
         public void gc() {
             // Remove elements beyond "requested"
-            values = new ArrayList<>(values.subList(0, requested));
-            values.trimToSize();
+            values.truncate(requested);
 
             // Inputs should not be empty, otherwise mutations don't work
             if (values.isEmpty()) {
@@ -1569,7 +2356,22 @@ public class ZestGuidance implements Guidance {
 
         @Override
         public Iterator<Integer> iterator() {
-            return values.iterator();
+            return new Iterator<Integer>() {
+                int idx = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return idx < values.size();
+                }
+
+                @Override
+                public Integer next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return values.get(idx++);
+                }
+            };
         }
     }
 
@@ -1585,7 +2387,7 @@ public class ZestGuidance implements Guidance {
         }
 
         @Override
-        public int getOrGenerateFresh(Integer key, Random random) {
+        public int getOrGenerateFresh(int key, Random random) {
             int value;
             try {
                 value = in.read();
@@ -0,0 +1,90 @@
+package edu.berkeley.cs.jqf.fuzz.ei.schedule;
+
+import java.util.List;
+import java.util.Random;
+
+import edu.berkeley.cs.jqf.fuzz.ei.ZestGuidance.Input;
+
+/**
+ * Treats each saved input as an arm of a multi-armed bandit and selects
+ * parents with UCB1.
+ *
+ * <p>The reward of a child is 1 if it was saved to the queue, so the mean
+ * reward of a parent is its number of saved offspring per child executed.
+ * The mean is divided by the relative execution time of the parent, which
+ * prefers cheap inputs at equal productivity. Inputs that have never been
+ * selected are tried first, newest first. Each selection produces a small,
+ * fixed batch of children, so that the bandit can move on quickly from
+ * unproductive inputs instead of completing a full cycle over the queue.</p>
+ */
+public class BanditScheduler implements ParentScheduler {
+
+    /** The number of children produced per selection. */
+    protected final int batchSize;
+
+    /** The weight of the exploration term of UCB1. */
+    protected final double exploration;
+
+    /** The sum and number of known execution times of saved inputs. */
+    private long totalExecNanos = 0;
+    private int numTimedInputs = 0;
+
+    /** Creates a bandit scheduler with default parameters. */
+    public BanditScheduler() {
+        this(16, Math.sqrt(2));
+    }
+
+    /**
+     * Creates a bandit scheduler.
+     *
+     * @param batchSize   the number of children produced per selection
+     * @param exploration the weight of the exploration term
+     */
+    public BanditScheduler(int batchSize, double exploration) {
+        this.batchSize = batchSize;
+        this.exploration = exploration;
+    }
+
+    @Override
+    public void inputSaved(Input input) {
+        if (input.execNanos > 0) {
+            totalExecNanos += input.execNanos;
+            numTimedInputs++;
+        }
+    }
+
+    @Override
+    public int selectParent(List<? extends Input> savedInputs, int currentIdx, Random random) {
+        long totalPulls = 0;
+        for (int i = savedInputs.size() - 1; i >= 0; i--) {
+            long pulls = savedInputs.get(i).childrenExecuted;
+            if (pulls == 0) {
+                return i;
+            }
+            totalPulls += pulls;
+        }
+
+        double logPulls = Math.log(totalPulls);
+        double meanExecNanos = numTimedInputs > 0 ? (double) totalExecNanos / numTimedInputs : 0;
+        int best = currentIdx;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < savedInputs.size(); i++) {
+            Input input = savedInputs.get(i);
+            double mean = (double) Math.max(0, input.offspring) / input.childrenExecuted;
+            if (meanExecNanos > 0 && input.execNanos > 0) {
+                mean *= Math.max(0.25, Math.min(3.0, meanExecNanos / input.execNanos));
+            }
+            double score = mean + exploration * Math.sqrt(logPulls / input.childrenExecuted);
+            if (score > bestScore) {
+                best = i;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public int getTargetChildren(Input parent, int defaultTarget) {
+        return batchSize;
+    }
+}
@@ -0,0 +1,75 @@
+package edu.berkeley.cs.jqf.fuzz.ei.schedule;
+
+import java.util.List;
+import java.util.Random;
+
+import edu.berkeley.cs.jqf.fuzz.ei.ZestGuidance.Input;
+import edu.berkeley.cs.jqf.fuzz.guidance.GuidanceException;
+
+/**
+ * Chooses which saved input a guidance mutates next, and how many
+ * children it produces from it.
+ *
+ * <p>Schedulers base their decisions on the book-keeping that the
+ * guidance records in each {@link Input}, such as the number of times it
+ * was selected, the number of children executed and saved, the time taken
+ * by the run that saved it, and how often its path was exercised.</p>
+ *
+ * <p>The scheduler of a guidance is selected with the system property
+ * {@code jqf.ei.SCHEDULE} (see {@link #forName(String)}).</p>
+ */
+public interface ParentScheduler {
+
+    /**
+     * Chooses the next parent input.
+     *
+     * @param savedInputs the queue of saved inputs (non-empty)
+     * @param currentIdx  the index of the current parent in {@code savedInputs}
+     * @param random      a source of randomness
+     * @return the index of the next parent in {@code savedInputs}
+     */
+    int selectParent(List<? extends Input> savedInputs, int currentIdx, Random random);
+
+    /**
+     * Returns the number of children to produce from a parent, i.e. its energy.
+     *
+     * @param parent        the parent input
+     * @param defaultTarget the number of children that the guidance would
+     *                      produce with round-robin scheduling
+     * @return the number of children to produce
+     */
+    int getTargetChildren(Input parent, int defaultTarget);
+
+    /**
+     * Notifies this scheduler that an input has been added to the queue.
+     *
+     * @param input the saved input
+     */
+    default void inputSaved(Input input) {
+    }
+
+    /**
+     * Creates a scheduler by name.
+     *
+     * <ul>
+     *     <li>{@code rr}: round-robin over the queue (the default)</li>
+     *     <li>{@code fast}: AFLFast-style power schedule</li>
+     *     <li>{@code ucb}: UCB1 bandit over the queue</li>
+     * </ul>
+     *
+     * @param name the name of the scheduler, or {@code null} for the default
+     * @return a new scheduler
+     * @throws GuidanceException if the name is unknown
+     */
+    static ParentScheduler forName(String name) {
+        if (name == null || name.isEmpty() || name.equals("rr")) {
+            return new RoundRobinScheduler();
+        } else if (name.equals("fast")) {
+            return new PowerScheduler();
+        } else if (name.equals("ucb")) {
+            return new BanditScheduler();
+        } else {
+            throw new GuidanceException("Unknown parent schedule: " + name);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package edu.berkeley.cs.jqf.fuzz.ei.schedule;
+
+import edu.berkeley.cs.jqf.fuzz.ei.ZestGuidance.Input;
+
+/**
+ * An AFLFast-style power schedule (the "FAST" schedule of Böhme et al.,
+ * "Coverage-based Greybox Fuzzing as Markov Chain", CCS 2016).
+ *
+ * <p>Parents are still visited round-robin, but the energy of a parent is
+ * {@code min(a * 2^s / f, M)}, where {@code a} is the default number of
+ * children scaled by the relative speed of the input, {@code s} is the
+ * number of times the input has been selected, and {@code f} is the number
+ * of runs that exercised the same path as the input. Inputs on rarely
+ * exercised paths thus receive exponentially more energy each time they are
+ * selected, while inputs on high-frequency paths are only mutated briefly,
+ * which shortens cycles over large queues.</p>
+ */
+public class PowerScheduler extends RoundRobinScheduler {
+
+    /** The maximum number of children per selection. */
+    protected final int maxEnergy;
+
+    /** The sum and number of known execution times of saved inputs. */
+    private long totalExecNanos = 0;
+    private int numTimedInputs = 0;
+
+    /** Creates a power schedule with the default maximum energy. */
+    public PowerScheduler() {
+        this(1 << 12);
+    }
+
+    /**
+     * Creates a power schedule.
+     *
+     * @param maxEnergy the maximum number of children per selection
+     */
+    public PowerScheduler(int maxEnergy) {
+        this.maxEnergy = maxEnergy;
+    }
+
+    @Override
+    public void inputSaved(Input input) {
+        if (input.execNanos > 0) {
+            totalExecNanos += input.execNanos;
+            numTimedInputs++;
+        }
+    }
+
+    @Override
+    public int getTargetChildren(Input parent, int defaultTarget) {
+        double energy = Math.max(1, defaultTarget) * speedFactor(parent);
+        energy = energy * Math.pow(2, Math.min(parent.timesSelected, 30)) / Math.max(1, parent.pathHits);
+        return (int) Math.max(1, Math.min(energy, maxEnergy));
+    }
+
+    /**
+     * Returns a factor in [0.25, 3] that favors inputs which run faster than average, like AFL's performance score.
+     *
+     * @param input a saved input
+     * @return the speed factor of {@code input}
+     */
+    protected double speedFactor(Input input) {
+        if (input.execNanos <= 0 || numTimedInputs == 0) {
+            return 1.0;
+        }
+        double mean = (double) totalExecNanos / numTimedInputs;
+        return Math.max(0.25, Math.min(3.0, mean / input.execNanos));
+    }
+}
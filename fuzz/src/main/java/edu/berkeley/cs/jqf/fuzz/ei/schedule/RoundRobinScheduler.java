@@ -0,0 +1,23 @@
+package edu.berkeley.cs.jqf.fuzz.ei.schedule;
+
+import java.util.List;
+import java.util.Random;
+
+import edu.berkeley.cs.jqf.fuzz.ei.ZestGuidance.Input;
+
+/**
+ * Cycles through the queue in order, producing the guidance's default
+ * number of children from each input.
+ */
+public class RoundRobinScheduler implements ParentScheduler {
+
+    @Override
+    public int selectParent(List<? extends Input> savedInputs, int currentIdx, Random random) {
+        return (currentIdx + 1) % savedInputs.size();
+    }
+
+    @Override
+    public int getTargetChildren(Input parent, int defaultTarget) {
+        return defaultTarget;
+    }
+}
@@ -33,6 +33,7 @@ import java.io.InputStream;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
+import edu.berkeley.cs.jqf.fuzz.junit.TrialInvoker;
 import edu.berkeley.cs.jqf.fuzz.junit.TrialRunner;
 import edu.berkeley.cs.jqf.fuzz.junit.quickcheck.FuzzStatement;
 import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEvent;
@@ -214,9 +215,11 @@ public interface Guidance {
     /**
      * Runs a test method with generated arguments as input.
      *
-     * <p>By default, this method simply runs the test method using a JUnit
-     * {@link TrialRunner}. Guidances can override this method to customize
-     * how test execution should be performed once inputs are generated. For example,
+     * <p>By default, this method simply runs the test method using a cached
+     * {@link TrialInvoker}, which follows the JUnit semantics of a
+     * {@link TrialRunner} without building one per trial. Guidances can override
+     * this method to customize how test execution should be performed once inputs
+     * are generated. For example,
      * a guidance that supports non-deterministic test code may wish to execute
      * multiple trials per generated input.</p>
      *
@@ -227,7 +230,7 @@ public interface Guidance {
      * @throws Throwable any exception that may be thrown during test execution
      */
     default void run(TestClass testClass, FrameworkMethod method, Object[] args) throws Throwable {
-        new TrialRunner(testClass.getJavaClass(), method, args).run();
+        TrialInvoker.get(testClass, method).invoke(args);
     }
 
 }
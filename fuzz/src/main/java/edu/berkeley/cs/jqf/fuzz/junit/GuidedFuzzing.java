@@ -28,11 +28,15 @@
  */
 package edu.berkeley.cs.jqf.fuzz.junit;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.PrintStream;
 
 import edu.berkeley.cs.jqf.fuzz.JQF;
 import edu.berkeley.cs.jqf.fuzz.guidance.Guidance;
+import edu.berkeley.cs.jqf.fuzz.guidance.GuidanceException;
 import edu.berkeley.cs.jqf.instrument.tracing.SingleSnoop;
+import janala.instrument.OfflineInstrumenter;
 import edu.berkeley.cs.jqf.instrument.tracing.TraceLogger;
 import org.junit.internal.TextListener;
 import org.junit.runner.JUnitCore;
@@ -94,6 +98,25 @@ public class GuidedFuzzing {
         TraceLogger.get().remove();
     }
 
+    /**
+     * Releases the resources of a guidance that holds any, such as
+     * threads writing its results, once the fuzzing loop has stopped.
+     * This property is ensured by {@link GuidedFuzzing#run(Class, String, Guidance, PrintStream)},
+     * even if fuzzing was aborted.
+     *
+     * @param g the guidance instance
+     * @throws GuidanceException if the guidance could not be closed
+     */
+    public static void closeGuidance(Guidance g) throws GuidanceException {
+        if (g instanceof Closeable) {
+            try {
+                ((Closeable) g).close();
+            } catch (IOException e) {
+                throw new GuidanceException(e);
+            }
+        }
+    }
+
 
     /**
      * Runs the guided fuzzing loop, using the system class loader to load
@@ -152,6 +175,9 @@ public class GuidedFuzzing {
         // so that applications that use this API can still find test-classes
         Thread.currentThread().setContextClassLoader(loader);
 
+        // Account for the probes of classes that have been instrumented offline
+        OfflineInstrumenter.registerProbes(loader);
+
         // Load the application class using the provided class loader
         Class<?> testClass =
                 java.lang.Class.forName(testClassName, true, loader);
@@ -215,6 +241,7 @@ public class GuidedFuzzing {
         } finally {
             // Make sure to de-register the guidance before returning
             unsetGuidance();
+            closeGuidance(guidance);
         }
 
 
@@ -0,0 +1,184 @@
+package edu.berkeley.cs.jqf.fuzz.junit;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.MultipleFailureException;
+import org.junit.runners.model.TestClass;
+
+/**
+ * Runs single fuzzing trials of a test method without building a
+ * {@link TrialRunner} for every trial.
+ *
+ * <p>A {@link TrialRunner} is a full {@link org.junit.runners.BlockJUnit4ClassRunner},
+ * so creating one re-scans and validates the test class and allocates a new
+ * statement chain per trial. An invoker instead resolves the test constructor,
+ * the {@link Before} and {@link After} methods, and the test method to
+ * {@link MethodHandle}s once, and then performs the same steps as the JUnit
+ * statement chain: create a fresh test instance, run the befores, run the test
+ * method if they succeeded, always run all afters, and report every error.</p>
+ *
+ * <p>Test classes with {@link Rule}s, static test, before or after methods, or
+ * non-public members are still run with a {@link TrialRunner}, which applies
+ * the full JUnit semantics.</p>
+ */
+public class TrialInvoker {
+
+    /** Invokers by test method, per test class. */
+    private static final ClassValue<Map<Method, TrialInvoker>> invokers = new ClassValue<Map<Method, TrialInvoker>>() {
+        @Override
+        protected Map<Method, TrialInvoker> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final Class<?> testClass;
+    private final FrameworkMethod method;
+
+    /** Creates a new test instance; null if trials fall back to a {@link TrialRunner}. */
+    private final MethodHandle constructor;
+    private final MethodHandle[] befores;
+    private final MethodHandle[] afters;
+
+    /** Invokes the test method with the test instance and an argument array. */
+    private final MethodHandle testMethod;
+
+    /**
+     * Returns the (cached) invoker of a test method.
+     *
+     * @param testClass the test class
+     * @param method    the test method within the test class
+     * @return the invoker for {@code method}
+     */
+    public static TrialInvoker get(Class<?> testClass, FrameworkMethod method) {
+        return invokers.get(testClass).computeIfAbsent(method.getMethod(),
+                m -> new TrialInvoker(new TestClass(testClass), method));
+    }
+
+    /**
+     * Returns the (cached) invoker of a test method.
+     *
+     * @param testClass the test class
+     * @param method    the test method within the test class
+     * @return the invoker for {@code method}
+     */
+    public static TrialInvoker get(TestClass testClass, FrameworkMethod method) {
+        return invokers.get(testClass.getJavaClass()).computeIfAbsent(method.getMethod(),
+                m -> new TrialInvoker(testClass, method));
+    }
+
+    private TrialInvoker(TestClass testClass, FrameworkMethod method) {
+        this.testClass = testClass.getJavaClass();
+        this.method = method;
+
+        MethodHandle constructor = null;
+        MethodHandle[] befores = null;
+        MethodHandle[] afters = null;
+        MethodHandle testMethod = null;
+        if (canInvokeDirectly(testClass, method)) {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                constructor = lookup.unreflectConstructor(testClass.getOnlyConstructor())
+                        .asType(MethodType.methodType(Object.class));
+                befores = unreflect(lookup, testClass.getAnnotatedMethods(Before.class));
+                afters = unreflect(lookup, testClass.getAnnotatedMethods(After.class));
+                Method m = method.getMethod();
+                testMethod = lookup.unreflect(m).asFixedArity()
+                        .asSpreader(Object[].class, m.getParameterCount())
+                        .asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+            } catch (IllegalAccessException e) {
+                constructor = null;
+            }
+        }
+        this.constructor = constructor;
+        this.befores = befores;
+        this.afters = afters;
+        this.testMethod = testMethod;
+    }
+
+    private static boolean canInvokeDirectly(TestClass testClass, FrameworkMethod method) {
+        if (!testClass.getAnnotatedFields(Rule.class).isEmpty() ||
+                !testClass.getAnnotatedMethods(Rule.class).isEmpty()) {
+            return false;
+        }
+        if (method.isStatic() || testClass.getJavaClass().getConstructors().length != 1) {
+            return false;
+        }
+        for (FrameworkMethod m : testClass.getAnnotatedMethods(Before.class)) {
+            if (m.isStatic()) {
+                return false;
+            }
+        }
+        for (FrameworkMethod m : testClass.getAnnotatedMethods(After.class)) {
+            if (m.isStatic()) {
+                return false;
+            }
+        }
+        return Modifier.isPublic(testClass.getJavaClass().getModifiers());
+    }
+
+    private static MethodHandle[] unreflect(MethodHandles.Lookup lookup, List<FrameworkMethod> methods)
+            throws IllegalAccessException {
+        MethodHandle[] handles = new MethodHandle[methods.size()];
+        for (int i = 0; i < handles.length; i++) {
+            handles[i] = lookup.unreflect(methods.get(i).getMethod())
+                    .asType(MethodType.methodType(void.class, Object.class));
+        }
+        return handles;
+    }
+
+    /**
+     * Runs a single trial of the test method.
+     *
+     * @param args the arguments to the test method
+     * @return the return value of the test method
+     * @throws Throwable any exception thrown by the test, or a
+     *                   {@link MultipleFailureException} if there are several
+     */
+    public Object invoke(Object[] args) throws Throwable {
+        if (constructor == null) {
+            TrialRunner runner = new TrialRunner(testClass, method, args);
+            runner.run();
+            return runner.getOutput();
+        }
+
+        Object test = constructor.invoke();
+        Object output = null;
+        List<Throwable> errors = null;
+        try {
+            for (MethodHandle before : befores) {
+                before.invoke(test);
+            }
+            output = testMethod.invoke(test, args);
+        } catch (Throwable e) {
+            errors = new ArrayList<>();
+            errors.add(e);
+        } finally {
+            for (MethodHandle after : afters) {
+                try {
+                    after.invoke(test);
+                } catch (Throwable e) {
+                    if (errors == null) {
+                        errors = new ArrayList<>();
+                    }
+                    errors.add(e);
+                }
+            }
+        }
+        if (errors != null) {
+            MultipleFailureException.assertEmpty(errors);
+        }
+        return output;
+    }
+}
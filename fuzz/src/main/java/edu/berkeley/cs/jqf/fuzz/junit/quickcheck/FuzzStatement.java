@@ -51,6 +51,7 @@ import edu.berkeley.cs.jqf.fuzz.junit.TrialRunner;
 import edu.berkeley.cs.jqf.fuzz.random.NoGuidance;
 import edu.berkeley.cs.jqf.fuzz.repro.ReproGuidance;
 import edu.berkeley.cs.jqf.instrument.InstrumentationException;
+import edu.berkeley.cs.jqf.instrument.InstrumentingClassLoader;
 import edu.berkeley.cs.jqf.fuzz.util.Observability;
 import org.junit.AssumptionViolatedException;
 import org.junit.runners.model.FrameworkMethod;
@@ -109,6 +110,7 @@ public class FuzzStatement extends Statement {
         // Keep fuzzing until no more input or I/O error with guidance
         // Get current time in unix timestamp
         long endGenerationTime = 0;
+        boolean startupComplete = false;
         try {
 
             // Keep fuzzing as long as guidance wants to
@@ -201,6 +203,15 @@ public class FuzzStatement extends Statement {
                     // Anything else thrown from handleResult is an internal error, so wrap
                     throw new GuidanceException(e);
                 }
+
+                // Classes that the first trial did not load are instrumented on demand from now on
+                if (!startupComplete) {
+                    startupComplete = true;
+                    ClassLoader loader = testClass.getJavaClass().getClassLoader();
+                    if (loader instanceof InstrumentingClassLoader) {
+                        ((InstrumentingClassLoader) loader).releasePreinstrumented();
+                    }
+                }
             }
         } catch (GuidanceException e) {
             System.err.println("Fuzzing stopped due to guidance exception: " + e.getMessage());
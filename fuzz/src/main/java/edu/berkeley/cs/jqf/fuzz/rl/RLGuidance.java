@@ -13,9 +13,9 @@ import edu.berkeley.cs.jqf.fuzz.guidance.Result;
 import edu.berkeley.cs.jqf.fuzz.guidance.TimeoutException;
 import edu.berkeley.cs.jqf.fuzz.util.Coverage;
 import edu.berkeley.cs.jqf.fuzz.util.CoverageFactory;
-import edu.berkeley.cs.jqf.fuzz.util.FastNonCollidingCoverage;
 import edu.berkeley.cs.jqf.fuzz.util.ICoverage;
 import edu.berkeley.cs.jqf.fuzz.util.IOUtils;
+import edu.berkeley.cs.jqf.fuzz.util.InlineCoverage;
 import edu.berkeley.cs.jqf.instrument.tracing.FastCoverageSnoop;
 import edu.berkeley.cs.jqf.instrument.tracing.FastSemanticCoverageSnoop;
 import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEvent;
@@ -24,7 +24,7 @@ import janala.instrument.ProbeCounter;
 import org.eclipse.collections.api.iterator.IntIterator;
 import org.eclipse.collections.api.list.primitive.IntList;
 import org.eclipse.collections.impl.map.mutable.primitive.IntObjectHashMap;
-import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
@@ -102,11 +102,11 @@ public class RLGuidance implements Guidance {
     /** Set of hashes of all valid inputs generated so far. */
     protected Set<Integer> uniqueValidInputs = new HashSet<>();
 
-    /** Set of hashes of all valid paths generated so far. */
-    protected IntHashSet uniqueValidPaths = new IntHashSet();
+    /** Set of fingerprints of all valid paths generated so far. */
+    protected LongHashSet uniqueValidPaths = new LongHashSet();
 
-    /** Set of hashes of all paths generated so far. */
-    protected IntHashSet uniquePaths = new IntHashSet();
+    /** Set of fingerprints of all paths generated so far. */
+    protected LongHashSet uniquePaths = new LongHashSet();
 
     /** Coverage diversity metrics for all unique paths. */
     protected BranchHitCounter branchHitCounter = new BranchHitCounter();
@@ -216,6 +216,11 @@ public class RLGuidance implements Guidance {
             FastCoverageSnoop.setFastCoverageListener((FastCoverageListener) this.runCoverage);
         }
 
+        // Discard inline counts from before the campaign; every trial drains the counts it produced
+        if (CoverageFactory.isInlineCoverageEnabled()) {
+            InlineCoverage.clear();
+        }
+
         if(TRACK_SEMANTIC_COVERAGE) {
             FastSemanticCoverageSnoop.setCoverageListeners(
                     (FastCoverageListener) this.runCoverage,
@@ -266,6 +271,11 @@ public class RLGuidance implements Guidance {
         // Stop timeout handling
         this.runStart = null;
 
+        // Inline probes only count into a shared array
+        if (CoverageFactory.isInlineCoverageEnabled()) {
+            InlineCoverage.drainInto(runCoverage);
+        }
+
         // Increment run count
         this.numTrials++;
 
@@ -280,7 +290,8 @@ public class RLGuidance implements Guidance {
 
             // Update hit counts
             boolean checkUniquePath = COUNT_UNIQUE_PATHS || MEASURE_BEHAVIORAL_DIVERSITY;
-            if (checkUniquePath && uniquePaths.add(runCoverage.hashCode())) {
+            long pathFingerprint = runCoverage.getPathFingerprint();
+            if (checkUniquePath && uniquePaths.add(pathFingerprint)) {
                 if(MEASURE_BEHAVIORAL_DIVERSITY) {
                     if (TRACK_SEMANTIC_COVERAGE) {
                         branchHitCounter.incrementBranchCounts(semanticRunCoverage);
@@ -302,7 +313,7 @@ public class RLGuidance implements Guidance {
 
             if (valid) {
                 validCoverage.updateBits(runCoverage);
-                uniqueValidPaths.add(runCoverage.hashCode());
+                uniqueValidPaths.add(pathFingerprint);
                 if (!uniqueValidInputs.contains(currentInput.hashCode())){
                     uniqueValidInputs.add(currentInput.hashCode());
 
@@ -514,7 +525,7 @@ public class RLGuidance implements Guidance {
         double nonZeroFraction;
         double nonZeroValidFraction;
         int numTotalProbes = probeCounter.getNumTotalProbes();
-        if (this.runCoverage instanceof FastNonCollidingCoverage) {
+        if (this.runCoverage instanceof FastCoverageListener) {
             nonZeroFraction = numTotalProbes > 0 ? nonZeroCount * 100.0 / numTotalProbes : 0;
             nonZeroValidFraction = numTotalProbes > 0 ? nonZeroValidCount * 100.0 / numTotalProbes : 0;
         } else {
@@ -536,7 +547,7 @@ public class RLGuidance implements Guidance {
                 }
 
                 String instrumentationType = "Janala";
-                if (this.runCoverage instanceof FastNonCollidingCoverage) {
+                if (this.runCoverage instanceof FastCoverageListener) {
                     instrumentationType = "Fast";
                 }
                 console.printf("Instrumentation:      %s\n", instrumentationType);
@@ -0,0 +1,299 @@
+package edu.berkeley.cs.jqf.fuzz.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+import edu.berkeley.cs.jqf.fuzz.guidance.GuidanceException;
+
+/**
+ * Writes guidance output files (corpus entries, logs, plot data) on a
+ * background thread.
+ *
+ * <p>Requests are put on a bounded queue, so the fuzzing thread only blocks
+ * if the writer falls behind by more than the queue capacity. The writer
+ * drains the queue in batches: consecutive appends to the same file are
+ * written with a single open/close, and repeated overwrites of the same
+ * file (such as the current input or the coverage file) only write the
+ * latest contents.</p>
+ *
+ * <p>I/O errors on the writer thread are reported as a
+ * {@link GuidanceException} on the next request or {@link #flush()}.
+ * A writer created in synchronous mode, or one that has been closed,
+ * performs every request directly on the calling thread.</p>
+ */
+public class AsyncFileWriter {
+
+    /** The default maximum number of pending requests. */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /** The maximum number of requests handled in one batch. */
+    private static final int MAX_BATCH_SIZE = 512;
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes();
+
+    /** A single pending request. */
+    private static final class Task {
+        final File file;
+        final byte[] data;
+        final boolean append;
+        final CountDownLatch barrier;
+
+        Task(File file, byte[] data, boolean append, CountDownLatch barrier) {
+            this.file = file;
+            this.data = data;
+            this.append = append;
+            this.barrier = barrier;
+        }
+    }
+
+    /** Marks the end of the queue. */
+    private static final Task POISON = new Task(null, null, false, null);
+
+    private final BlockingQueue<Task> queue;
+    private final Thread writerThread;
+    private final Thread shutdownHook;
+    private volatile boolean closed;
+    private volatile IOException error;
+
+    /**
+     * Creates a new writer.
+     *
+     * @param async    whether to write on a background thread
+     * @param capacity the maximum number of pending requests
+     */
+    public AsyncFileWriter(boolean async, int capacity) {
+        if (!async) {
+            this.queue = null;
+            this.writerThread = null;
+            this.shutdownHook = null;
+            this.closed = true;
+            return;
+        }
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writerThread = new Thread(this::run, "jqf-file-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+
+        // Do not lose pending output if the JVM exits while fuzzing
+        this.shutdownHook = new Thread(this::drain, "jqf-file-writer-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Creates a new writer with the default capacity.
+     *
+     * @param async whether to write on a background thread
+     */
+    public AsyncFileWriter(boolean async) {
+        this(async, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns whether requests are handled on a background thread.
+     *
+     * @return whether this writer is asynchronous and not yet closed
+     */
+    public boolean isAsync() {
+        return !closed;
+    }
+
+    /**
+     * Appends a line (followed by the platform line separator) to a file.
+     *
+     * @param file the file to append to
+     * @param line the line to append
+     * @throws GuidanceException if a previous or the current write failed
+     */
+    public void appendLine(File file, String line) throws GuidanceException {
+        byte[] bytes = line.getBytes();
+        byte[] data = new byte[bytes.length + LINE_SEPARATOR.length];
+        System.arraycopy(bytes, 0, data, 0, bytes.length);
+        System.arraycopy(LINE_SEPARATOR, 0, data, bytes.length, LINE_SEPARATOR.length);
+        submit(new Task(file, data, true, null));
+    }
+
+    /**
+     * Replaces the contents of a file.
+     *
+     * <p>The caller must not modify {@code data} afterwards.</p>
+     *
+     * @param file the file to write
+     * @param data the new contents of the file
+     * @throws GuidanceException if a previous or the current write failed
+     */
+    public void write(File file, byte[] data) throws GuidanceException {
+        submit(new Task(file, data, false, null));
+    }
+
+    /**
+     * Replaces the contents of a file with the given text.
+     *
+     * @param file the file to write
+     * @param text the new contents of the file
+     * @throws GuidanceException if a previous or the current write failed
+     */
+    public void write(File file, String text) throws GuidanceException {
+        write(file, text.getBytes());
+    }
+
+    /**
+     * Blocks until all pending requests have been written.
+     *
+     * @throws GuidanceException if a write failed
+     */
+    public synchronized void flush() throws GuidanceException {
+        if (!closed) {
+            CountDownLatch barrier = new CountDownLatch(1);
+            enqueue(new Task(null, null, false, barrier));
+            try {
+                barrier.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GuidanceException(e);
+            }
+        }
+        checkError();
+    }
+
+    /**
+     * Writes all pending requests and stops the background thread.
+     *
+     * <p>Requests made after closing are performed synchronously.</p>
+     *
+     * @throws GuidanceException if a write failed
+     */
+    public synchronized void close() throws GuidanceException {
+        if (!closed) {
+            drain();
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException ignore) {
+                // Already shutting down
+            }
+        }
+        checkError();
+    }
+
+    private synchronized void drain() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        enqueue(POISON);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void submit(Task task) throws GuidanceException {
+        checkError();
+        if (closed) {
+            try {
+                writeFile(task.file, task.data, task.append);
+            } catch (IOException e) {
+                throw new GuidanceException(e);
+            }
+        } else {
+            enqueue(task);
+        }
+    }
+
+    private void enqueue(Task task) {
+        try {
+            queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GuidanceException(e);
+        }
+    }
+
+    private void checkError() throws GuidanceException {
+        IOException e = error;
+        if (e != null) {
+            error = null;
+            throw new GuidanceException(e);
+        }
+    }
+
+    /** The main loop of the writer thread. */
+    private void run() {
+        List<Task> batch = new ArrayList<>();
+        Map<File, ByteArrayOutputStream> appends = new LinkedHashMap<>();
+        Map<File, byte[]> writes = new LinkedHashMap<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch, MAX_BATCH_SIZE);
+
+            boolean stop = false;
+            for (Task task : batch) {
+                if (task == POISON) {
+                    stop = true;
+                } else if (task.barrier != null) {
+                    writePending(appends, writes);
+                    task.barrier.countDown();
+                } else if (task.append) {
+                    if (writes.containsKey(task.file)) {
+                        writePending(appends, writes);
+                    }
+                    appends.computeIfAbsent(task.file, f -> new ByteArrayOutputStream())
+                            .write(task.data, 0, task.data.length);
+                } else {
+                    if (appends.containsKey(task.file)) {
+                        writePending(appends, writes);
+                    }
+                    // Only the latest contents of an overwritten file matter
+                    writes.put(task.file, task.data);
+                }
+            }
+            writePending(appends, writes);
+            batch.clear();
+
+            if (stop) {
+                return;
+            }
+        }
+    }
+
+    private void writePending(Map<File, ByteArrayOutputStream> appends, Map<File, byte[]> writes) {
+        for (Map.Entry<File, byte[]> entry : writes.entrySet()) {
+            tryWriteFile(entry.getKey(), entry.getValue(), false);
+        }
+        writes.clear();
+        for (Map.Entry<File, ByteArrayOutputStream> entry : appends.entrySet()) {
+            tryWriteFile(entry.getKey(), entry.getValue().toByteArray(), true);
+        }
+        appends.clear();
+    }
+
+    private void tryWriteFile(File file, byte[] data, boolean append) {
+        try {
+            writeFile(file, data, append);
+        } catch (IOException e) {
+            if (error == null) {
+                error = e;
+            }
+        }
+    }
+
+    private static void writeFile(File file, byte[] data, boolean append) throws IOException {
+        try (OutputStream out = new FileOutputStream(file, append)) {
+            out.write(data);
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package edu.berkeley.cs.jqf.fuzz.util;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.eclipse.collections.api.iterator.LongIterator;
+import org.eclipse.collections.api.list.primitive.IntList;
+import org.eclipse.collections.impl.map.mutable.primitive.IntIntHashMap;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+
+/**
+ * Persists the state of a fuzzing campaign, so that it can be resumed
+ * after the process was stopped without re-executing the saved corpus.
+ *
+ * <p>The store consists of three kinds of files in its directory:</p>
+ * <ul>
+ *     <li>Snapshots of coverage maps, hit counts and path fingerprints, which
+ *     are written to memory-mapped files. Each snapshot has two slots that
+ *     are written alternately, so the previous checkpoint stays intact while
+ *     the next one is being written.</li>
+ *     <li>An append-only index of text records (e.g. one per saved input),
+ *     which only grows by the records added since the last checkpoint.</li>
+ *     <li>A properties file ({@value #STATE_FILE}) with the scalar state of
+ *     the campaign. It is replaced atomically and commits a checkpoint: it
+ *     names the snapshot slot and the length of the index that belong to it.</li>
+ * </ul>
+ *
+ * <p>A checkpoint is taken by writing every snapshot and then calling
+ * {@link #commit(Properties)}. If the process dies before the commit, the
+ * store is loaded from the previous checkpoint.</p>
+ */
+public class CampaignStore implements Closeable {
+
+    /** The file holding the committed scalar state. */
+    public static final String STATE_FILE = "campaign.properties";
+
+    /** The append-only record index. */
+    public static final String INDEX_FILE = "corpus.idx";
+
+    private static final String GENERATION = "store.generation";
+    private static final String INDEX_LENGTH = "store.indexLength";
+    private static final String INDEX_RECORDS = "store.indexRecords";
+
+    private final File directory;
+    private final FileChannel index;
+
+    /** Mapped snapshot files, by file. */
+    private final Map<File, MappedByteBuffer> mapped = new HashMap<>();
+
+    /** Records appended since the last commit. */
+    private final StringBuilder pendingRecords = new StringBuilder();
+    private int numPendingRecords = 0;
+
+    /** The number of checkpoints committed so far. */
+    private long generation = 0;
+
+    /** The committed length of the index file, and its number of records. */
+    private long indexLength = 0;
+    private int indexRecords = 0;
+
+    /**
+     * Opens (or creates) a store in a directory.
+     *
+     * @param directory the directory holding the store files
+     * @throws IOException if the directory or index could not be opened
+     */
+    public CampaignStore(File directory) throws IOException {
+        this.directory = IOUtils.createDirectory(directory);
+        this.index = FileChannel.open(new File(directory, INDEX_FILE).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Deletes all files of a previous campaign, if any.
+     *
+     * @throws IOException if the index could not be truncated
+     */
+    public void reset() throws IOException {
+        new File(directory, STATE_FILE).delete();
+        index.truncate(0);
+        generation = 0;
+        indexLength = 0;
+        indexRecords = 0;
+        pendingRecords.setLength(0);
+        numPendingRecords = 0;
+    }
+
+    /**
+     * Loads the last committed checkpoint.
+     *
+     * <p>Records that were appended to the index after the last commit are discarded.</p>
+     *
+     * @return the properties passed to the last {@link #commit}, or
+     *         {@code null} if no checkpoint was committed
+     * @throws IOException if the state could not be read
+     */
+    public Properties load() throws IOException {
+        File stateFile = new File(directory, STATE_FILE);
+        if (!stateFile.exists()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(stateFile)) {
+            properties.load(in);
+        }
+        generation = Long.parseLong(properties.getProperty(GENERATION));
+        indexLength = Long.parseLong(properties.getProperty(INDEX_LENGTH));
+        indexRecords = Integer.parseInt(properties.getProperty(INDEX_RECORDS));
+        index.truncate(indexLength);
+        return properties;
+    }
+
+    /**
+     * Returns the committed records of the index, in the order in which they were appended.
+     *
+     * @return the records up to the last checkpoint
+     * @throws IOException if the index could not be read
+     */
+    public List<String> readRecords() throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate((int) indexLength);
+        while (bytes.hasRemaining()) {
+            if (index.read(bytes, bytes.position()) < 0) {
+                throw new IOException("Index is shorter than its last checkpoint: " + INDEX_FILE);
+            }
+        }
+        List<String> records = new ArrayList<>(indexRecords);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(bytes.array()), StandardCharsets.UTF_8))) {
+            String line;
+            while (records.size() < indexRecords && (line = reader.readLine()) != null) {
+                records.add(line);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Appends a record to the index, which becomes durable with the next commit.
+     *
+     * @param record a single line of text
+     */
+    public void appendRecord(String record) {
+        assert record.indexOf('\n') < 0 : "Records must be single lines";
+        pendingRecords.append(record).append('\n');
+        numPendingRecords++;
+    }
+
+    /**
+     * Writes the non-zero counts of a coverage map to the next snapshot.
+     *
+     * @param name     the name of the snapshot
+     * @param coverage the coverage map to save
+     * @throws IOException if the snapshot could not be mapped
+     */
+    public void writeCoverage(String name, ICoverage coverage) throws IOException {
+        IntList indices = coverage.getCounter().getNonZeroIndices();
+        int size = indices.size();
+        ByteBuffer buffer = map(name, Integer.BYTES * (1 + 2L * size));
+        buffer.putInt(0, size);
+        int pos = Integer.BYTES;
+        for (int i = 0; i < size; i++) {
+            int idx = indices.get(i);
+            buffer.putInt(pos, idx);
+            buffer.putInt(pos + Integer.BYTES, coverage.getCountAtIndex(idx));
+            pos += 2 * Integer.BYTES;
+        }
+    }
+
+    /**
+     * Restores a coverage map from the committed snapshot.
+     *
+     * @param name     the name of the snapshot
+     * @param coverage an empty coverage map of the same type as the saved one
+     * @throws IOException if the snapshot could not be read
+     */
+    public void readCoverage(String name, ICoverage coverage) throws IOException {
+        ByteBuffer buffer = read(name);
+        int size = buffer.getInt();
+        for (int i = 0; i < size; i++) {
+            coverage.restoreCountAtIndex(buffer.getInt(), buffer.getInt());
+        }
+    }
+
+    /**
+     * Writes a map of counts to the next snapshot.
+     *
+     * @param name   the name of the snapshot
+     * @param counts the counts to save
+     * @throws IOException if the snapshot could not be mapped
+     */
+    public void writeCounts(String name, IntIntHashMap counts) throws IOException {
+        int size = counts.size();
+        ByteBuffer buffer = map(name, Integer.BYTES * (1 + 2L * size));
+        buffer.putInt(0, size);
+        int[] pos = {Integer.BYTES};
+        counts.forEachKeyValue((key, value) -> {
+            buffer.putInt(pos[0], key);
+            buffer.putInt(pos[0] + Integer.BYTES, value);
+            pos[0] += 2 * Integer.BYTES;
+        });
+    }
+
+    /**
+     * Reads a map of counts from the committed snapshot.
+     *
+     * @param name the name of the snapshot
+     * @return the saved counts
+     * @throws IOException if the snapshot could not be read
+     */
+    public IntIntHashMap readCounts(String name) throws IOException {
+        ByteBuffer buffer = read(name);
+        int size = buffer.getInt();
+        IntIntHashMap counts = new IntIntHashMap(size);
+        for (int i = 0; i < size; i++) {
+            counts.put(buffer.getInt(), buffer.getInt());
+        }
+        return counts;
+    }
+
+    /**
+     * Writes an array of doubles to the next snapshot.
+     *
+     * @param name   the name of the snapshot
+     * @param values the values to save
+     * @throws IOException if the snapshot could not be mapped
+     */
+    public void writeDoubles(String name, double[] values) throws IOException {
+        ByteBuffer buffer = map(name, Integer.BYTES + (long) Double.BYTES * values.length);
+        buffer.putInt(0, values.length);
+        int pos = Integer.BYTES;
+        for (double value : values) {
+            buffer.putDouble(pos, value);
+            pos += Double.BYTES;
+        }
+    }
+
+    /**
+     * Reads an array of doubles from the committed snapshot.
+     *
+     * @param name the name of the snapshot
+     * @return the saved values
+     * @throws IOException if the snapshot could not be read
+     */
+    public double[] readDoubles(String name) throws IOException {
+        ByteBuffer buffer = read(name);
+        double[] values = new double[buffer.getInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.getDouble();
+        }
+        return values;
+    }
+
+    /**
+     * Writes a set of fingerprints to the next snapshot.
+     *
+     * @param name         the name of the snapshot
+     * @param fingerprints the fingerprints to save
+     * @throws IOException if the snapshot could not be mapped
+     */
+    public void writeFingerprints(String name, LongHashSet fingerprints) throws IOException {
+        int size = fingerprints.size();
+        ByteBuffer buffer = map(name, Integer.BYTES + (long) Long.BYTES * size);
+        buffer.putInt(0, size);
+        int pos = Integer.BYTES;
+        LongIterator iter = fingerprints.longIterator();
+        while (iter.hasNext()) {
+            buffer.putLong(pos, iter.next());
+            pos += Long.BYTES;
+        }
+    }
+
+    /**
+     * Reads a set of fingerprints from the committed snapshot.
+     *
+     * @param name the name of the snapshot
+     * @return the saved fingerprints
+     * @throws IOException if the snapshot could not be read
+     */
+    public LongHashSet readFingerprints(String name) throws IOException {
+        ByteBuffer buffer = read(name);
+        int size = buffer.getInt();
+        LongHashSet fingerprints = new LongHashSet(size);
+        for (int i = 0; i < size; i++) {
+            fingerprints.add(buffer.getLong());
+        }
+        return fingerprints;
+    }
+
+    /**
+     * Commits a checkpoint.
+     *
+     * <p>The pending records are appended to the index, the index and all
+     * snapshots written since the last commit are forced to disk, and then
+     * the state file is replaced with {@code properties}.</p>
+     *
+     * @param properties the scalar state of the campaign
+     * @throws IOException if the checkpoint could not be written
+     */
+    public void commit(Properties properties) throws IOException {
+        if (numPendingRecords > 0) {
+            ByteBuffer bytes = ByteBuffer.wrap(pendingRecords.toString().getBytes(StandardCharsets.UTF_8));
+            long pos = indexLength;
+            while (bytes.hasRemaining()) {
+                pos += index.write(bytes, pos);
+            }
+            index.force(false);
+            indexLength = pos;
+            indexRecords += numPendingRecords;
+            pendingRecords.setLength(0);
+            numPendingRecords = 0;
+        }
+        String suffix = slotSuffix(generation + 1);
+        for (Map.Entry<File, MappedByteBuffer> entry : mapped.entrySet()) {
+            if (entry.getKey().getName().endsWith(suffix)) {
+                entry.getValue().force();
+            }
+        }
+
+        properties.setProperty(GENERATION, Long.toString(generation + 1));
+        properties.setProperty(INDEX_LENGTH, Long.toString(indexLength));
+        properties.setProperty(INDEX_RECORDS, Integer.toString(indexRecords));
+        File tmp = new File(directory, STATE_FILE + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            properties.store(out, "Fuzzing campaign checkpoint");
+            out.getFD().sync();
+        }
+        Files.move(tmp.toPath(), new File(directory, STATE_FILE).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        generation++;
+    }
+
+    /** Returns the mapped file of the next snapshot with at least the given size. */
+    private ByteBuffer map(String name, long bytes) throws IOException {
+        File file = new File(directory, name + slotSuffix(generation + 1));
+        MappedByteBuffer buffer = mapped.get(file);
+        if (buffer == null || buffer.capacity() < bytes) {
+            long capacity = Math.max(bytes, buffer == null ? 4096 : 2L * buffer.capacity());
+            if (capacity > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot too large: " + file);
+            }
+            try (FileChannel channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            }
+            mapped.put(file, buffer);
+        }
+        return buffer;
+    }
+
+    /** Returns the contents of the committed snapshot. */
+    private ByteBuffer read(String name) throws IOException {
+        File file = new File(directory, name + slotSuffix(generation));
+        return ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+    }
+
+    private static String slotSuffix(long generation) {
+        return "." + (generation % 2);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mapped.clear();
+        index.close();
+    }
+}
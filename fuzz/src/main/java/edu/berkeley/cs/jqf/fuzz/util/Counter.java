@@ -58,6 +58,16 @@ public class Counter {
     /** The counter map as an array of integers. */
     protected final int[] counts;
 
+    /**
+     * A 64-bit fingerprint of all counts, maintained on every update.
+     *
+     * <p>The fingerprint is the sum of {@code Hashing.mix64(key) * count} over all
+     * keys (modulo 2<sup>64</sup>). Equal counts always have equal fingerprints, and
+     * two different count vectors collide with probability of about 2<sup>-64</sup>,
+     * so fingerprints identify execution paths without walking the counter.</p>
+     */
+    protected long fingerprint;
+
     /**
      * Creates a new counter with given size.
      *
@@ -72,6 +82,7 @@ public class Counter {
         this.size = counter.size;
         this.counts = new int[size];
         System.arraycopy(counter.counts, 0, counts, 0, size);
+        this.fingerprint = counter.fingerprint;
     }
 
     /**
@@ -88,6 +99,16 @@ public class Counter {
      */
     public void clear() {
         Arrays.fill(this.counts, 0);
+        this.fingerprint = 0;
+    }
+
+    /**
+     * Returns a 64-bit fingerprint of the counts in this counter.
+     *
+     * @return a fingerprint that is equal for equal counts
+     */
+    public long getFingerprint() {
+        return fingerprint;
     }
 
     private int idx(int key) {
@@ -99,6 +120,7 @@ public class Counter {
     }
 
     protected int incrementAtIndex(int index, int delta) {
+        fingerprint += Hashing.mix64(index) * delta;
         return (this.counts[index] += delta);
     }
 
@@ -238,6 +260,7 @@ public class Counter {
     }
 
     public void setAtIndex(int idx, int value) {
+        fingerprint += Hashing.mix64(idx) * ((long) value - this.counts[idx]);
         this.counts[idx] = value;
     }
 }
@@ -32,8 +32,10 @@ import java.util.Arrays;
 
 import edu.berkeley.cs.jqf.instrument.tracing.events.BranchEvent;
 import edu.berkeley.cs.jqf.instrument.tracing.events.CallEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.PrimitiveTraceEventVisitor;
 import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEvent;
 import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEventVisitor;
+import janala.logger.inst.MemberRef;
 import org.eclipse.collections.api.iterator.IntIterator;
 import org.eclipse.collections.api.list.primitive.IntList;
 import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
@@ -43,7 +45,7 @@ import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
  *
  * @author Rohan Padhye
  */
-public class Coverage implements TraceEventVisitor, ICoverage<Counter> {
+public class Coverage implements TraceEventVisitor, PrimitiveTraceEventVisitor, ICoverage<Counter> {
 
     /** The size of the coverage map. */
     private final int COVERAGE_MAP_SIZE = (1 << 16) - 1; // Minus one to reduce collisions
@@ -100,6 +102,17 @@ public class Coverage implements TraceEventVisitor, ICoverage<Counter> {
         counter.increment(e.getIid());
     }
 
+    @Override
+    public void visitBranch(int iid, MemberRef containingMethod, int lineNumber, int arm) {
+        counter.increment1(iid, arm);
+    }
+
+    @Override
+    public void visitCall(int iid, MemberRef containingMethod, int lineNumber,
+                          MemberRef invokedMethod, Object callingObject) {
+        counter.increment(iid);
+    }
+
     /**
      * Returns the number of edges covered.
      *
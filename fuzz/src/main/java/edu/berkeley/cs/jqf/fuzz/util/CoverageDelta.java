@@ -0,0 +1,88 @@
+package edu.berkeley.cs.jqf.fuzz.util;
+
+import org.eclipse.collections.api.list.primitive.IntList;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+/**
+ * The outcome of comparing the coverage of one run against the total and
+ * valid coverage of a campaign.
+ *
+ * <p>A delta is filled by {@link ICoverage#classifyAndMerge} and is meant to be
+ * reused across runs, so that the per-run bookkeeping does not allocate once
+ * its lists have grown to the size of typical coverage increases.</p>
+ */
+public class CoverageDelta {
+
+    /** Keys covered by the run but not by the total coverage. */
+    final IntArrayList newCoverage = new IntArrayList();
+
+    /** Keys covered by the run but not by the valid coverage. */
+    final IntArrayList newValidCoverage = new IntArrayList();
+
+    /** Whether the total coverage has changed (new keys or new count buckets). */
+    boolean changed;
+
+    /** Whether the valid coverage has changed (new keys or new count buckets). */
+    boolean validChanged;
+
+    /** Resets this delta for the next run. */
+    public void clear() {
+        newCoverage.clear();
+        newValidCoverage.clear();
+        changed = false;
+        validChanged = false;
+    }
+
+    /**
+     * Fills this delta without merging, i.e. leaves the total and valid coverage unchanged.
+     *
+     * <p>The change flags are not computed and remain {@code false}.</p>
+     *
+     * @param run   the coverage of the run
+     * @param total the total coverage
+     * @param valid the valid coverage, or {@code null} if the run was not valid
+     */
+    public void classify(ICoverage run, ICoverage total, ICoverage valid) {
+        clear();
+        newCoverage.addAll(run.computeNewCoverage(total));
+        if (valid != null) {
+            newValidCoverage.addAll(run.computeNewCoverage(valid));
+        }
+    }
+
+    /**
+     * Returns the keys that the run has newly covered.
+     *
+     * @return the keys that are not in the total coverage
+     */
+    public IntList getNewCoverage() {
+        return newCoverage;
+    }
+
+    /**
+     * Returns the keys that the run has newly covered with a valid input.
+     *
+     * @return the keys that are not in the valid coverage
+     */
+    public IntList getNewValidCoverage() {
+        return newValidCoverage;
+    }
+
+    /**
+     * Returns whether merging the run has changed the total coverage.
+     *
+     * @return whether the run covered new keys or new count buckets
+     */
+    public boolean isChanged() {
+        return changed;
+    }
+
+    /**
+     * Returns whether merging the run has changed the valid coverage.
+     *
+     * @return whether the run covered new valid keys or new valid count buckets
+     */
+    public boolean isValidChanged() {
+        return validChanged;
+    }
+}
@@ -3,6 +3,8 @@ package edu.berkeley.cs.jqf.fuzz.util;
 import edu.berkeley.cs.jqf.fuzz.ei.state.AbstractExecutionIndexingState;
 import edu.berkeley.cs.jqf.fuzz.ei.state.FastExecutionIndexingState;
 import edu.berkeley.cs.jqf.fuzz.ei.state.JanalaExecutionIndexingState;
+import edu.berkeley.cs.jqf.fuzz.guidance.GuidanceException;
+import janala.instrument.ProbeRemoval;
 
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -14,6 +16,8 @@ public class CoverageFactory {
     public static final String propFile = System.getProperty("janala.conf", "janala.conf");
 
     private static boolean FAST_NON_COLLIDING_COVERAGE_ENABLED;
+    private static boolean DENSE_COVERAGE_COUNTER_ENABLED;
+    private static boolean INLINE_COVERAGE_PROBES_ENABLED;
     static
     {
         Properties properties = new Properties();
@@ -25,17 +29,38 @@ public class CoverageFactory {
         }
         properties.putAll(System.getProperties());
         FAST_NON_COLLIDING_COVERAGE_ENABLED = Boolean.parseBoolean(properties.getProperty("useFastNonCollidingCoverageInstrumentation", "false"));
+        DENSE_COVERAGE_COUNTER_ENABLED = Boolean.parseBoolean(properties.getProperty("useDenseCoverageCounter", "false"));
+        INLINE_COVERAGE_PROBES_ENABLED = FAST_NON_COLLIDING_COVERAGE_ENABLED &&
+                Boolean.parseBoolean(properties.getProperty("janala.inlineCoverageProbes", "false"));
     }
 
     public static ICoverage newInstance() {
-        if (FAST_NON_COLLIDING_COVERAGE_ENABLED) {
+        if (FAST_NON_COLLIDING_COVERAGE_ENABLED && DENSE_COVERAGE_COUNTER_ENABLED) {
+            return new DenseNonCollidingCoverage();
+        } else if (FAST_NON_COLLIDING_COVERAGE_ENABLED) {
             return new FastNonCollidingCoverage();
         } else {
             return new Coverage();
         }
     }
 
+    /**
+     * Returns whether the instrumentation counts probes in a shared array (see {@link InlineCoverage})
+     * instead of reporting them to the coverage listener.
+     *
+     * @return whether inline coverage probes are enabled
+     */
+    public static boolean isInlineCoverageEnabled() {
+        return INLINE_COVERAGE_PROBES_ENABLED;
+    }
+
     public static AbstractExecutionIndexingState newEIState() {
+        if (INLINE_COVERAGE_PROBES_ENABLED) {
+            throw new GuidanceException("Execution indexing is not supported with inline coverage probes");
+        }
+        if (ProbeRemoval.isEnabled()) {
+            throw new GuidanceException("Execution indexing is not supported with probe removal");
+        }
         if (FAST_NON_COLLIDING_COVERAGE_ENABLED) {
             return new FastExecutionIndexingState();
         } else {
@@ -0,0 +1,293 @@
+package edu.berkeley.cs.jqf.fuzz.util;
+
+import java.util.Arrays;
+
+import org.eclipse.collections.api.iterator.IntIterator;
+import org.eclipse.collections.api.list.primitive.IntList;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+/**
+ * An implementation of {@link Counter} that stores counts in a plain
+ * int array indexed directly by key.
+ *
+ * <p>The fast-coverage instrumentation hands out dense, sequential probe
+ * IDs, so the keys can be used as array indices without hashing and without
+ * collisions. The array grows on demand as new probes are instrumented.
+ * A list of touched keys is maintained so that {@link #clear()} only costs
+ * as much as the number of keys that were incremented.</p>
+ *
+ * <p>By default, increments are not synchronized, which makes the hot path
+ * of every probe a bounds check plus an array increment. If probes may be
+ * logged from more than one thread, the counter must be switched into
+ * concurrent mode via {@link #setConcurrent(boolean)}, after which all
+ * mutations take the monitor of this counter.</p>
+ *
+ * <p>{@link DenseNonCollidingCoverage} does not use concurrent mode for
+ * probes: only the thread that owns a coverage map increments its counter,
+ * and probes of other threads are counted separately and merged later.</p>
+ */
+public class DenseNonCollidingCounter extends Counter {
+
+    /** The counts indexed by key. */
+    protected int[] counts;
+
+    /** List of keys whose count is non-zero, in order of first increment. */
+    protected IntArrayList nonZeroKeys;
+
+    /** Whether mutations must be synchronized. */
+    protected volatile boolean concurrent = false;
+
+    /**
+     * Creates a new counter.
+     *
+     * @param size the initial capacity (the counter grows as needed)
+     */
+    public DenseNonCollidingCounter(int size) {
+        super(1);
+        this.counts = new int[Math.max(size, 1)];
+        this.nonZeroKeys = new IntArrayList(Math.max(size / 2, 1));
+    }
+
+    /**
+     * Switches this counter into (or out of) concurrent mode.
+     *
+     * @param concurrent whether increments may race across threads
+     */
+    public synchronized void setConcurrent(boolean concurrent) {
+        this.concurrent = concurrent;
+    }
+
+    /**
+     * Returns whether this counter synchronizes its mutations.
+     *
+     * @return whether this counter is in concurrent mode
+     */
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    /**
+     * Returns the number of keys with non-zero counts.
+     *
+     * @return the number of keys with non-zero counts
+     */
+    @Override
+    public int size() {
+        return nonZeroKeys.size();
+    }
+
+    /**
+     * Returns the current capacity of the backing array.
+     *
+     * @return the number of keys that can be stored without growing
+     */
+    public int capacity() {
+        return counts.length;
+    }
+
+    /**
+     * Clears the counter by setting all touched values to zero.
+     */
+    @Override
+    public void clear() {
+        if (concurrent) {
+            synchronized (this) {
+                clearUnsynchronized();
+            }
+        } else {
+            clearUnsynchronized();
+        }
+    }
+
+    private void clearUnsynchronized() {
+        IntIterator iter = nonZeroKeys.intIterator();
+        while (iter.hasNext()) {
+            counts[iter.next()] = 0;
+        }
+        nonZeroKeys.clear();
+        fingerprint = 0;
+    }
+
+    /**
+     * Increments the count at the given key.
+     *
+     * @param key the key whose count to increment
+     * @return the new value after incrementing the count
+     */
+    @Override
+    public int increment(int key) {
+        return increment(key, 1);
+    }
+
+    /**
+     * Increments the count at the given key by a given delta.
+     *
+     * @param key the key whose count to increment
+     * @param delta the amount to increment by
+     * @return the new value after incrementing the count
+     */
+    @Override
+    public int increment(int key, int delta) {
+        if (concurrent) {
+            synchronized (this) {
+                return incrementUnsynchronized(key, delta);
+            }
+        } else {
+            return incrementUnsynchronized(key, delta);
+        }
+    }
+
+    /**
+     * Increments the count at the given key without synchronization, regardless of the mode.
+     *
+     * @param key the key whose count to increment
+     * @param delta the amount to increment by
+     * @return the new value after incrementing the count
+     */
+    int incrementUnsynchronized(int key, int delta) {
+        if (key >= counts.length) {
+            grow(key);
+        }
+        fingerprint += Hashing.mix64(key) * delta;
+        int newVal = (counts[key] += delta);
+        if (newVal == delta) {
+            nonZeroKeys.add(key);
+        }
+        return newVal;
+    }
+
+    /**
+     * Sets the count at the given key.
+     *
+     * @param key the key whose count to set
+     * @param value the new (non-negative) count; setting 0 removes the key
+     */
+    public void set(int key, int value) {
+        if (concurrent) {
+            synchronized (this) {
+                setUnsynchronized(key, value);
+            }
+        } else {
+            setUnsynchronized(key, value);
+        }
+    }
+
+    private void setUnsynchronized(int key, int value) {
+        if (key >= counts.length) {
+            grow(key);
+        }
+        int before = counts[key];
+        fingerprint += Hashing.mix64(key) * ((long) value - before);
+        counts[key] = value;
+        if (before == 0 && value != 0) {
+            nonZeroKeys.add(key);
+        } else if (before != 0 && value == 0) {
+            nonZeroKeys.remove(key);
+        }
+    }
+
+    /** Grows the backing array so that the given key fits; called with the monitor held in concurrent mode. */
+    private void grow(int key) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Negative coverage key: " + key);
+        }
+        int newLength = counts.length;
+        while (newLength <= key) {
+            newLength <<= 1;
+        }
+        counts = Arrays.copyOf(counts, newLength);
+    }
+
+    @Override
+    protected int incrementAtIndex(int index, int delta) {
+        throw new UnsupportedOperationException("This coverage is already non-colliding, please just use increment");
+    }
+
+    @Override
+    public void setAtIndex(int idx, int value) {
+        throw new UnsupportedOperationException("This coverage is already non-colliding, please just use set");
+    }
+
+    @Override
+    public int getAtIndex(int idx) {
+        throw new UnsupportedOperationException("This coverage is already non-colliding, please just use get");
+    }
+
+    /**
+     * Returns the number of keys with non-zero counts.
+     *
+     * @return the number of keys with non-zero counts
+     */
+    @Override
+    public int getNonZeroSize() {
+        return nonZeroKeys.size();
+    }
+
+    @Override
+    public boolean hasNonZeros() {
+        return !nonZeroKeys.isEmpty();
+    }
+
+    /**
+     * Returns a list of keys at which the count is non-zero.
+     *
+     * @return a list of keys at which the count is non-zero
+     */
+    @Override
+    public IntList getNonZeroIndices() {
+        return nonZeroKeys;
+    }
+
+    /**
+     * Returns a list of non-zero count values in this counter.
+     *
+     * @return a list of non-zero count values in this counter.
+     */
+    @Override
+    public IntList getNonZeroValues() {
+        IntArrayList values = new IntArrayList(nonZeroKeys.size());
+        IntIterator iter = nonZeroKeys.intIterator();
+        while (iter.hasNext()) {
+            values.add(counts[iter.next()]);
+        }
+        return values;
+    }
+
+    /**
+     * Retrieves the count for a given key.
+     *
+     * @param key the key to query
+     * @return the count for this key
+     */
+    @Override
+    public int get(int key) {
+        return key >= 0 && key < counts.length ? counts[key] : 0;
+    }
+
+    public synchronized void copyFrom(DenseNonCollidingCounter counter) {
+        this.counts = Arrays.copyOf(counter.counts, counter.counts.length);
+        this.nonZeroKeys = new IntArrayList(counter.nonZeroKeys.size());
+        this.nonZeroKeys.addAll(counter.nonZeroKeys);
+        this.fingerprint = counter.fingerprint;
+    }
+
+    /**
+     * Returns a hash code of the non-zero (key, count) pairs.
+     *
+     * <p>This is computed the same way as the hash code of an
+     * {@link org.eclipse.collections.impl.map.mutable.primitive.IntIntHashMap}
+     * holding the same entries, so that path hashes are comparable with
+     * {@link FastNonCollidingCounter}.</p>
+     *
+     * @return a hash of the non-zero entries
+     */
+    public int entriesHashCode() {
+        int hash = 0;
+        IntIterator iter = nonZeroKeys.intIterator();
+        while (iter.hasNext()) {
+            int key = iter.next();
+            hash += key ^ counts[key];
+        }
+        return hash;
+    }
+}
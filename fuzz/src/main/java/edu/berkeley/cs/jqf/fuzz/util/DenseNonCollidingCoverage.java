@@ -0,0 +1,317 @@
+package edu.berkeley.cs.jqf.fuzz.util;
+
+import janala.instrument.FastCoverageListener;
+import janala.instrument.GlobalStateForInstrumentation;
+import org.eclipse.collections.api.iterator.IntIterator;
+import org.eclipse.collections.api.list.primitive.IntList;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+/**
+ * Utility class to collect branch and function coverage from the
+ * fast-coverage instrumentation using a {@link DenseNonCollidingCounter}.
+ *
+ * <p>This is a drop-in alternative to {@link FastNonCollidingCoverage}: probe
+ * IDs index directly into a growable array instead of a hash map. The first
+ * thread that logs a probe owns the map: its probes are a plain array increment,
+ * without any monitor or memory fence. Probes of other threads are counted in a
+ * separate, synchronized counter, which {@link #mergeForeignCounts()} adds to
+ * this map once the run has finished. All coverage maps of a guidance must use
+ * the same implementation, which is ensured by creating them through
+ * {@link CoverageFactory}.</p>
+ */
+public class DenseNonCollidingCoverage extends FastCoverageListener.Default implements ICoverage<DenseNonCollidingCounter> {
+
+    protected final DenseNonCollidingCounter counter;
+
+    /**
+     * The first thread that logged a probe into this coverage map.
+     *
+     * <p>This is only written once, with the monitor held. Other threads may see a
+     * stale null, in which case they take the monitor and see the actual owner.</p>
+     */
+    private Thread owner;
+
+    /** Counts of probes logged by threads other than the owner; guarded by this map's monitor. */
+    private DenseNonCollidingCounter foreignCounter;
+
+    /** Whether probes from threads other than the owner have been logged. */
+    private volatile boolean multiThreaded = false;
+
+    /** Creates a new coverage map sized for the probes instrumented so far. */
+    public DenseNonCollidingCoverage() {
+        this.counter = new DenseNonCollidingCounter(
+                Math.max(1 << 10, GlobalStateForInstrumentation.instance.getFastCoverageId() + 1));
+    }
+
+    /**
+     * Creates a copy of an existing coverage map.
+     *
+     */
+    public DenseNonCollidingCoverage copy() {
+        DenseNonCollidingCoverage ret = new DenseNonCollidingCoverage();
+        ret.counter.copyFrom(this.counter);
+        return ret;
+    }
+
+    /**
+     * Returns the size of the coverage map.
+     *
+     * @return the size of the coverage map
+     */
+    public int size() {
+        return counter.capacity();
+    }
+
+    /**
+     * Returns the number of edges covered.
+     *
+     * @return the number of edges with non-zero counts
+     */
+    public int getNonZeroCount() {
+        return counter.getNonZeroSize();
+    }
+
+    /**
+     * Returns a collection of branches that are covered.
+     *
+     * @return a collection of keys that are covered
+     */
+    public IntList getCovered() {
+        return counter.getNonZeroIndices();
+    }
+
+    /**
+     * Returns a set of edges in this coverage that don't exist in baseline
+     *
+     * @param baseline the baseline coverage
+     * @return the set of edges that do not exist in {@code baseline}
+     */
+    public IntList computeNewCoverage(ICoverage baseline) {
+        IntArrayList newCoverage = new IntArrayList();
+        Counter baseCounter = baseline.getCounter();
+        IntIterator iter = this.counter.getNonZeroIndices().intIterator();
+        while (iter.hasNext()) {
+            int idx = iter.next();
+            if (baseCounter.get(idx) == 0) {
+                newCoverage.add(idx);
+            }
+        }
+        return newCoverage;
+    }
+
+    /**
+     * Clears the coverage map.
+     */
+    public void clear() {
+        this.counter.clear();
+        if (multiThreaded) {
+            synchronized (this) {
+                foreignCounter.clear();
+            }
+        }
+    }
+
+    /**
+     * Adds the counts of probes logged by threads other than the owner to this
+     * coverage map. This must be called by the owner, or once no thread logs
+     * probes anymore, e.g. when handling the result of a run.
+     */
+    public void mergeForeignCounts() {
+        if (!multiThreaded) {
+            return;
+        }
+        synchronized (this) {
+            IntIterator iter = foreignCounter.getNonZeroIndices().intIterator();
+            while (iter.hasNext()) {
+                int key = iter.next();
+                counter.incrementUnsynchronized(key, foreignCounter.get(key));
+            }
+            foreignCounter.clear();
+        }
+    }
+
+    /**
+     * Updates this coverage with bits from the parameter.
+     *
+     * @param that the run coverage whose bits to OR
+     *
+     * @return <code>true</code> iff <code>that</code> is not a subset
+     *         of <code>this</code>, causing <code>this</code> to change.
+     */
+    public boolean updateBits(ICoverage that) {
+        DenseNonCollidingCounter thatCounter = (DenseNonCollidingCounter) that.getCounter();
+        boolean changed = false;
+        IntIterator iter = thatCounter.getNonZeroIndices().intIterator();
+        while (iter.hasNext()) {
+            int key = iter.next();
+            int before = this.counter.get(key);
+            int after = before | FastNonCollidingCoverage.hob(thatCounter.get(key));
+            if (after != before) {
+                this.counter.set(key, after);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Classifies this run coverage and merges it in a single pass over its covered keys.
+     *
+     * @param total the total coverage to merge into
+     * @param valid the valid coverage to merge into, or {@code null} if the run was not valid
+     * @param delta the delta to fill (cleared first)
+     */
+    @Override
+    public void classifyAndMerge(ICoverage total, ICoverage valid, CoverageDelta delta) {
+        if (!(total instanceof DenseNonCollidingCoverage) ||
+                (valid != null && !(valid instanceof DenseNonCollidingCoverage))) {
+            ICoverage.super.classifyAndMerge(total, valid, delta);
+            return;
+        }
+        delta.clear();
+        DenseNonCollidingCounter totalCounter = ((DenseNonCollidingCoverage) total).counter;
+        DenseNonCollidingCounter validCounter = valid == null ? null : ((DenseNonCollidingCoverage) valid).counter;
+        IntArrayList keys = this.counter.nonZeroKeys;
+        int[] counts = this.counter.counts;
+        for (int i = 0; i < keys.size(); i++) {
+            int key = keys.get(i);
+            int bucket = FastNonCollidingCoverage.hob(counts[key]);
+
+            int before = totalCounter.get(key);
+            if (before == 0) {
+                delta.newCoverage.add(key);
+            }
+            if ((before | bucket) != before) {
+                totalCounter.set(key, before | bucket);
+                delta.changed = true;
+            }
+
+            if (validCounter != null) {
+                int validBefore = validCounter.get(key);
+                if (validBefore == 0) {
+                    delta.newValidCoverage.add(key);
+                }
+                if ((validBefore | bucket) != validBefore) {
+                    validCounter.set(key, validBefore | bucket);
+                    delta.validChanged = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether probes from more than one thread have been logged.
+     *
+     * @return whether this coverage map is being updated concurrently
+     */
+    public boolean isMultiThreaded() {
+        return multiThreaded;
+    }
+
+    /** Returns a hash code of the edge counts in the coverage map. */
+    @Override
+    public int hashCode() {
+        return counter.entriesHashCode();
+    }
+
+    /**
+     * Returns a hash code of the list of edges that have been covered at least once.
+     *
+     * @return a hash of non-zero entries
+     */
+    public int nonZeroHashCode() {
+        return counter.getNonZeroIndices().hashCode();
+    }
+
+    @Override
+    public int getCountAtIndex(int index) {
+        return counter.get(index);
+    }
+
+    @Override
+    public void restoreCountAtIndex(int index, int value) {
+        counter.increment(index, value);
+    }
+
+    @Override
+    public Counter getCounter() {
+        return this.counter;
+    }
+
+    /**
+     * @return a string representing the counter
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Coverage counts: \n");
+        for (int i = 0; i < counter.capacity(); i++) {
+            int count = counter.get(i);
+            if (count == 0) {
+                continue;
+            }
+            sb.append(i);
+            sb.append("->");
+            sb.append(count);
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+
+    @Override
+    public void logMethodBegin(int iid) {
+        logCoverage(iid, 0);
+    }
+
+    @Override
+    public void logJump(int iid, int branch) {
+        logCoverage(iid, branch);
+    }
+
+    @Override
+    public void logLookUpSwitch(int value, int iid, int dflt, int[] cases) {
+        // Compute arm index or else default
+        int arm = cases.length;
+        for (int i = 0; i < cases.length; i++) {
+            if (value == cases[i]) {
+                arm = i;
+                break;
+            }
+        }
+        arm++;
+        logCoverage(iid, arm);
+    }
+
+    @Override
+    public void logTableSwitch(int value, int iid, int min, int max, int dflt) {
+        int arm = 1 + max - min;
+        if (value >= min && value <= max) {
+            arm = value - min;
+        }
+        arm++;
+        logCoverage(iid, arm);
+    }
+
+    private void logCoverage(int iid, int arm) {
+        if (owner == Thread.currentThread()) {
+            counter.incrementUnsynchronized(iid + arm, 1);
+        } else {
+            logCoverageFromOtherThread(iid + arm);
+        }
+    }
+
+    /* Claims this map for the current thread if it has no owner, or counts the probe separately. */
+    private synchronized void logCoverageFromOtherThread(int key) {
+        if (owner == null) {
+            owner = Thread.currentThread();
+            counter.incrementUnsynchronized(key, 1);
+            return;
+        }
+        if (foreignCounter == null) {
+            foreignCounter = new DenseNonCollidingCounter(counter.capacity());
+        }
+        foreignCounter.incrementUnsynchronized(key, 1);
+        multiThreaded = true;
+    }
+}
@@ -50,6 +50,7 @@ public class FastNonCollidingCounter extends Counter {
     public synchronized void clear() {
         this.counts.clear();
         this.nonZeroKeys.clear();
+        this.fingerprint = 0;
     }
 
     /**
@@ -60,6 +61,7 @@ public class FastNonCollidingCounter extends Counter {
      * @return the new value after incrementing the count
      */
     public synchronized int increment(int key) {
+        fingerprint += Hashing.mix64(key);
         int newVal = this.counts.addToValue(key, 1);
         if (newVal == 1) {
             this.nonZeroKeys.add(key);
@@ -76,6 +78,7 @@ public class FastNonCollidingCounter extends Counter {
      * @return the new value after incrementing the count
      */
     public synchronized int increment(int key, int delta) {
+        fingerprint += Hashing.mix64(key) * delta;
         int newVal = this.counts.addToValue(key, delta);
         if (newVal == delta) {
             nonZeroKeys.add(key);
@@ -153,6 +156,7 @@ public class FastNonCollidingCounter extends Counter {
 
     public synchronized void copyFrom(FastNonCollidingCounter counter) {
         this.counts = new IntIntHashMap(counter.counts);
+        this.fingerprint = counter.fingerprint;
         this.nonZeroKeys = new IntArrayList(counter.nonZeroKeys.size());
         this.nonZeroKeys.addAll(counter.nonZeroKeys);
     }
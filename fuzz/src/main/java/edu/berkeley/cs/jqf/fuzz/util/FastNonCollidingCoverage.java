@@ -29,10 +29,12 @@
 package edu.berkeley.cs.jqf.fuzz.util;
 
 import janala.instrument.FastCoverageListener;
+import janala.instrument.ProbeRemoval;
 import org.eclipse.collections.api.iterator.IntIterator;
 import org.eclipse.collections.api.list.primitive.IntList;
 import org.eclipse.collections.api.tuple.primitive.IntIntPair;
 import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.IntIntHashMap;
 
 import java.util.Iterator;
 
@@ -119,6 +121,13 @@ public class FastNonCollidingCoverage extends FastCoverageListener.Default imple
 
     private static int[] HOB_CACHE = new int[1024];
 
+    /**
+     * The highest count bucket if the probes of saturated edges may be removed (see
+     * {@link ProbeRemoval}), or 0 if buckets are not capped. All counts of 128 and more
+     * share the last bucket, so that an edge can be hit in every bucket there is.
+     */
+    static final int MAX_BUCKET = ProbeRemoval.isEnabled() ? 128 : 0;
+
     /* Computes the highest order bit */
     private static int computeHob(int num)
     {
@@ -136,16 +145,16 @@ public class FastNonCollidingCoverage extends FastCoverageListener.Default imple
     /** Populates the HOB cache. */
     static {
         for (int i = 0; i < HOB_CACHE.length; i++) {
-            HOB_CACHE[i] = computeHob(i);
+            HOB_CACHE[i] = MAX_BUCKET > 0 ? Math.min(computeHob(i), MAX_BUCKET) : computeHob(i);
         }
     }
 
-    /** Returns the highest order bit (perhaps using the cache) */
-    private static int hob(int num) {
+    /** Returns the highest order bit (perhaps using the cache), capped at {@link #MAX_BUCKET} if set */
+    static int hob(int num) {
         if (num < HOB_CACHE.length) {
             return HOB_CACHE[num];
         } else {
-            return computeHob(num);
+            return MAX_BUCKET > 0 ? MAX_BUCKET : computeHob(num);
         }
     }
 
@@ -171,6 +180,7 @@ public class FastNonCollidingCoverage extends FastCoverageListener.Default imple
                     int after = before | hob(coverageEntry.getTwo());
                     if(after != before){
                         this.counter.counts.put(coverageEntry.getOne(), after);
+                        this.counter.fingerprint += Hashing.mix64(coverageEntry.getOne()) * ((long) after - before);
                         changed = true;
                     }
                     if(before == 0){
@@ -182,6 +192,71 @@ public class FastNonCollidingCoverage extends FastCoverageListener.Default imple
         return changed;
     }
 
+    /**
+     * Classifies this run coverage and merges it in a single pass over its covered keys.
+     *
+     * <p>Unlike {@link #updateBits}, this looks up counts by key instead of
+     * iterating over boxed key-value pairs.</p>
+     *
+     * @param total the total coverage to merge into
+     * @param valid the valid coverage to merge into, or {@code null} if the run was not valid
+     * @param delta the delta to fill (cleared first)
+     */
+    @Override
+    public void classifyAndMerge(ICoverage total, ICoverage valid, CoverageDelta delta) {
+        if (!(total instanceof FastNonCollidingCoverage) ||
+                (valid != null && !(valid instanceof FastNonCollidingCoverage))) {
+            ICoverage.super.classifyAndMerge(total, valid, delta);
+            return;
+        }
+        delta.clear();
+        FastNonCollidingCounter totalCounter = ((FastNonCollidingCoverage) total).counter;
+        FastNonCollidingCounter validCounter = valid == null ? null : ((FastNonCollidingCoverage) valid).counter;
+        synchronized (this.counter) {
+            synchronized (totalCounter) {
+                if (validCounter == null) {
+                    classifyAndMerge(totalCounter, null, delta);
+                } else {
+                    synchronized (validCounter) {
+                        classifyAndMerge(totalCounter, validCounter, delta);
+                    }
+                }
+            }
+        }
+    }
+
+    private void classifyAndMerge(FastNonCollidingCounter totalCounter, FastNonCollidingCounter validCounter,
+                                  CoverageDelta delta) {
+        IntArrayList keys = this.counter.nonZeroKeys;
+        IntIntHashMap counts = this.counter.counts;
+        for (int i = 0; i < keys.size(); i++) {
+            int key = keys.get(i);
+            int bucket = hob(counts.get(key));
+            if (merge(totalCounter, key, bucket, delta.newCoverage)) {
+                delta.changed = true;
+            }
+            if (validCounter != null && merge(validCounter, key, bucket, delta.newValidCoverage)) {
+                delta.validChanged = true;
+            }
+        }
+    }
+
+    /** ORs a count bucket into a key of a counter, recording the key if it was not covered before. */
+    private static boolean merge(FastNonCollidingCounter counter, int key, int bucket, IntArrayList newKeys) {
+        int before = counter.counts.get(key);
+        if (before == 0) {
+            newKeys.add(key);
+            counter.nonZeroKeys.add(key);
+        }
+        int after = before | bucket;
+        if (after == before) {
+            return false;
+        }
+        counter.counts.put(key, after);
+        counter.fingerprint += Hashing.mix64(key) * ((long) after - before);
+        return true;
+    }
+
     /** Returns a hash code of the edge counts in the coverage map. */
     @Override
     public int hashCode() {
@@ -197,6 +272,16 @@ public class FastNonCollidingCoverage extends FastCoverageListener.Default imple
         return counter.getNonZeroIndices().hashCode();
     }
 
+    @Override
+    public int getCountAtIndex(int index) {
+        return counter.get(index);
+    }
+
+    @Override
+    public void restoreCountAtIndex(int index, int value) {
+        counter.increment(index, value);
+    }
+
     @Override
     public Counter getCounter() {
         return this.counter;
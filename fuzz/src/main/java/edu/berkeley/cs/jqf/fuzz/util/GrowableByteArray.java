@@ -0,0 +1,208 @@
+package edu.berkeley.cs.jqf.fuzz.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A growable list of unsigned byte values (0-255) backed by a primitive array.
+ *
+ * <p>This is used as the storage of linear fuzzing inputs, where a list of
+ * boxed integers would cost an allocation per byte on generation and a full
+ * element-wise copy whenever a child input is derived from a parent.
+ * Copying a {@link GrowableByteArray} is a single array copy.</p>
+ */
+public class GrowableByteArray {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    /** The backing array; only the first {@link #size} entries are valid. */
+    private byte[] bytes;
+
+    /** The number of valid entries in the backing array. */
+    private int size;
+
+    /**
+     * Creates an empty byte array with a default initial capacity.
+     */
+    public GrowableByteArray() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty byte array with the given initial capacity.
+     *
+     * @param capacity the initial capacity
+     */
+    public GrowableByteArray(int capacity) {
+        this.bytes = new byte[Math.max(capacity, 1)];
+        this.size = 0;
+    }
+
+    /**
+     * Creates a copy of another byte array.
+     *
+     * @param other the array to copy
+     */
+    public GrowableByteArray(GrowableByteArray other) {
+        this.bytes = Arrays.copyOf(other.bytes, Math.max(other.size, 1));
+        this.size = other.size;
+    }
+
+    /**
+     * Returns the number of values stored.
+     *
+     * @return the number of values stored
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether no values are stored.
+     *
+     * @return whether no values are stored
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the value at the given index as an unsigned byte.
+     *
+     * @param index the index to read
+     * @return a value in the range 0-255
+     */
+    public int get(int index) {
+        checkIndex(index);
+        return bytes[index] & 0xFF;
+    }
+
+    /**
+     * Sets the value at the given index.
+     *
+     * @param index the index to write
+     * @param value a value in the range 0-255
+     */
+    public void set(int index, int value) {
+        checkIndex(index);
+        bytes[index] = (byte) value;
+    }
+
+    /**
+     * Appends a value to the end of this array.
+     *
+     * @param value a value in the range 0-255
+     */
+    public void add(int value) {
+        if (size == bytes.length) {
+            bytes = Arrays.copyOf(bytes, bytes.length << 1);
+        }
+        bytes[size++] = (byte) value;
+    }
+
+    /**
+     * Copies a range of stored values into a destination array.
+     *
+     * @param srcIndex the index of the first value to copy
+     * @param dest     the destination array
+     * @param destPos  the starting position in the destination array
+     * @param length   the number of values to copy
+     */
+    public void copyTo(int srcIndex, byte[] dest, int destPos, int length) {
+        if (srcIndex < 0 || length < 0 || srcIndex + length > size) {
+            throw new IndexOutOfBoundsException(String.format("Range [%d, %d) out of bounds for size %d",
+                    srcIndex, srcIndex + length, size));
+        }
+        System.arraycopy(bytes, srcIndex, dest, destPos, length);
+    }
+
+    /**
+     * Removes the values in a range, shifting subsequent values to the left.
+     *
+     * @param fromIndex the index of the first value to remove
+     * @param toIndex   the index after the last value to remove
+     */
+    public void removeRange(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex < fromIndex || toIndex > size) {
+            throw new IndexOutOfBoundsException(String.format("Range [%d, %d) out of bounds for size %d",
+                    fromIndex, toIndex, size));
+        }
+        System.arraycopy(bytes, toIndex, bytes, fromIndex, size - toIndex);
+        size -= toIndex - fromIndex;
+    }
+
+    /**
+     * Discards all values at index <code>newSize</code> or beyond and
+     * releases unused capacity.
+     *
+     * @param newSize the number of leading values to retain
+     */
+    public void truncate(int newSize) {
+        if (newSize < 0 || newSize > size) {
+            throw new IndexOutOfBoundsException(String.format("Cannot truncate to %d; size is %d", newSize, size));
+        }
+        this.size = newSize;
+        if (bytes.length != Math.max(size, 1)) {
+            bytes = Arrays.copyOf(bytes, Math.max(size, 1));
+        }
+    }
+
+    /**
+     * Writes all stored values to an output stream.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the stream cannot be written to
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, 0, size);
+    }
+
+    /**
+     * Returns a copy of the stored values.
+     *
+     * @return a new array of length {@link #size()}
+     */
+    public byte[] toArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index %d out of bounds for size %d", index, size));
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GrowableByteArray)) {
+            return false;
+        }
+        GrowableByteArray that = (GrowableByteArray) o;
+        return Arrays.equals(this.bytes, 0, this.size, that.bytes, 0, that.size);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 1;
+        for (int i = 0; i < size; i++) {
+            result = 31 * result + bytes[i];
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(bytes[i] & 0xFF);
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -84,4 +84,21 @@ public class Hashing {
         return knuth(x*31 + y, bound);
     }
 
+    /**
+     * Returns a pseudo-random 64-bit value for a coverage key.
+     *
+     * <p>This is the finalizer of SplitMix64 applied to an offset key, so
+     * that distinct keys map to well-distributed odd and even values alike
+     * and no key maps to zero by construction.</p>
+     *
+     * @param key the key to mix
+     * @return a 64-bit hash of {@code key}
+     */
+    public static long mix64(int key) {
+        long z = key + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
 }
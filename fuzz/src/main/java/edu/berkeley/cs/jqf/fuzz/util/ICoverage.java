@@ -47,6 +47,27 @@ public interface ICoverage<T extends Counter> {
      */
     boolean updateBits(ICoverage that);
 
+    /**
+     * Classifies this run coverage against the total (and valid) coverage and
+     * merges its count buckets into them.
+     *
+     * <p>This is equivalent to computing {@link #computeNewCoverage} against both
+     * baselines before calling {@link #updateBits} on each of them. Implementations
+     * for non-colliding coverage do all of this in a single pass over the keys
+     * covered by this run.</p>
+     *
+     * @param total the total coverage to merge into
+     * @param valid the valid coverage to merge into, or {@code null} if the run was not valid
+     * @param delta the delta to fill (cleared first)
+     */
+    default void classifyAndMerge(ICoverage total, ICoverage valid, CoverageDelta delta) {
+        delta.classify(this, total, valid);
+        delta.changed = total.updateBits(this);
+        if (valid != null) {
+            delta.validChanged = valid.updateBits(this);
+        }
+    }
+
     /**
      * Returns a hash code of the list of edges that have been covered at least once.
      *
@@ -54,6 +75,40 @@ public interface ICoverage<T extends Counter> {
      */
     int nonZeroHashCode();
 
+    /**
+     * Returns a 64-bit fingerprint of the edge counts, which identifies the
+     * execution path of a run.
+     *
+     * <p>The fingerprint is maintained incrementally by the counter, so this
+     * takes constant time.</p>
+     *
+     * @return a fingerprint that is equal for equal edge counts
+     */
+    default long getPathFingerprint() {
+        return getCounter().getFingerprint();
+    }
+
+    /**
+     * Returns the count at a counter index, as listed by {@link Counter#getNonZeroIndices()}.
+     *
+     * @param index the counter index
+     * @return the count at {@code index}
+     */
+    default int getCountAtIndex(int index) {
+        return getCounter().getAtIndex(index);
+    }
+
+    /**
+     * Restores the count at a counter index of an empty coverage map, e.g.
+     * when resuming a campaign from a {@link CampaignStore}.
+     *
+     * @param index the counter index
+     * @param value the count to restore
+     */
+    default void restoreCountAtIndex(int index, int value) {
+        getCounter().setAtIndex(index, value);
+    }
+
     Counter getCounter();
 
     ICoverage<T> copy();
@@ -0,0 +1,51 @@
+package edu.berkeley.cs.jqf.fuzz.util;
+
+import edu.berkeley.cs.jqf.instrument.tracing.InlineCoverageMap;
+import janala.instrument.GlobalStateForInstrumentation;
+
+/**
+ * Transfers the counts of inline coverage probes into a coverage map.
+ *
+ * <p>Inline probes (see {@link InlineCoverageMap}) bypass the coverage listener,
+ * so a guidance clears the shared map once when the campaign starts and drains it
+ * into its run coverage when the result of each trial comes in. Only the blocks
+ * of keys that instrumented code has marked as touched are scanned, and draining
+ * resets every count and mark it reads, so the map is empty again for the next
+ * trial without a pass over the whole array.</p>
+ */
+public class InlineCoverage {
+
+    /** Discards all counts, e.g. of probes executed before the campaign started. */
+    public static void clear() {
+        InlineCoverageMap.clear();
+    }
+
+    /**
+     * Adds the counts of all probes executed since the last drain to a coverage
+     * map and resets them to zero.
+     *
+     * @param coverage the coverage map of the current run
+     */
+    public static void drainInto(ICoverage coverage) {
+        // The map may grow concurrently, so work on the arrays as they are now
+        byte[] touched = InlineCoverageMap.touched;
+        int[] hits = InlineCoverageMap.hits;
+        int limit = Math.min(hits.length, GlobalStateForInstrumentation.instance.getFastCoverageId() + 1);
+        int numBlocks = Math.min(touched.length, (limit + InlineCoverageMap.BLOCK_SIZE - 1) >> InlineCoverageMap.BLOCK_SHIFT);
+        Counter counter = coverage.getCounter();
+        for (int block = 0; block < numBlocks; block++) {
+            if (touched[block] == 0) {
+                continue;
+            }
+            touched[block] = 0;
+            int end = Math.min(limit, (block + 1) << InlineCoverageMap.BLOCK_SHIFT);
+            for (int key = block << InlineCoverageMap.BLOCK_SHIFT; key < end; key++) {
+                int count = hits[key];
+                if (count != 0) {
+                    hits[key] = 0;
+                    counter.increment(key, count);
+                }
+            }
+        }
+    }
+}
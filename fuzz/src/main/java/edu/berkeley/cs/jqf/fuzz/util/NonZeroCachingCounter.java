@@ -62,6 +62,7 @@ public class NonZeroCachingCounter extends Counter {
         }
         this.nonZeroCount = 0;
         this.nonZeroIndices = new IntArrayList();
+        this.fingerprint = 0;
     }
 
 
@@ -0,0 +1,107 @@
+package edu.berkeley.cs.jqf.fuzz.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import edu.berkeley.cs.jqf.fuzz.guidance.TimeoutException;
+import edu.berkeley.cs.jqf.instrument.tracing.ProbeInterrupt;
+
+/**
+ * Enforces the single-run timeout for fast-coverage instrumentation.
+ *
+ * <p>With fast coverage, probes never reach the guidance, so the guidance cannot
+ * count branches to check for timeouts. Instead, {@link #start()} arms a deadline
+ * on a background thread for the calling thread, and if the run has not been
+ * {@link #stop() stopped} by then, a {@link TimeoutException} is thrown from the
+ * next probe the run executes (see {@link ProbeInterrupt}).</p>
+ *
+ * <p>Runs that hang without executing any probe, e.g. inside uninstrumented
+ * library code, are only interrupted once they return to instrumented code.</p>
+ */
+public class TrialWatchdog {
+
+    /** The timer of a single run. */
+    private static final class Deadline {
+        final long startTime = System.currentTimeMillis();
+        ScheduledFuture<?> future;
+    }
+
+    private final long timeoutMillis;
+    private final ScheduledExecutorService scheduler;
+
+    /** The pending deadline of each thread that is currently running a trial. */
+    private final Map<Thread, Deadline> deadlines = new HashMap<>();
+
+    /**
+     * Creates a new watchdog.
+     *
+     * @param timeoutMillis the maximum duration of a single run
+     */
+    public TrialWatchdog(long timeoutMillis) {
+        this(timeoutMillis, Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "jqf-trial-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * Creates a new watchdog that arms its deadlines on the given scheduler.
+     *
+     * @param timeoutMillis the maximum duration of a single run
+     * @param scheduler     the scheduler to run expired deadlines on, which is shut down on {@link #close()}
+     */
+    TrialWatchdog(long timeoutMillis, ScheduledExecutorService scheduler) {
+        this.timeoutMillis = timeoutMillis;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Starts the timer for a run on the calling thread, replacing any previous one.
+     */
+    public void start() {
+        Thread thread = Thread.currentThread();
+        stop();
+        Deadline deadline = new Deadline();
+        synchronized (this) {
+            if (scheduler.isShutdown()) {
+                return;
+            }
+            deadline.future = scheduler.schedule(() -> expire(thread, deadline),
+                    timeoutMillis, TimeUnit.MILLISECONDS);
+            deadlines.put(thread, deadline);
+        }
+    }
+
+    /**
+     * Stops the timer for the run on the calling thread, withdrawing a timeout
+     * that has expired but not yet been thrown.
+     */
+    public void stop() {
+        Thread thread = Thread.currentThread();
+        synchronized (this) {
+            Deadline deadline = deadlines.remove(thread);
+            if (deadline != null) {
+                deadline.future.cancel(false);
+            }
+            ProbeInterrupt.clear(thread);
+        }
+    }
+
+    /** Stops the background thread; later runs are no longer timed. */
+    public synchronized void close() {
+        scheduler.shutdownNow();
+    }
+
+    private synchronized void expire(Thread thread, Deadline deadline) {
+        // The run may have been stopped (or restarted) while this task was waiting for the lock
+        if (deadlines.remove(thread, deadline)) {
+            long elapsed = System.currentTimeMillis() - deadline.startTime;
+            ProbeInterrupt.interrupt(thread, new TimeoutException(elapsed, timeoutMillis));
+        }
+    }
+}
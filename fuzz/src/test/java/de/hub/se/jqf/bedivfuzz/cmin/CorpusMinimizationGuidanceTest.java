@@ -0,0 +1,68 @@
+package de.hub.se.jqf.bedivfuzz.cmin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+import de.hub.se.jqf.bedivfuzz.guidance.parallel.ParallelFuzzing;
+import edu.berkeley.cs.jqf.fuzz.Fuzz;
+import edu.berkeley.cs.jqf.fuzz.JQF;
+import edu.berkeley.cs.jqf.fuzz.guidance.Result;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+public class CorpusMinimizationGuidanceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @RunWith(JQF.class)
+    public static class ReplayedFuzzer {
+        @Fuzz
+        public void failOnMultiplesOfThree(int x) {
+            if (x % 3 == 0) {
+                throw new IllegalStateException();
+            }
+        }
+    }
+
+    @Test
+    public void replaysEachInputOnceAcrossWorkers() throws Exception {
+        Random random = new Random(42);
+        File[] inputs = new File[50];
+        for (int i = 0; i < inputs.length; i++) {
+            byte[] bytes = new byte[4 + i % 3];
+            random.nextBytes(bytes);
+            inputs[i] = folder.newFile("id_" + i);
+            Files.write(inputs[i].toPath(), bytes);
+        }
+
+        CorpusMinimizationGuidance guidance = new CorpusMinimizationGuidance(inputs);
+        ParallelFuzzing.run(ReplayedFuzzer.class, "failOnMultiplesOfThree",
+                getClass().getClassLoader(), guidance, 4, null);
+
+        int failures = 0;
+        for (int i = 0; i < inputs.length; i++) {
+            assertNotNull(guidance.results[i]);
+            assertEquals(4 + i % 3, guidance.sizes[i]);
+            if (guidance.results[i] == Result.FAILURE) {
+                failures++;
+                assertNull(guidance.coveredEdges[i]);
+            } else {
+                assertNotNull(guidance.coveredEdges[i]);
+            }
+        }
+        assertTrue(failures > 0);
+        assertEquals(failures, guidance.getNumFailures());
+
+        // Without instrumentation no edges are covered, so nothing needs to be kept
+        List<Integer> selected = guidance.selectInputs(false);
+        assertTrue(selected.isEmpty());
+    }
+}
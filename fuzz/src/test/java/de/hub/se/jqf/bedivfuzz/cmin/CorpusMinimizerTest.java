@@ -0,0 +1,67 @@
+package de.hub.se.jqf.bedivfuzz.cmin;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CorpusMinimizerTest {
+
+    @Test
+    public void prefersInputsCoveringMorePerWeight() {
+        CorpusMinimizer minimizer = new CorpusMinimizer();
+        minimizer.add(new int[]{1, 2, 3, 4}, 100); // covers everything, but is large
+        minimizer.add(new int[]{1, 2}, 10);
+        minimizer.add(new int[]{3, 4}, 10);
+        minimizer.add(new int[]{2, 3}, 10);
+        assertEquals(Arrays.asList(1, 2), minimizer.select());
+    }
+
+    @Test
+    public void tiesArePickedByWeightThenOrder() {
+        CorpusMinimizer minimizer = new CorpusMinimizer();
+        minimizer.add(new int[]{1}, 1);
+        minimizer.add(new int[]{1}, 1);
+        minimizer.add(new int[]{2, 3}, 2);
+        minimizer.add(new int[]{2, 3}, 4);
+        assertEquals(Arrays.asList(0, 2), minimizer.select());
+    }
+
+    @Test
+    public void inputsWithoutEdgesAreNeverSelected() {
+        CorpusMinimizer minimizer = new CorpusMinimizer();
+        minimizer.add(new int[0], 1);
+        minimizer.add(new int[]{7}, 1);
+        assertEquals(Arrays.asList(1), minimizer.select());
+    }
+
+    @Test
+    public void selectionCoversAllEdges() {
+        Random random = new Random(42);
+        CorpusMinimizer minimizer = new CorpusMinimizer();
+        IntHashSet all = new IntHashSet();
+        int[][] corpus = new int[2000][];
+        for (int i = 0; i < corpus.length; i++) {
+            corpus[i] = random.ints(1 + random.nextInt(30), 0, 500).toArray();
+            all.addAll(corpus[i]);
+            minimizer.add(corpus[i], 1 + random.nextInt(100));
+        }
+        List<Integer> selected = minimizer.select();
+        IntHashSet covered = new IntHashSet();
+        for (int idx : selected) {
+            covered.addAll(corpus[idx]);
+        }
+        assertEquals(all, covered);
+        assertTrue(selected.size() < corpus.length / 4);
+        assertEquals(selected.size(), selected.stream().distinct().count());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void weightsMustBePositive() {
+        new CorpusMinimizer().add(new int[]{1}, 0);
+    }
+}
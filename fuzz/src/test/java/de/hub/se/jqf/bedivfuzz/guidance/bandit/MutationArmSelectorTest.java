@@ -0,0 +1,93 @@
+package de.hub.se.jqf.bedivfuzz.guidance.bandit;
+
+import java.util.Random;
+
+import edu.berkeley.cs.jqf.fuzz.guidance.GuidanceException;
+import org.junit.Test;
+
+import static de.hub.se.jqf.bedivfuzz.guidance.bandit.ArmStatistics.STRUCTURE;
+import static de.hub.se.jqf.bedivfuzz.guidance.bandit.ArmStatistics.VALUE;
+import static org.junit.Assert.*;
+
+public class MutationArmSelectorTest {
+
+    private final Random random = new Random(42);
+
+    /* Input 0 is a veteran where structural mutations pay off, input 1000 is new. */
+    private ArmStatistics structureFavoringStats(double discount) {
+        ArmStatistics stats = new ArmStatistics(discount);
+        for (int i = 0; i < 100; i++) {
+            stats.pull(0, STRUCTURE);
+            if (i % 2 == 0) {
+                stats.reward(0, STRUCTURE, 1);
+            }
+            stats.pull(0, VALUE);
+            if (i % 20 == 0) {
+                stats.reward(0, VALUE, 1);
+            }
+        }
+        return stats;
+    }
+
+    @Test
+    public void selectorsAreSelectedByName() {
+        assertEquals(EpsilonGreedySelector.class, MutationArmSelector.forName(null, 0.2, 8, 0.95).getClass());
+        assertEquals(UcbSelector.class, MutationArmSelector.forName("ucb", 0.2, 8, 0.95).getClass());
+        assertEquals(ThompsonSelector.class, MutationArmSelector.forName("thompson", 0.2, 8, 0.95).getClass());
+        assertEquals(0.95, MutationArmSelector.forName("ducb", 0.2, 8, 0.95).getDiscount(), 0);
+        assertThrows(GuidanceException.class, () -> MutationArmSelector.forName("foo", 0.2, 8, 0.95));
+    }
+
+    @Test
+    public void statisticsGrowWithInputIds() {
+        ArmStatistics stats = new ArmStatistics();
+        stats.pull(5000, VALUE);
+        stats.reward(5000, VALUE, 1);
+        stats.pull(5000, VALUE);
+        assertEquals(0.5, stats.getMean(5000, VALUE), 0);
+        assertEquals(0, stats.getMean(5000, STRUCTURE), 0);
+        assertEquals(0, stats.getPulls(9999, VALUE), 0);
+        assertEquals(0.5, stats.getGlobalMean(VALUE), 0);
+    }
+
+    @Test
+    public void discountingDecaysOldPulls() {
+        ArmStatistics stats = new ArmStatistics(0.5);
+        stats.pull(0, STRUCTURE);
+        stats.reward(0, STRUCTURE, 1);
+        stats.pull(0, VALUE);
+        assertEquals(0.5, stats.getPulls(0, STRUCTURE), 0);
+        assertEquals(0.5, stats.getRewards(0, STRUCTURE), 0);
+        assertEquals(1, stats.getPulls(0, VALUE), 0);
+    }
+
+    @Test
+    public void epsilonGreedyExploitsBestArm() {
+        ArmStatistics stats = structureFavoringStats(1.0);
+        MutationArmSelector selector = new EpsilonGreedySelector(0);
+        assertEquals(STRUCTURE, selector.selectArm(stats, 0, random));
+    }
+
+    @Test
+    public void priorsWarmStartNewInputs() {
+        ArmStatistics stats = structureFavoringStats(1.0);
+        for (MutationArmSelector selector : new MutationArmSelector[] {
+                new UcbSelector(8, 1.0), new ThompsonSelector(8)}) {
+            int structure = 0;
+            for (int i = 0; i < 100; i++) {
+                if (selector.selectArm(stats, 1000, random) == STRUCTURE) {
+                    structure++;
+                }
+            }
+            assertTrue(selector.getClass().getSimpleName() + ": " + structure, structure > 75);
+        }
+    }
+
+    @Test
+    public void ucbTriesUnpulledArmsWithoutPrior() {
+        ArmStatistics stats = new ArmStatistics();
+        stats.pull(0, STRUCTURE);
+        stats.reward(0, STRUCTURE, 1);
+        assertEquals(VALUE, new UcbSelector(0, 1.0).selectArm(stats, 0, random));
+    }
+}
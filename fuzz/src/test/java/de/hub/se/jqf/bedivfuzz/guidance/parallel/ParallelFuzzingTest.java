@@ -0,0 +1,151 @@
+package de.hub.se.jqf.bedivfuzz.guidance.parallel;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.pholser.junit.quickcheck.From;
+import de.hub.se.jqf.bedivfuzz.BeDivFuzz;
+import com.pholser.junit.quickcheck.generator.GenerationStatus;
+import de.hub.se.jqf.bedivfuzz.junit.quickcheck.SplitGenerator;
+import de.hub.se.jqf.bedivfuzz.junit.quickcheck.SplitRandom;
+import edu.berkeley.cs.jqf.fuzz.Fuzz;
+import edu.berkeley.cs.jqf.fuzz.guidance.GuidanceException;
+import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+import org.junit.Test;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+public class ParallelFuzzingTest {
+
+    public static class IntListGenerator extends SplitGenerator<List> {
+        public IntListGenerator() {
+            super(List.class);
+        }
+
+        @Override
+        public List<Integer> generate(SplitRandom random, GenerationStatus status) {
+            List<Integer> list = new ArrayList<>();
+            while (list.size() < 20 && random.nextStructureBoolean()) {
+                list.add(random.nextValueInt());
+            }
+            return list;
+        }
+    }
+
+    @RunWith(BeDivFuzz.class)
+    public static class ListTarget {
+        static final AtomicInteger executions = new AtomicInteger();
+
+        @Fuzz
+        public void fuzzList(@From(IntListGenerator.class) List<Integer> list) {
+            assertTrue(list.size() <= 20);
+            executions.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void workersShareTrialBudget() throws Exception {
+        int numWorkers = 2;
+        long maxTrials = 200;
+        ParallelBeDivFuzzGuidance guidance = new ParallelBeDivFuzzGuidance("test", null, maxTrials,
+                Files.createTempDirectory("fuzz-out").toFile(), new Random(42));
+
+        List<Result> results = ParallelFuzzing.run(ListTarget.class, "fuzzList",
+                ClassLoader.getSystemClassLoader(), guidance, numWorkers, null);
+
+        assertEquals(numWorkers, results.size());
+        for (Result result : results) {
+            assertTrue(result.wasSuccessful());
+        }
+        // Workers may overshoot the budget by the trials that were already in flight
+        int executions = ListTarget.executions.get();
+        assertTrue(executions >= maxTrials);
+        assertTrue(executions < maxTrials + numWorkers);
+    }
+
+    /** Records which worker saved each input and which workers mutated inputs saved by others. */
+    static class RecordingGuidance extends ParallelBeDivFuzzGuidance {
+        final Map<Input<?>, Thread> savers = new ConcurrentHashMap<>();
+        final Set<Thread> mutatedForeignInputs = ConcurrentHashMap.newKeySet();
+        final IntHashSet coveredKeys = new IntHashSet();
+
+        RecordingGuidance(long maxTrials) throws IOException {
+            super("test", null, maxTrials, Files.createTempDirectory("fuzz-out").toFile(), new Random(42));
+        }
+
+        @Override
+        protected void chooseNextInput() throws GuidanceException {
+            super.chooseNextInput();
+            Thread saver = currentParentInput == null ? null : savers.get(currentParentInput);
+            if (saver != null && saver != Thread.currentThread()) {
+                mutatedForeignInputs.add(Thread.currentThread());
+            }
+        }
+
+        @Override
+        protected void processResult(edu.berkeley.cs.jqf.fuzz.guidance.Result result, Throwable error)
+                throws GuidanceException {
+            coveredKeys.addAll(runCoverage.getCovered());
+            super.processResult(result, error);
+        }
+
+        @Override
+        protected void saveCurrentInput(IntHashSet responsibilities, String why) throws IOException {
+            super.saveCurrentInput(responsibilities, why);
+            savers.put(currentInput, Thread.currentThread());
+        }
+    }
+
+    @RunWith(BeDivFuzz.class)
+    public static class CoveringTarget {
+        static RecordingGuidance guidance;
+        static final CountDownLatch started = new CountDownLatch(2);
+        static final ThreadLocal<Boolean> running = new ThreadLocal<>();
+
+        @Fuzz
+        public void fuzzList(@From(IntListGenerator.class) List<Integer> list) throws InterruptedException {
+            if (running.get() == null) {
+                // Make sure that no worker finishes the campaign before the other one has started
+                running.set(true);
+                started.countDown();
+                assertTrue(started.await(10, TimeUnit.SECONDS));
+            }
+            // Each list size covers its own key
+            guidance.worker().coverage.getCounter().increment(list.size());
+        }
+    }
+
+    @Test
+    public void workersShareCorpusAndCoverage() throws Exception {
+        RecordingGuidance guidance = new RecordingGuidance(500);
+        CoveringTarget.guidance = guidance;
+
+        List<Result> results = ParallelFuzzing.run(CoveringTarget.class, "fuzzList",
+                ClassLoader.getSystemClassLoader(), guidance, 2, null);
+        for (Result result : results) {
+            assertTrue(result.wasSuccessful());
+        }
+
+        // Inputs saved by one worker were mutated by the other, in both directions
+        assertEquals(2, new HashSet<>(guidance.savers.values()).size());
+        assertEquals(2, guidance.mutatedForeignInputs.size());
+
+        // The coverage of every worker's runs was merged into the shared total coverage
+        IntHashSet totalCoverage = new IntHashSet();
+        totalCoverage.addAll(guidance.getTotalCoverage().getCovered());
+        assertFalse(guidance.coveredKeys.isEmpty());
+        assertEquals(guidance.coveredKeys, totalCoverage);
+    }
+}
@@ -1,10 +1,14 @@
 package de.hub.se.jqf.bedivfuzz.junit.quickcheck;
 
 import com.pholser.junit.quickcheck.random.SourceOfRandomness;
+import de.hub.se.jqf.bedivfuzz.junit.quickcheck.tracking.Choice;
+import de.hub.se.jqf.bedivfuzz.junit.quickcheck.tracking.ChoiceBuffer;
+import de.hub.se.jqf.bedivfuzz.junit.quickcheck.tracking.ChoiceTable;
 import de.hub.se.jqf.bedivfuzz.junit.quickcheck.tracking.SplitTrackingSourceOfRandomness;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
@@ -62,4 +66,38 @@ public class SplitTrackingSourceOfRandomnessTest {
         assertEquals(trackingRandom.getCurrentChoiceOffset(), input.requested);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testChoiceBufferMatchesChoiceLists() {
+        List<Choice> structure = new ArrayList<>();
+        List<Choice> value = new ArrayList<>();
+        SplitTrackingSourceOfRandomness listRandom = new SplitTrackingSourceOfRandomness(
+                new RandomInput().toInputStream(new Random(42)), structure, value);
+
+        ChoiceBuffer buffer = new ChoiceBuffer();
+        SplitTrackingSourceOfRandomness bufferRandom = new SplitTrackingSourceOfRandomness(
+                new RandomInput().toInputStream(new Random(42)), buffer.getStructureSink(), buffer.getValueSink());
+
+        for (SplitTrackingSourceOfRandomness random : List.of(listRandom, bufferRandom)) {
+            random.nextStructureInt(10);
+            random.nextValueBoolean();
+            random.getStructureDelegate().nextBoolean();
+            random.getValueDelegate().nextBytes(5);
+            random.nextStructureDouble();
+        }
+
+        assertChoicesEqual(structure, buffer.toStructureTable());
+        assertChoicesEqual(value, buffer.toValueTable());
+
+        buffer.clear();
+        assertEquals(0, buffer.getStructureChoiceCount() + buffer.getValueChoiceCount());
+    }
+
+    private static void assertChoicesEqual(List<Choice> expected, ChoiceTable actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i));
+        }
+        assertEquals(expected.hashCode(), actual.hashCode());
+    }
+
+}
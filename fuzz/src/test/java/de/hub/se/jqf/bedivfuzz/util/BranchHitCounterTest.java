@@ -0,0 +1,71 @@
+package de.hub.se.jqf.bedivfuzz.util;
+
+import com.pholser.junit.quickcheck.Property;
+import com.pholser.junit.quickcheck.generator.InRange;
+import com.pholser.junit.quickcheck.runner.JUnitQuickcheck;
+import edu.berkeley.cs.jqf.fuzz.util.FastNonCollidingCoverage;
+import org.eclipse.collections.impl.map.mutable.primitive.IntIntHashMap;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnitQuickcheck.class)
+public class BranchHitCounterTest {
+
+    private static final double EPSILON = 1e-9;
+
+    /** Computes the metrics from scratch, as a reference for the incremental sums. */
+    private static double[] expectedMetrics(IntIntHashMap hitCounts) {
+        long total = hitCounts.values().sum();
+        double h1 = 0;
+        double h2 = 0;
+        for (int hitCount : hitCounts.values().toArray()) {
+            double p = ((double) hitCount) / total;
+            h1 += p * Math.log(p);
+            h2 += Math.pow(p, 2);
+        }
+        return new double[] { hitCounts.size(), Math.exp(-h1), 1 / h2 };
+    }
+
+    private static void assertMetrics(double[] expected, BehavioralDiversityMetrics actual) {
+        assertEquals(expected[0], actual.b0(), 0);
+        assertEquals(expected[1], actual.b1(), EPSILON * expected[1]);
+        assertEquals(expected[2], actual.b2(), EPSILON * expected[2]);
+    }
+
+    @Property
+    public void incrementalMetricsMatchRecomputation(@InRange(minInt = 0, maxInt = 20) int[][] runs) {
+        BranchHitCounter counter = new BranchHitCounter();
+        IntIntHashMap hitCounts = new IntIntHashMap();
+        for (int[] run : runs) {
+            FastNonCollidingCoverage coverage = new FastNonCollidingCoverage();
+            for (int iid : run) {
+                coverage.logMethodBegin(iid);
+            }
+            counter.incrementBranchCounts(coverage);
+            coverage.getCovered().forEach(branch -> hitCounts.addToValue(branch, 1));
+
+            if (!hitCounts.isEmpty()) {
+                assertMetrics(expectedMetrics(hitCounts), counter.getCachedMetrics(false));
+            }
+        }
+        assertEquals(hitCounts, counter.getHitCounts());
+    }
+
+    @Property
+    public void prepopulatedCounterMatchesRecomputation(@InRange(minInt = 0, maxInt = 50) int[] branches) {
+        IntIntHashMap hitCounts = new IntIntHashMap();
+        for (int branch : branches) {
+            hitCounts.addToValue(branch, branch + 1);
+        }
+        BranchHitCounter counter = new BranchHitCounter(hitCounts);
+
+        BehavioralDiversityMetrics metrics = counter.getCachedMetrics(false);
+        if (hitCounts.isEmpty()) {
+            assertEquals(0, metrics.b0(), 0);
+            assertEquals(1, metrics.b1(), 0);
+        } else {
+            assertMetrics(expectedMetrics(hitCounts), metrics);
+        }
+    }
+}
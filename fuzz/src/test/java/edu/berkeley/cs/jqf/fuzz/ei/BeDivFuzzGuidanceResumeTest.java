@@ -0,0 +1,98 @@
+package edu.berkeley.cs.jqf.fuzz.ei;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Random;
+
+import com.pholser.junit.quickcheck.generator.GenerationStatus;
+import de.hub.se.jqf.bedivfuzz.guidance.BeDivFuzzGuidance;
+import de.hub.se.jqf.bedivfuzz.junit.quickcheck.tracking.SplitTrackingSourceOfRandomness;
+import de.hub.se.jqf.bedivfuzz.util.BehavioralDiversityMetrics;
+import edu.berkeley.cs.jqf.fuzz.guidance.Result;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class BeDivFuzzGuidanceResumeTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void clearProperties() {
+        System.clearProperty("jqf.ei.PERSIST_STATE");
+        System.clearProperty("jqf.ei.RESUME");
+        System.clearProperty("jqf.guidance.METRICS");
+    }
+
+    /* Exposes the mutation scores of the saved inputs. */
+    private static class InspectableGuidance extends BeDivFuzzGuidance {
+        InspectableGuidance(File outputDirectory, long trials, Random random) throws IOException {
+            super("test", (Duration) null, trials, outputDirectory, random);
+            registerChoiceTracer(BeDivFuzzGuidanceResumeTest::generate);
+        }
+
+        double[] getArmStatistics() {
+            return armStatistics.snapshot();
+        }
+    }
+
+    /* Generates a structural choice and as many value choices, and returns the former. */
+    private static int generate(SplitTrackingSourceOfRandomness random, GenerationStatus status) {
+        int key = random.nextStructureInt(0, 7);
+        for (int i = 0; i < key; i++) {
+            random.nextValueInt(0, 255);
+        }
+        return key;
+    }
+
+    /* Runs trials whose coverage is derived from the structural choice of the input. */
+    private static void fuzz(InspectableGuidance guidance) throws IOException {
+        while (guidance.hasInput()) {
+            int key = generate(new SplitTrackingSourceOfRandomness(guidance.getInput()), null);
+            for (int i = 0; i <= key; i++) {
+                guidance.runCoverage.getCounter().increment(i);
+            }
+            guidance.handleResult(key % 3 == 0 ? Result.INVALID : Result.SUCCESS, null);
+        }
+    }
+
+    @Test
+    public void resumedCampaignRestoresChoicesAndDiversity() throws IOException {
+        File outputDirectory = folder.getRoot();
+        System.setProperty("jqf.ei.PERSIST_STATE", "true");
+        System.setProperty("jqf.guidance.METRICS", "BEDIV");
+        InspectableGuidance first = new InspectableGuidance(outputDirectory, 200L, new Random(42));
+        fuzz(first);
+        assertFalse(first.savedInputs.isEmpty());
+
+        System.setProperty("jqf.ei.RESUME", "true");
+        InspectableGuidance resumed = new InspectableGuidance(outputDirectory, 300L, new Random(7));
+        assertEquals(200, resumed.numTrials);
+        assertEquals(first.savedInputs.size(), resumed.savedInputs.size());
+        for (int i = 0; i < first.savedInputs.size(); i++) {
+            ZestGuidance.LinearInput expected = (ZestGuidance.LinearInput) first.savedInputs.get(i);
+            ZestGuidance.LinearInput actual = (ZestGuidance.LinearInput) resumed.savedInputs.get(i);
+            assertTrue(actual instanceof BeDivFuzzGuidance.TrackingInput);
+            assertEquals(expected.id, actual.id);
+            assertEquals(expected.values, actual.values);
+            // The restored input has been traced again
+            assertEquals(expected.getRequested(), actual.getRequested());
+        }
+
+        BehavioralDiversityMetrics expectedMetrics = first.branchHitCounter.getCachedMetrics(true);
+        BehavioralDiversityMetrics actualMetrics = resumed.branchHitCounter.getCachedMetrics(true);
+        assertEquals(expectedMetrics.b0(), actualMetrics.b0(), 1e-9);
+        assertEquals(expectedMetrics.b1(), actualMetrics.b1(), 1e-9);
+        assertEquals(expectedMetrics.b2(), actualMetrics.b2(), 1e-9);
+        assertArrayEquals(first.getArmStatistics(), resumed.getArmStatistics(), 0);
+
+        // The resumed campaign keeps fuzzing up to its own trial limit
+        fuzz(resumed);
+        assertEquals(300, resumed.numTrials);
+    }
+}
@@ -0,0 +1,125 @@
+package edu.berkeley.cs.jqf.fuzz.ei;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import edu.berkeley.cs.jqf.fuzz.guidance.Result;
+import edu.berkeley.cs.jqf.fuzz.util.GrowableByteArray;
+import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class InputTrimmerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void clearProperties() {
+        System.clearProperty("jqf.ei.TRIM_SAVED_INPUTS");
+        System.clearProperty("jqf.ei.TRIM_BUDGET");
+    }
+
+    private static GrowableByteArray bytes(int... values) {
+        GrowableByteArray array = new GrowableByteArray();
+        for (int v : values) {
+            array.add(v);
+        }
+        return array;
+    }
+
+    @Test
+    public void removesChunksThatAreNotNeeded() {
+        // Only the byte 7 matters
+        GrowableByteArray values = bytes(1, 2, 3, 7, 5, 6, 4, 8);
+        InputTrimmer trimmer = new InputTrimmer(values);
+        GrowableByteArray candidate;
+        while ((candidate = trimmer.nextCandidate()) != null) {
+            boolean keepsSeven = false;
+            for (int i = 0; i < candidate.size(); i++) {
+                keepsSeven |= candidate.get(i) == 7;
+            }
+            if (keepsSeven) {
+                trimmer.offer(candidate);
+            } else {
+                trimmer.reject();
+            }
+        }
+        assertEquals(bytes(7), trimmer.getValues());
+        assertEquals(bytes(1, 2, 3, 7, 5, 6, 4, 8), values);
+    }
+
+    @Test
+    public void zeroesChunksThatCannotBeRemoved() {
+        // The length must be kept, but the content is irrelevant
+        InputTrimmer trimmer = new InputTrimmer(bytes(1, 2, 3, 4));
+        GrowableByteArray candidate;
+        while ((candidate = trimmer.nextCandidate()) != null) {
+            if (candidate.size() == 4) {
+                assertTrue(trimmer.offer(candidate));
+            } else {
+                trimmer.reject();
+            }
+        }
+        assertEquals(bytes(0, 0, 0, 0), trimmer.getValues());
+    }
+
+    @Test
+    public void rejectsCandidatesThatGrow() {
+        InputTrimmer trimmer = new InputTrimmer(bytes(1, 2));
+        GrowableByteArray candidate = trimmer.nextCandidate();
+        assertEquals(1, candidate.size());
+        assertFalse(trimmer.offer(bytes(1, 2, 3)));
+        assertEquals(bytes(1, 2), trimmer.getValues());
+    }
+
+    /* Reads up to a terminator byte (below 32), and covers branches up to the terminator. */
+    private static int run(ZestGuidance guidance, InputStream in) throws IOException {
+        int key = 0;
+        for (int i = 0; i < 64; i++) {
+            int b = in.read();
+            if (b < 32) {
+                key = b % 8;
+                break;
+            }
+        }
+        for (int i = 0; i <= key; i++) {
+            guidance.runCoverage.getCounter().increment(i);
+        }
+        return key;
+    }
+
+    @Test
+    public void trimmedInputsKeepTheirResponsibilities() throws IOException {
+        System.setProperty("jqf.ei.TRIM_SAVED_INPUTS", "true");
+        System.setProperty("jqf.ei.TRIM_BUDGET", "0.2");
+        File outputDirectory = folder.getRoot();
+        ZestGuidance guidance = new ZestGuidance("test", null, 2000L, outputDirectory, new Random(42));
+        while (guidance.hasInput()) {
+            int key = run(guidance, guidance.getInput());
+            guidance.handleResult(key % 3 == 0 ? Result.INVALID : Result.SUCCESS, null);
+        }
+        assertTrue(guidance.numTrimTrials > 0);
+        assertTrue(guidance.numTrimTrials <= 0.2 * guidance.numTrials + 1);
+        assertTrue(guidance.numTrimmedBytes > 0);
+
+        // Replaying each saved input still covers what it is responsible for
+        for (ZestGuidance.Input<?> saved : guidance.savedInputs) {
+            ZestGuidance.LinearInput replay = guidance.new LinearInput();
+            replay.values = new GrowableByteArray(((ZestGuidance.LinearInput) saved).values);
+            guidance.currentInput = replay;
+            guidance.runCoverage.clear();
+            run(guidance, guidance.createParameterStream());
+            IntHashSet covered = new IntHashSet();
+            covered.addAll(guidance.runCoverage.getCovered());
+            assertTrue(covered.containsAll(saved.responsibilities));
+            assertEquals(saved.size(), replay.getRequested());
+        }
+    }
+}
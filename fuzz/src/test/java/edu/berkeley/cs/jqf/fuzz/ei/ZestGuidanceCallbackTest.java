@@ -0,0 +1,67 @@
+package edu.berkeley.cs.jqf.fuzz.ei;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import edu.berkeley.cs.jqf.instrument.tracing.events.BranchEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.CallEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.PrimitiveTraceEventVisitor;
+import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEvent;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class ZestGuidanceCallbackTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    static class RecordingGuidance extends ZestGuidance {
+        final List<TraceEvent> events = new ArrayList<>();
+
+        RecordingGuidance(TemporaryFolder folder) throws IOException {
+            super("test", null, 1L, folder.getRoot(), new Random(42));
+        }
+
+        @Override
+        protected void handleEvent(TraceEvent e) {
+            events.add(e);
+            super.handleEvent(e);
+        }
+    }
+
+    @Test
+    public void primitiveCallbackCountsLikeHandleEvent() throws IOException {
+        ZestGuidance guidance = new ZestGuidance("test", null, 1L, folder.getRoot(), new Random(42));
+        Consumer<TraceEvent> callback = guidance.generateCallBack(Thread.currentThread());
+        assertTrue(callback instanceof PrimitiveTraceEventVisitor);
+
+        ((PrimitiveTraceEventVisitor) callback).visitBranch(7, null, 0, 1);
+        ((PrimitiveTraceEventVisitor) callback).visitCall(9, null, 0, null, null);
+        int primitiveCount = guidance.runCoverage.getNonZeroCount();
+        guidance.runCoverage.clear();
+
+        callback.accept(new BranchEvent(7, null, 0, 1));
+        guidance.handleEvent(new CallEvent(9, null, 0, null));
+        assertEquals(2, primitiveCount);
+        assertEquals(primitiveCount, guidance.runCoverage.getNonZeroCount());
+    }
+
+    @Test
+    public void overriddenHandleEventSeesEveryEvent() throws IOException {
+        RecordingGuidance guidance = new RecordingGuidance(folder);
+        Consumer<TraceEvent> callback = guidance.generateCallBack(Thread.currentThread());
+        assertFalse(callback instanceof PrimitiveTraceEventVisitor);
+
+        BranchEvent event = new BranchEvent(7, null, 0, 1);
+        callback.accept(event);
+        assertEquals(1, guidance.events.size());
+        assertSame(event, guidance.events.get(0));
+        assertEquals(1, guidance.runCoverage.getNonZeroCount());
+    }
+}
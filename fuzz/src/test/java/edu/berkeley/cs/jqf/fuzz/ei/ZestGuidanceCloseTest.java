@@ -0,0 +1,36 @@
+package edu.berkeley.cs.jqf.fuzz.ei;
+
+import java.io.IOException;
+import java.util.Random;
+
+import edu.berkeley.cs.jqf.fuzz.guidance.GuidanceException;
+import edu.berkeley.cs.jqf.fuzz.guidance.GuidanceTest;
+import edu.berkeley.cs.jqf.fuzz.guidance.Result;
+import edu.berkeley.cs.jqf.fuzz.junit.GuidedFuzzing;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class ZestGuidanceCloseTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void abortedCampaignStopsWriter() throws IOException {
+        ZestGuidance guidance = new ZestGuidance("test", null, null, folder.getRoot(), new Random(42)) {
+            @Override
+            public void handleResult(Result result, Throwable error) throws GuidanceException {
+                throw new GuidanceException("Aborted");
+            }
+        };
+        assertTrue(guidance.fileWriter.isAsync());
+
+        org.junit.runner.Result result = GuidedFuzzing.run(GuidanceTest.GuidanceTestFuzzer.class,
+                "success", guidance, null);
+        assertFalse(result.wasSuccessful());
+        assertFalse(guidance.fileWriter.isAsync());
+    }
+}
@@ -0,0 +1,61 @@
+package edu.berkeley.cs.jqf.fuzz.ei;
+
+import java.io.IOException;
+import java.util.Random;
+
+import edu.berkeley.cs.jqf.fuzz.guidance.Result;
+import edu.berkeley.cs.jqf.fuzz.util.CoverageFactory;
+import edu.berkeley.cs.jqf.fuzz.util.ICoverage;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class ZestGuidanceProbeRemovalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void clearProperties() {
+        System.clearProperty("jqf.ei.STEAL_RESPONSIBILITY");
+    }
+
+    /* Runs one trial that covers the given probes. */
+    private static void run(ZestGuidance guidance, int... probes) throws IOException {
+        guidance.getInput().read();
+        for (int probe : probes) {
+            guidance.runCoverage.getCounter().increment(probe);
+        }
+        guidance.handleResult(Result.SUCCESS, null);
+    }
+
+    /* Returns the coverage key of a probe. */
+    private static int keyOf(int probe) {
+        ICoverage coverage = CoverageFactory.newInstance();
+        coverage.getCounter().increment(probe);
+        return coverage.getCovered().get(0);
+    }
+
+    @Test
+    public void responsibilitiesForRemovedProbesAreNotStolen() throws IOException {
+        System.setProperty("jqf.ei.STEAL_RESPONSIBILITY", "true");
+        ZestGuidance guidance = new ZestGuidance("test", null, 100L, folder.getRoot(), new Random(42));
+        run(guidance, 0, 1);
+        ZestGuidance.Input<?> first = guidance.savedInputs.get(0);
+        assertEquals(2, first.responsibilities.size());
+
+        // Runs no longer report the removed key, so a run with more coverage cannot steal it
+        guidance.removedProbes.add(keyOf(1));
+        run(guidance, 0, 2, 3);
+        assertEquals(2, guidance.savedInputs.size());
+        assertEquals(2, first.responsibilities.size());
+        assertSame(first, guidance.responsibleInputs.get(keyOf(1)));
+
+        // Without the removed key, the same run would have subsumed the first input
+        run(guidance, 0, 1, 2, 3, 4);
+        assertTrue(first.responsibilities.isEmpty());
+    }
+}
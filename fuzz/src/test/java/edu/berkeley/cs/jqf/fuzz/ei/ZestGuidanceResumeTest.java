@@ -0,0 +1,77 @@
+package edu.berkeley.cs.jqf.fuzz.ei;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import edu.berkeley.cs.jqf.fuzz.guidance.Result;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class ZestGuidanceResumeTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void clearProperties() {
+        System.clearProperty("jqf.ei.PERSIST_STATE");
+        System.clearProperty("jqf.ei.RESUME");
+    }
+
+    /* Runs trials whose coverage is derived from the first input byte. */
+    private static void fuzz(ZestGuidance guidance) throws IOException {
+        while (guidance.hasInput()) {
+            InputStream in = guidance.getInput();
+            int key = in.read() % 8;
+            for (int i = 0; i <= key; i++) {
+                guidance.runCoverage.getCounter().increment(i);
+            }
+            guidance.handleResult(key % 3 == 0 ? Result.INVALID : Result.SUCCESS, null);
+        }
+    }
+
+    @Test
+    public void resumedCampaignContinuesFromCheckpoint() throws IOException {
+        File outputDirectory = folder.getRoot();
+        System.setProperty("jqf.ei.PERSIST_STATE", "true");
+        ZestGuidance first = new ZestGuidance("test", null, 200L, outputDirectory, new Random(42));
+        fuzz(first);
+        assertFalse(first.savedInputs.isEmpty());
+
+        System.setProperty("jqf.ei.RESUME", "true");
+        ZestGuidance resumed = new ZestGuidance("test", null, 300L, outputDirectory, new Random(7));
+        assertEquals(200, resumed.numTrials);
+        assertEquals(first.numValid, resumed.numValid);
+        assertEquals(first.numSavedInputs, resumed.numSavedInputs);
+        assertEquals(first.totalCoverage.getNonZeroCount(), resumed.totalCoverage.getNonZeroCount());
+        assertEquals(first.validCoverage.getNonZeroCount(), resumed.validCoverage.getNonZeroCount());
+        assertEquals(first.savedInputs.size(), resumed.savedInputs.size());
+        for (int i = 0; i < first.savedInputs.size(); i++) {
+            ZestGuidance.Input<?> expected = first.savedInputs.get(i);
+            ZestGuidance.Input<?> actual = resumed.savedInputs.get(i);
+            assertEquals(expected.id, actual.id);
+            assertEquals(expected.responsibilities, actual.responsibilities);
+            assertEquals(expected.isFavored(), actual.isFavored());
+            assertEquals(((ZestGuidance.LinearInput) expected).values, ((ZestGuidance.LinearInput) actual).values);
+        }
+
+        // The resumed campaign keeps fuzzing up to its own trial limit
+        fuzz(resumed);
+        assertEquals(300, resumed.numTrials);
+    }
+
+    @Test
+    public void campaignWithoutCheckpointStartsFresh() throws IOException {
+        System.setProperty("jqf.ei.RESUME", "true");
+        ZestGuidance guidance = new ZestGuidance("test", null, 10L, folder.getRoot(), new Random(42));
+        assertEquals(0, guidance.numTrials);
+        fuzz(guidance);
+        assertEquals(10, guidance.numTrials);
+    }
+}
@@ -0,0 +1,148 @@
+package edu.berkeley.cs.jqf.fuzz.ei.schedule;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import edu.berkeley.cs.jqf.fuzz.ei.ZestGuidance;
+import edu.berkeley.cs.jqf.fuzz.ei.ZestGuidance.Input;
+import edu.berkeley.cs.jqf.fuzz.guidance.GuidanceException;
+import edu.berkeley.cs.jqf.fuzz.guidance.Result;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ParentSchedulerTest {
+
+    private final Random random = new Random(42);
+    private final List<Input> queue = new ArrayList<>();
+
+    @Before
+    public void createQueue() throws IOException {
+        ZestGuidance guidance = new ZestGuidance("test", null, null,
+                Files.createTempDirectory("fuzz-out").toFile(), random);
+        for (int i = 0; i < 4; i++) {
+            Input input = guidance.new LinearInput();
+            input.id = i;
+            input.offspring = 0;
+            queue.add(input);
+        }
+    }
+
+    @After
+    public void clearProperties() {
+        System.clearProperty("jqf.ei.SCHEDULE");
+    }
+
+    /* A guidance whose run coverage is derived from the first input byte. */
+    private static class ByteCoverageGuidance extends ZestGuidance {
+        ByteCoverageGuidance(File[] seeds) throws IOException {
+            super("test", null, null, Files.createTempDirectory("fuzz-out").toFile(), seeds, new Random(42));
+        }
+
+        List<Input> run() throws IOException {
+            InputStream in = getInput();
+            int key = in.read() % 8;
+            for (int i = 0; i <= key; i++) {
+                runCoverage.getCounter().increment(i);
+            }
+            handleResult(Result.SUCCESS, null);
+            return savedInputs;
+        }
+    }
+
+    @Test
+    public void seedsAreNotCountedAsOffspring() throws IOException {
+        System.setProperty("jqf.ei.SCHEDULE", "ucb");
+        File seedDirectory = Files.createTempDirectory("seeds").toFile();
+        File[] seeds = new File[3];
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = new File(seedDirectory, "seed" + i);
+            Files.write(seeds[i].toPath(), new byte[]{(byte) (2 * i + 1)});
+        }
+
+        // Every seed covers more than the one before, so each of them is saved
+        ByteCoverageGuidance guidance = new ByteCoverageGuidance(seeds);
+        List<Input> savedInputs = null;
+        for (int i = 0; i < seeds.length; i++) {
+            savedInputs = guidance.run();
+        }
+        assertEquals(seeds.length, savedInputs.size());
+        for (Input input : savedInputs) {
+            assertEquals(0, input.offspring);
+            assertEquals(0, input.childrenExecuted);
+        }
+    }
+
+    @Test
+    public void schedulersAreSelectedByName() {
+        assertEquals(RoundRobinScheduler.class, ParentScheduler.forName(null).getClass());
+        assertEquals(RoundRobinScheduler.class, ParentScheduler.forName("rr").getClass());
+        assertEquals(PowerScheduler.class, ParentScheduler.forName("fast").getClass());
+        assertEquals(BanditScheduler.class, ParentScheduler.forName("ucb").getClass());
+    }
+
+    @Test(expected = GuidanceException.class)
+    public void unknownSchedulerIsRejected() {
+        ParentScheduler.forName("lifo");
+    }
+
+    @Test
+    public void roundRobinCyclesThroughQueue() {
+        ParentScheduler scheduler = new RoundRobinScheduler();
+        int idx = 0;
+        for (int expected : new int[]{1, 2, 3, 0, 1}) {
+            idx = scheduler.selectParent(queue, idx, random);
+            assertEquals(expected, idx);
+        }
+        assertEquals(50, scheduler.getTargetChildren(queue.get(0), 50));
+    }
+
+    @Test
+    public void powerScheduleFavorsRarePathsAndRepeatedSelection() {
+        PowerScheduler scheduler = new PowerScheduler(1000);
+        Input rare = queue.get(0);
+        Input frequent = queue.get(1);
+        rare.pathHits = 1;
+        frequent.pathHits = 100;
+        assertEquals(50, scheduler.getTargetChildren(rare, 50));
+        assertEquals(1, scheduler.getTargetChildren(frequent, 50));
+
+        rare.timesSelected = 2;
+        assertEquals(200, scheduler.getTargetChildren(rare, 50));
+        rare.timesSelected = 20;
+        assertEquals(1000, scheduler.getTargetChildren(rare, 50));
+    }
+
+    @Test
+    public void powerScheduleFavorsFastInputs() {
+        PowerScheduler scheduler = new PowerScheduler(1000);
+        Input fast = queue.get(0);
+        Input slow = queue.get(1);
+        fast.execNanos = 1_000;
+        slow.execNanos = 3_000;
+        scheduler.inputSaved(fast);
+        scheduler.inputSaved(slow);
+        fast.pathHits = slow.pathHits = 1;
+        assertTrue(scheduler.getTargetChildren(fast, 50) > scheduler.getTargetChildren(slow, 50));
+    }
+
+    @Test
+    public void banditTriesNewInputsFirstAndThenExploitsRewards() {
+        BanditScheduler scheduler = new BanditScheduler(16, 0.1);
+        assertEquals(3, scheduler.selectParent(queue, 0, random));
+
+        for (Input input : queue) {
+            input.childrenExecuted = 100;
+        }
+        queue.get(2).offspring = 30;
+        assertEquals(2, scheduler.selectParent(queue, 0, random));
+        assertEquals(16, scheduler.getTargetChildren(queue.get(2), 50));
+    }
+}
@@ -0,0 +1,123 @@
+package edu.berkeley.cs.jqf.fuzz.junit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.berkeley.cs.jqf.fuzz.Fuzz;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.MultipleFailureException;
+import org.junit.runners.model.TestClass;
+
+import static org.junit.Assert.*;
+
+public class TrialInvokerTest {
+
+    static final List<String> events = new ArrayList<>();
+
+    public static class Lifecycle {
+        public Lifecycle() {
+            events.add("new");
+        }
+
+        @Before
+        public void setUp() {
+            events.add("before");
+        }
+
+        @After
+        public void tearDown() {
+            events.add("after");
+        }
+
+        @Fuzz
+        public int twice(int x) {
+            events.add("test " + x);
+            return 2 * x;
+        }
+
+        @Fuzz
+        public void fail(int x) {
+            throw new IllegalStateException("fail " + x);
+        }
+    }
+
+    public static class FailingAfter {
+        @After
+        public void tearDown() {
+            throw new IllegalArgumentException("after");
+        }
+
+        @Fuzz
+        public void fail() {
+            throw new IllegalStateException("test");
+        }
+    }
+
+    public static class WithRule {
+        @Rule
+        public TestRule rule = (base, description) -> base;
+
+        @Fuzz
+        public int identity(int x) {
+            return x;
+        }
+    }
+
+    private static TrialInvoker invoker(Class<?> clazz, String name) {
+        TestClass testClass = new TestClass(clazz);
+        for (FrameworkMethod method : testClass.getAnnotatedMethods(Fuzz.class)) {
+            if (method.getName().equals(name)) {
+                return TrialInvoker.get(testClass, method);
+            }
+        }
+        throw new AssertionError("No such method: " + name);
+    }
+
+    @Test
+    public void invokerIsCached() {
+        assertSame(invoker(Lifecycle.class, "twice"), invoker(Lifecycle.class, "twice"));
+    }
+
+    @Test
+    public void eachTrialRunsOnFreshInstance() throws Throwable {
+        events.clear();
+        TrialInvoker invoker = invoker(Lifecycle.class, "twice");
+        assertEquals(6, invoker.invoke(new Object[]{3}));
+        assertEquals(8, invoker.invoke(new Object[]{4}));
+        assertEquals(List.of("new", "before", "test 3", "after", "new", "before", "test 4", "after"), events);
+    }
+
+    @Test
+    public void afterRunsWhenTestFails() throws Throwable {
+        events.clear();
+        try {
+            invoker(Lifecycle.class, "fail").invoke(new Object[]{1});
+            fail("Expected an exception");
+        } catch (IllegalStateException e) {
+            assertEquals("fail 1", e.getMessage());
+        }
+        assertEquals(List.of("new", "before", "after"), events);
+    }
+
+    @Test
+    public void allErrorsAreReported() throws Throwable {
+        try {
+            invoker(FailingAfter.class, "fail").invoke(new Object[0]);
+            fail("Expected an exception");
+        } catch (MultipleFailureException e) {
+            assertEquals(2, e.getFailures().size());
+            assertTrue(e.getFailures().get(0) instanceof IllegalStateException);
+            assertTrue(e.getFailures().get(1) instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    public void rulesFallBackToTrialRunner() throws Throwable {
+        assertEquals(5, invoker(WithRule.class, "identity").invoke(new Object[]{5}));
+    }
+}
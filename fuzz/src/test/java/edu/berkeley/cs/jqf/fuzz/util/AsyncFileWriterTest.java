@@ -0,0 +1,68 @@
+package edu.berkeley.cs.jqf.fuzz.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import edu.berkeley.cs.jqf.fuzz.guidance.GuidanceException;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AsyncFileWriterTest {
+
+    private File dir;
+
+    @Before
+    public void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("async-writer").toFile();
+    }
+
+    @Test
+    public void appendsAreWrittenInOrder() throws IOException {
+        AsyncFileWriter writer = new AsyncFileWriter(true, 16);
+        File file = new File(dir, "plot_data");
+        for (int i = 0; i < 1000; i++) {
+            writer.appendLine(file, Integer.toString(i));
+        }
+        writer.flush();
+
+        List<String> lines = Files.readAllLines(file.toPath());
+        assertEquals(1000, lines.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(Integer.toString(i), lines.get(i));
+        }
+        writer.close();
+    }
+
+    @Test
+    public void overwriteKeepsLatestContents() throws IOException {
+        AsyncFileWriter writer = new AsyncFileWriter(true);
+        File file = new File(dir, ".cur_input");
+        for (int i = 0; i < 100; i++) {
+            writer.write(file, new byte[]{(byte) i, (byte) i});
+        }
+        writer.close();
+
+        assertArrayEquals(new byte[]{99, 99}, Files.readAllBytes(file.toPath()));
+        assertFalse(writer.isAsync());
+    }
+
+    @Test
+    public void closedWriterWritesSynchronously() throws IOException {
+        AsyncFileWriter writer = new AsyncFileWriter(false);
+        File file = new File(dir, "fuzz.log");
+        writer.appendLine(file, "a");
+        writer.write(new File(dir, "coverage_hash"), "b");
+        assertEquals(List.of("a"), Files.readAllLines(file.toPath()));
+    }
+
+    @Test(expected = GuidanceException.class)
+    public void errorsAreReported() {
+        AsyncFileWriter writer = new AsyncFileWriter(true);
+        writer.write(new File(new File(dir, "missing"), "file"), "x");
+        writer.flush();
+    }
+}
@@ -0,0 +1,119 @@
+package edu.berkeley.cs.jqf.fuzz.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+
+import org.eclipse.collections.impl.map.mutable.primitive.IntIntHashMap;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class CampaignStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Properties state(String value) {
+        Properties properties = new Properties();
+        properties.setProperty("value", value);
+        return properties;
+    }
+
+    @Test
+    public void emptyStoreHasNoCheckpoint() throws IOException {
+        try (CampaignStore store = new CampaignStore(folder.getRoot())) {
+            assertNull(store.load());
+        }
+    }
+
+    @Test
+    public void snapshotsRoundTrip() throws IOException {
+        File dir = folder.getRoot();
+        FastNonCollidingCoverage fast = new FastNonCollidingCoverage();
+        fast.logMethodBegin(3);
+        fast.logMethodBegin(3);
+        fast.logMethodBegin(70_000);
+        Coverage colliding = new Coverage();
+        colliding.getCounter().increment(12);
+        colliding.getCounter().increment(99, 5);
+        IntIntHashMap counts = IntIntHashMap.newWithKeysValues(1, 10, 2, 20);
+        LongHashSet paths = LongHashSet.newSetWith(Long.MIN_VALUE, 0L, 42L);
+
+        try (CampaignStore store = new CampaignStore(dir)) {
+            store.reset();
+            store.writeCoverage("fast", fast);
+            store.writeCoverage("colliding", colliding);
+            store.writeCounts("counts", counts);
+            store.writeFingerprints("paths", paths);
+            store.commit(state("1"));
+        }
+
+        try (CampaignStore store = new CampaignStore(dir)) {
+            assertEquals("1", store.load().getProperty("value"));
+            FastNonCollidingCoverage restoredFast = new FastNonCollidingCoverage();
+            store.readCoverage("fast", restoredFast);
+            assertEquals(2, restoredFast.getCounter().get(3));
+            assertEquals(1, restoredFast.getCounter().get(70_000));
+            assertEquals(fast.getPathFingerprint(), restoredFast.getPathFingerprint());
+            Coverage restoredColliding = new Coverage();
+            store.readCoverage("colliding", restoredColliding);
+            assertEquals(1, restoredColliding.getCounter().get(12));
+            assertEquals(5, restoredColliding.getCounter().get(99));
+            assertEquals(2, restoredColliding.getNonZeroCount());
+            assertEquals(counts, store.readCounts("counts"));
+            assertEquals(paths, store.readFingerprints("paths"));
+        }
+    }
+
+    @Test
+    public void uncommittedChangesAreDiscarded() throws IOException {
+        File dir = folder.getRoot();
+        try (CampaignStore store = new CampaignStore(dir)) {
+            store.reset();
+            store.appendRecord("first");
+            store.writeFingerprints("paths", LongHashSet.newSetWith(1L));
+            store.commit(state("1"));
+
+            // A checkpoint that is interrupted before its commit
+            store.appendRecord("second");
+            store.writeFingerprints("paths", LongHashSet.newSetWith(1L, 2L));
+        }
+
+        try (CampaignStore store = new CampaignStore(dir)) {
+            assertEquals("1", store.load().getProperty("value"));
+            assertEquals(List.of("first"), store.readRecords());
+            assertEquals(LongHashSet.newSetWith(1L), store.readFingerprints("paths"));
+
+            // The resumed campaign continues the index after the last commit
+            store.appendRecord("third");
+            store.writeFingerprints("paths", LongHashSet.newSetWith(1L, 3L));
+            store.commit(state("2"));
+        }
+
+        try (CampaignStore store = new CampaignStore(dir)) {
+            assertEquals("2", store.load().getProperty("value"));
+            assertEquals(List.of("first", "third"), store.readRecords());
+            assertEquals(LongHashSet.newSetWith(1L, 3L), store.readFingerprints("paths"));
+        }
+    }
+
+    @Test
+    public void resetDiscardsPreviousCampaign() throws IOException {
+        File dir = folder.getRoot();
+        try (CampaignStore store = new CampaignStore(dir)) {
+            store.appendRecord("old");
+            store.writeFingerprints("paths", new LongHashSet());
+            store.commit(state("1"));
+        }
+        try (CampaignStore store = new CampaignStore(dir)) {
+            store.reset();
+            assertNull(store.load());
+            assertEquals(0, new File(dir, CampaignStore.INDEX_FILE).length());
+        }
+    }
+}
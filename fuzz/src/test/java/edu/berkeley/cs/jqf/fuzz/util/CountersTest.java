@@ -221,4 +221,79 @@ public class CountersTest {
         counter.clear();
         assertFalse(counter.hasNonZeros());
     }
+
+    @Property
+    public void fingerprintIsIndependentOfIncrementOrder(int[] keys) {
+        Counter forward = new Counter(COUNTER_SIZE);
+        Counter backward = new NonZeroCachingCounter(COUNTER_SIZE);
+        FastNonCollidingCounter fast = new FastNonCollidingCounter(COUNTER_SIZE);
+        DenseNonCollidingCounter dense = new DenseNonCollidingCounter(COUNTER_SIZE);
+        for (int i = 0; i < keys.length; i++) {
+            forward.increment(keys[i]);
+            backward.increment(keys[keys.length - 1 - i]);
+            fast.increment(Math.abs(keys[i] % COUNTER_SIZE));
+            dense.increment(Math.abs(keys[keys.length - 1 - i] % COUNTER_SIZE));
+        }
+        assertEquals(forward.getFingerprint(), backward.getFingerprint());
+        assertEquals(fast.getFingerprint(), dense.getFingerprint());
+    }
+
+    @Test
+    public void fingerprintDistinguishesCounts() {
+        DenseNonCollidingCounter counter = new DenseNonCollidingCounter(COUNTER_SIZE);
+        assertEquals(0, counter.getFingerprint());
+        counter.increment(1);
+        counter.increment(2);
+        long once = counter.getFingerprint();
+        counter.increment(2);
+        assertNotEquals(once, counter.getFingerprint());
+
+        // Setting a count back restores the fingerprint
+        counter.set(2, 1);
+        assertEquals(once, counter.getFingerprint());
+
+        // Moving a hit to another key changes the fingerprint
+        DenseNonCollidingCounter other = new DenseNonCollidingCounter(COUNTER_SIZE);
+        other.increment(1);
+        other.increment(3);
+        assertNotEquals(once, other.getFingerprint());
+
+        counter.clear();
+        assertEquals(0, counter.getFingerprint());
+    }
+
+    @Property
+    public void clearingResetsFingerprint(int[] keys) {
+        NonZeroCachingCounter counter = new NonZeroCachingCounter(COUNTER_SIZE);
+        Coverage coverage = new Coverage();
+        for (int key : keys) {
+            counter.increment(key);
+            coverage.getCounter().increment(key);
+        }
+        long counterFingerprint = counter.getFingerprint();
+        long coverageFingerprint = coverage.getPathFingerprint();
+
+        // Repeating the same path after clearing gives the same fingerprint
+        counter.clear();
+        coverage.clear();
+        assertEquals(0, counter.getFingerprint());
+        for (int key : keys) {
+            counter.increment(key);
+            coverage.getCounter().increment(key);
+        }
+        assertEquals(counterFingerprint, counter.getFingerprint());
+        assertEquals(coverageFingerprint, coverage.getPathFingerprint());
+    }
+
+    @Test
+    public void fingerprintSurvivesCopy() {
+        Coverage coverage = new Coverage();
+        coverage.getCounter().increment(42, 3);
+        assertEquals(coverage.getPathFingerprint(), coverage.copy().getPathFingerprint());
+
+        FastNonCollidingCoverage fast = new FastNonCollidingCoverage();
+        fast.logJump(40, 2);
+        fast.logJump(40, 2);
+        assertEquals(fast.getPathFingerprint(), fast.copy().getPathFingerprint());
+    }
 }
@@ -0,0 +1,68 @@
+package edu.berkeley.cs.jqf.fuzz.util;
+
+import java.util.function.Supplier;
+
+import com.pholser.junit.quickcheck.Property;
+import com.pholser.junit.quickcheck.generator.InRange;
+import com.pholser.junit.quickcheck.runner.JUnitQuickcheck;
+import janala.instrument.FastCoverageListener;
+import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnitQuickcheck.class)
+public class CoverageDeltaTest {
+
+    @Property
+    public void denseMatchesSeparateUpdates(@InRange(minInt = 0, maxInt = 200) int[] first,
+                                            @InRange(minInt = 0, maxInt = 200) int[] second,
+                                            boolean valid) {
+        checkMatchesSeparateUpdates(DenseNonCollidingCoverage::new, first, second, valid);
+    }
+
+    @Property
+    public void fastMatchesSeparateUpdates(@InRange(minInt = 0, maxInt = 200) int[] first,
+                                           @InRange(minInt = 0, maxInt = 200) int[] second,
+                                           boolean valid) {
+        checkMatchesSeparateUpdates(FastNonCollidingCoverage::new, first, second, valid);
+    }
+
+    private static <C extends FastCoverageListener.Default & ICoverage<?>> void checkMatchesSeparateUpdates(
+            Supplier<C> factory, int[] first, int[] second, boolean valid) {
+        ICoverage total = factory.get();
+        ICoverage validCoverage = factory.get();
+        CoverageDelta delta = new CoverageDelta();
+
+        // Merge a first run into total and valid coverage
+        C run = factory.get();
+        for (int key : first) {
+            run.logMethodBegin(key);
+        }
+        run.classifyAndMerge(total, validCoverage, delta);
+        assertEquals(new IntHashSet(run.getCovered().toArray()).size(), delta.getNewCoverage().size());
+
+        // Compare a second run against separate classification and merging
+        run = factory.get();
+        for (int key : second) {
+            run.logMethodBegin(key);
+        }
+        ICoverage expectedTotal = total.copy();
+        ICoverage expectedValid = validCoverage.copy();
+        IntHashSet expectedNew = new IntHashSet(run.computeNewCoverage(expectedTotal).toArray());
+        IntHashSet expectedNewValid = valid ?
+                new IntHashSet(run.computeNewCoverage(expectedValid).toArray()) : new IntHashSet();
+        boolean expectedChanged = expectedTotal.updateBits(run);
+        boolean expectedValidChanged = valid && expectedValid.updateBits(run);
+
+        run.classifyAndMerge(total, valid ? validCoverage : null, delta);
+        assertEquals(expectedNew, new IntHashSet(delta.getNewCoverage().toArray()));
+        assertEquals(expectedNewValid, new IntHashSet(delta.getNewValidCoverage().toArray()));
+        assertEquals(expectedChanged, delta.isChanged());
+        assertEquals(expectedValidChanged, delta.isValidChanged());
+        assertEquals(expectedTotal.getNonZeroCount(), total.getNonZeroCount());
+        assertEquals(expectedValid.getNonZeroCount(), validCoverage.getNonZeroCount());
+        assertEquals(expectedTotal.getPathFingerprint(), total.getPathFingerprint());
+        assertEquals(expectedValid.getPathFingerprint(), validCoverage.getPathFingerprint());
+    }
+}
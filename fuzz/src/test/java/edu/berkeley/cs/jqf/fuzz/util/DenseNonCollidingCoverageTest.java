@@ -0,0 +1,125 @@
+package edu.berkeley.cs.jqf.fuzz.util;
+
+import com.pholser.junit.quickcheck.Property;
+import com.pholser.junit.quickcheck.generator.InRange;
+import com.pholser.junit.quickcheck.runner.JUnitQuickcheck;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnitQuickcheck.class)
+public class DenseNonCollidingCoverageTest {
+
+    @Property
+    public void matchesHashMapCoverage(@InRange(minInt = 0, maxInt = 100_000) int[] iids) {
+        DenseNonCollidingCoverage dense = new DenseNonCollidingCoverage();
+        FastNonCollidingCoverage fast = new FastNonCollidingCoverage();
+        for (int iid : iids) {
+            dense.logJump(iid, iid % 2);
+            fast.logJump(iid, iid % 2);
+        }
+
+        assertEquals(fast.getNonZeroCount(), dense.getNonZeroCount());
+        assertEquals(fast.hashCode(), dense.hashCode());
+        assertEquals(fast.nonZeroHashCode(), dense.nonZeroHashCode());
+        for (int iid : iids) {
+            int key = iid + iid % 2;
+            assertEquals(fast.getCounter().get(key), dense.getCounter().get(key));
+        }
+    }
+
+    @Property
+    public void clearResetsTouchedKeys(@InRange(minInt = 0, maxInt = 100_000) int[] iids) {
+        DenseNonCollidingCoverage dense = new DenseNonCollidingCoverage();
+        for (int iid : iids) {
+            dense.logMethodBegin(iid);
+        }
+        dense.clear();
+
+        assertEquals(0, dense.getNonZeroCount());
+        for (int iid : iids) {
+            assertEquals(0, dense.getCounter().get(iid));
+        }
+    }
+
+    @Property
+    public void updateBitsUsesHitCountBuckets(@InRange(minInt = 0, maxInt = 1000) int key,
+                                              @InRange(minInt = 1, maxInt = 64) int hits) {
+        DenseNonCollidingCoverage run = new DenseNonCollidingCoverage();
+        DenseNonCollidingCoverage total = new DenseNonCollidingCoverage();
+        for (int i = 0; i < hits; i++) {
+            run.logMethodBegin(key);
+        }
+
+        assertTrue(total.updateBits(run));
+        assertFalse(total.updateBits(run));
+        assertEquals(Integer.highestOneBit(hits), total.getCounter().get(key));
+        assertEquals(1, total.computeNewCoverage(new DenseNonCollidingCoverage()).size());
+        assertEquals(0, run.computeNewCoverage(total).size());
+    }
+
+    @Test
+    public void countsFromSecondThreadAreNotLost() throws InterruptedException {
+        DenseNonCollidingCoverage coverage = new DenseNonCollidingCoverage();
+        int hits = 200_000;
+        // The main thread owns the map; keys beyond the initial capacity make both threads grow it
+        coverage.logMethodBegin(0);
+        CountDownLatch started = new CountDownLatch(1);
+        Thread other = new Thread(() -> {
+            started.countDown();
+            for (int i = 0; i < hits; i++) {
+                coverage.logMethodBegin(i % 5000);
+            }
+        });
+        other.start();
+        started.await();
+        for (int i = 0; i < hits; i++) {
+            coverage.logMethodBegin(i % 5000);
+        }
+        other.join();
+        coverage.mergeForeignCounts();
+
+        assertTrue(coverage.isMultiThreaded());
+        long total = 0;
+        for (int key = 0; key < 5000; key++) {
+            total += coverage.getCounter().get(key);
+        }
+        assertEquals(2L * hits + 1, total);
+        assertEquals(5000, coverage.getNonZeroCount());
+    }
+
+    @Test
+    public void ownerCountsAreNotSynchronizedWithOtherThreads() throws InterruptedException {
+        DenseNonCollidingCoverage coverage = new DenseNonCollidingCoverage();
+        coverage.logMethodBegin(1);
+        Thread other = new Thread(() -> coverage.logMethodBegin(2));
+        other.start();
+        other.join();
+
+        // Counts of the other thread only show up once they are merged
+        assertTrue(coverage.isMultiThreaded());
+        assertEquals(0, coverage.getCounter().get(2));
+        coverage.mergeForeignCounts();
+        assertEquals(1, coverage.getCounter().get(2));
+        assertEquals(2, coverage.getNonZeroCount());
+    }
+
+    @Test
+    public void settingZeroRemovesKey() {
+        DenseNonCollidingCounter counter = new DenseNonCollidingCounter(16);
+        counter.set(3, 4);
+        counter.set(5, 1);
+        counter.set(3, 0);
+
+        assertEquals(1, counter.size());
+        assertEquals(1, counter.getNonZeroIndices().size());
+        assertEquals(5, counter.getNonZeroIndices().get(0));
+
+        DenseNonCollidingCounter expected = new DenseNonCollidingCounter(16);
+        expected.set(5, 1);
+        assertEquals(expected.getFingerprint(), counter.getFingerprint());
+    }
+}
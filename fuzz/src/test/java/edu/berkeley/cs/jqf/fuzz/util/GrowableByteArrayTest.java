@@ -0,0 +1,78 @@
+package edu.berkeley.cs.jqf.fuzz.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import com.pholser.junit.quickcheck.Property;
+import com.pholser.junit.quickcheck.runner.JUnitQuickcheck;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnitQuickcheck.class)
+public class GrowableByteArrayTest {
+
+    @Property
+    public void addAndGetAreUnsigned(byte[] values) {
+        GrowableByteArray array = new GrowableByteArray(1);
+        for (byte b : values) {
+            array.add(b & 0xFF);
+        }
+        assertEquals(values.length, array.size());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i] & 0xFF, array.get(i));
+        }
+        assertArrayEquals(values, array.toArray());
+    }
+
+    @Property
+    public void copyIsIndependent(byte[] values) {
+        GrowableByteArray array = new GrowableByteArray();
+        for (byte b : values) {
+            array.add(b & 0xFF);
+        }
+        GrowableByteArray copy = new GrowableByteArray(array);
+        assertEquals(array, copy);
+        assertEquals(array.hashCode(), copy.hashCode());
+        if (values.length > 0) {
+            copy.set(0, ~values[0] & 0xFF);
+            assertEquals(values[0] & 0xFF, array.get(0));
+            assertNotEquals(array, copy);
+        }
+    }
+
+    @Property
+    public void truncateAndCopyTo(byte[] values, int cut) throws IOException {
+        GrowableByteArray array = new GrowableByteArray();
+        for (byte b : values) {
+            array.add(b & 0xFF);
+        }
+        int newSize = values.length == 0 ? 0 : Math.floorMod(cut, values.length + 1);
+        array.truncate(newSize);
+        assertEquals(newSize, array.size());
+
+        byte[] dest = new byte[newSize];
+        array.copyTo(0, dest, 0, newSize);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        array.writeTo(out);
+        for (int i = 0; i < newSize; i++) {
+            assertEquals(values[i], dest[i]);
+        }
+        assertArrayEquals(dest, out.toByteArray());
+    }
+
+    @Property
+    public void removeRangeShiftsTail(byte[] values, int from, int to) {
+        GrowableByteArray array = new GrowableByteArray();
+        for (byte b : values) {
+            array.add(b & 0xFF);
+        }
+        int start = Math.floorMod(from, values.length + 1);
+        int end = start + Math.floorMod(to, values.length - start + 1);
+        array.removeRange(start, end);
+        assertEquals(values.length - (end - start), array.size());
+        for (int i = 0; i < array.size(); i++) {
+            assertEquals(values[i < start ? i : i + end - start] & 0xFF, array.get(i));
+        }
+    }
+}
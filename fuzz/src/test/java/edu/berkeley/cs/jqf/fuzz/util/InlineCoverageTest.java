@@ -0,0 +1,77 @@
+package edu.berkeley.cs.jqf.fuzz.util;
+
+import com.pholser.junit.quickcheck.Property;
+import com.pholser.junit.quickcheck.generator.InRange;
+import com.pholser.junit.quickcheck.runner.JUnitQuickcheck;
+import edu.berkeley.cs.jqf.instrument.tracing.InlineCoverageMap;
+import janala.instrument.GlobalStateForInstrumentation;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnitQuickcheck.class)
+public class InlineCoverageTest {
+
+    @Property
+    public void drainMatchesListenerCoverage(@InRange(minInt = 0, maxInt = 100_000) int[] iids) {
+        GlobalStateForInstrumentation.instance.reserveFastCoverageIds(100_001);
+        InlineCoverageMap.ensureCapacity(100_001);
+        InlineCoverage.clear();
+
+        DenseNonCollidingCoverage drained = new DenseNonCollidingCoverage();
+        DenseNonCollidingCoverage logged = new DenseNonCollidingCoverage();
+        for (int iid : iids) {
+            // What an inline probe does for LOGJUMP(iid, iid % 2)
+            InlineCoverageMap.touched[(iid + iid % 2) >>> InlineCoverageMap.BLOCK_SHIFT] = 1;
+            InlineCoverageMap.hits[iid + iid % 2]++;
+            logged.logJump(iid, iid % 2);
+        }
+        InlineCoverage.drainInto(drained);
+
+        assertEquals(logged.getNonZeroCount(), drained.getNonZeroCount());
+        assertEquals(logged.getPathFingerprint(), drained.getPathFingerprint());
+        for (int iid : iids) {
+            int key = iid + iid % 2;
+            assertEquals(logged.getCounter().get(key), drained.getCounter().get(key));
+            assertEquals(0, InlineCoverageMap.hits[key]);
+        }
+    }
+
+    @Property
+    public void onlyTouchedBlocksAreDrained(@InRange(minInt = 0, maxInt = 100_000) int key) {
+        GlobalStateForInstrumentation.instance.reserveFastCoverageIds(100_001);
+        InlineCoverageMap.ensureCapacity(100_001);
+        InlineCoverage.clear();
+
+        int otherKey = (key + InlineCoverageMap.BLOCK_SIZE) % 100_001;
+        InlineCoverageMap.hits[key] = 3;
+        InlineCoverageMap.hits[otherKey] = 5;
+        InlineCoverageMap.touched[key >>> InlineCoverageMap.BLOCK_SHIFT] = 1;
+
+        DenseNonCollidingCoverage drained = new DenseNonCollidingCoverage();
+        InlineCoverage.drainInto(drained);
+        assertEquals(3, drained.getCounter().get(key));
+        assertEquals(0, InlineCoverageMap.hits[key]);
+        assertEquals(0, InlineCoverageMap.touched[key >>> InlineCoverageMap.BLOCK_SHIFT]);
+        if (otherKey >>> InlineCoverageMap.BLOCK_SHIFT != key >>> InlineCoverageMap.BLOCK_SHIFT) {
+            // The count of an unmarked block stays until its block is marked
+            assertEquals(0, drained.getCounter().get(otherKey));
+            assertEquals(5, InlineCoverageMap.hits[otherKey]);
+        }
+        InlineCoverage.clear();
+    }
+
+    @Property
+    public void growingKeepsCounts(@InRange(minInt = 0, maxInt = 1 << 20) int maxKey) {
+        InlineCoverage.clear();
+        InlineCoverageMap.hits[42] = 7;
+        InlineCoverageMap.touched[0] = 1;
+        InlineCoverageMap.ensureCapacity(maxKey);
+
+        assertTrue(InlineCoverageMap.hits.length > maxKey);
+        assertEquals(InlineCoverageMap.hits.length >> InlineCoverageMap.BLOCK_SHIFT, InlineCoverageMap.touched.length);
+        assertEquals(7, InlineCoverageMap.hits[42]);
+        assertEquals(1, InlineCoverageMap.touched[0]);
+        InlineCoverage.clear();
+    }
+}
@@ -0,0 +1,101 @@
+package edu.berkeley.cs.jqf.fuzz.util;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import edu.berkeley.cs.jqf.fuzz.guidance.TimeoutException;
+import edu.berkeley.cs.jqf.instrument.tracing.FastCoverageSnoop;
+import edu.berkeley.cs.jqf.instrument.tracing.ProbeInterrupt;
+import janala.instrument.FastCoverageListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TrialWatchdogTest {
+
+    private static final long TIMEOUT_MILLIS = 50;
+
+    private ScheduledExecutorService scheduler;
+    private TrialWatchdog watchdog;
+
+    @Before
+    public void setUp() {
+        FastCoverageSnoop.setFastCoverageListener(new FastCoverageListener.Default());
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        watchdog = new TrialWatchdog(TIMEOUT_MILLIS, scheduler);
+    }
+
+    @After
+    public void tearDown() {
+        watchdog.stop();
+        watchdog.close();
+    }
+
+    /**
+     * Waits until the scheduler has handled every deadline armed so far. The scheduler
+     * has a single thread and runs tasks with the same delay in submission order, so a
+     * task scheduled after the deadlines only runs once they have been handled.
+     */
+    private void awaitDeadlines() throws Exception {
+        scheduler.schedule(() -> {}, TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).get();
+    }
+
+    @Test(timeout = 10_000)
+    public void hangingRunIsInterruptedAtNextProbe() {
+        watchdog.start();
+        try {
+            while (true) {
+                FastCoverageSnoop.LOGJUMP(1, 0);
+            }
+        } catch (TimeoutException e) {
+            assertTrue(e.getMessage().endsWith("limit was " + TIMEOUT_MILLIS));
+        }
+    }
+
+    @Test
+    public void stoppedRunIsNotInterrupted() throws Exception {
+        watchdog.start();
+        watchdog.stop();
+        awaitDeadlines();
+        assertEquals(0, ProbeInterrupt.numPending);
+        FastCoverageSnoop.LOGJUMP(1, 0);
+    }
+
+    @Test
+    public void expiredTimeoutIsWithdrawnOnStop() throws Exception {
+        watchdog.start();
+        awaitDeadlines();
+        assertEquals(1, ProbeInterrupt.numPending);
+        watchdog.stop();
+        assertEquals(0, ProbeInterrupt.numPending);
+        FastCoverageSnoop.LOGJUMP(1, 0);
+    }
+
+    @Test
+    public void otherThreadsAreNotInterrupted() throws Exception {
+        watchdog.start();
+        awaitDeadlines();
+        AtomicReference<Throwable> otherError = new AtomicReference<>();
+        Thread other = new Thread(() -> {
+            try {
+                FastCoverageSnoop.LOGJUMP(1, 0);
+            } catch (Throwable e) {
+                otherError.set(e);
+            }
+        });
+        other.start();
+        other.join();
+        assertNull(otherError.get());
+        assertEquals(1, ProbeInterrupt.numPending);
+        try {
+            FastCoverageSnoop.LOGJUMP(1, 0);
+            fail("Expected a timeout");
+        } catch (TimeoutException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package edu.berkeley.cs.jqf.instrument.tracing;
+
+import edu.berkeley.cs.jqf.instrument.tracing.events.BranchEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.CallEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.PrimitiveTraceEventVisitor;
+import edu.berkeley.cs.jqf.instrument.tracing.events.ReturnEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEvent;
+import janala.logger.inst.MemberRef;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+public class ThreadTracerTest {
+
+    /** Logs a call to {@code callee}, whose body takes a branch. */
+    private static void logCall(ThreadTracer tracer, int iid, String callee) {
+        tracer.logInvoke(iid, 1, "Foo", callee, "()V");
+        tracer.logMethodBegin("Foo", callee, "()V", null);
+        tracer.logBooleanValue(true);
+        tracer.logBranch(iid + 1, 2);
+        tracer.logMethodEnd(iid + 2, 3);
+        tracer.logInvokeMethodEnd();
+    }
+
+    @Test
+    public void nestedCallsProduceEvents() {
+        List<TraceEvent> events = new ArrayList<>();
+        ThreadTracer tracer = new ThreadTracer(Thread.currentThread(), null, events::add);
+
+        tracer.logMethodBegin("Foo", "main", "()V", null);
+        logCall(tracer, 10, "bar");
+        tracer.logMethodEnd(20, 4);
+
+        assertEquals(5, events.size());
+        assertTrue(events.get(0) instanceof CallEvent);
+        assertEquals("Foo#main()V", ((CallEvent) events.get(0)).getInvokedMethodName());
+        CallEvent call = (CallEvent) events.get(1);
+        assertEquals(10, call.getIid());
+        assertEquals("main", call.getContainingMethodName());
+        assertEquals("Foo#bar()V", call.getInvokedMethodName());
+        BranchEvent branch = (BranchEvent) events.get(2);
+        assertEquals(11, branch.getIid());
+        assertEquals(1, branch.getArm());
+        assertEquals("bar", branch.getContainingMethodName());
+        assertTrue(events.get(3) instanceof ReturnEvent);
+        assertEquals(20, events.get(4).getIid());
+    }
+
+    @Test
+    public void matchedCalleesStartAtEntryPoint() {
+        List<TraceEvent> events = new ArrayList<>();
+        ThreadTracer tracer;
+        System.setProperty("jqf.tracing.MATCH_CALLEE_NAMES", "true");
+        try {
+            tracer = new ThreadTracer(Thread.currentThread(), "Foo#main", events::add);
+        } finally {
+            System.clearProperty("jqf.tracing.MATCH_CALLEE_NAMES");
+        }
+
+        // Calls outside of the entry point are not traced
+        tracer.logMethodBegin("Foo", "setUp", "()V", null);
+        tracer.logMethodEnd(1, 1);
+        assertTrue(events.isEmpty());
+
+        tracer.logMethodBegin("Foo", "main", "()V", null);
+        // A callee is traced only if it matches the name and descriptor of the call site
+        tracer.logInvoke(2, 2, "Foo", "bar", "()V");
+        tracer.logMethodBegin("Baz", "<clinit>", "()V", null);
+        tracer.logBranch(3, 3);
+        tracer.logMethodEnd(4, 4);
+        tracer.logMethodBegin("Sub", "bar", "()V", null);
+        tracer.logBranch(5, 5);
+
+        assertEquals(3, events.size());
+        assertEquals("Foo#main()V", ((CallEvent) events.get(0)).getInvokedMethodName());
+        assertEquals("Sub#bar()V", ((CallEvent) events.get(1)).getInvokedMethodName());
+        assertEquals(5, events.get(2).getIid());
+    }
+
+    @Test
+    public void switchArmsUseLastValue() {
+        List<TraceEvent> events = new ArrayList<>();
+        ThreadTracer tracer = new ThreadTracer(Thread.currentThread(), null, events::add);
+
+        tracer.logMethodBegin("Foo", "main", "()V", null);
+        tracer.logIntValue(7);
+        tracer.logLookupSwitch(5, 1, new int[]{3, 7});
+        tracer.logTableSwitch(6, 1, 4);
+
+        assertEquals(3, events.size());
+        assertEquals(1, ((BranchEvent) events.get(1)).getArm());
+        assertEquals(-1, ((BranchEvent) events.get(2)).getArm());
+    }
+
+    @Test
+    public void superCallExceptionExitsConstructors() {
+        List<TraceEvent> events = new ArrayList<>();
+        ThreadTracer tracer = new ThreadTracer(Thread.currentThread(), null, events::add);
+
+        tracer.logMethodBegin("Foo", "main", "()V", null);
+        tracer.logInvoke(1, 1, "Bar", "<init>", "()V");
+        tracer.logMethodBegin("Bar", "<init>", "()V", null);
+        tracer.logCallingSuperOrThis();
+        tracer.logInvoke(2, 2, "Foo", "<init>", "()V");
+        // The super constructor is not instrumented and throws
+        tracer.logInvokeMethodException(new RuntimeException());
+        events.clear();
+
+        // Back in main, the tracer accepts the next branch
+        tracer.logBranch(3, 3);
+        assertEquals(1, events.size());
+        assertEquals("main", events.get(0).getContainingMethodName());
+    }
+
+    @Test
+    public void callbackExceptionIsThrownByInstruction() {
+        RuntimeException timeout = new RuntimeException("timeout");
+        Consumer<TraceEvent> callback = e -> {
+            if (e instanceof BranchEvent) {
+                throw timeout;
+            }
+        };
+        ThreadTracer tracer = new ThreadTracer(Thread.currentThread(), null, callback);
+
+        tracer.logMethodBegin("Foo", "main", "()V", null);
+        try {
+            tracer.logBranch(1, 1);
+            fail("Expected the exception of the callback");
+        } catch (RuntimeException e) {
+            assertSame(timeout, e);
+        }
+        // The exception is thrown only once
+        tracer.logMethodEnd(2, 2);
+    }
+
+    @Test
+    public void primitiveVisitorIsCalledDirectly() {
+        class Visitor implements Consumer<TraceEvent>, PrimitiveTraceEventVisitor {
+            final List<MemberRef> branchMethods = new ArrayList<>();
+            int calls = 0;
+
+            @Override
+            public void accept(TraceEvent e) {
+                fail("Unexpected event " + e);
+            }
+
+            @Override
+            public void visitBranch(int iid, MemberRef containingMethod, int lineNumber, int arm) {
+                branchMethods.add(containingMethod);
+            }
+
+            @Override
+            public void visitCall(int iid, MemberRef containingMethod, int lineNumber,
+                                  MemberRef invokedMethod, Object callingObject) {
+                calls++;
+            }
+        }
+        Visitor visitor = new Visitor();
+        ThreadTracer tracer = new ThreadTracer(Thread.currentThread(), null, visitor);
+
+        tracer.logMethodBegin("Foo", "main", "()V", null);
+        logCall(tracer, 10, "bar");
+        logCall(tracer, 20, "bar");
+        tracer.logMethodEnd(30, 4);
+
+        assertEquals(3, visitor.calls);
+        assertEquals(2, visitor.branchMethods.size());
+        assertEquals("bar", visitor.branchMethods.get(0).getName());
+        // Repeated calls of a method at the same depth share the method reference
+        assertSame(visitor.branchMethods.get(0), visitor.branchMethods.get(1));
+    }
+}
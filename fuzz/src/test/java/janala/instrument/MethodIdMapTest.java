@@ -0,0 +1,57 @@
+package janala.instrument;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class MethodIdMapTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void keysIdentifySignaturesAndNames() {
+        MethodIdMap map = new MethodIdMap();
+        int foo = map.getId("a/A", "foo", "()V");
+        assertEquals(foo, map.getId("a/A", "foo", "()V"));
+        assertFalse(map.isPersistent());
+
+        MethodIdMap.Method inherited = map.get(map.getId("b/B", "foo", "()V"));
+        MethodIdMap.Method overloaded = map.get(map.getId("a/A", "foo", "(I)V"));
+        assertEquals(map.get(foo).signatureKey, inherited.signatureKey);
+        assertNotEquals(map.get(foo).signatureKey, overloaded.signatureKey);
+        assertEquals(map.get(foo).nameKey, overloaded.nameKey);
+        assertEquals(map.getNameKey("a/A", "foo"), overloaded.nameKey);
+        assertNotEquals(map.getNameKey("a/A", "fo"), overloaded.nameKey);
+    }
+
+    @Test
+    public void idsPersistAcrossInstances() throws IOException {
+        File mapFile = new File(folder.getRoot(), "cache/method-ids.map");
+        MethodIdMap first = new MethodIdMap(mapFile);
+        MethodIdMap second = new MethodIdMap(mapFile);
+        int foo = first.getId("a/A", "foo", "()V");
+        int bar = second.getId("a/A", "bar", "(I)I");
+        assertNotEquals(foo, bar);
+
+        // Each instance sees the IDs assigned by the other
+        assertEquals(bar, first.getId("a/A", "bar", "(I)I"));
+        assertEquals("foo", second.get(foo).getName());
+
+        MethodIdMap reopened = new MethodIdMap(mapFile);
+        MethodIdMap.Method method = reopened.get(bar);
+        assertEquals("a/A", method.getOwner());
+        assertEquals("(I)I", method.getDesc());
+        assertEquals(foo, reopened.getId("a/A", "foo", "()V"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownIdsAreRejected() {
+        new MethodIdMap().get(0);
+    }
+}
@@ -0,0 +1,162 @@
+package janala.instrument;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarFile;
+
+import static org.junit.Assert.*;
+
+public class OfflineInstrumenterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String[] SAMPLES = {"sample/Sign", "sample/nested/Abs"};
+
+    /* Generates a class with a single branching method. */
+    private static byte[] generate(String cname) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, cname, null, "java/lang/Object", null);
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "apply", "(I)I", null, null);
+        mv.visitCode();
+        Label nonNegative = new Label();
+        mv.visitVarInsn(Opcodes.ILOAD, 0);
+        mv.visitJumpInsn(Opcodes.IFGE, nonNegative);
+        mv.visitInsn(Opcodes.ICONST_M1);
+        mv.visitInsn(Opcodes.IRETURN);
+        mv.visitLabel(nonNegative);
+        mv.visitInsn(Opcodes.ICONST_1);
+        mv.visitInsn(Opcodes.IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void write(File root, String name, byte[] bytes) throws IOException {
+        File file = new File(root, name);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), bytes);
+    }
+
+    private static byte[] read(JarFile jar, String name) throws IOException {
+        try (InputStream in = jar.getInputStream(jar.getEntry(name))) {
+            return in.readAllBytes();
+        }
+    }
+
+    /* Runs the instrumenter in its own JVM, since the janala config of this one does not use fast coverage. */
+    private static void runInstrumenter(File probeIdMap, File outputJar, File classpath) throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java,
+                "-cp", System.getProperty("java.class.path"),
+                "-Djanala.probeIdMap=" + probeIdMap.getPath(),
+                OfflineInstrumenter.class.getName(),
+                "-t", "2", outputJar.getPath(), classpath.getPath())
+                .redirectErrorStream(true)
+                .start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals(output, 0, process.waitFor());
+    }
+
+    @Test
+    public void instrumentsClassPathIntoJar() throws Exception {
+        File classpath = folder.newFolder("classes");
+        Map<String, byte[]> originals = new HashMap<>();
+        for (String cname : SAMPLES) {
+            byte[] bytes = generate(cname);
+            originals.put(cname, bytes);
+            write(classpath, cname + ".class", bytes);
+        }
+        byte[] resource = "key=value\n".getBytes(StandardCharsets.UTF_8);
+        write(classpath, "sample/config.properties", resource);
+        write(classpath, "META-INF/SIGNER.SF", "Signature-Version: 1.0\n".getBytes(StandardCharsets.UTF_8));
+        write(classpath, "META-INF/SIGNER.RSA", new byte[]{1, 2, 3});
+
+        File probeIdMap = new File(folder.getRoot(), "probe-ids.map");
+        File outputJar = new File(folder.getRoot(), "instrumented.jar");
+        runInstrumenter(probeIdMap, outputJar, classpath);
+
+        try (JarFile jar = new JarFile(outputJar)) {
+            assertEquals("fast", jar.getManifest().getMainAttributes().getValue(OfflineInstrumenter.INSTRUMENTED_ATTRIBUTE));
+
+            // Classes are instrumented with calls to the fast-coverage snoop
+            for (String cname : SAMPLES) {
+                byte[] bytes = read(jar, cname + ".class");
+                assertFalse(Arrays.equals(originals.get(cname), bytes));
+                String constants = new String(bytes, StandardCharsets.ISO_8859_1);
+                assertTrue(constants.contains("edu/berkeley/cs/jqf/instrument/tracing/FastCoverageSnoop"));
+            }
+
+            // Resources are copied, signature files are dropped
+            assertArrayEquals(resource, read(jar, "sample/config.properties"));
+            assertNull(jar.getEntry("META-INF/SIGNER.SF"));
+            assertNull(jar.getEntry("META-INF/SIGNER.RSA"));
+
+            // The probe manifest lists the ranges of the probe ID map
+            List<ProbeIdMap.Entry> manifest;
+            try (InputStream in = jar.getInputStream(jar.getEntry(OfflineInstrumenter.PROBE_MANIFEST))) {
+                manifest = ProbeIdMap.readEntries(in);
+            }
+            Map<String, String> ranges = new HashMap<>();
+            try (InputStream in = Files.newInputStream(probeIdMap.toPath())) {
+                for (ProbeIdMap.Entry entry : ProbeIdMap.readEntries(in)) {
+                    ranges.put(entry.className, entry.toString());
+                }
+            }
+            List<String> classNames = new ArrayList<>();
+            for (ProbeIdMap.Entry entry : manifest) {
+                classNames.add(entry.className);
+                assertEquals(ranges.get(entry.className), entry.toString());
+                assertTrue(entry.numProbes > 0);
+            }
+            classNames.sort(null);
+            assertEquals(Arrays.asList("sample/Sign", "sample/nested/Abs"), classNames);
+        }
+    }
+
+    @Test
+    public void registersProbesOnce() throws Exception {
+        File classpath = folder.newFolder("classes");
+        write(classpath, SAMPLES[0] + ".class", generate(SAMPLES[0]));
+        File outputJar = new File(folder.getRoot(), "instrumented.jar");
+        runInstrumenter(new File(folder.getRoot(), "probe-ids.map"), outputJar, classpath);
+
+        int numProbes = 0;
+        try (JarFile jar = new JarFile(outputJar);
+             InputStream in = jar.getInputStream(jar.getEntry(OfflineInstrumenter.PROBE_MANIFEST))) {
+            for (ProbeIdMap.Entry entry : ProbeIdMap.readEntries(in)) {
+                numProbes += entry.numProbes;
+            }
+        }
+        assertTrue(numProbes > 0);
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{outputJar.toURI().toURL()}, null)) {
+            int before = ProbeCounter.instance.getNumTotalProbes();
+            assertEquals(1, OfflineInstrumenter.registerProbes(loader));
+            assertEquals(before + numProbes, ProbeCounter.instance.getNumTotalProbes());
+
+            // Registering the same jar again does not count its probes twice
+            assertEquals(0, OfflineInstrumenter.registerProbes(loader));
+            assertEquals(before + numProbes, ProbeCounter.instance.getNumTotalProbes());
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package janala.instrument;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class ProbeIdMapTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void rangesPersistAcrossInstances() throws IOException {
+        File mapFile = new File(folder.getRoot(), "cache/probe-ids.map");
+        ProbeIdMap map = new ProbeIdMap(mapFile);
+        assertEquals(1, map.getNextFreeId());
+        assertEquals(1, map.allocate("a/A", 10, 8, 0).base);
+        assertEquals(11, map.allocate("b/B", 5, 4, 2).base);
+
+        ProbeIdMap reopened = new ProbeIdMap(mapFile);
+        ProbeIdMap.Entry a = reopened.get("a/A");
+        ProbeIdMap.Entry b = reopened.get("b/B");
+        assertEquals(1, a.base);
+        assertEquals(10, a.getLastId());
+        assertEquals(11, b.base);
+        assertEquals(2, b.numSemanticProbes);
+        assertEquals(16, reopened.getNextFreeId());
+        assertNull(reopened.get("c/C"));
+    }
+
+    @Test
+    public void reinstrumentingWithinRangeKeepsBase() throws IOException {
+        ProbeIdMap map = new ProbeIdMap(folder.newFile());
+        map.allocate("a/A", 10, 8, 0);
+        map.allocate("b/B", 5, 4, 0);
+        assertFalse(map.commit("c/C", 16, 1, 1, 0));
+
+        // A smaller class keeps its reserved range
+        assertTrue(map.commit("a/A", 1, 6, 5, 0));
+        assertEquals(1, map.get("a/A").base);
+        assertEquals(10, map.get("a/A").size);
+        assertEquals(5, map.get("a/A").numProbes);
+
+        // A class that outgrew its range needs a fresh one
+        assertFalse(map.commit("a/A", 1, 12, 11, 0));
+        assertEquals(16, map.allocate("a/A", 12, 11, 0).base);
+        assertEquals(16, map.get("a/A").base);
+        assertEquals(28, map.getNextFreeId());
+    }
+
+    @Test
+    public void probeModeIsRecordedWithEachEntry() throws IOException {
+        File mapFile = folder.newFile();
+        ProbeIdMap inline = new ProbeIdMap(mapFile, "FastCoverageSnoop+inline");
+        inline.allocate("a/A", 10, 8, 0);
+        assertEquals("FastCoverageSnoop+inline", inline.get("a/A").probeMode);
+
+        // Re-instrumenting in another mode keeps the range but records the new mode and counts
+        ProbeIdMap pruned = new ProbeIdMap(mapFile, "FastCoverageSnoop+pruned");
+        assertTrue(pruned.commit("a/A", 1, 10, 6, 0));
+        ProbeIdMap.Entry entry = new ProbeIdMap(mapFile).get("a/A");
+        assertEquals(1, entry.base);
+        assertEquals(6, entry.numProbes);
+        assertEquals("FastCoverageSnoop+pruned", entry.probeMode);
+
+        // Entries written without a mode can still be read
+        File legacyFile = folder.newFile();
+        new ProbeIdMap(legacyFile).allocate("b/B", 5, 4, 0);
+        assertEquals("", new ProbeIdMap(legacyFile, "FastCoverageSnoop").get("b/B").probeMode);
+    }
+
+    @Test
+    public void rangesTakenByAnotherInstanceAreNotReused() throws IOException {
+        File mapFile = folder.newFile();
+        ProbeIdMap first = new ProbeIdMap(mapFile);
+        ProbeIdMap second = new ProbeIdMap(mapFile);
+
+        assertEquals(1, first.allocate("a/A", 5, 4, 0).base);
+        assertEquals(6, second.allocate("b/B", 3, 2, 0).base);
+        assertEquals(9, first.allocate("c/C", 1, 1, 0).base);
+        assertEquals(6, first.get("b/B").base);
+        assertEquals(9, second.get("c/C").base);
+        assertEquals(10, second.getNextFreeId());
+    }
+
+    @Test
+    public void concurrentAllocationsDoNotOverlap() throws Exception {
+        ProbeIdMap map = new ProbeIdMap(folder.newFile());
+        int numThreads = 4;
+        int perThread = 50;
+        Thread[] threads = new Thread[numThreads];
+        for (int t = 0; t < numThreads; t++) {
+            final int thread = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    try {
+                        map.allocate("c/C" + thread + "_" + i, 3, 2, 0);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        boolean[] used = new boolean[numThreads * perThread * 3 + 1];
+        for (int t = 0; t < numThreads; t++) {
+            for (int i = 0; i < perThread; i++) {
+                ProbeIdMap.Entry entry = map.get("c/C" + t + "_" + i);
+                for (int id = entry.base; id <= entry.getLastId(); id++) {
+                    assertFalse(used[id]);
+                    used[id] = true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package janala.instrument;
+
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.BitSet;
+
+import static org.junit.Assert.*;
+
+public class ProbePruningTest {
+
+    @SuppressWarnings("unused") // Analyzed by the tests
+    static class Sample {
+        static void a() {}
+        static void b() {}
+        static void c() {}
+
+        static void straightLine() {
+            a();
+            b();
+            c();
+        }
+
+        static void afterBranch(int x) {
+            if (x > 0) {
+                a();
+            }
+            b();
+        }
+
+        static void loop(int n) {
+            for (int i = 0; i < n; i++) {
+                a();
+            }
+            b();
+        }
+
+        static void handler() {
+            try {
+                a();
+            } catch (RuntimeException e) {
+                b();
+            }
+        }
+
+        static void sharedSwitchTarget(int x) {
+            switch (x) {
+                case 0:
+                case 1:
+                    a();
+                    break;
+                case 2:
+                    b();
+                    break;
+            }
+            c();
+        }
+    }
+
+    private static MethodNode load(String methodName) throws IOException {
+        String resource = "/" + Sample.class.getName().replace('.', '/') + ".class";
+        ClassNode classNode = new ClassNode();
+        try (InputStream in = ProbePruningTest.class.getResourceAsStream(resource)) {
+            new ClassReader(in).accept(classNode, 0);
+        }
+        for (MethodNode method : classNode.methods) {
+            if (method.name.equals(methodName)) {
+                return method;
+            }
+        }
+        throw new AssertionError("No method " + methodName);
+    }
+
+    private static BitSet analyze(String methodName) throws IOException {
+        return ProbePruning.findRedundantCallSites(load(methodName));
+    }
+
+    /** Instruments a method, omitting the given call-site probes, and counts the calls to each probe. */
+    private static int[] countProbes(String methodName, BitSet redundant) throws IOException {
+        MethodNode method = load(methodName);
+        MethodNode instrumented = new MethodNode(method.access, method.name, method.desc, method.signature, null);
+        GlobalStateForInstrumentation state = new GlobalStateForInstrumentation();
+        state.setFastCoverageIdBase(1);
+        state.setRemovedProbes(new BitSet());
+        FastCoverageMethodAdapter adapter = new FastCoverageMethodAdapter(instrumented,
+                Sample.class.getName().replace('.', '/'), method.name, method.desc, "java/lang/Object",
+                state, new ProbeCounter());
+        adapter.setRedundantCallSites(redundant);
+        method.accept(adapter);
+
+        int[] counts = new int[3];
+        for (AbstractInsnNode insn : instrumented.instructions) {
+            if (insn instanceof MethodInsnNode) {
+                String name = ((MethodInsnNode) insn).name;
+                if (name.equals("LOGMETHODBEGIN")) {
+                    counts[0]++;
+                } else if (name.equals("LOGJUMP")) {
+                    counts[1]++;
+                } else if (name.equals("LOGMETHODEND")) {
+                    counts[2]++;
+                }
+            }
+        }
+        return counts;
+    }
+
+    private static BitSet bits(int... indices) {
+        BitSet bits = new BitSet();
+        for (int i : indices) {
+            bits.set(i);
+        }
+        return bits;
+    }
+
+    @Test
+    public void callsImpliedByMethodEntry() throws IOException {
+        assertEquals(bits(0, 1, 2), analyze("straightLine"));
+    }
+
+    @Test
+    public void joinPointNeedsProbe() throws IOException {
+        // b() is reached from both arms of the branch
+        assertEquals(bits(0), analyze("afterBranch"));
+    }
+
+    @Test
+    public void loopBodyAndExitImpliedByBranchArms() throws IOException {
+        assertEquals(bits(0, 1), analyze("loop"));
+    }
+
+    @Test
+    public void exceptionHandlerNeedsProbe() throws IOException {
+        assertEquals(bits(0), analyze("handler"));
+    }
+
+    @Test
+    public void sharedSwitchTargetNeedsProbe() throws IOException {
+        // Cases 0 and 1 share a target, and c() is reached from all arms
+        assertEquals(bits(1), analyze("sharedSwitchTarget"));
+    }
+
+    @Test
+    public void branchEntryAndReturnProbesAreKept() throws IOException {
+        // Entry, both arms of the loop condition, both call sites, and the return
+        int[] full = countProbes("loop", new BitSet());
+        int[] pruned = countProbes("loop", analyze("loop"));
+        assertArrayEquals(new int[]{1, 4, 1}, full);
+        assertArrayEquals(new int[]{1, 2, 1}, pruned);
+    }
+}
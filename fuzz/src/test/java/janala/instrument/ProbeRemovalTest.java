@@ -0,0 +1,116 @@
+package janala.instrument;
+
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.BitSet;
+
+import static org.junit.Assert.*;
+
+public class ProbeRemovalTest {
+
+    @SuppressWarnings("unused") // Instrumented by the tests
+    static class Sample {
+        static void a() {}
+
+        static void branch(int x) {
+            if (x > 0) {
+                a();
+            }
+        }
+    }
+
+    /** Instruments Sample with probe IDs from 1, returning the instrumented {@code branch} method. */
+    private static MethodNode instrument(BitSet removed, GlobalStateForInstrumentation state) throws IOException {
+        String resource = "/" + Sample.class.getName().replace('.', '/') + ".class";
+        byte[] bytes;
+        try (InputStream in = ProbeRemovalTest.class.getResourceAsStream(resource)) {
+            bytes = in.readAllBytes();
+        }
+        state.setFastCoverageIdBase(1);
+        state.setRemovedProbes(removed);
+        ClassReader reader = new ClassReader(bytes);
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        reader.accept(new ClassVisitor(Opcodes.ASM8, writer) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+                MethodVisitor mv = super.visitMethod(access, name, desc, signature, exceptions);
+                return new FastCoverageMethodAdapter(mv, reader.getClassName(), name, desc,
+                        reader.getSuperName(), state, new ProbeCounter());
+            }
+        }, ClassReader.SKIP_FRAMES);
+
+        ClassNode classNode = new ClassNode();
+        new ClassReader(writer.toByteArray()).accept(classNode, 0);
+        for (MethodNode method : classNode.methods) {
+            if (method.name.equals("branch")) {
+                return method;
+            }
+        }
+        throw new AssertionError("No method branch");
+    }
+
+    private static int countCalls(MethodNode method, String name) {
+        int count = 0;
+        for (AbstractInsnNode insn : method.instructions) {
+            if (insn instanceof MethodInsnNode && ((MethodInsnNode) insn).name.equals(name)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int countInterruptChecks(MethodNode method) {
+        int count = 0;
+        for (AbstractInsnNode insn : method.instructions) {
+            if (insn instanceof FieldInsnNode && ((FieldInsnNode) insn).name.equals("numPending")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void removedProbesKeepIds() throws IOException {
+        GlobalStateForInstrumentation full = new GlobalStateForInstrumentation();
+        MethodNode method = instrument(new BitSet(), full);
+        // Method entry, both arms of the branch, and the call site
+        assertEquals(1, countCalls(method, "LOGMETHODBEGIN"));
+        assertEquals(3, countCalls(method, "LOGJUMP"));
+
+        BitSet all = new BitSet();
+        all.set(1, full.getNextFastCoverageId());
+        GlobalStateForInstrumentation stripped = new GlobalStateForInstrumentation();
+        method = instrument(all, stripped);
+        assertEquals(0, countCalls(method, "LOGMETHODBEGIN"));
+        assertEquals(0, countCalls(method, "LOGJUMP"));
+        assertEquals(full.getNextFastCoverageId(), stripped.getNextFastCoverageId());
+    }
+
+    @Test
+    public void removedBranchArmsStayInterruptible() throws IOException {
+        // IDs: <init> 1-2, a() 3, branch() entry 4, arms 5-6, call site 7
+        BitSet arms = new BitSet();
+        arms.set(5, 7);
+        MethodNode method = instrument(arms, new GlobalStateForInstrumentation());
+        assertEquals(1, countCalls(method, "LOGJUMP"));
+        assertEquals(2, countInterruptChecks(method));
+
+        BitSet callSite = new BitSet();
+        callSite.set(7);
+        method = instrument(callSite, new GlobalStateForInstrumentation());
+        assertEquals(2, countCalls(method, "LOGJUMP"));
+        assertEquals(0, countInterruptChecks(method));
+    }
+}
@@ -0,0 +1,177 @@
+package janala.instrument;
+
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SwitchArmProbesTest {
+
+    @SuppressWarnings("unused") // Instrumented by the tests
+    public static class Sample {
+        public static int table(int x) {
+            // Compiled to a tableswitch over 1..5 with a gap at 3
+            switch (x) {
+                case 1: return 10;
+                case 2: return 20;
+                case 4: return 40;
+                case 5: return 50;
+                default: return -1;
+            }
+        }
+
+        public static int lookup(int x) {
+            // Compiled to a lookupswitch
+            switch (x) {
+                case -7: return 1;
+                case 100: return 2;
+                case 100_000: return 3;
+                default: return 0;
+            }
+        }
+    }
+
+    /** Receives the calls of the instrumented sample and records the keys that a coverage listener would log. */
+    public static class Recorder {
+        static final List<Integer> keys = new ArrayList<>();
+
+        public static void LOGMETHODBEGIN(int iid) {
+            keys.add(iid);
+        }
+
+        public static void LOGMETHODEND(int iid) {
+        }
+
+        public static void LOGJUMP(int iid, int branch) {
+            keys.add(iid + branch);
+        }
+
+        public static void LOGTABLESWITCH(int value, int iid, int min, int max, int dflt) {
+            int arm = 1 + max - min;
+            if (value >= min && value <= max) {
+                arm = value - min;
+            }
+            keys.add(iid + arm + 1);
+        }
+
+        public static void LOGLOOKUPSWITCH(int value, int iid, int dflt, int[] cases) {
+            int arm = cases.length;
+            for (int i = 0; i < cases.length; i++) {
+                if (value == cases[i]) {
+                    arm = i;
+                    break;
+                }
+            }
+            keys.add(iid + arm + 1);
+        }
+    }
+
+    private static final String RECORDER = Recorder.class.getName().replace('.', '/');
+
+    /* Instruments the sample with fast-coverage probes that call the recorder. */
+    private static byte[] instrument(boolean switchArmProbes) throws IOException {
+        String cname = Sample.class.getName().replace('.', '/');
+        byte[] original;
+        try (InputStream in = SwitchArmProbesTest.class.getResourceAsStream("/" + cname + ".class")) {
+            original = in.readAllBytes();
+        }
+        GlobalStateForInstrumentation state = new GlobalStateForInstrumentation();
+        state.setFastCoverageIdBase(1);
+        ClassReader reader = new ClassReader(original);
+        ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        reader.accept(new ClassVisitor(Opcodes.ASM8, writer) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+                MethodVisitor mv = new MethodVisitor(Opcodes.ASM8, super.visitMethod(access, name, desc, signature, exceptions)) {
+                    @Override
+                    public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+                        String target = owner.equals(Config.instance.analysisClass) ? RECORDER : owner;
+                        super.visitMethodInsn(opcode, target, name, desc, itf);
+                    }
+                };
+                FastCoverageMethodAdapter fmv = new FastCoverageMethodAdapter(mv, cname, name, desc,
+                        "java/lang/Object", state, new ProbeCounter());
+                fmv.setSwitchArmProbes(switchArmProbes);
+                return fmv;
+            }
+        }, 0);
+        return writer.toByteArray();
+    }
+
+    /* Runs both switches on values that hit every arm, the gap and the default, and returns the logged keys. */
+    private static List<Integer> run(byte[] instrumented) throws ReflectiveOperationException {
+        ClassLoader loader = new ClassLoader(SwitchArmProbesTest.class.getClassLoader()) {
+            @Override
+            protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                if (name.equals(Sample.class.getName())) {
+                    synchronized (getClassLoadingLock(name)) {
+                        Class<?> c = findLoadedClass(name);
+                        return c != null ? c : defineClass(name, instrumented, 0, instrumented.length);
+                    }
+                }
+                return super.loadClass(name, resolve);
+            }
+        };
+        Class<?> sample = loader.loadClass(Sample.class.getName());
+        Recorder.keys.clear();
+        for (int x = 0; x <= 6; x++) {
+            sample.getMethod("table", int.class).invoke(null, x);
+        }
+        for (int x : new int[]{-7, 100, 100_000, 5}) {
+            sample.getMethod("lookup", int.class).invoke(null, x);
+        }
+        return new ArrayList<>(Recorder.keys);
+    }
+
+    @Test
+    public void switchArmProbesLogTheSameKeys() throws Exception {
+        List<Integer> perArm = run(instrument(true));
+        List<Integer> logged = run(instrument(false));
+        // Each of the 11 calls logs its method entry and one switch arm
+        assertEquals(22, logged.size());
+        assertEquals(logged, perArm);
+    }
+
+    @Test
+    public void switchArmProbesDoNotAllocateOrSearch() throws IOException {
+        ClassNode classNode = new ClassNode();
+        new ClassReader(instrument(true)).accept(classNode, 0);
+        for (MethodNode method : classNode.methods) {
+            for (AbstractInsnNode insn : method.instructions) {
+                if (insn instanceof IntInsnNode) {
+                    assertFalse(insn.getOpcode() == Opcodes.NEWARRAY && ((IntInsnNode) insn).operand == Opcodes.T_INT);
+                }
+                if (insn instanceof MethodInsnNode) {
+                    String name = ((MethodInsnNode) insn).name;
+                    assertNotEquals("LOGLOOKUPSWITCH", name);
+                    assertNotEquals("LOGTABLESWITCH", name);
+                }
+            }
+        }
+
+        // Without per-arm probes, the lookupswitch allocates its keys for the listener
+        ClassNode logged = new ClassNode();
+        new ClassReader(instrument(false)).accept(logged, 0);
+        boolean callsLookupSwitch = false;
+        for (MethodNode method : logged.methods) {
+            for (AbstractInsnNode insn : method.instructions) {
+                callsLookupSwitch |= insn instanceof MethodInsnNode && ((MethodInsnNode) insn).name.equals("LOGLOOKUPSWITCH");
+            }
+        }
+        assertTrue(callsLookupSwitch);
+    }
+}
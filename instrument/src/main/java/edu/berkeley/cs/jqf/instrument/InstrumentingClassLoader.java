@@ -28,24 +28,46 @@
  */
 package edu.berkeley.cs.jqf.instrument;
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.IllegalClassFormatException;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
 
 import janala.instrument.SnoopInstructionTransformer;
+import janala.instrument.SnoopInstructionTransformer.InstrumentedClass;
 
 /**
  * @author Rohan Padhye
  */
 public class InstrumentingClassLoader extends URLClassLoader {
 
-    private ClassFileTransformer transformer = new SnoopInstructionTransformer();
+    static {
+        // Classes are instrumented concurrently when loaded by several threads
+        registerAsParallelCapable();
+    }
+
+    private SnoopInstructionTransformer transformer = new SnoopInstructionTransformer();
+
+    /** Classes instrumented by {@link #preinstrument(int, String...)} that have not been loaded yet, keyed by internal class name. */
+    private final Map<String, InstrumentedClass> preinstrumented = new ConcurrentHashMap<>();
 
     public InstrumentingClassLoader(URL[] urls, ClassLoader parent) {
         super(urls, parent);
@@ -63,12 +85,125 @@ public class InstrumentingClassLoader extends URLClassLoader {
         return urls;
     }
 
+    /**
+     * Instruments the classes of the given packages on this loader's class path
+     * ahead of time, using a pool of threads.
+     *
+     * <p>Instrumented classes are kept in memory until they are loaded, so that
+     * the expensive instrumentation of large targets does not happen class by
+     * class on the fuzzing thread. Only the given packages and the prefixes
+     * included by {@code janala.includes} are instrumented, so that dependencies
+     * the test never loads are not kept in memory. Probes are only counted once
+     * a class is defined, and classes that have not been loaded by the end of
+     * startup should be dropped with {@link #releasePreinstrumented()}.</p>
+     *
+     * <p>Nothing is instrumented if fast-coverage probe IDs are handed out in the
+     * order classes are instrumented (i.e. without a probe ID map), as instrumenting
+     * in parallel would make the IDs depend on thread scheduling.</p>
+     *
+     * @param numThreads the number of instrumentation threads
+     * @param packages   the packages to instrument, e.g. the package of the test class
+     * @return the number of classes that have been instrumented
+     * @throws IOException if the class path cannot be read
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public int preinstrument(int numThreads, String... packages) throws IOException, InterruptedException {
+        if (!SnoopInstructionTransformer.hasStableProbeIds()) {
+            System.err.println("[WARNING] Skipping pre-instrumentation, which requires a probe ID map " +
+                    "(janala.probeIdMap) for fast-coverage instrumentation");
+            return 0;
+        }
+        List<String> prefixes = new ArrayList<>(Arrays.asList(SnoopInstructionTransformer.getIncludes()));
+        for (String pkg : packages) {
+            prefixes.add(pkg.isEmpty() ? "" : pkg.replace('.', '/') + "/");
+        }
+
+        List<String> classNames = new ArrayList<>();
+        for (URL url : getURLs()) {
+            File file;
+            try {
+                file = new File(url.toURI());
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                continue;
+            }
+            collectClassNames(file, classNames);
+        }
+        classNames.removeIf(name -> prefixes.stream().noneMatch(name::startsWith));
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        AtomicInteger numInstrumented = new AtomicInteger();
+        try {
+            for (String internalName : classNames) {
+                executor.execute(() -> {
+                    try (InputStream in = super.getResourceAsStream(internalName.concat(".class"))) {
+                        if (in == null) {
+                            return;
+                        }
+                        InstrumentedClass instrumented = transformer.instrumentDeferred(this, internalName, in.readAllBytes());
+                        if (instrumented != null) {
+                            preinstrumented.put(internalName, instrumented);
+                            numInstrumented.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        // Will be retried when the class is loaded
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        return numInstrumented.get();
+    }
+
+    /**
+     * Drops the pre-instrumented classes that have not been loaded so far.
+     * Classes loaded afterwards are instrumented when they are loaded.
+     *
+     * @return the number of classes that were dropped
+     */
+    public int releasePreinstrumented() {
+        int numDropped = preinstrumented.size();
+        preinstrumented.clear();
+        return numDropped;
+    }
+
+    private static void collectClassNames(File file, List<String> classNames) throws IOException {
+        if (file.isDirectory()) {
+            Path root = file.toPath();
+            try (Stream<Path> paths = Files.walk(root)) {
+                paths.map(root::relativize)
+                        .map(path -> path.toString().replace(File.separatorChar, '/'))
+                        .filter(InstrumentingClassLoader::isClassFile)
+                        .forEach(path -> classNames.add(path.substring(0, path.length() - ".class".length())));
+            }
+        } else if (file.isFile()) {
+            try (JarFile jar = new JarFile(file)) {
+                jar.stream()
+                        .map(JarEntry::getName)
+                        .filter(InstrumentingClassLoader::isClassFile)
+                        .forEach(path -> classNames.add(path.substring(0, path.length() - ".class".length())));
+            }
+        }
+    }
+
+    private static boolean isClassFile(String path) {
+        return path.endsWith(".class") && !path.endsWith("module-info.class") && !path.startsWith("META-INF/");
+    }
+
     @Override
     public Class<?> findClass(String name) throws ClassNotFoundException {
         byte[] originalBytecode;
 
         // Try to read the class file in as a resource
         String internalName = name.replace('.', '/');
+        InstrumentedClass instrumentedClass = preinstrumented.remove(internalName);
+        if (instrumentedClass != null) {
+            byte[] instrumentedBytecode = instrumentedClass.getBytecode();
+            Class<?> cls = defineClass(name, instrumentedBytecode, 0, instrumentedBytecode.length);
+            instrumentedClass.register();
+            return cls;
+        }
         String path = internalName.concat(".class");
         try (InputStream in = super.getResourceAsStream(path)) {
             if (in == null) {
@@ -8,29 +8,34 @@ public class FastSemanticCoverageSnoop {
 
     @SuppressWarnings("unused") //Invoked by instrumentation
     public static void LOGMETHODBEGIN(int iid) {
+        ProbeInterrupt.check();
         coverageListener.logMethodBegin(iid);
         semanticListener.logMethodBegin(iid);
     }
 
     public static void LOGMETHODEND(int iid) {
+        ProbeInterrupt.check();
         coverageListener.logMethodEnd(iid);
         semanticListener.logMethodEnd(iid);
     }
 
     @SuppressWarnings("unused") //Invoked by instrumentation
     public static void LOGJUMP(int iid, int branch) {
+        ProbeInterrupt.check();
         coverageListener.logJump(iid, branch);
         semanticListener.logJump(iid, branch);
     }
 
     @SuppressWarnings("unused") //Invoked by instrumentation
     public static void LOGLOOKUPSWITCH(int value, int iid, int dflt, int[] cases) {
+        ProbeInterrupt.check();
         coverageListener.logLookUpSwitch(value, iid, dflt, cases);
         semanticListener.logLookUpSwitch(value, iid, dflt, cases);
     }
 
     @SuppressWarnings("unused") //Invoked by instrumentation
     public static void LOGTABLESWITCH(int value, int iid, int min, int max, int dflt) {
+        ProbeInterrupt.check();
         coverageListener.logTableSwitch(value, iid, min, max, dflt);
         semanticListener.logTableSwitch(value, iid, min, max, dflt);
     }
@@ -0,0 +1,65 @@
+package edu.berkeley.cs.jqf.instrument.tracing;
+
+import java.util.Arrays;
+
+/**
+ * The hit counts of inline fast-coverage probes.
+ *
+ * <p>With {@code janala.inlineCoverageProbes}, branch, call-site and method-entry
+ * probes do not invoke {@link FastCoverageSnoop} but increment {@code hits[key]}
+ * directly, where {@code key} is the same constant that would have been logged
+ * through {@code LOGJUMP} or {@code LOGMETHODBEGIN}. The guidance moves the counts
+ * into its own coverage map after every trial.</p>
+ *
+ * <p>So that the guidance does not have to scan the whole map, instrumented code
+ * also marks the blocks of {@value #BLOCK_SIZE} keys that it touches: each method
+ * marks the block of its entry probe when it is entered, and a probe in any other
+ * block marks its own block. Only marked blocks are drained. Probes of a method
+ * that is still running when its block is drained are picked up once a method
+ * of that block is entered again.</p>
+ *
+ * <p>The map is grown whenever classes with new probe IDs are instrumented, before
+ * their code can run. It is shared by all threads, so probes that run concurrently
+ * with a trial are attributed to it, and increments that race with growing the map
+ * may be lost.</p>
+ */
+public final class InlineCoverageMap {
+
+    /** The number of bits of a probe key that index into its block. */
+    public static final int BLOCK_SHIFT = 8;
+
+    /** The number of probe keys per block. */
+    public static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    /** Hit counts by probe key, incremented by instrumented code. */
+    public static int[] hits = new int[1 << 16];
+
+    /** Non-zero for each block of {@link #hits} that has been touched since it was last drained. */
+    public static byte[] touched = new byte[hits.length >> BLOCK_SHIFT];
+
+    private InlineCoverageMap() {}
+
+    /**
+     * Grows the map such that it holds all keys up to {@code maxKey}.
+     *
+     * @param maxKey the largest probe key that instrumented code may increment
+     */
+    public static synchronized void ensureCapacity(int maxKey) {
+        int[] current = hits;
+        if (maxKey < current.length) {
+            return;
+        }
+        int newSize = current.length;
+        while (newSize <= maxKey) {
+            newSize *= 2;
+        }
+        touched = Arrays.copyOf(touched, newSize >> BLOCK_SHIFT);
+        hits = Arrays.copyOf(current, newSize);
+    }
+
+    /** Resets all hit counts and block marks to zero. */
+    public static void clear() {
+        Arrays.fill(hits, 0);
+        Arrays.fill(touched, (byte) 0);
+    }
+}
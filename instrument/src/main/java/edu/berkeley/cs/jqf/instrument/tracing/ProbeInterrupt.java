@@ -0,0 +1,73 @@
+package edu.berkeley.cs.jqf.instrument.tracing;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interrupts a thread at its next fast-coverage probe.
+ *
+ * <p>Fast-coverage probes do not go through the guidance, so the guidance has
+ * no opportunity to abort a run that takes too long. Instead, a watchdog posts
+ * an exception for the thread running the trial, and {@link FastCoverageSnoop}
+ * and {@link FastSemanticCoverageSnoop} throw it from the next probe that this
+ * thread executes. While nothing is pending, a probe only pays for a single
+ * volatile read.</p>
+ */
+public class ProbeInterrupt {
+
+    /** Pending exceptions, by the thread they are to be thrown in. */
+    private static final Map<Thread, RuntimeException> pending = new ConcurrentHashMap<>();
+
+    /** The number of pending exceptions, checked by every probe (also by inline probes, see {@link InlineCoverageMap}). */
+    public static volatile int numPending = 0;
+
+    /**
+     * Requests that an exception is thrown at the next probe executed by a thread.
+     *
+     * @param thread    the thread to interrupt
+     * @param exception the exception to throw in {@code thread}
+     */
+    public static synchronized void interrupt(Thread thread, RuntimeException exception) {
+        pending.put(thread, exception);
+        numPending = pending.size();
+    }
+
+    /**
+     * Withdraws a pending exception for a thread, if any.
+     *
+     * @param thread the thread that should no longer be interrupted
+     */
+    public static synchronized void clear(Thread thread) {
+        if (pending.remove(thread) != null) {
+            numPending = pending.size();
+        }
+    }
+
+    /** Invoked by the snoops at every probe. */
+    static void check() {
+        if (numPending != 0) {
+            raise();
+        }
+    }
+
+    /**
+     * Throws the exception pending for the current thread, if any; invoked by inline probes.
+     *
+     * <p>Threads with nothing pending only do a lock-free lookup, so that an
+     * interrupt posted for one thread does not serialize the probes of all others.</p>
+     */
+    public static void raise() {
+        Thread current = Thread.currentThread();
+        if (pending.get(current) == null) {
+            return;
+        }
+        RuntimeException exception;
+        synchronized (ProbeInterrupt.class) {
+            exception = pending.remove(current);
+            numPending = pending.size();
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+}
@@ -268,6 +268,26 @@ public final class SingleSnoop {
         try { intp.IFNONNULL(iid, mid, label); } finally { block.set(false); }
     }
 
+    public static void INVOKEVIRTUAL(int iid, int mid, int methodId) {
+        if (block.get()) return; else block.set(true);
+        try { intp.INVOKEVIRTUAL(iid, mid, methodId); } finally { block.set(false); }
+    }
+
+    public static void INVOKESPECIAL(int iid, int mid, int methodId) {
+        if (block.get()) return; else block.set(true);
+        try { intp.INVOKESPECIAL(iid, mid, methodId); } finally { block.set(false); }
+    }
+
+    public static void INVOKESTATIC(int iid, int mid, int methodId) {
+        if (block.get()) return; else block.set(true);
+        try { intp.INVOKESTATIC(iid, mid, methodId); } finally { block.set(false); }
+    }
+
+    public static void INVOKEINTERFACE(int iid, int mid, int methodId) {
+        if (block.get()) return; else block.set(true);
+        try { intp.INVOKEINTERFACE(iid, mid, methodId); } finally { block.set(false); }
+    }
+
     public static void INVOKEVIRTUAL(int iid, int mid, String owner, String name, String desc) {
         if (block.get()) return; else block.set(true);
         try { intp.INVOKEVIRTUAL(iid, mid, owner, name, desc); } finally { block.set(false); }
@@ -993,6 +1013,16 @@ public final class SingleSnoop {
         try { intp.GETVALUE_void(); } finally { block.set(false); }
     }
 
+    public static void METHOD_BEGIN(int methodId) {
+        if (block.get()) return; else block.set(true);
+        try { intp.METHOD_BEGIN(methodId, null); } finally { block.set(false); }
+    }
+
+    public static void METHOD_BEGIN(int methodId, Object obj) {
+        if (block.get()) return; else block.set(true);
+        try { intp.METHOD_BEGIN(methodId, obj); } finally { block.set(false); }
+    }
+
     public static void METHOD_BEGIN(String className, String methodName, String desc) {
         if (block.get()) return; else block.set(true);
         try { intp.METHOD_BEGIN(className, methodName, desc); } finally { block.set(false); }
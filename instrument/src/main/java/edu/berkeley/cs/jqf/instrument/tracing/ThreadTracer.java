@@ -30,18 +30,14 @@
 
 package edu.berkeley.cs.jqf.instrument.tracing;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.Arrays;
 import java.util.function.Consumer;
 
 import edu.berkeley.cs.jqf.instrument.InstrumentationException;
-import edu.berkeley.cs.jqf.instrument.tracing.events.AllocEvent;
-import edu.berkeley.cs.jqf.instrument.tracing.events.BranchEvent;
-import edu.berkeley.cs.jqf.instrument.tracing.events.CallEvent;
-import edu.berkeley.cs.jqf.instrument.tracing.events.ReadEvent;
-import edu.berkeley.cs.jqf.instrument.tracing.events.ReturnEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.PrimitiveTraceEventVisitor;
 import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEvent;
-import janala.logger.inst.*;
+import janala.instrument.MethodIdMap;
+import janala.logger.inst.MemberRef;
 
 /**
  * This class is responsible for tracing for an instruction stream
@@ -52,17 +48,26 @@ import janala.logger.inst.*;
  * {@link TraceEvent} instances, which are then emitted to be processed
  * by the guidance-provided callback.</p>
  *
+ * <p>Instructions are not allocated as objects; the {@link TraceLogger}
+ * passes the operands of the instructions that can produce trace events
+ * to this tracer, and ignores all others. Callbacks implementing
+ * {@link PrimitiveTraceEventVisitor} are visited without allocating
+ * any events.</p>
+ *
+ * <p>Methods are identified by the IDs of the {@link MethodIdMap} that are
+ * assigned at instrumentation time, so that matching a callee with its call
+ * site and detecting the entry point compare integer keys.</p>
+ *
  * @author Rohan Padhye
  */
 public class ThreadTracer {
     protected final Thread tracee;
     protected final String entryPointClass;
     protected final String entryPointMethod;
+    private final int entryPointKey;
+    private final MethodIdMap methodIds = MethodIdMap.instance;
     protected final Consumer<TraceEvent> callback;
-    private final Deque<IVisitor> handlers = new ArrayDeque<>();
-
-    // Values set by GETVALUE_* instructions inserted by Janala
-    private final Values values = new Values();
+    protected final PrimitiveTraceEventVisitor visitor;
 
     // Whether to instrument generators
     // Set this to TRUE when computing execution indexes for generators
@@ -73,6 +78,16 @@ public class ThreadTracer {
     // Also set this to TRUE when using execution indexes, to ensure that every call site has exactly one push/pop
     private final boolean MATCH_CALLEE_NAMES = Boolean.getBoolean("jqf.tracing.MATCH_CALLEE_NAMES");
 
+    // Stack of method frames; the frame at index 0 waits for the entry point
+    private Frame[] frames = new Frame[64];
+    private int depth = 0;
+
+    // Values set by GETVALUE_* instructions inserted by Janala
+    private int intValue;
+    private boolean booleanValue;
+
+    protected RuntimeException callBackException = null;
+
 
     /**
      * Creates a new tracer that will process instructions executed by an application
@@ -91,12 +106,19 @@ public class ThreadTracer {
             }
             this.entryPointClass = entryPoint.substring(0, separator).replace('.', '/');
             this.entryPointMethod = entryPoint.substring(separator + 1);
+            this.entryPointKey = methodIds.getNameKey(entryPointClass, entryPointMethod);
         } else {
             this.entryPointClass = null;
             this.entryPointMethod = null;
+            this.entryPointKey = -1;
         }
         this.callback = callback;
-        this.handlers.push(new BaseHandler());
+        if (callback instanceof PrimitiveTraceEventVisitor) {
+            this.visitor = (PrimitiveTraceEventVisitor) callback;
+        } else {
+            this.visitor = new TraceEventAdapter(callback);
+        }
+        this.frames[0] = new Frame();
     }
 
     /**
@@ -113,8 +135,6 @@ public class ThreadTracer {
         return t;
     }
 
-    protected RuntimeException callBackException = null;
-
     /**
      * Emits a trace event to be consumed by the registered callback.
      *
@@ -128,14 +148,8 @@ public class ThreadTracer {
         }
     }
 
-    /**
-     * Handles tracing of a single bytecode instruction.
-     *
-     * @param ins the instruction to process
-     */
-    protected final void consume(Instruction ins) {
-        // Apply the visitor at the top of the stack
-        ins.visit(handlers.peek());
+    /** Throws the exception of the callback, if any, once an instruction has been processed. */
+    private void checkCallBackException() {
         if (callBackException != null) {
             RuntimeException e = callBackException;
             callBackException = null;
@@ -143,226 +157,284 @@ public class ThreadTracer {
         }
     }
 
+    final void logBranch(int iid, int mid) {
+        visitConditionalBranch(iid, mid);
+        checkCallBackException();
+    }
 
-    private static boolean isReturnOrMethodThrow(Instruction inst) {
-        return  inst instanceof ARETURN ||
-                inst instanceof LRETURN ||
-                inst instanceof DRETURN ||
-                inst instanceof FRETURN ||
-                inst instanceof IRETURN ||
-                inst instanceof RETURN  ||
-                inst instanceof METHOD_THROW;
+    final void logTableSwitch(int iid, int mid, int numCases) {
+        visitTableSwitch(iid, mid, numCases);
+        checkCallBackException();
     }
 
+    final void logLookupSwitch(int iid, int mid, int[] keys) {
+        visitLookupSwitch(iid, mid, keys);
+        checkCallBackException();
+    }
 
-    private static boolean isInvoke(Instruction inst) {
-        return  inst instanceof InvokeInstruction;
+    final void logInvoke(int iid, int mid, int methodId) {
+        visitInvoke(iid, mid, methodId);
     }
 
-    private static boolean isIfJmp(Instruction inst) {
-        return  inst instanceof ConditionalBranch;
+    final void logInvoke(int iid, int mid, String owner, String name, String desc) {
+        visitInvoke(iid, mid, methodIds.getId(owner, name, desc));
     }
 
+    final void logInvokeMethodEnd() {
+        visitInvokeMethodEnd();
+    }
 
-    private static class Values {
-        private boolean booleanValue;
-        private byte byteValue;
-        private char charValue;
-        private double doubleValue;
-        private float floatValue;
-        private int intValue;
-        private long longValue;
-        private Object objectValue;
-        private short shortValue;
+    final void logInvokeMethodException(Throwable exception) {
+        visitInvokeMethodException(exception);
+        checkCallBackException();
     }
-    
-    private static boolean sameNameDesc(MemberRef m1, MemberRef m2) {
-        // Bypass checks for all function calls from java/util/function
-        // which are used by lambda function calls.
-        if ((m2 != null && m2.getOwner().contains("java/util/function")) ||
-                (m1 != null && m1.getName().startsWith("lambda$")) ||
-                (m2 != null && m2.getOwner().startsWith("java/util/stream"))
-        ) {
-            return true;
+
+    final void logCallingSuperOrThis() {
+        if (isTracing()) {
+            frames[depth].invokingSuperOrThis = true;
         }
-        return m1 != null && m2 != null &&
-                m1.getName().equals(m2.getName()) &&
-                m1.getDesc().equals(m2.getDesc());
     }
 
+    final void logMethodBegin(int methodId, Object object) {
+        visitMethodBegin(methodIds.get(methodId), object);
+        checkCallBackException();
+    }
+
+    final void logMethodBegin(String owner, String name, String desc, Object object) {
+        logMethodBegin(methodIds.getId(owner, name, desc), object);
+    }
 
+    final void logMethodEnd(int iid, int mid) {
+        visitReturnOrMethodThrow(iid, mid);
+        checkCallBackException();
+    }
 
-    class BaseHandler extends ControlFlowInstructionVisitor {
-        @Override
-        public void visitMETHOD_BEGIN(METHOD_BEGIN begin) {
-            // Try to match the top-level call with the entry point
-            String clazz = begin.getOwner();
-            String method = begin.getName();
-            if (MATCH_CALLEE_NAMES == false || (clazz.equals(entryPointClass) && method.equals(entryPointMethod)) ||
-                    (traceGenerators && clazz.endsWith("Generator") && method.equals("generate")) ) {
-                emit(new CallEvent(0, null, 0, begin));
-                handlers.push(new TraceEventGeneratingHandler(begin, 0));
-            } else {
-                // Ignore all top-level calls that are not the entry point
-                handlers.push(new MatchingNullHandler());
-            }
+    final void logIntValue(int v) {
+        if (isTracing()) {
+            intValue = v;
         }
     }
 
-    class TraceEventGeneratingHandler extends ControlFlowInstructionVisitor {
-
-        private final int depth;
-        private final MemberRef method;
-        TraceEventGeneratingHandler(METHOD_BEGIN begin, int depth) {
-            this.depth = depth;
-            this.method = begin;
-            //logger.log(tabs() + begin);
+    final void logBooleanValue(boolean v) {
+        if (isTracing()) {
+            booleanValue = v;
         }
+    }
 
-        private String tabs() {
-            StringBuffer sb = new StringBuffer(depth);
-            for (int i = 0; i < depth; i++) {
-                sb.append("  ");
-            }
-            return sb.toString();
+    final void logHeapLoad(int iid, int mid, int objectId, String field) {
+        // Log the object access (unless it was a NPE)
+        if (isTracing() && objectId != 0) {
+            emitRead(iid, frames[depth].method, mid, objectId, field);
+            checkCallBackException();
         }
+    }
 
-        private MemberRef invokeTarget = null;
-        private boolean invokingSuperOrThis = false;
+    final void logNew(int iid, int mid) {
+        if (isTracing()) {
+            emitAlloc(iid, frames[depth].method, mid, 1);
+            checkCallBackException();
+        }
+    }
 
-        @Override
-        public void visitMETHOD_BEGIN(METHOD_BEGIN begin) {
-            if ((MATCH_CALLEE_NAMES == false && begin.name.equals("<clinit>") == false) || sameNameDesc(begin, this.invokeTarget)) {
-                // Trace continues with callee
-                int invokerIid = invokeTarget != null ? ((Instruction) invokeTarget).iid : -1;
-                int invokerMid = invokeTarget != null ? ((Instruction) invokeTarget).mid : -1;
-                emit(new CallEvent(invokerIid, this.method, invokerMid, begin, begin.getObject()));
-                handlers.push(new TraceEventGeneratingHandler(begin, depth+1));
-            } else {
-                // Class loading or static initializer
-                handlers.push(new MatchingNullHandler());
-            }
+    final void logNewArray(int iid, int mid) {
+        if (isTracing()) {
+            emitAlloc(iid, frames[depth].method, mid, intValue);
+            checkCallBackException();
+        }
+    }
 
-            super.visitMETHOD_BEGIN(begin);
+    private void emitAlloc(int iid, MemberRef method, int lineNumber, int size) {
+        try {
+            visitor.visitAlloc(iid, method, lineNumber, size);
+        } catch (RuntimeException ex) {
+            callBackException = ex;
         }
+    }
 
-        @Override
-        public void visitINVOKEMETHOD_EXCEPTION(INVOKEMETHOD_EXCEPTION ins) {
-            if (this.invokeTarget == null) {
-                throw new InstrumentationException("Unexpected INVOKEMETHOD_EXCEPTION", ins.getException());
-            } else {
-                // Unset the invocation target for the rest of the instruction stream
-                this.invokeTarget = null;
-                // Handle end of super() or this() call
-                if (invokingSuperOrThis) {
-                    while (true) { // will break when outer caller of <init> found
-                        emit(new ReturnEvent(-1, this.method, -1));
-                        handlers.pop();
-                        IVisitor handler = handlers.peek();
-                        // We should not reach the BaseHandler without finding
-                        // the TraceEventGeneratingHandler who called the outer <init>().
-                        assert (handler instanceof TraceEventGeneratingHandler);
-                        TraceEventGeneratingHandler traceEventGeneratingHandler = (TraceEventGeneratingHandler) handler;
-                        if (traceEventGeneratingHandler.invokingSuperOrThis) {
-                            // Go down the stack further
-                            continue;
-                        } else {
-                            // Found caller of new()
-                            assert(traceEventGeneratingHandler.invokeTarget.getName().startsWith("<init>"));
-                            // Let this handler (now top-of-stack) process the instruction
-                            ins.visit(traceEventGeneratingHandler);
-                            break;
-                        }
-                    }
-                }
-            }
+    private void emitBranch(int iid, MemberRef method, int lineNumber, int arm) {
+        try {
+            visitor.visitBranch(iid, method, lineNumber, arm);
+        } catch (RuntimeException ex) {
+            callBackException = ex;
+        }
+    }
 
-            super.visitINVOKEMETHOD_EXCEPTION(ins);
+    private void emitCall(int iid, MemberRef method, int lineNumber, MemberRef invokedMethod, Object callingObject) {
+        try {
+            visitor.visitCall(iid, method, lineNumber, invokedMethod, callingObject);
+        } catch (RuntimeException ex) {
+            callBackException = ex;
         }
+    }
 
-        @Override
-        public void visitINVOKEMETHOD_END(INVOKEMETHOD_END ins) {
-            if (this.invokeTarget == null) {
-                throw new InstrumentationException("Unexpected INVOKEMETHOD_END");
-            } else {
-                // Unset the invocation target for the rest of the instruction stream
-                this.invokeTarget = null;
-                // Handle end of super() or this() call
-                if (invokingSuperOrThis) {
-                    // For normal end, simply unset the flag
-                    this.invokingSuperOrThis = false;
-                }
-            }
+    private void emitRead(int iid, MemberRef method, int lineNumber, int objectId, String field) {
+        try {
+            visitor.visitRead(iid, method, lineNumber, objectId, field);
+        } catch (RuntimeException ex) {
+            callBackException = ex;
+        }
+    }
 
-            super.visitINVOKEMETHOD_END(ins);
+    private void emitReturn(int iid, MemberRef method, int lineNumber) {
+        try {
+            visitor.visitReturn(iid, method, lineNumber);
+        } catch (RuntimeException ex) {
+            callBackException = ex;
         }
+    }
 
-        @Override
-        public void visitSPECIAL(SPECIAL special) {
-            // Handle marker that says calling super() or this()
-            if (special.i == SPECIAL.CALLING_SUPER_OR_THIS) {
-                this.invokingSuperOrThis = true;
-            }
-            return; // Do not process SPECIAL instructions further
+    /** Whether the top-most frame belongs to a method whose events are traced. */
+    private boolean isTracing() {
+        return depth > 0 && frames[depth].tracing;
+    }
+
+    private Frame push(boolean tracing) {
+        if (++depth == frames.length) {
+            frames = Arrays.copyOf(frames, depth * 2);
         }
+        Frame frame = frames[depth];
+        if (frame == null) {
+            frame = frames[depth] = new Frame();
+        }
+        frame.tracing = tracing;
+        frame.invoking = false;
+        frame.invokingSuperOrThis = false;
+        return frame;
+    }
 
-        @Override
-        public void visitInvokeInstruction(InvokeInstruction ins) {
-            // Remember invocation target until METHOD_BEGIN or INVOKEMETHOD_END/INVOKEMETHOD_EXCEPTION
-            this.invokeTarget = ins;
+    private static boolean sameNameDesc(MethodIdMap.Method callee, Frame caller) {
+        if (caller.invoking && callee.signatureKey == caller.invokeMethod.signatureKey) {
+            return true;
+        }
+        // Bypass checks for all function calls from java/util/function
+        // which are used by lambda function calls.
+        return (caller.invoking && caller.invokeMethod.owner.contains("java/util/function")) ||
+                callee.name.startsWith("lambda$") ||
+                (caller.invoking && caller.invokeMethod.owner.startsWith("java/util/stream"));
+    }
 
-            super.visitInvokeInstruction(ins);
+    private void visitMethodBegin(MethodIdMap.Method method, Object object) {
+        if (depth == 0) {
+            // Try to match the top-level call with the entry point
+            if (MATCH_CALLEE_NAMES == false || method.nameKey == entryPointKey ||
+                    (traceGenerators && method.owner.endsWith("Generator") && method.name.equals("generate")) ) {
+                Frame callee = push(true);
+                callee.method = method;
+                emitCall(0, null, 0, method, null);
+            } else {
+                // Ignore all top-level calls that are not the entry point
+                push(false);
+            }
+        } else if (frames[depth].tracing) {
+            Frame caller = frames[depth];
+            if ((MATCH_CALLEE_NAMES == false && method.name.equals("<clinit>") == false) || sameNameDesc(method, caller)) {
+                // Trace continues with callee
+                int invokerIid = caller.invoking ? caller.invokeIid : -1;
+                int invokerMid = caller.invoking ? caller.invokeMid : -1;
+                Frame callee = push(true);
+                callee.method = method;
+                emitCall(invokerIid, caller.method, invokerMid, method, object);
+            } else {
+                // Class loading or static initializer
+                push(false);
+            }
+        } else {
+            push(false);
         }
+    }
 
-        @Override
-        public void visitGETVALUE_int(GETVALUE_int gv) {
-            values.intValue = gv.v;
+    private void visitReturnOrMethodThrow(int iid, int mid) {
+        if (depth == 0) {
+            return;
+        }
+        if (frames[depth].tracing) {
+            emitReturn(iid, frames[depth].method, mid);
+        }
+        depth--;
+    }
 
-            super.visitGETVALUE_int(gv);
+    private void visitInvoke(int iid, int mid, int methodId) {
+        if (isTracing()) {
+            // Remember invocation target until METHOD_BEGIN or INVOKEMETHOD_END/INVOKEMETHOD_EXCEPTION
+            Frame frame = frames[depth];
+            frame.invoking = true;
+            frame.invokeIid = iid;
+            frame.invokeMid = mid;
+            frame.invokeMethod = methodIds.get(methodId);
         }
+    }
 
-        @Override
-        public void visitGETVALUE_boolean(GETVALUE_boolean gv) {
-            values.booleanValue = gv.v;
+    private void visitInvokeMethodEnd() {
+        if (isTracing()) {
+            Frame frame = frames[depth];
+            if (!frame.invoking) {
+                throw new InstrumentationException("Unexpected INVOKEMETHOD_END");
+            }
+            // Unset the invocation target for the rest of the instruction stream
+            frame.invoking = false;
+            // Handle end of super() or this() call; for normal end, simply unset the flag
+            frame.invokingSuperOrThis = false;
+        }
+    }
 
-            super.visitGETVALUE_boolean(gv);
+    private void visitInvokeMethodException(Throwable exception) {
+        if (!isTracing()) {
+            return;
+        }
+        Frame frame = frames[depth];
+        if (!frame.invoking) {
+            throw new InstrumentationException("Unexpected INVOKEMETHOD_EXCEPTION", exception);
+        }
+        // Unset the invocation target for the rest of the instruction stream
+        frame.invoking = false;
+        // Handle end of super() or this() call
+        if (frame.invokingSuperOrThis) {
+            MemberRef method = frame.method;
+            while (true) { // will break when outer caller of <init> found
+                emitReturn(-1, method, -1);
+                depth--;
+                Frame caller = frames[depth];
+                // We should not reach the bottom frame without finding
+                // the traced frame that called the outer <init>().
+                assert depth > 0 && caller.tracing;
+                if (caller.invokingSuperOrThis) {
+                    // Go down the stack further
+                    continue;
+                } else {
+                    // Found caller of new()
+                    assert caller.invokeMethod.name.startsWith("<init>");
+                    // Let this frame (now top-of-stack) process the instruction
+                    visitInvokeMethodException(exception);
+                    break;
+                }
+            }
         }
+    }
 
-        @Override
-        public void visitConditionalBranch(Instruction ins) {
-            int iid = ins.iid;
-            int lineNum = ins.mid;
+    private void visitConditionalBranch(int iid, int lineNum) {
+        if (isTracing()) {
             // The branch taken-or-not would have been set by a previous
             // GETVALUE instruction
-            boolean taken = values.booleanValue;
-            emit(new BranchEvent(iid, this.method, lineNum, taken ? 1 : 0));
-
-            super.visitConditionalBranch(ins);
+            emitBranch(iid, frames[depth].method, lineNum, booleanValue ? 1 : 0);
         }
+    }
 
-        @Override
-        public void visitTABLESWITCH(TABLESWITCH tableSwitch) {
-            int iid = tableSwitch.iid;
-            int lineNum = tableSwitch.mid;
-            int value = values.intValue;
-            int numCases = tableSwitch.labels.length;
+    private void visitTableSwitch(int iid, int lineNum, int numCases) {
+        if (isTracing()) {
+            int value = intValue;
             // Compute arm index or else default
             int arm = -1;
             if (value >= 0 && value < numCases) {
                 arm = value;
             }
             // Emit a branch instruction corresponding to the arm
-            emit(new BranchEvent(iid, this.method, lineNum, arm));
-
-            super.visitTABLESWITCH(tableSwitch);
+            emitBranch(iid, frames[depth].method, lineNum, arm);
         }
+    }
 
-        @Override
-        public void visitLOOKUPSWITCH(LOOKUPSWITCH lookupSwitch) {
-            int iid = lookupSwitch.iid;
-            int lineNum = lookupSwitch.mid;
-            int value = values.intValue;
-            int[] cases = lookupSwitch.keys;
+    private void visitLookupSwitch(int iid, int lineNum, int[] cases) {
+        if (isTracing()) {
+            int value = intValue;
             // Compute arm index or else default
             int arm = -1;
             for (int i = 0; i < cases.length; i++) {
@@ -372,64 +444,22 @@ public class ThreadTracer {
                 }
             }
             // Emit a branch instruction corresponding to the arm
-            emit(new BranchEvent(iid, this.method, lineNum, arm));
-
-            super.visitLOOKUPSWITCH(lookupSwitch);
+            emitBranch(iid, frames[depth].method, lineNum, arm);
         }
-
-        @Override
-        public void visitHEAPLOAD(HEAPLOAD heapload) {
-            int iid = heapload.iid;
-            int lineNum = heapload.mid;
-            int objectId = heapload.objectId;
-            String field = heapload.field;
-            // Log the object access (unless it was a NPE)
-            if (objectId != 0) {
-                emit(new ReadEvent(iid, this.method, lineNum, objectId, field));
-            }
-
-            super.visitHEAPLOAD(heapload);
-        }
-
-        @Override
-        public void visitNEW(NEW newInst) {
-            int iid = newInst.iid;
-            int lineNum = newInst.mid;
-            emit(new AllocEvent(iid, this.method, lineNum, 1));
-
-            super.visitNEW(newInst);
-        }
-
-        @Override
-        public void visitNEWARRAY(NEWARRAY newArray) {
-            int iid = newArray.iid;
-            int lineNum = newArray.mid;
-            int size = values.intValue;
-            emit(new AllocEvent(iid, this.method, lineNum, size));
-
-            super.visitNEWARRAY(newArray);
-        }
-
-        @Override
-        public void visitReturnOrMethodThrow(Instruction ins) {
-            emit(new ReturnEvent(ins.iid, this.method, ins.mid));
-            handlers.pop();
-
-            super.visitReturnOrMethodThrow(ins);
-        }
-
     }
 
-    class MatchingNullHandler extends ControlFlowInstructionVisitor {
+    /** A method on the stack of the traced thread. Frames are reused for later calls at the same depth. */
+    private static final class Frame {
+        // Whether events of this method are traced (or, e.g., it is a static initializer)
+        boolean tracing;
+        MethodIdMap.Method method;
 
-        @Override
-        public void visitMETHOD_BEGIN(METHOD_BEGIN begin) {
-            handlers.push(new MatchingNullHandler());
-        }
+        // Invocation target, which is remembered until METHOD_BEGIN or INVOKEMETHOD_END/INVOKEMETHOD_EXCEPTION
+        boolean invoking;
+        int invokeIid;
+        int invokeMid;
+        MethodIdMap.Method invokeMethod;
 
-        @Override
-        public void visitReturnOrMethodThrow(Instruction ins) {
-            handlers.pop();
-        }
+        boolean invokingSuperOrThis;
     }
 }
@@ -0,0 +1,49 @@
+package edu.berkeley.cs.jqf.instrument.tracing;
+
+import java.util.function.Consumer;
+
+import edu.berkeley.cs.jqf.instrument.tracing.events.AllocEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.BranchEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.CallEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.PrimitiveTraceEventVisitor;
+import edu.berkeley.cs.jqf.instrument.tracing.events.ReadEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.ReturnEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEvent;
+import janala.logger.inst.MemberRef;
+
+/**
+ * Passes primitive trace events to a callback that consumes {@link TraceEvent}s.
+ */
+final class TraceEventAdapter implements PrimitiveTraceEventVisitor {
+    private final Consumer<TraceEvent> callback;
+
+    TraceEventAdapter(Consumer<TraceEvent> callback) {
+        this.callback = callback;
+    }
+
+    @Override
+    public void visitAlloc(int iid, MemberRef containingMethod, int lineNumber, int size) {
+        callback.accept(new AllocEvent(iid, containingMethod, lineNumber, size));
+    }
+
+    @Override
+    public void visitBranch(int iid, MemberRef containingMethod, int lineNumber, int arm) {
+        callback.accept(new BranchEvent(iid, containingMethod, lineNumber, arm));
+    }
+
+    @Override
+    public void visitCall(int iid, MemberRef containingMethod, int lineNumber,
+                          MemberRef invokedMethod, Object callingObject) {
+        callback.accept(new CallEvent(iid, containingMethod, lineNumber, invokedMethod, callingObject));
+    }
+
+    @Override
+    public void visitRead(int iid, MemberRef containingMethod, int lineNumber, int objectId, String field) {
+        callback.accept(new ReadEvent(iid, containingMethod, lineNumber, objectId, field));
+    }
+
+    @Override
+    public void visitReturn(int iid, MemberRef containingMethod, int lineNumber) {
+        callback.accept(new ReturnEvent(iid, containingMethod, lineNumber));
+    }
+}
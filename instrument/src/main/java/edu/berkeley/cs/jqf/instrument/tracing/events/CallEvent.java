@@ -50,6 +50,10 @@ public class CallEvent extends TraceEvent {
         this.obj = callingObject;
     }
 
+    public MemberRef getInvokedMethod() {
+        return invokedMethod;
+    }
+
     public String getInvokedMethodName() {
         if (str == null) {
             this.str = invokedMethod.getOwner() + "#" + invokedMethod.getName() + invokedMethod.getDesc();
@@ -0,0 +1,26 @@
+package edu.berkeley.cs.jqf.instrument.tracing.events;
+
+import janala.logger.inst.MemberRef;
+
+/**
+ * Visitor for trace events that are passed as primitive arguments instead of
+ * {@link TraceEvent} instances.
+ *
+ * <p>Each method corresponds to one subclass of {@link TraceEvent} and receives
+ * the arguments of its constructor. A callback that implements this interface
+ * is visited directly by the tracer, so that no event objects are allocated;
+ * all other callbacks receive {@link TraceEvent}s as before.</p>
+ */
+public interface PrimitiveTraceEventVisitor {
+
+    default void visitAlloc(int iid, MemberRef containingMethod, int lineNumber, int size) {}
+
+    default void visitBranch(int iid, MemberRef containingMethod, int lineNumber, int arm) {}
+
+    default void visitCall(int iid, MemberRef containingMethod, int lineNumber,
+                           MemberRef invokedMethod, Object callingObject) {}
+
+    default void visitRead(int iid, MemberRef containingMethod, int lineNumber, int objectId, String field) {}
+
+    default void visitReturn(int iid, MemberRef containingMethod, int lineNumber) {}
+}
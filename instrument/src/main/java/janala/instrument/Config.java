@@ -19,8 +19,15 @@ class Config {
   public final boolean instrumentHeapLoad;
   public final boolean instrumentAlloc;
   public final String instrumentationCacheDir;
+  public final String probeIdMapFile;
+  public final String methodIdMapFile;
   public final boolean useFastCoverageInstrumentation;
+  public final boolean useSwitchArmProbes;
+  public final boolean useInlineCoverageProbes;
+  public final boolean useProbePruning;
+  public final boolean useProbeRemoval;
   public final boolean trackSemanticCoverage;
+  public final String probeMode;
 
   private Config() {
       // Read properties from the conf file
@@ -47,6 +54,19 @@ class Config {
       }
 
 
+      // Log switch arms with a probe per arm instead of passing the switch value (and keys) to the listener.
+      // Disabled by default, so that the bytecode emitted for switches only changes when asked for.
+      useSwitchArmProbes = Boolean.parseBoolean(properties.getProperty("janala.switchArmProbes", "false"));
+
+      // Count branch and method probes with inline increments of a shared array instead of static calls
+      useInlineCoverageProbes = Boolean.parseBoolean(properties.getProperty("janala.inlineCoverageProbes", "false"));
+
+      // Omit fast-coverage probes whose counts are implied by other probes
+      useProbePruning = Boolean.parseBoolean(properties.getProperty("janala.pruneProbes", "false"));
+
+      // Let the guidance remove probes of saturated edges by retransforming classes (see ProbeRemoval)
+      useProbeRemoval = useFastCoverageInstrumentation && Boolean.parseBoolean(properties.getProperty("janala.probeRemoval", "false"));
+
       instrumentHeapLoad = Boolean.parseBoolean(properties.getProperty("janala.instrumentHeapLoad", "false"));
       instrumentAlloc = Boolean.parseBoolean(properties.getProperty("janala.instrumentAlloc", "false"));
 
@@ -82,7 +102,34 @@ class Config {
       }
 
 
+      if (useInlineCoverageProbes && !useFastCoverageInstrumentation) {
+          throw new IllegalStateException("janala.inlineCoverageProbes requires " +
+                  "useFastNonCollidingCoverageInstrumentation to be enabled");
+      }
+      if (useInlineCoverageProbes && trackSemanticCoverage) {
+          throw new IllegalStateException("janala.inlineCoverageProbes cannot be combined with " +
+                  "jqf.guidance.TRACK_SEMANTIC_COVERAGE");
+      }
+
       instrumentationCacheDir = properties.getProperty("janala.instrumentationCacheDir");
 
+      // Fast-coverage probe IDs must be class-stable for cached classes to be reusable
+      String defaultProbeIdMap = instrumentationCacheDir != null ? instrumentationCacheDir + "/probe-ids.map" : null;
+      probeIdMapFile = properties.getProperty("janala.probeIdMap", defaultProbeIdMap);
+
+      // Likewise, cached classes of the Janala instrumentation refer to methods by their ID (see MethodIdMap)
+      String defaultMethodIdMap = instrumentationCacheDir != null ? instrumentationCacheDir + "/method-ids.map" : null;
+      methodIdMapFile = properties.getProperty("janala.methodIdMap", defaultMethodIdMap);
+
+      // The settings that the instrumented bytecode and its probe counts depend on, e.g. to key cached classes
+      StringBuilder mode = new StringBuilder(analysisClass.substring(analysisClass.lastIndexOf('/') + 1));
+      if (useInlineCoverageProbes) mode.append("+inline");
+      if (useSwitchArmProbes) mode.append("+arms");
+      if (useProbePruning) mode.append("+pruned");
+      if (trackSemanticCoverage) mode.append("+semantic");
+      if (instrumentHeapLoad) mode.append("+heapload");
+      if (instrumentAlloc) mode.append("+alloc");
+      probeMode = mode.toString();
+
   }
 }
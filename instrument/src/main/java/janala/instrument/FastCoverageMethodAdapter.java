@@ -1,10 +1,17 @@
 package janala.instrument;
 
+import edu.berkeley.cs.jqf.instrument.tracing.InlineCoverageMap;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 
+import java.util.Arrays;
+import java.util.BitSet;
+
 public class FastCoverageMethodAdapter extends MethodVisitor implements Opcodes {
+  private static final String INLINE_MAP_CLASS = "edu/berkeley/cs/jqf/instrument/tracing/InlineCoverageMap";
+  private static final String PROBE_INTERRUPT_CLASS = "edu/berkeley/cs/jqf/instrument/tracing/ProbeInterrupt";
+
   boolean isInit;
   boolean isSuperInitCalled; // Used to keep track of calls to super()/this() in <init>()
   int newStack = 0; // Used to keep-track of NEW instructions in <init>()
@@ -15,11 +22,29 @@ public class FastCoverageMethodAdapter extends MethodVisitor implements Opcodes
   private final GlobalStateForInstrumentation instrumentationState;
 
   private final int methodIID;
-  private ProbeCounter probeCounter = ProbeCounter.instance;
+  private final ProbeCounter probeCounter;
+
+  // The block of the InlineCoverageMap that is marked as touched on method entry, or -1 if none
+  private int entryBlock = -1;
+
+  // Call sites whose probes are implied by other probes (see ProbePruning), by their index in this method
+  private BitSet redundantCallSites = new BitSet();
+  private int callSiteIndex = 0;
+
+  // Whether switches get a probe per arm (see Config.useSwitchArmProbes)
+  private boolean switchArmProbes = Config.instance.useSwitchArmProbes;
+
   public FastCoverageMethodAdapter(MethodVisitor mv, String className,
                                    String methodName, String descriptor, String superName,
                                    GlobalStateForInstrumentation instrumentationState) {
+    this(mv, className, methodName, descriptor, superName, instrumentationState, ProbeCounter.instance);
+  }
+
+  public FastCoverageMethodAdapter(MethodVisitor mv, String className,
+                                   String methodName, String descriptor, String superName,
+                                   GlobalStateForInstrumentation instrumentationState, ProbeCounter probeCounter) {
     super(ASM8, mv);
+    this.probeCounter = probeCounter;
     this.isInit = methodName.equals("<init>");
     this.isSuperInitCalled = false;
     this.className = className;
@@ -29,18 +54,85 @@ public class FastCoverageMethodAdapter extends MethodVisitor implements Opcodes
     this.methodIID = instrumentationState.incAndGetFastCoverageId();
   }
 
+  /** Omits the probes of the given call sites, which must have been found by {@link ProbePruning}. */
+  void setRedundantCallSites(BitSet redundantCallSites) {
+    this.redundantCallSites = redundantCallSites;
+  }
+
+  /** Overrides whether switches are instrumented with a probe per arm. */
+  void setSwitchArmProbes(boolean switchArmProbes) {
+    this.switchArmProbes = switchArmProbes;
+  }
+
   /** Push a value onto the stack. */
   private static void addBipushInsn(MethodVisitor mv, int val) {
     Utils.addBipushInsn(mv, val);
   }
 
+  /** Whether probes are emitted as inline increments of the {@code InlineCoverageMap}. */
+  private static boolean useInlineProbes() {
+    return Config.instance.useInlineCoverageProbes;
+  }
+
+  /** Marks a block of the {@code InlineCoverageMap} as touched, such that the guidance drains it. */
+  private void addInlineBlockMark(int block) {
+    mv.visitFieldInsn(GETSTATIC, INLINE_MAP_CLASS, "touched", "[B");
+    addBipushInsn(mv, block);
+    mv.visitInsn(ICONST_1);
+    mv.visitInsn(BASTORE);
+  }
+
+  /** Increments the hit count of a probe key in the {@code InlineCoverageMap}. */
+  private void addInlineProbe(int key) {
+    int block = key >>> InlineCoverageMap.BLOCK_SHIFT;
+    if (block != entryBlock) {
+      // Blocks other than that of the method entry are marked by their probes
+      addInlineBlockMark(block);
+    }
+    mv.visitFieldInsn(GETSTATIC, INLINE_MAP_CLASS, "hits", "[I");
+    addBipushInsn(mv, key);
+    mv.visitInsn(DUP2);
+    mv.visitInsn(IALOAD);
+    mv.visitInsn(ICONST_1);
+    mv.visitInsn(IADD);
+    mv.visitInsn(IASTORE);
+  }
+
+  /** Throws a pending interrupt, as the snoop does for every probe, which keeps loops interruptible. */
+  private void addInlineInterruptCheck() {
+    Label noInterrupt = new Label();
+    mv.visitFieldInsn(GETSTATIC, PROBE_INTERRUPT_CLASS, "numPending", "I");
+    mv.visitJumpInsn(IFEQ, noInterrupt);
+    mv.visitMethodInsn(INVOKESTATIC, PROBE_INTERRUPT_CLASS, "raise", "()V", false);
+    mv.visitLabel(noInterrupt);
+  }
+
+  /** Emits a jump probe for the given branch, either inline or as a call to {@code LOGJUMP}. */
+  private void addJumpProbe(int iid, int branch) {
+    if (instrumentationState.isProbeRemoved(iid + branch)) {
+      return;
+    }
+    if (useInlineProbes()) {
+      addInlineProbe(iid + branch);
+      if (!(isInit && !isSuperInitCalled)) {
+        // Do not branch before super/this
+        addInlineInterruptCheck();
+      }
+    } else {
+      addBipushInsn(mv, iid);
+      addBipushInsn(mv, branch);
+      mv.visitMethodInsn(INVOKESTATIC, Config.instance.analysisClass, "LOGJUMP", "(II)V", false);
+    }
+  }
+
   @Override
   public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+    // Pruned call sites keep their ID, such that probe IDs do not depend on pruning
     int iid = instrumentationState.incAndGetFastCoverageId();
-    addBipushInsn(mv, iid);
-    mv.visitInsn(ICONST_0);
-    mv.visitMethodInsn(INVOKESTATIC, Config.instance.analysisClass, "LOGJUMP", "(II)V", false);
-    probeCounter.incrementTotalProbes();
+    if (!redundantCallSites.get(callSiteIndex++)) {
+      addJumpProbe(iid, 0);
+      probeCounter.incrementTotalProbes();
+    }
 
     if (opcode == INVOKESPECIAL && name.equals("<init>")) {
 
@@ -78,6 +170,19 @@ public class FastCoverageMethodAdapter extends MethodVisitor implements Opcodes
   @Override
   public void visitCode() {
     super.visitCode();
+    if (instrumentationState.isProbeRemoved(methodIID)) {
+      return;
+    }
+    if (useInlineProbes()) {
+      entryBlock = methodIID >>> InlineCoverageMap.BLOCK_SHIFT;
+      addInlineBlockMark(entryBlock);
+      addInlineProbe(methodIID);
+      if (!isInit) {
+        // Do not branch before super/this
+        addInlineInterruptCheck();
+      }
+      return;
+    }
     addBipushInsn(mv, methodIID);
     mv.visitMethodInsn(INVOKESTATIC, Config.instance.analysisClass, "LOGMETHODBEGIN", "(I)V", false);
   }
@@ -97,20 +202,30 @@ public class FastCoverageMethodAdapter extends MethodVisitor implements Opcodes
 
     // Now instrument the branch target
     mv.visitLabel(intermediateBranchTarget);
-    addBipushInsn(mv, iid);
-    addBipushInsn(mv, 1); // Mark branch as taken
-    mv.visitMethodInsn(INVOKESTATIC, Config.instance.analysisClass, instMethodName, instMethodDesc, false);
+    addBranchArmProbe(iid, 1, instMethodName, instMethodDesc); // Mark branch as taken
     mv.visitJumpInsn(GOTO, finalBranchTarget); // Go to actual branch target
 
     // Now instrument the fall through
     mv.visitLabel(fallthrough);
-    addBipushInsn(mv, iid);
-    addBipushInsn(mv, 0); // Mark branch as not taken
-    mv.visitMethodInsn(INVOKESTATIC, Config.instance.analysisClass, instMethodName, instMethodDesc, false);
+    addBranchArmProbe(iid, 0, instMethodName, instMethodDesc); // Mark branch as not taken
 
     // continue with fall-through code visiting
   }
 
+  private void addBranchArmProbe(int iid, int branch, String instMethodName, String instMethodDesc) {
+    if (instrumentationState.isProbeRemoved(iid + branch)) {
+      // Removed probes still keep loops interruptible
+      addInlineInterruptCheck();
+    } else if (useInlineProbes()) {
+      addInlineProbe(iid + branch);
+      addInlineInterruptCheck();
+    } else {
+      addBipushInsn(mv, iid);
+      addBipushInsn(mv, branch);
+      mv.visitMethodInsn(INVOKESTATIC, Config.instance.analysisClass, instMethodName, instMethodDesc, false);
+    }
+  }
+
   @Override
   public void visitJumpInsn(int opcode, Label label) {
     if (isInit && !isSuperInitCalled) {
@@ -156,6 +271,10 @@ public class FastCoverageMethodAdapter extends MethodVisitor implements Opcodes
       case DRETURN:
       case ARETURN:
       case RETURN:
+        if (useInlineProbes()) {
+          // Method ends are only of interest to execution indexing, which needs the snoop
+          break;
+        }
         addBipushInsn(mv, methodIID);
         mv.visitMethodInsn(INVOKESTATIC, Config.instance.analysisClass, "LOGMETHODEND", "(I)V", false);
     }
@@ -179,8 +298,51 @@ public class FastCoverageMethodAdapter extends MethodVisitor implements Opcodes
 
 
 
+  /** Creates one intermediate label per switch arm, with the default arm last. */
+  private static Label[] newArmLabels(int numArms) {
+    Label[] armLabels = new Label[numArms + 1];
+    for (int i = 0; i < armLabels.length; i++) {
+      armLabels[i] = new Label();
+    }
+    return armLabels;
+  }
+
+  /**
+   * Emits a probe for each arm of a switch that has been redirected to {@code armLabels},
+   * which logs the arm and then jumps to the original target. The probe keys are the same
+   * as for {@code LOGTABLESWITCH} and {@code LOGLOOKUPSWITCH}: arm {@code i} is logged as
+   * branch {@code i + 1} and the default as branch {@code labels.length + 1}, but executing
+   * the switch neither allocates the key table nor searches it.
+   */
+  private void addSwitchArmInstrumentation(int iid, Label dflt, Label[] labels, Label[] armLabels) {
+    for (int i = 0; i <= labels.length; i++) {
+      mv.visitLabel(armLabels[i]);
+      addJumpProbe(iid, i + 1);
+      mv.visitJumpInsn(GOTO, i < labels.length ? labels[i] : dflt);
+    }
+  }
+
+  /** Whether switches can be instrumented with per-arm probes (jumps before super/this are not supported). */
+  private boolean useSwitchArmProbes() {
+    return switchArmProbes && !(isInit && !isSuperInitCalled);
+  }
+
   @Override
   public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+    if (useSwitchArmProbes()) {
+      int iid = instrumentationState.incAndGetFastCoverageId();
+      for (int i = 0; i <= labels.length; i++) {
+        //create a coverage probe for each of the arms and the default case, we'll refer to it by offset
+        instrumentationState.incAndGetFastCoverageId();
+      }
+      probeCounter.addTotalProbes(labels.length + 1);
+
+      Label[] armLabels = newArmLabels(labels.length);
+      mv.visitTableSwitchInsn(min, max, armLabels[labels.length], Arrays.copyOf(armLabels, labels.length));
+      addSwitchArmInstrumentation(iid, dflt, labels, armLabels);
+      return;
+    }
+
     // Save operand value
     //addValueReadInsn(mv, "I", "GETVALUE_");
     mv.visitInsn(Opcodes.DUP);
@@ -206,6 +368,20 @@ public class FastCoverageMethodAdapter extends MethodVisitor implements Opcodes
 
   @Override
   public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+    if (useSwitchArmProbes()) {
+      int iid = instrumentationState.incAndGetFastCoverageId();
+      for (int i = 0; i <= keys.length; i++) {
+        //create a coverage probe for each of the arms and the default case, we'll refer to it by offset
+        instrumentationState.incAndGetFastCoverageId();
+      }
+      probeCounter.addTotalProbes(keys.length + 1);
+
+      Label[] armLabels = newArmLabels(labels.length);
+      mv.visitLookupSwitchInsn(armLabels[labels.length], keys, Arrays.copyOf(armLabels, labels.length));
+      addSwitchArmInstrumentation(iid, dflt, labels, armLabels);
+      return;
+    }
+
     // Save operand value
     mv.visitInsn(Opcodes.DUP);
 
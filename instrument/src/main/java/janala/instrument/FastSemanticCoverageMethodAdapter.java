@@ -6,12 +6,17 @@ import org.objectweb.asm.Opcodes;
 
 
 public class FastSemanticCoverageMethodAdapter extends MethodVisitor implements Opcodes {
-    private ProbeCounter probeCounter = ProbeCounter.instance;
+    private final ProbeCounter probeCounter;
 
     private String semanticAnalysisClass;
 
     public FastSemanticCoverageMethodAdapter(MethodVisitor mv) {
+        this(mv, ProbeCounter.instance);
+    }
+
+    public FastSemanticCoverageMethodAdapter(MethodVisitor mv, ProbeCounter probeCounter) {
         super(ASM8, mv);
+        this.probeCounter = probeCounter;
 
         // TODO:Read from config
         this.semanticAnalysisClass = "edu/berkeley/cs/jqf/instrument/tracing/FastSemanticCoverageSnoop";
@@ -1,21 +1,64 @@
 package janala.instrument;
 
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /** An object to keep track of (classId, methodId, instructionId) tuples during
- instrumentation. */
+ instrumentation. A separate instance is used for every class being instrumented. */
 public class GlobalStateForInstrumentation {
   public static GlobalStateForInstrumentation instance = new GlobalStateForInstrumentation();
   private int iid = 0;
   private int mid = 0;
   private int cid = 0;
 
-  // JQF's Fast Coverage implementation uses a plain int, no bit packing, no truncation errors
+  // JQF's Fast Coverage implementation uses a plain int, no bit packing, no truncation errors.
+  // IDs come from a counter shared by all states (classes may be instrumented concurrently),
+  // unless a state numbers them from a fixed base (see setFastCoverageIdBase).
+  private static final AtomicInteger sharedFastCoverageIID = new AtomicInteger();
+  private static final AtomicInteger maxReservedFastCoverageIID = new AtomicInteger();
   private int fastCoverageIID = 0;
+  private boolean hasFastCoverageIdBase = false;
+
+  // Fast-coverage probe keys to leave out when re-instrumenting a class (see ProbeRemoval)
+  private BitSet removedProbes = null;
+
   public int incAndGetFastCoverageId(){
-    fastCoverageIID++;
+    if (hasFastCoverageIdBase) {
+      return ++fastCoverageIID;
+    }
+    fastCoverageIID = sharedFastCoverageIID.incrementAndGet();
     return fastCoverageIID;
   }
+
+  /** Returns the largest fast-coverage ID handed out so far. */
   public int getFastCoverageId() {
-    return fastCoverageIID;
+    return Math.max(sharedFastCoverageIID.get(), maxReservedFastCoverageIID.get());
+  }
+
+  /** Returns the ID that the next call to {@link #incAndGetFastCoverageId()} will return on a state with a base. */
+  public int getNextFastCoverageId() {
+    return fastCoverageIID + 1;
+  }
+
+  /** Numbers the fast-coverage IDs of this state from the given base (for class-stable IDs, see {@link ProbeIdMap}). */
+  public void setFastCoverageIdBase(int base) {
+    hasFastCoverageIdBase = true;
+    fastCoverageIID = base - 1;
+  }
+
+  /** Leaves out the probes with the given keys, which keep their IDs nonetheless. */
+  public void setRemovedProbes(BitSet removedProbes) {
+    this.removedProbes = removedProbes;
+  }
+
+  /** Returns whether the probe with the given key is to be left out. */
+  public boolean isProbeRemoved(int key) {
+    return removedProbes != null && removedProbes.get(key);
+  }
+
+  /** Marks all IDs up to {@code lastId} as in use, e.g. by a class with a range from the {@link ProbeIdMap}. */
+  public void reserveFastCoverageIds(int lastId) {
+    maxReservedFastCoverageIID.accumulateAndGet(lastId, Math::max);
   }
 
   // When one gets the id, she gets the result of merging all three ids.
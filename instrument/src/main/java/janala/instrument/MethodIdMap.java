@@ -0,0 +1,272 @@
+package janala.instrument;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import janala.logger.inst.MemberRef;
+
+/**
+ * A global table of integer IDs for the methods referenced by instrumented code.
+ *
+ * <p>The Janala instrumentation passes the ID of a method to {@code METHOD_BEGIN}
+ * and to the {@code INVOKE*} instructions instead of its owner, name and descriptor.
+ * Every ID resolves to a canonical {@link Method}, which carries further integer keys
+ * for the comparisons done while tracing: the key of its name and descriptor (to match
+ * a call site with the method it enters) and the key of its owner and name (to detect
+ * the entry point). Keys are only meaningful within one JVM.</p>
+ *
+ * <p>If the instrumented classes are cached, the table is backed by an append-only text
+ * file next to the probe ID map, with one line {@code id owner name desc} per method,
+ * so that cached classes keep their method IDs across runs. Appends are guarded by a file
+ * lock, as in {@link ProbeIdMap}, so that several JVMs can share the same table.</p>
+ */
+public class MethodIdMap {
+
+  public static final MethodIdMap instance = open(Config.instance.methodIdMapFile);
+
+  /** A method that has been assigned an ID. */
+  public static final class Method implements MemberRef {
+    public final int id;
+    public final String owner;
+    public final String name;
+    public final String desc;
+
+    /** The key of the name and descriptor, which is shared by overriding methods. */
+    public final int signatureKey;
+
+    /** The key of the owner and name, as given by {@link #getNameKey}. */
+    public final int nameKey;
+
+    private Method(int id, String owner, String name, String desc, int signatureKey, int nameKey) {
+      this.id = id;
+      this.owner = owner;
+      this.name = name;
+      this.desc = desc;
+      this.signatureKey = signatureKey;
+      this.nameKey = nameKey;
+    }
+
+    @Override
+    public String getOwner() {
+      return owner;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public String getDesc() {
+      return desc;
+    }
+
+    @Override
+    public String toString() {
+      return owner + "#" + name + desc;
+    }
+  }
+
+  private static MethodIdMap open(String mapFile) {
+    if (mapFile == null) {
+      return new MethodIdMap();
+    }
+    try {
+      return new MethodIdMap(new File(mapFile));
+    } catch (IOException e) {
+      System.err.println("[WARNING] Could not open method ID map " + mapFile + ": " + e.getMessage());
+      return new MethodIdMap();
+    }
+  }
+
+  private final RandomAccessFile file;
+  private final Map<String, Method> methodsByKey = new HashMap<>();
+  private final Map<String, Integer> signatureKeys = new HashMap<>();
+  private final Map<String, Integer> nameKeys = new HashMap<>();
+
+  /** Methods indexed by ID; slots are only set while holding the lock of this map. */
+  private volatile Method[] methods = new Method[1024];
+
+  /** The file offset up to which the map has been read. */
+  private long readPosition = 0;
+
+  /** The first ID not assigned to any method. */
+  private int nextFreeId = 0;
+
+  /** Creates a table that only lives as long as this JVM. */
+  public MethodIdMap() {
+    this.file = null;
+  }
+
+  /**
+   * Opens (or creates) a table backed by a file.
+   *
+   * @param mapFile the file backing the table
+   * @throws IOException if the file cannot be opened or read
+   */
+  public MethodIdMap(File mapFile) throws IOException {
+    File parent = mapFile.getAbsoluteFile().getParentFile();
+    if (parent != null) {
+      parent.mkdirs();
+    }
+    this.file = new RandomAccessFile(mapFile, "rw");
+    refresh();
+  }
+
+  /** Returns whether IDs are kept across JVMs, so that they may be cached in instrumented classes. */
+  public boolean isPersistent() {
+    return file != null;
+  }
+
+  /**
+   * Returns the ID of a method, assigning a fresh one if the method has none yet.
+   *
+   * @param owner the internal name of the class declaring or inheriting the method
+   * @param name  the name of the method
+   * @param desc  the descriptor of the method
+   * @return the ID of the method
+   * @throws IllegalStateException if the backing file cannot be updated
+   */
+  public synchronized int getId(String owner, String name, String desc) {
+    String key = owner + "." + name + desc;
+    Method method = methodsByKey.get(key);
+    if (method != null) {
+      return method.id;
+    }
+    if (file == null) {
+      return add(nextFreeId, owner, name, desc).id;
+    }
+    try (FileLock ignored = file.getChannel().lock()) {
+      // Another JVM may have assigned an ID in the meantime
+      refresh();
+      method = methodsByKey.get(key);
+      if (method == null) {
+        method = add(nextFreeId, owner, name, desc);
+        file.seek(file.length());
+        file.write((method.id + " " + owner + " " + name + " " + desc + "\n").getBytes(StandardCharsets.UTF_8));
+        readPosition = file.length();
+      }
+      return method.id;
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not update method ID map", e);
+    }
+  }
+
+  /**
+   * Returns the method with an ID.
+   *
+   * @param id an ID returned by {@link #getId}, possibly in another JVM sharing the table
+   * @return the method with the ID
+   * @throws IllegalArgumentException if no method has the ID
+   */
+  public Method get(int id) {
+    Method[] methods = this.methods;
+    if (id >= 0 && id < methods.length && methods[id] != null) {
+      return methods[id];
+    }
+    return getAfterRefresh(id);
+  }
+
+  private synchronized Method getAfterRefresh(int id) {
+    if (file != null) {
+      try {
+        refresh();
+      } catch (IOException e) {
+        throw new IllegalStateException("Could not read method ID map", e);
+      }
+    }
+    if (id < 0 || id >= methods.length || methods[id] == null) {
+      throw new IllegalArgumentException("Unknown method ID: " + id);
+    }
+    return methods[id];
+  }
+
+  /**
+   * Returns the key that identifies methods by their owner and name, regardless of their descriptor.
+   *
+   * @param owner the internal name of the class declaring or inheriting the method
+   * @param name  the name of the method
+   * @return the key of all methods with the given owner and name
+   */
+  public synchronized int getNameKey(String owner, String name) {
+    return intern(nameKeys, owner + "#" + name);
+  }
+
+  /**
+   * Returns the key of a method reference's owner and name, as given by {@link #getNameKey(String, String)}.
+   *
+   * @param method a method reference
+   * @return the key of all methods with the owner and name of the reference
+   */
+  public int getNameKey(MemberRef method) {
+    if (method instanceof Method) {
+      return ((Method) method).nameKey;
+    }
+    return getNameKey(method.getOwner(), method.getName());
+  }
+
+  private static int intern(Map<String, Integer> keys, String key) {
+    Integer value = keys.get(key);
+    if (value == null) {
+      value = keys.size();
+      keys.put(key, value);
+    }
+    return value;
+  }
+
+  private Method add(int id, String owner, String name, String desc) {
+    Method method = new Method(id, owner, name, desc,
+        intern(signatureKeys, name + desc), intern(nameKeys, owner + "#" + name));
+    methodsByKey.put(owner + "." + name + desc, method);
+    Method[] methods = this.methods;
+    if (id >= methods.length) {
+      methods = Arrays.copyOf(methods, Math.max(id + 1, methods.length * 2));
+    }
+    methods[id] = method;
+    this.methods = methods; // Publish the new slot
+    nextFreeId = Math.max(nextFreeId, id + 1);
+    return method;
+  }
+
+  /** Reads methods that have been appended since the last read (possibly by another JVM). */
+  private void refresh() throws IOException {
+    long length = file.length();
+    if (length <= readPosition) {
+      return;
+    }
+    byte[] bytes = new byte[(int) (length - readPosition)];
+    file.seek(readPosition);
+    file.readFully(bytes);
+
+    // Only consume complete lines
+    int lineStart = 0;
+    for (int i = 0; i < bytes.length; i++) {
+      if (bytes[i] == '\n') {
+        String line = new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8).trim();
+        if (!line.isEmpty()) {
+          parse(line);
+        }
+        lineStart = i + 1;
+      }
+    }
+    readPosition += lineStart;
+  }
+
+  private void parse(String line) throws IOException {
+    String[] parts = line.split(" ");
+    if (parts.length != 4) {
+      throw new IOException("Malformed method ID map entry: " + line);
+    }
+    try {
+      add(Integer.parseInt(parts[0]), parts[1], parts[2], parts[3]);
+    } catch (NumberFormatException e) {
+      throw new IOException("Malformed method ID map entry: " + line, e);
+    }
+  }
+}
@@ -0,0 +1,273 @@
+package janala.instrument;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.IllegalClassFormatException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+
+import edu.berkeley.cs.jqf.instrument.InstrumentationException;
+
+/**
+ * Instruments a whole class path ahead of time into a single jar, using the
+ * fast-coverage instrumentation.
+ *
+ * <p>The jar contains the instrumented classes, all other classes and resources
+ * of the class path, and a probe manifest ({@value #PROBE_MANIFEST}) listing the
+ * probe ID range of every instrumented class. Fuzzing JVMs put the jar on their
+ * class path instead of instrumenting at load time; {@link #registerProbes(ClassLoader)}
+ * then restores the probe counts and ID ranges from the manifest. Since probe IDs come
+ * from the {@link ProbeIdMap}, the jar can be combined with load-time instrumentation
+ * that shares the same map (via {@code janala.probeIdMap}).</p>
+ *
+ * <p>Usage: {@code OfflineInstrumenter [-t THREADS] OUTPUT_JAR CLASSPATH}</p>
+ */
+public class OfflineInstrumenter {
+
+  /** The resource name of the probe manifest in an instrumented jar. */
+  public static final String PROBE_MANIFEST = "META-INF/jqf/probe-ids.map";
+
+  /** The manifest attribute marking a jar as instrumented. */
+  public static final String INSTRUMENTED_ATTRIBUTE = "JQF-Instrumentation";
+
+  /** Probe manifests that have already been registered, so that re-runs in the same JVM do not count twice. */
+  private static final Set<String> registeredManifests = new HashSet<>();
+
+  public static void main(String[] args) throws Exception {
+    int numThreads = Runtime.getRuntime().availableProcessors();
+    int argIdx = 0;
+    if (args.length > argIdx && args[argIdx].equals("-t")) {
+      numThreads = Integer.parseInt(args[argIdx + 1]);
+      argIdx += 2;
+    }
+    if (args.length - argIdx != 2) {
+      System.err.println("Usage: " + OfflineInstrumenter.class.getName() + " [-t THREADS] OUTPUT_JAR CLASSPATH");
+      System.exit(1);
+    }
+    File outputJar = new File(args[argIdx]);
+    List<File> classpath = new ArrayList<>();
+    for (String path : args[argIdx + 1].split(File.pathSeparator)) {
+      classpath.add(new File(path));
+    }
+
+    // Configure the instrumentation before the janala config is loaded
+    System.setProperty("useFastNonCollidingCoverageInstrumentation", "true");
+    File probeIdMap = null;
+    if (System.getProperty("janala.probeIdMap") == null && System.getProperty("janala.instrumentationCacheDir") == null) {
+      probeIdMap = File.createTempFile("probe-ids", ".map");
+      System.setProperty("janala.probeIdMap", probeIdMap.getPath());
+    }
+
+    try {
+      int numInstrumented = instrument(classpath, outputJar, numThreads);
+      System.out.println("Instrumented " + numInstrumented + " classes into " + outputJar);
+    } finally {
+      if (probeIdMap != null) {
+        probeIdMap.delete();
+      }
+    }
+  }
+
+  /**
+   * Instruments a class path into a single jar.
+   *
+   * <p>Entries are taken from the first class path element that contains them,
+   * as a class loader would. Signature files are dropped, since instrumented
+   * classes no longer match them.</p>
+   *
+   * @param classpath  the class path elements (directories or jars)
+   * @param outputJar  the jar to write
+   * @param numThreads the number of instrumentation threads
+   * @return the number of instrumented classes
+   * @throws IOException if the class path cannot be read or the jar cannot be written
+   * @throws InterruptedException if interrupted while waiting for the threads
+   */
+  public static int instrument(List<File> classpath, File outputJar, int numThreads)
+      throws IOException, InterruptedException {
+    if (!Config.instance.useFastCoverageInstrumentation) {
+      throw new IllegalStateException("Offline instrumentation requires fast coverage instrumentation");
+    }
+    ProbeIdMap probeIds = SnoopInstructionTransformer.getProbeIdMap();
+    if (probeIds == null) {
+      throw new IllegalStateException("Offline instrumentation requires a probe ID map (janala.probeIdMap)");
+    }
+
+    // Collect all entries, first class path element wins
+    Map<String, File> entries = new LinkedHashMap<>();
+    Map<File, JarFile> jarsByFile = new LinkedHashMap<>();
+    try {
+      for (File element : classpath) {
+        if (element.isDirectory()) {
+          Path root = element.toPath();
+          try (Stream<Path> paths = Files.walk(root)) {
+            paths.filter(Files::isRegularFile)
+                .map(path -> root.relativize(path).toString().replace(File.separatorChar, '/'))
+                .forEach(name -> entries.putIfAbsent(name, element));
+          }
+        } else if (element.isFile()) {
+          JarFile jar = new JarFile(element);
+          jarsByFile.put(element, jar);
+          jar.stream()
+              .filter(entry -> !entry.isDirectory())
+              .forEach(entry -> entries.putIfAbsent(entry.getName(), element));
+        }
+      }
+
+      // Instrument classes in parallel
+      URL[] urls = new URL[classpath.size()];
+      for (int i = 0; i < urls.length; i++) {
+        urls[i] = classpath.get(i).toURI().toURL();
+      }
+      Map<String, byte[]> instrumented = new ConcurrentHashMap<>();
+      List<IOException> errors = new ArrayList<>();
+      try (URLClassLoader loader = new URLClassLoader(urls, null)) {
+        SnoopInstructionTransformer transformer = new SnoopInstructionTransformer();
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+          for (Map.Entry<String, File> entry : entries.entrySet()) {
+            String name = entry.getKey();
+            if (!isClassFile(name)) {
+              continue;
+            }
+            executor.execute(() -> {
+              try {
+                byte[] original = read(name, entry.getValue(), jarsByFile);
+                String cname = name.substring(0, name.length() - ".class".length());
+                byte[] result = transformer.transform(loader, cname, null, null, original);
+                if (result != null && result != original) {
+                  instrumented.put(name, result);
+                }
+              } catch (IOException e) {
+                synchronized (errors) {
+                  errors.add(e);
+                }
+              } catch (IllegalClassFormatException e) {
+                // Keep the original class
+              }
+            });
+          }
+        } finally {
+          executor.shutdown();
+        }
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      }
+      if (!errors.isEmpty()) {
+        throw errors.get(0);
+      }
+
+      // Write the jar
+      Manifest manifest = new Manifest();
+      manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+      manifest.getMainAttributes().put(new Attributes.Name(INSTRUMENTED_ATTRIBUTE), "fast");
+      File parent = outputJar.getAbsoluteFile().getParentFile();
+      if (parent != null) {
+        parent.mkdirs();
+      }
+      try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(outputJar.toPath()), manifest)) {
+        StringBuilder probeManifest = new StringBuilder();
+        for (Map.Entry<String, File> entry : entries.entrySet()) {
+          String name = entry.getKey();
+          if (isExcludedResource(name)) {
+            continue;
+          }
+          byte[] bytes = instrumented.get(name);
+          if (bytes != null) {
+            ProbeIdMap.Entry range = probeIds.get(name.substring(0, name.length() - ".class".length()));
+            if (range != null) {
+              probeManifest.append(range).append('\n');
+            }
+          } else {
+            bytes = read(name, entry.getValue(), jarsByFile);
+          }
+          out.putNextEntry(new JarEntry(name));
+          out.write(bytes);
+          out.closeEntry();
+        }
+        out.putNextEntry(new JarEntry(PROBE_MANIFEST));
+        out.write(probeManifest.toString().getBytes(StandardCharsets.UTF_8));
+        out.closeEntry();
+      }
+      return instrumented.size();
+    } finally {
+      for (JarFile jar : jarsByFile.values()) {
+        jar.close();
+      }
+    }
+  }
+
+  /**
+   * Registers the probes of all offline-instrumented jars visible to a class loader,
+   * i.e. adds their probe counts to {@link ProbeCounter} and reserves their probe IDs.
+   *
+   * @param loader the class loader that loads the instrumented classes
+   * @return the number of classes whose probes have been registered
+   * @throws InstrumentationException if a probe manifest cannot be read
+   */
+  public static synchronized int registerProbes(ClassLoader loader) {
+    if (loader == null) {
+      loader = ClassLoader.getSystemClassLoader();
+    }
+    int numClasses = 0;
+    try {
+      for (URL url : Collections.list(loader.getResources(PROBE_MANIFEST))) {
+        if (!registeredManifests.add(url.toString())) {
+          continue;
+        }
+        try (InputStream in = url.openStream()) {
+          for (ProbeIdMap.Entry entry : ProbeIdMap.readEntries(in)) {
+            GlobalStateForInstrumentation.instance.reserveFastCoverageIds(entry.getLastId());
+            ProbeCounter.instance.addTotalProbes(entry.numProbes);
+            ProbeCounter.instance.addSemanticProbes(entry.numSemanticProbes);
+            numClasses++;
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new InstrumentationException("Could not read probe manifest", e);
+    }
+    SnoopInstructionTransformer.growInlineCoverageMap();
+    return numClasses;
+  }
+
+  private static byte[] read(String name, File element, Map<File, JarFile> jars) throws IOException {
+    JarFile jar = jars.get(element);
+    if (jar == null) {
+      return Files.readAllBytes(new File(element, name).toPath());
+    }
+    try (InputStream in = jar.getInputStream(jar.getEntry(name))) {
+      return in.readAllBytes();
+    }
+  }
+
+  private static boolean isClassFile(String name) {
+    return name.endsWith(".class") && !name.endsWith("module-info.class") && !name.startsWith("META-INF/");
+  }
+
+  private static boolean isExcludedResource(String name) {
+    String upper = name.toUpperCase();
+    return upper.equals("META-INF/MANIFEST.MF") || name.equals(PROBE_MANIFEST)
+        || (upper.startsWith("META-INF/") && (upper.endsWith(".SF") || upper.endsWith(".RSA")
+            || upper.endsWith(".DSA") || upper.endsWith(".EC")));
+  }
+}
@@ -1,34 +1,42 @@
 package janala.instrument;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class ProbeCounter {
     public static ProbeCounter instance = new ProbeCounter();
 
-    // TODO: Do we need to use AtomicIntegers instead?
-    private int numTotalProbes = 0;
-    private int numSemanticProbes = 0;
+    // Classes may be instrumented concurrently
+    private final AtomicInteger numTotalProbes = new AtomicInteger();
+    private final AtomicInteger numSemanticProbes = new AtomicInteger();
 
     public void incrementTotalProbes() {
-        numTotalProbes++;
+        numTotalProbes.incrementAndGet();
     }
 
     public void addTotalProbes(int delta) {
-        numTotalProbes += delta;
+        numTotalProbes.addAndGet(delta);
     }
 
     public void incrementSemanticProbes() {
-        numSemanticProbes++;
+        numSemanticProbes.incrementAndGet();
     }
 
     public void addSemanticProbes(int delta) {
-        numSemanticProbes += delta;
+        numSemanticProbes.addAndGet(delta);
+    }
+
+    /** Adds the probes counted by another counter, e.g. for a single class. */
+    public void add(ProbeCounter other) {
+        addTotalProbes(other.getNumTotalProbes());
+        addSemanticProbes(other.getNumSemanticProbes());
     }
 
     public int getNumTotalProbes() {
-        return numTotalProbes;
+        return numTotalProbes.get();
     }
 
     public int getNumSemanticProbes() {
-        return numSemanticProbes;
+        return numSemanticProbes.get();
     }
 
 }
@@ -0,0 +1,245 @@
+package janala.instrument;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A persistent assignment of fast-coverage probe ID ranges to classes.
+ *
+ * <p>Every instrumented class owns a contiguous range of probe IDs, starting at
+ * a per-class base ID. Probes within the class are numbered by their local offset
+ * from this base, so the IDs of a class only depend on its bytecode and not on the
+ * order in which classes are loaded. Once a class has been assigned a range, it keeps
+ * it across runs, which makes cached instrumented classes reusable and coverage
+ * comparable across JVMs that share the same map.</p>
+ *
+ * <p>The map is an append-only text file with one line per assignment:
+ * {@code className base size numProbes numSemanticProbes probeMode}. Later lines for the
+ * same class override earlier ones. The probe mode names the instrumentation settings
+ * that the probe counts (and cached classes) were produced with; it is missing in maps
+ * written without one. Ranges are allocated compactly at the end of the ID
+ * space, and appends are guarded by a file lock so that several threads and JVMs
+ * can share the same map without handing out overlapping ranges.</p>
+ */
+public class ProbeIdMap {
+
+  /** The probe ID range of a single class. */
+  public static class Entry {
+    public final String className;
+    public final int base;
+    public final int size;
+    public final int numProbes;
+    public final int numSemanticProbes;
+    public final String probeMode;
+
+    public Entry(String className, int base, int size, int numProbes, int numSemanticProbes, String probeMode) {
+      this.className = className;
+      this.base = base;
+      this.size = size;
+      this.numProbes = numProbes;
+      this.numSemanticProbes = numSemanticProbes;
+      this.probeMode = probeMode;
+    }
+
+    /** Returns the last probe ID of this range. */
+    public int getLastId() {
+      return base + size - 1;
+    }
+
+    /** Returns this entry in the line format of the map file. */
+    @Override
+    public String toString() {
+      String line = className + " " + base + " " + size + " " + numProbes + " " + numSemanticProbes;
+      return probeMode.isEmpty() ? line : line + " " + probeMode;
+    }
+  }
+
+  /**
+   * Reads all entries of a map file, e.g. a probe manifest written by {@link OfflineInstrumenter}.
+   *
+   * @param in the contents of a map file
+   * @return the entries in the order they appear
+   * @throws IOException if the contents cannot be read or parsed
+   */
+  public static List<Entry> readEntries(InputStream in) throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      line = line.trim();
+      if (!line.isEmpty()) {
+        entries.add(parse(line));
+      }
+    }
+    return entries;
+  }
+
+  private final RandomAccessFile file;
+  private final String probeMode;
+  private final Map<String, Entry> entries = new HashMap<>();
+
+  /** The file offset up to which the map has been read. */
+  private long readPosition = 0;
+
+  /** The first ID not owned by any class (IDs start at 1, as with the global counter). */
+  private int nextFreeId = 1;
+
+  /**
+   * Opens (or creates) a probe ID map whose entries do not record a probe mode.
+   *
+   * @param mapFile the file backing the map
+   * @throws IOException if the file cannot be opened or read
+   */
+  public ProbeIdMap(File mapFile) throws IOException {
+    this(mapFile, "");
+  }
+
+  /**
+   * Opens (or creates) a probe ID map.
+   *
+   * @param mapFile   the file backing the map
+   * @param probeMode the probe mode recorded with the entries written by this map
+   * @throws IOException if the file cannot be opened or read
+   */
+  public ProbeIdMap(File mapFile, String probeMode) throws IOException {
+    this.probeMode = probeMode;
+    File parent = mapFile.getAbsoluteFile().getParentFile();
+    if (parent != null) {
+      parent.mkdirs();
+    }
+    this.file = new RandomAccessFile(mapFile, "rw");
+    refresh();
+  }
+
+  /**
+   * Returns the range assigned to a class.
+   *
+   * @param className the internal name of the class
+   * @return the range of the class, or {@code null} if it has none yet
+   * @throws IOException if the map cannot be read
+   */
+  public synchronized Entry get(String className) throws IOException {
+    refresh();
+    return entries.get(className);
+  }
+
+  /**
+   * Returns the base ID that the next newly allocated range would receive.
+   *
+   * @return the first unassigned probe ID
+   * @throws IOException if the map cannot be read
+   */
+  public synchronized int getNextFreeId() throws IOException {
+    refresh();
+    return nextFreeId;
+  }
+
+  /**
+   * Allocates a fresh range at the end of the ID space for a class.
+   *
+   * @param className         the internal name of the class
+   * @param size              the number of IDs used by the class
+   * @param numProbes         the number of coverage probes in the class
+   * @param numSemanticProbes the number of semantic coverage probes in the class
+   * @return the new range of the class
+   * @throws IOException if the map cannot be updated
+   */
+  public synchronized Entry allocate(String className, int size,
+                                     int numProbes, int numSemanticProbes) throws IOException {
+    try (FileLock ignored = file.getChannel().lock()) {
+      refresh();
+      Entry entry = new Entry(className, nextFreeId, size, numProbes, numSemanticProbes, probeMode);
+      append(entry);
+      return entry;
+    }
+  }
+
+  /**
+   * Records the probe counts and probe mode of a class that has been instrumented within its existing range.
+   *
+   * @param className         the internal name of the class
+   * @param base              the base ID the class has been instrumented with
+   * @param size              the number of IDs used by the class
+   * @param numProbes         the number of coverage probes in the class
+   * @param numSemanticProbes the number of semantic coverage probes in the class
+   * @return whether {@code base} is the base of the class's range and the range is large
+   *         enough; otherwise, the class needs a new range from {@link #allocate}
+   * @throws IOException if the map cannot be updated
+   */
+  public synchronized boolean commit(String className, int base, int size,
+                                     int numProbes, int numSemanticProbes) throws IOException {
+    try (FileLock ignored = file.getChannel().lock()) {
+      refresh();
+      Entry existing = entries.get(className);
+      if (existing == null || existing.base != base || size > existing.size) {
+        return false;
+      }
+      if (existing.numProbes != numProbes || existing.numSemanticProbes != numSemanticProbes
+          || !existing.probeMode.equals(probeMode)) {
+        // Keep the reserved range, but update the probe counts and mode
+        append(new Entry(className, base, existing.size, numProbes, numSemanticProbes, probeMode));
+      }
+      return true;
+    }
+  }
+
+  private void append(Entry entry) throws IOException {
+    String line = entry + "\n";
+    file.seek(file.length());
+    file.write(line.getBytes(StandardCharsets.UTF_8));
+    add(entry);
+    readPosition = file.length();
+  }
+
+  /** Reads entries that have been appended since the last read (possibly by another JVM). */
+  private void refresh() throws IOException {
+    long length = file.length();
+    if (length <= readPosition) {
+      return;
+    }
+    byte[] bytes = new byte[(int) (length - readPosition)];
+    file.seek(readPosition);
+    file.readFully(bytes);
+
+    // Only consume complete lines
+    int lineStart = 0;
+    for (int i = 0; i < bytes.length; i++) {
+      if (bytes[i] == '\n') {
+        String line = new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8).trim();
+        if (!line.isEmpty()) {
+          add(parse(line));
+        }
+        lineStart = i + 1;
+      }
+    }
+    readPosition += lineStart;
+  }
+
+  private static Entry parse(String line) throws IOException {
+    String[] parts = line.split(" ");
+    if (parts.length != 5 && parts.length != 6) {
+      throw new IOException("Malformed probe ID map entry: " + line);
+    }
+    try {
+      return new Entry(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+          Integer.parseInt(parts[3]), Integer.parseInt(parts[4]), parts.length == 6 ? parts[5] : "");
+    } catch (NumberFormatException e) {
+      throw new IOException("Malformed probe ID map entry: " + line, e);
+    }
+  }
+
+  private void add(Entry entry) {
+    entries.put(entry.className, entry);
+    nextFreeId = Math.max(nextFreeId, entry.base + entry.size);
+  }
+}
@@ -0,0 +1,158 @@
+package janala.instrument;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Finds fast-coverage probes that are implied by other probes of the same method.
+ *
+ * <p>A call-site probe is redundant if the point before the call is reached exactly
+ * as often as some probe that is kept: either because the basic block containing
+ * the call is entered only through a single probed edge (the method entry, one arm
+ * of a conditional jump, or one arm of a switch), or because an earlier call site
+ * in the same block already has a probe. Pruning such probes does not lose any
+ * coverage information, since their counts equal the counts of the implying probes.</p>
+ *
+ * <p>Like block-based coverage tools, the analysis ignores exceptional control flow
+ * within a block: a call that throws skips the later call sites of its block, whose
+ * probes may then have been pruned.</p>
+ *
+ * <p>Branch, method-entry and method-end probes are never pruned. The guidance
+ * classifies the hit count of every key into buckets on its own, so a probe may only
+ * be omitted if its count equals that of a kept probe. The count of a branch arm or
+ * method entry is in general only the difference or sum of other counts (as in
+ * spanning-tree edge profiling); pruning it would require rebuilding the count after
+ * every run, from a table that would have to be cached with the instrumented classes.
+ * Branch probes also check for pending interrupts in inline mode, and method-end
+ * probes are only emitted for execution indexing, which needs all of them.</p>
+ */
+class ProbePruning {
+
+    /** The number of incoming edges of a label, and how many of them are probed. */
+    private static class Edges {
+        int total;
+        int probed;
+    }
+
+    /**
+     * Determines which call-site probes of a method can be omitted.
+     *
+     * @param method the method, before instrumentation
+     * @return the indices of the redundant call sites, in the order of {@code visitMethodInsn}
+     */
+    static BitSet findRedundantCallSites(MethodNode method) {
+        Map<LabelNode, Edges> incoming = new HashMap<>();
+        for (AbstractInsnNode insn : method.instructions) {
+            if (insn instanceof JumpInsnNode) {
+                int opcode = insn.getOpcode();
+                boolean probed = opcode != Opcodes.GOTO && opcode != Opcodes.JSR;
+                addEdge(incoming, ((JumpInsnNode) insn).label, probed);
+            } else if (insn instanceof TableSwitchInsnNode) {
+                TableSwitchInsnNode tableSwitch = (TableSwitchInsnNode) insn;
+                addEdge(incoming, tableSwitch.dflt, true);
+                for (LabelNode label : tableSwitch.labels) {
+                    addEdge(incoming, label, true);
+                }
+            } else if (insn instanceof LookupSwitchInsnNode) {
+                LookupSwitchInsnNode lookupSwitch = (LookupSwitchInsnNode) insn;
+                addEdge(incoming, lookupSwitch.dflt, true);
+                for (LabelNode label : lookupSwitch.labels) {
+                    addEdge(incoming, label, true);
+                }
+            }
+        }
+        for (TryCatchBlockNode tryCatch : method.tryCatchBlocks) {
+            addEdge(incoming, tryCatch.handler, false);
+        }
+
+        BitSet redundant = new BitSet();
+        int callSite = 0;
+        // The method-entry probe counts how often the first instruction is reached by falling in
+        boolean fallsThrough = true;
+        boolean fallthroughProbed = true;
+        boolean covered = true;
+        for (AbstractInsnNode insn : method.instructions) {
+            if (insn instanceof LabelNode) {
+                Edges edges = incoming.get(insn);
+                if (edges != null) {
+                    // A block that is entered through a single probed edge is as often reached as that probe
+                    int total = edges.total + (fallsThrough ? 1 : 0);
+                    int probed = edges.probed + (fallsThrough && fallthroughProbed ? 1 : 0);
+                    covered = total == 1 && probed == 1;
+                    fallsThrough = true;
+                    fallthroughProbed = covered;
+                }
+                continue;
+            }
+            if (insn.getOpcode() < 0) {
+                // Frames and line numbers
+                continue;
+            }
+            if (!fallsThrough) {
+                // Unreachable code, which the class writer replaces
+                covered = false;
+            }
+
+            switch (insn.getType()) {
+                case AbstractInsnNode.METHOD_INSN:
+                    if (covered) {
+                        redundant.set(callSite);
+                    }
+                    callSite++;
+                    covered = true;
+                    fallsThrough = true;
+                    fallthroughProbed = true;
+                    break;
+                case AbstractInsnNode.JUMP_INSN:
+                    if (insn.getOpcode() == Opcodes.GOTO) {
+                        fallsThrough = false;
+                    } else {
+                        // The fall-through arm of a conditional jump has its own probe; JSR returns via RET
+                        fallsThrough = true;
+                        fallthroughProbed = insn.getOpcode() != Opcodes.JSR;
+                        covered = fallthroughProbed;
+                    }
+                    break;
+                case AbstractInsnNode.TABLESWITCH_INSN:
+                case AbstractInsnNode.LOOKUPSWITCH_INSN:
+                    fallsThrough = false;
+                    break;
+                default:
+                    switch (insn.getOpcode()) {
+                        case Opcodes.IRETURN:
+                        case Opcodes.LRETURN:
+                        case Opcodes.FRETURN:
+                        case Opcodes.DRETURN:
+                        case Opcodes.ARETURN:
+                        case Opcodes.RETURN:
+                        case Opcodes.ATHROW:
+                        case Opcodes.RET:
+                            fallsThrough = false;
+                            break;
+                        default:
+                            fallsThrough = true;
+                            fallthroughProbed = covered;
+                    }
+            }
+        }
+        return redundant;
+    }
+
+    private static void addEdge(Map<LabelNode, Edges> incoming, LabelNode target, boolean probed) {
+        Edges edges = incoming.computeIfAbsent(target, label -> new Edges());
+        edges.total++;
+        if (probed) {
+            edges.probed++;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package janala.instrument;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Removes fast-coverage probes of a running JVM by retransforming their classes.
+ *
+ * <p>With {@code janala.probeRemoval}, the agent numbers the probes of every class
+ * from a fixed range of the {@link ProbeIdMap} (a temporary one if none is configured)
+ * and registers the range here. A guidance may then hand over probe keys that no
+ * longer provide feedback, e.g. of edges that have been hit with every count bucket.
+ * The classes containing them are retransformed from their original bytes with the
+ * same probe IDs, leaving out the removed probes; all other probes keep their keys.</p>
+ *
+ * <p>Branch probes that are removed are replaced by a check for pending interrupts,
+ * such that loops still time out. Offline-instrumented classes are not affected.</p>
+ */
+public class ProbeRemoval {
+
+    private static Instrumentation instrumentation;
+
+    /** Instrumented classes, by the base ID of their range and by name. */
+    private static final TreeMap<Integer, ProbeIdMap.Entry> classesByBase = new TreeMap<>();
+    private static final Map<String, ProbeIdMap.Entry> classesByName = new HashMap<>();
+
+    /** The keys of all removed probes. */
+    private static final BitSet removedProbes = new BitSet();
+
+    /** Called by the agent on startup. */
+    static synchronized void setInstrumentation(Instrumentation inst) {
+        instrumentation = inst;
+    }
+
+    /** Called by the agent for every class instrumented with the probes of a range. */
+    static synchronized void registerClass(ProbeIdMap.Entry range) {
+        classesByBase.put(range.base, range);
+        classesByName.put(range.className, range);
+    }
+
+    /** Returns the range of a registered class, or {@code null} if the class has not been registered. */
+    static synchronized ProbeIdMap.Entry getRange(String className) {
+        return classesByName.get(className);
+    }
+
+    /** Returns a copy of the keys of all removed probes. */
+    static synchronized BitSet getRemovedProbes() {
+        return (BitSet) removedProbes.clone();
+    }
+
+    /**
+     * Returns whether probes can be removed, i.e. whether the agent has been started
+     * with {@code janala.probeRemoval} and the JVM can retransform classes.
+     *
+     * @return whether {@link #removeProbes} has any effect
+     */
+    public static synchronized boolean isEnabled() {
+        return Config.instance.useProbeRemoval && instrumentation != null
+                && instrumentation.isRetransformClassesSupported();
+    }
+
+    /**
+     * Removes probes and retransforms all loaded classes that contain them.
+     *
+     * @param keys the probe keys to remove
+     * @return the number of retransformed classes
+     */
+    public static int removeProbes(int[] keys) {
+        Set<String> classNames = new HashSet<>();
+        synchronized (ProbeRemoval.class) {
+            if (!isEnabled()) {
+                return 0;
+            }
+            for (int key : keys) {
+                Map.Entry<Integer, ProbeIdMap.Entry> owner = classesByBase.floorEntry(key);
+                if (owner != null && key <= owner.getValue().getLastId() && !removedProbes.get(key)) {
+                    removedProbes.set(key);
+                    classNames.add(owner.getValue().className);
+                }
+            }
+        }
+        if (classNames.isEmpty()) {
+            return 0;
+        }
+
+        List<Class<?>> classes = new ArrayList<>();
+        for (Class<?> clazz : instrumentation.getAllLoadedClasses()) {
+            if (classNames.contains(clazz.getName().replace('.', '/')) && instrumentation.isModifiableClass(clazz)) {
+                classes.add(clazz);
+            }
+        }
+        int numRetransformed = 0;
+        for (Class<?> clazz : classes) {
+            try {
+                instrumentation.retransformClasses(clazz);
+                numRetransformed++;
+            } catch (UnmodifiableClassException | RuntimeException | LinkageError e) {
+                // The class keeps its probes
+                if (Config.instance.verbose) {
+                    System.err.println("[WARNING] Could not remove probes from " + clazz + ": " + e);
+                }
+            }
+        }
+        return numRetransformed;
+    }
+}
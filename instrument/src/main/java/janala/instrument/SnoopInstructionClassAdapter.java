@@ -4,6 +4,7 @@ package janala.instrument;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.MethodNode;
 
 import java.util.Arrays;
 import java.util.regex.Pattern;
@@ -13,10 +14,19 @@ public class SnoopInstructionClassAdapter extends ClassVisitor {
   private final String className;
   private String superName;
   private boolean trackSemanticAnalysis;
+  private final GlobalStateForInstrumentation instrumentationState;
+  private final ProbeCounter probeCounter;
 
   public SnoopInstructionClassAdapter(ClassVisitor cv, String className, Pattern[] semanticAnalysisClasses) {
+    this(cv, className, semanticAnalysisClasses, GlobalStateForInstrumentation.instance, ProbeCounter.instance);
+  }
+
+  public SnoopInstructionClassAdapter(ClassVisitor cv, String className, Pattern[] semanticAnalysisClasses,
+                                      GlobalStateForInstrumentation instrumentationState, ProbeCounter probeCounter) {
     super(Opcodes.ASM8, cv);
     this.className = className;
+    this.instrumentationState = instrumentationState;
+    this.probeCounter = probeCounter;
     this.trackSemanticAnalysis = false;
     if (Config.instance.trackSemanticCoverage
             && (Arrays.stream(semanticAnalysisClasses).anyMatch(pattern -> pattern.matcher(className).matches()))) {
@@ -42,15 +52,27 @@ public class SnoopInstructionClassAdapter extends ClassVisitor {
     MethodVisitor mv = cv.visitMethod(access, name, desc, signature, exceptions);
     if (mv != null) {
       if (Config.instance.useFastCoverageInstrumentation){
+        FastCoverageMethodAdapter fmv;
         if (trackSemanticAnalysis) {
-          MethodVisitor smv = new FastSemanticCoverageMethodAdapter(mv);
-          return new FastCoverageMethodAdapter(smv, className, name, desc, superName, GlobalStateForInstrumentation.instance);
+          MethodVisitor smv = new FastSemanticCoverageMethodAdapter(mv, probeCounter);
+          fmv = new FastCoverageMethodAdapter(smv, className, name, desc, superName, instrumentationState, probeCounter);
         } else {
-          return new FastCoverageMethodAdapter(mv, className, name, desc, superName, GlobalStateForInstrumentation.instance);
+          fmv = new FastCoverageMethodAdapter(mv, className, name, desc, superName, instrumentationState, probeCounter);
+        }
+        if (Config.instance.useProbePruning) {
+          // Buffer the method, such that redundant probes are known before instrumenting it
+          return new MethodNode(Opcodes.ASM8, access, name, desc, signature, exceptions) {
+            @Override
+            public void visitEnd() {
+              fmv.setRedundantCallSites(ProbePruning.findRedundantCallSites(this));
+              accept(fmv);
+            }
+          };
         }
+        return fmv;
       }else {
         return new SnoopInstructionMethodAdapter(mv, className, name, desc, superName,
-                GlobalStateForInstrumentation.instance, (access & Opcodes.ACC_STATIC) != 0);
+                instrumentationState, (access & Opcodes.ACC_STATIC) != 0);
       }
     }
     return null;
@@ -41,16 +41,13 @@ public class SnoopInstructionMethodAdapter extends MethodVisitor implements Opco
   @Override
   public void visitCode() {
     instrumentationState.incMid();
-    mv.visitLdcInsn(className);
-    mv.visitLdcInsn(methodName);
-    mv.visitLdcInsn(descriptor);
+    addBipushInsn(mv, MethodIdMap.instance.getId(className, methodName, descriptor));
     if(isInit || isStatic) {
-      mv.visitMethodInsn(INVOKESTATIC, Config.instance.analysisClass, "METHOD_BEGIN",
-              "(Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;)V", false);
+      mv.visitMethodInsn(INVOKESTATIC, Config.instance.analysisClass, "METHOD_BEGIN", "(I)V", false);
     } else {
       mv.visitVarInsn(ALOAD, 0);
       mv.visitMethodInsn(INVOKESTATIC, Config.instance.analysisClass, "METHOD_BEGIN",
-              "(Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;Ljava/lang/Object;)V", false);
+              "(ILjava/lang/Object;)V", false);
     }
     if (isInit == false) {
       // For non-constructor methods, the outer try-catch blocks wraps around the entire code
@@ -695,15 +692,12 @@ public class SnoopInstructionMethodAdapter extends MethodVisitor implements Opco
     // off its call stack.
     addBipushInsn(mv, instrumentationState.incAndGetId());
     addBipushInsn(mv, lastLineNumber);
-
-    mv.visitLdcInsn(owner);
-    mv.visitLdcInsn(name);
-    mv.visitLdcInsn(desc);
+    addBipushInsn(mv, MethodIdMap.instance.getId(owner, name, desc));
     mv.visitMethodInsn(
      INVOKESTATIC,
      Config.instance.analysisClass,
      getMethodName(opcode),
-     "(IILjava/lang/String;Ljava/lang/String;Ljava/lang/String;)V", false);
+     "(III)V", false);
       // Wrap the method call in a try-catch block
     Label begin = new Label();
     Label handler = new Label();
@@ -759,14 +753,12 @@ public class SnoopInstructionMethodAdapter extends MethodVisitor implements Opco
         addSpecialInsn(mv, SPECIAL.CALLING_SUPER_OR_THIS); // for true path
         addBipushInsn(mv, instrumentationState.incAndGetId());
         addBipushInsn(mv, lastLineNumber);
-        mv.visitLdcInsn(owner);
-        mv.visitLdcInsn(name);
-        mv.visitLdcInsn(desc);
+        addBipushInsn(mv, MethodIdMap.instance.getId(owner, name, desc));
         mv.visitMethodInsn(
                 INVOKESTATIC,
                 Config.instance.analysisClass,
                 getMethodName(opcode),
-                "(IILjava/lang/String;Ljava/lang/String;Ljava/lang/String;)V", false);
+                "(III)V", false);
 
 
         // Call <init>
@@ -1,12 +1,14 @@
 package janala.instrument;
 
+import edu.berkeley.cs.jqf.instrument.tracing.InlineCoverageMap;
+
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.IllegalClassFormatException;
 import java.lang.instrument.Instrumentation;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.ProtectionDomain;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -17,10 +19,14 @@ import java.util.regex.Pattern;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 
 @SuppressWarnings("unused") // Registered via -javaagent
 public class SnoopInstructionTransformer implements ClassFileTransformer {
   private static final String instDir = Config.instance.instrumentationCacheDir;
+  private static final boolean fastCoverage = Config.instance.useFastCoverageInstrumentation;
+  private static final ProbeIdMap probeIds = openProbeIdMap();
   private static final boolean verbose = Config.instance.verbose;
   private static final boolean instrumentGenerators = Boolean.parseBoolean(System.getProperty("jqf.instrument.INSTRUMENT_GENERATORS", "false"));
   private static final boolean instrumentSplitGenerators = Boolean.parseBoolean(System.getProperty("jqf.instrument.INSTRUMENT_SPLIT_GENERATORS", "false"));
@@ -52,6 +58,7 @@ public class SnoopInstructionTransformer implements ClassFileTransformer {
     preloadClasses();
 
     inst.addTransformer(new SnoopInstructionTransformer(), true);
+    ProbeRemoval.setInstrumentation(inst);
     if (inst.isRetransformClassesSupported()) {
       for (Class clazz : inst.getAllLoadedClasses()) {
         try {
@@ -73,6 +80,30 @@ public class SnoopInstructionTransformer implements ClassFileTransformer {
     }
   }
 
+  /** Returns the probe ID map used for fast-coverage instrumentation, or {@code null} if IDs are not class-stable. */
+  static ProbeIdMap getProbeIdMap() {
+    return probeIds;
+  }
+
+  private static ProbeIdMap openProbeIdMap() {
+    String mapFile = Config.instance.probeIdMapFile;
+    if (!fastCoverage || (mapFile == null && !Config.instance.useProbeRemoval)) {
+      return null;
+    }
+    try {
+      if (mapFile == null) {
+        // Removing probes requires class-stable IDs, which do not need to outlive this JVM
+        File tmp = File.createTempFile("probe-ids", ".map");
+        tmp.deleteOnExit();
+        mapFile = tmp.getPath();
+      }
+      return new ProbeIdMap(new File(mapFile), Config.instance.probeMode);
+    } catch (IOException e) {
+      System.err.println("[WARNING] Could not open probe ID map " + mapFile + ": " + e.getMessage());
+      return null;
+    }
+  }
+
   private static void preloadClasses() throws ClassNotFoundException {
     Class.forName("java.util.ArrayDeque");
     Class.forName("java.util.LinkedList");
@@ -104,8 +135,12 @@ public class SnoopInstructionTransformer implements ClassFileTransformer {
     return false;
   }
 
+  /**
+   * Instruments a class. Classes may be transformed concurrently: every transformation
+   * uses its own instrumentation state, and probe IDs are allocated atomically.
+   */
   @Override
-  synchronized public byte[] transform(ClassLoader loader, String cname, Class<?> classBeingRedefined,
+  public byte[] transform(ClassLoader loader, String cname, Class<?> classBeingRedefined,
       ProtectionDomain d, byte[] cbuf)
     throws IllegalClassFormatException {
 
@@ -113,73 +148,288 @@ public class SnoopInstructionTransformer implements ClassFileTransformer {
       // Do not instrument lambdas
       return null;
     }
-    boolean toInstrument = !shouldExclude(cname);
+    if (shouldExclude(cname)) {
+      return cbuf;
+    }
+    InstrumentedClass instrumented = instrumentClass(loader, cname, classBeingRedefined, cbuf);
+    if (instrumented == null) {
+      return null;
+    }
+    instrumented.register();
+    return instrumented.getBytecode();
+  }
+
+  /**
+   * Instruments a class without registering its probes, so that it can be
+   * instrumented ahead of time but only counted once it is defined.
+   *
+   * @param loader the class loader that will define the class
+   * @param cname  the internal name of the class
+   * @param cbuf   the original bytecode
+   * @return the instrumented class, or {@code null} if the class is not instrumented
+   */
+  public InstrumentedClass instrumentDeferred(ClassLoader loader, String cname, byte[] cbuf) {
+    if (cname == null || shouldExclude(cname)) {
+      return null;
+    }
+    return instrumentClass(loader, cname, null, cbuf);
+  }
+
+  /**
+   * Returns the prefixes of internal class names that are instrumented even if they match an exclude.
+   *
+   * @return the include prefixes (see {@code janala.includes})
+   */
+  public static String[] getIncludes() {
+    return includes.clone();
+  }
+
+  /**
+   * Returns whether the fast-coverage probe IDs of a class do not depend on the
+   * order in which classes are instrumented, i.e. whether classes may be
+   * instrumented ahead of time and in parallel without changing their IDs.
+   *
+   * @return whether probe IDs are class-stable
+   */
+  public static boolean hasStableProbeIds() {
+    return !fastCoverage || probeIds != null;
+  }
+
+  /**
+   * Instrumented bytecode of a class together with the probes that must be
+   * registered (see {@link #register()}) once the class is defined.
+   */
+  public static final class InstrumentedClass {
+    private final byte[] bytecode;
+    private final ProbeIdMap.Entry range;
+    private final ProbeCounter probeCounter;
+
+    private InstrumentedClass(byte[] bytecode, ProbeIdMap.Entry range, ProbeCounter probeCounter) {
+      this.bytecode = bytecode;
+      this.range = range;
+      this.probeCounter = probeCounter;
+    }
+
+    /** Returns the instrumented bytecode. */
+    public byte[] getBytecode() {
+      return bytecode;
+    }
 
-    if (toInstrument) {
-      print("[INFO] ");
-      if (classBeingRedefined != null) {
-        print("* ");
+    /**
+     * Counts the probes of this class, reserves its probe ID range and makes
+     * room for it in the inline coverage map.
+     */
+    public void register() {
+      if (probeCounter == null) {
+        // Re-instrumented without removed probes, which were counted before
+        return;
       }
-      print("Instrumenting: " + cname + "... ");
-      GlobalStateForInstrumentation.instance.setCid(cname.hashCode());
+      if (range != null) {
+        registerRange(range);
+        GlobalStateForInstrumentation.instance.reserveFastCoverageIds(range.getLastId());
+      }
+      ProbeCounter.instance.add(probeCounter);
+      growInlineCoverageMap();
+    }
+  }
 
-      if (instDir != null) {
-        File cachedFile = new File(instDir + "/" + cname + ".instrumented.class");
-        File referenceFile = new File(instDir + "/" + cname + ".original.class");
-        if (cachedFile.exists() && referenceFile.exists()) {
-          try {
-            byte[] origBytes = Files.readAllBytes(referenceFile.toPath());
-            if (Arrays.equals(cbuf, origBytes)) {
-              byte[] instBytes = Files.readAllBytes(cachedFile.toPath());
-              println(" Found in disk-cache!");
-              return instBytes;
+  /* Instruments a class that is not excluded; returns null if it could not be instrumented. */
+  private InstrumentedClass instrumentClass(ClassLoader loader, String cname, Class<?> classBeingRedefined, byte[] cbuf) {
+    print("[INFO] ");
+    if (classBeingRedefined != null) {
+      print("* ");
+    }
+    print("Instrumenting: " + cname + "... ");
+
+    if (classBeingRedefined != null && Config.instance.useProbeRemoval) {
+      ProbeIdMap.Entry range = ProbeRemoval.getRange(cname);
+      if (range != null) {
+        try {
+          byte[] ret = instrumentWithoutRemovedProbes(loader, cname, cbuf, range);
+          println("Done!");
+          return new InstrumentedClass(ret, range, null);
+        } catch (Throwable e) {
+          println("\n[WARNING] Could not remove probes from " + cname);
+          if (verbose) {
+            e.printStackTrace();
+          }
+          return null;
+        }
+      }
+    }
+
+    // Cached classes are only valid together with their probe ID range or method IDs,
+    // and only for the probe mode they were instrumented with (see Config.probeMode)
+    boolean useCache = instDir != null &&
+        (fastCoverage ? probeIds != null : MethodIdMap.instance.isPersistent());
+    if (useCache) {
+      File cachedFile = getCachedFile(cname);
+      File referenceFile = new File(instDir + "/" + cname + ".original.class");
+      if (cachedFile.exists() && referenceFile.exists()) {
+        try {
+          byte[] origBytes = Files.readAllBytes(referenceFile.toPath());
+          ProbeIdMap.Entry probeRange = probeIds != null ? probeIds.get(cname) : null;
+          if (Arrays.equals(cbuf, origBytes) && (probeIds == null ||
+              (probeRange != null && probeRange.probeMode.equals(Config.instance.probeMode)))) {
+            byte[] instBytes = Files.readAllBytes(cachedFile.toPath());
+            ProbeCounter probeCounter = new ProbeCounter();
+            if (probeRange != null) {
+              probeCounter.addTotalProbes(probeRange.numProbes);
+              probeCounter.addSemanticProbes(probeRange.numSemanticProbes);
             }
-          } catch (IOException e) {
-            print(" <cache error> ");
+            println(" Found in disk-cache!");
+            return new InstrumentedClass(instBytes, probeRange, probeCounter);
           }
+        } catch (IOException e) {
+          print(" <cache error> ");
         }
       }
+    }
+
+    InstrumentedClass ret;
+    try {
+      if (probeIds != null) {
+        ret = instrumentWithStableIds(loader, cname, cbuf);
+      } else {
+        GlobalStateForInstrumentation state = new GlobalStateForInstrumentation();
+        state.setCid(cname.hashCode());
+        ProbeCounter probeCounter = new ProbeCounter();
+        ret = new InstrumentedClass(instrument(loader, cname, cbuf, state, probeCounter), null, probeCounter);
+      }
+    } catch (Throwable e) {
+      println("\n[WARNING] Could not instrument " + cname);
+      if (verbose) {
+        e.printStackTrace();
+      }
+      return null;
+    }
+
+    println("Done!");
 
-      byte[] ret = cbuf;
+    if (useCache) {
       try {
+        File cachedFile = getCachedFile(cname);
+        File referenceFile = new File(instDir + "/" + cname + ".original.class");
+        File parent = new File(cachedFile.getParent());
+        parent.mkdirs();
+        writeAtomically(cachedFile, ret.getBytecode());
+        writeAtomically(referenceFile, cbuf);
+      } catch(Exception e) {
+        e.printStackTrace();
+      }
+    }
+    return ret;
+  }
 
-        ClassReader cr = new ClassReader(cbuf);
-        ClassWriter cw = new SafeClassWriter(cr,  loader,
-                ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
-        ClassVisitor cv = new SnoopInstructionClassAdapter(cw, cname, semantic);
+  /** Returns the file that caches a class instrumented with the current probe mode. */
+  private static File getCachedFile(String cname) {
+    return new File(instDir + "/" + cname + ".instrumented." + Config.instance.probeMode + ".class");
+  }
 
-        cr.accept(cv, 0);
+  /** Makes room for the probes of a class in the inline coverage map before its code can run. */
+  static void growInlineCoverageMap() {
+    if (Config.instance.useInlineCoverageProbes) {
+      InlineCoverageMap.ensureCapacity(GlobalStateForInstrumentation.instance.getFastCoverageId());
+    }
+  }
 
-        ret = cw.toByteArray();
-      } catch (Throwable e) {
-        println("\n[WARNING] Could not instrument " + cname);
-        if (verbose) {
-          e.printStackTrace();
-        }
-        return null;
-      }
+  private static byte[] instrument(ClassLoader loader, String cname, byte[] cbuf,
+                                   GlobalStateForInstrumentation state, ProbeCounter probeCounter) {
+    ClassReader cr = new ClassReader(cbuf);
+    ClassWriter cw = new SafeClassWriter(cr,  loader,
+            ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+    ClassVisitor cv = new SnoopInstructionClassAdapter(cw, cname, semantic, state, probeCounter);
 
-      println("Done!");
+    cr.accept(cv, 0);
 
-      if (instDir != null) {
-        try {
-          File cachedFile = new File(instDir + "/" + cname + ".instrumented.class");
-          File referenceFile = new File(instDir + "/" + cname + ".original.class");
-          File parent = new File(cachedFile.getParent());
-          parent.mkdirs();
-          try(FileOutputStream out = new FileOutputStream(cachedFile)) {
-            out.write(ret);
-          }
-          try(FileOutputStream out = new FileOutputStream(referenceFile)) {
-            out.write(cbuf);
-          }
-        } catch(Exception e) {
-          e.printStackTrace();
-        }
+    return cw.toByteArray();
+  }
+
+  /**
+   * Instruments a class with fast-coverage probe IDs from the class's range in the
+   * {@link ProbeIdMap}, allocating a new range if the class has none or outgrew it.
+   */
+  private static InstrumentedClass instrumentWithStableIds(ClassLoader loader, String cname, byte[] cbuf) throws IOException {
+    ProbeIdMap.Entry range = probeIds.get(cname);
+    if (range != null) {
+      GlobalStateForInstrumentation state = new GlobalStateForInstrumentation();
+      state.setFastCoverageIdBase(range.base);
+      ProbeCounter probeCounter = new ProbeCounter();
+      byte[] ret = instrument(loader, cname, cbuf, state, probeCounter);
+      int size = state.getNextFastCoverageId() - range.base;
+      if (probeIds.commit(cname, range.base, size, probeCounter.getNumTotalProbes(), probeCounter.getNumSemanticProbes())) {
+        return new InstrumentedClass(ret, range, probeCounter);
       }
-      return ret;
+      // The class outgrew its range
+      range = probeIds.allocate(cname, size, probeCounter.getNumTotalProbes(), probeCounter.getNumSemanticProbes());
     } else {
-      return cbuf;
+      range = allocateProbeIds(cname, cbuf);
+    }
+
+    GlobalStateForInstrumentation state = new GlobalStateForInstrumentation();
+    state.setFastCoverageIdBase(range.base);
+    ProbeCounter probeCounter = new ProbeCounter();
+    byte[] ret = instrument(loader, cname, cbuf, state, probeCounter);
+    if (state.getNextFastCoverageId() - range.base != range.size) {
+      throw new IllegalStateException("Probe IDs of " + cname + " do not match the allocated range");
+    }
+    return new InstrumentedClass(ret, range, probeCounter);
+  }
+
+  /**
+   * Re-instruments a class within its range, leaving out the probes removed by {@link ProbeRemoval}.
+   * The class's probes have already been counted and its range is not changed.
+   */
+  private static byte[] instrumentWithoutRemovedProbes(ClassLoader loader, String cname, byte[] cbuf,
+                                                       ProbeIdMap.Entry range) {
+    GlobalStateForInstrumentation state = new GlobalStateForInstrumentation();
+    state.setFastCoverageIdBase(range.base);
+    state.setRemovedProbes(ProbeRemoval.getRemovedProbes());
+    byte[] ret = instrument(loader, cname, cbuf, state, new ProbeCounter());
+    if (state.getNextFastCoverageId() - range.base != range.size) {
+      throw new IllegalStateException("Probe IDs of " + cname + " do not match its range");
+    }
+    return ret;
+  }
+
+  private static void registerRange(ProbeIdMap.Entry range) {
+    if (Config.instance.useProbeRemoval) {
+      ProbeRemoval.registerClass(range);
+    }
+  }
+
+  /**
+   * Allocates a probe ID range for a class that has none yet.
+   *
+   * <p>The IDs and probes are counted by running the instrumentation without a
+   * class writer, which is cheap compared to computing frames. This way, the range
+   * can be reserved before instrumenting, and concurrent transformations of other
+   * classes never need to be redone.</p>
+   */
+  private static ProbeIdMap.Entry allocateProbeIds(String cname, byte[] cbuf) throws IOException {
+    GlobalStateForInstrumentation state = new GlobalStateForInstrumentation();
+    state.setFastCoverageIdBase(1);
+    ProbeCounter probeCounter = new ProbeCounter();
+    ClassVisitor discard = new ClassVisitor(Opcodes.ASM8) {
+      @Override
+      public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+        return new MethodVisitor(Opcodes.ASM8) {};
+      }
+    };
+    new ClassReader(cbuf).accept(new SnoopInstructionClassAdapter(discard, cname, semantic, state, probeCounter),
+        ClassReader.SKIP_FRAMES | ClassReader.SKIP_DEBUG);
+    int size = state.getNextFastCoverageId() - 1;
+    return probeIds.allocate(cname, size, probeCounter.getNumTotalProbes(), probeCounter.getNumSemanticProbes());
+  }
+
+  /** Writes a cache file such that concurrent readers never see a partially written file. */
+  private static void writeAtomically(File file, byte[] bytes) throws IOException {
+    File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+    try {
+      Files.write(tmp.toPath(), bytes);
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp.toPath());
     }
   }
 
@@ -37,6 +37,7 @@ import java.net.MalformedURLException;
 import java.net.URLClassLoader;
 import java.time.Duration;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
@@ -107,11 +108,22 @@ public class FuzzGoal extends AbstractMojo {
     /**
      * The instrumentation method.
      *
-     * <p>One of 'janala' and 'fast'. Default is 'fast'.</p>
+     * <p>One of 'janala', 'fast' and 'offline'. Default is 'fast'.
+     * With 'offline', classes are loaded from the jar written by
+     * the goal <code>jqf:instrument</code> (see {@link #instrumentedJar})
+     * instead of being instrumented at load time.</p>
      */
     @Parameter(property="instrumentation", defaultValue="fast")
     private String instrumentation;
 
+    /**
+     * The offline-instrumented jar written by the goal <code>jqf:instrument</code>.
+     *
+     * <p>This property is only used with {@code -Dinstrumentation=offline}.</p>
+     */
+    @Parameter(property="instrumentedJar", defaultValue="${project.build.directory}/jqf-instrumented.jar")
+    private File instrumentedJar;
+
     /**
      * Comma-separated list of FQN prefixes to exclude from
      * coverage instrumentation.
@@ -133,6 +145,17 @@ public class FuzzGoal extends AbstractMojo {
     @Parameter(property="includes")
     private String includes;
 
+    /**
+     * Number of threads used to instrument the package of the test
+     * class (and the included prefixes) before fuzzing starts.
+     *
+     * <p>If not provided, or zero, classes are instrumented one
+     * at a time when they are first loaded. Pre-instrumentation with
+     * fast coverage requires a probe ID map.</p>
+     */
+    @Parameter(property="preinstrument")
+    private int preinstrumentThreads;
+
     /**
      * The duration of time for which to run fuzzing.
      *
@@ -363,6 +386,7 @@ public class FuzzGoal extends AbstractMojo {
         // Configure instrumentation
         switch (instrumentation) {
             case "fast":
+            case "offline":
                 System.setProperty("useFastNonCollidingCoverageInstrumentation", String.valueOf(true));
                 break;
             case "janala":
@@ -422,7 +446,7 @@ public class FuzzGoal extends AbstractMojo {
         }
 
         if (trackSemanticCoverage) {
-            if (!instrumentation.equals("fast")) {
+            if (instrumentation.equals("janala")) {
                 throw new MojoExecutionException(
                         "Semantic coverage can only be tracked using fast instrumentation, currently using: " + instrumentation);
             }
@@ -448,13 +472,37 @@ public class FuzzGoal extends AbstractMojo {
                         stringsToUrls(classpathElements.toArray(new String[0])),
                         getClass().getClassLoader());
 
+            } else if (instrumentation.equals("offline")) {
+                if (!instrumentedJar.isFile()) {
+                    throw new MojoExecutionException("Cannot find instrumented jar " + instrumentedJar +
+                            "; create it with jqf:instrument");
+                }
+                // Instrumented classes shadow the originals on the class path
+                List<String> elements = new ArrayList<>();
+                elements.add(instrumentedJar.getPath());
+                elements.addAll(classpathElements);
+                loader = new URLClassLoader(
+                        stringsToUrls(elements.toArray(new String[0])),
+                        getClass().getClassLoader());
+
             } else {
-                loader = new InstrumentingClassLoader(
+                InstrumentingClassLoader instrumentingLoader = new InstrumentingClassLoader(
                         classpathElements.toArray(new String[0]),
                         getClass().getClassLoader());
+                if (preinstrumentThreads > 0) {
+                    int numClasses = instrumentingLoader.preinstrument(preinstrumentThreads,
+                            testClassName.substring(0, Math.max(testClassName.lastIndexOf('.'), 0)));
+                    log.info("Pre-instrumented " + numClasses + " classes");
+                }
+                loader = instrumentingLoader;
             }
         } catch (DependencyResolutionRequiredException|MalformedURLException e) {
             throw new MojoExecutionException("Could not get project classpath", e);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not instrument project classpath", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while instrumenting project classpath", e);
         }
 
         File resultsDir = new File(target, outputDirectory);
@@ -0,0 +1,113 @@
+package edu.berkeley.cs.jqf.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import janala.instrument.OfflineInstrumenter;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Maven plugin for instrumenting the test class path ahead of time.
+ *
+ * <p>Writes a single jar with the fast-coverage-instrumented classes
+ * of the project's test class path, which can then be fuzzed with
+ * {@code jqf:fuzz -Dinstrumentation=offline} without instrumenting
+ * classes at load time.</p>
+ */
+@Mojo(name="instrument",
+        requiresDependencyResolution=ResolutionScope.TEST)
+public class InstrumentGoal extends AbstractMojo {
+
+    @Parameter(defaultValue="${project}", required=true, readonly=true)
+    MavenProject project;
+
+    /**
+     * The jar to write the instrumented class path to.
+     */
+    @Parameter(property="instrumentedJar", defaultValue="${project.build.directory}/jqf-instrumented.jar")
+    private File instrumentedJar;
+
+    /**
+     * Comma-separated list of FQN prefixes to exclude from
+     * coverage instrumentation.
+     *
+     * <p>The semantics are the same as for the similarly named
+     * property in the goal <code>jqf:fuzz</code>.</p>
+     */
+    @Parameter(property="excludes")
+    private String excludes;
+
+    /**
+     * Comma-separated list of FQN prefixes to forcibly include,
+     * even if they match an exclude.
+     *
+     * <p>The semantics are the same as for the similarly named
+     * property in the goal <code>jqf:fuzz</code>.</p>
+     */
+    @Parameter(property="includes")
+    private String includes;
+
+    /**
+     * The probe ID map to allocate probe IDs from.
+     *
+     * <p>If not provided, the map is kept next to the instrumented jar.</p>
+     */
+    @Parameter(property="probeIdMap")
+    private File probeIdMap;
+
+    /**
+     * Number of instrumentation threads.
+     *
+     * <p>If not provided, defaults to the number of available processors.</p>
+     */
+    @Parameter(property="threads")
+    private int threads;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        Log log = getLog();
+
+        // Configure instrumentation
+        System.setProperty("useFastNonCollidingCoverageInstrumentation", String.valueOf(true));
+        if (excludes != null) {
+            System.setProperty("janala.excludes", excludes);
+        }
+        if (includes != null) {
+            System.setProperty("janala.includes", includes);
+        }
+        if (probeIdMap == null) {
+            probeIdMap = new File(instrumentedJar.getPath() + ".probe-ids.map");
+        }
+        System.setProperty("janala.probeIdMap", probeIdMap.getPath());
+
+        List<File> classpath = new ArrayList<>();
+        try {
+            for (String element : project.getTestClasspathElements()) {
+                classpath.add(new File(element));
+            }
+        } catch (DependencyResolutionRequiredException e) {
+            throw new MojoExecutionException("Could not get project classpath", e);
+        }
+
+        int numThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        try {
+            int numClasses = OfflineInstrumenter.instrument(classpath, instrumentedJar, numThreads);
+            log.info("Instrumented " + numClasses + " classes into " + instrumentedJar);
+        } catch (IOException | IllegalStateException e) {
+            throw new MojoExecutionException("Could not instrument project classpath", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while instrumenting project classpath", e);
+        }
+    }
+}